@@ -22,6 +22,8 @@ import auth_encryption.core.HandshakeSignatureMessage;
 import auth_encryption.core.MessageAuthentication;
 import auth_encryption.core.SyncMessage;
 import auth_encryption.core.SyncRequestMessage;
+import auth_encryption.core.TrustFileManager;
+import auth_encryption.core.TrustProtocol;
 import auth_encryption.log.Log;
 import auth_encryption.primitives.Config;
 import auth_encryption.primitives.Fingerprint;
@@ -35,6 +37,7 @@ import core.Connection;
 import core.DTNHost;
 import core.Message;
 import core.Settings;
+import core.SettingsError;
 import core.SimClock;
 import core.SimScenario;
 import core.World;
@@ -73,6 +76,14 @@ public class AuthenticationApplication extends Application {
 	public static final String TRUST = "degree";
 	public static final String KEYPARM = "keyparm";
 	public static final String RUNS = "runs";
+	/** Storage backend of the trust repositories ({@link TrustFileManager.Backend}), default FILE */
+	public static final String STORAGE = "storage";
+	/** Content of the synchronization requests ({@link TrustProtocol.SyncMode}), default FULL */
+	public static final String SYNC = "sync";
+	/** Delivery of the auth messages ({@link SimulationNetworkInterface.Delivery}), default THREADED */
+	public static final String DELIVERY = "delivery";
+	/** Seed of the simulation randomness (overrides the seed of the run) */
+	public static final String SEED = "seed";
 	// Private vars
 	////////////////////////////////////////////////
 	private List<DTNHost> devices = new ArrayList<DTNHost>();
@@ -111,11 +122,44 @@ public class AuthenticationApplication extends Application {
 			KEY_PARAMETER = SignatureParameter.RSA;
 		}
 		
+		if (s.contains(STORAGE)) {
+			String storage = s.getSetting(STORAGE);
+			try {
+				TrustFileManager.setBackend(TrustFileManager.Backend.valueOf(storage.trim().toUpperCase()));
+			} catch (IllegalArgumentException e) {
+				throw new SettingsError("Unknown trust storage '" + storage + "' for setting " +
+						s.getFullPropertyName(STORAGE));
+			}
+		}
+		
+		if (s.contains(SYNC)) {
+			String sync = s.getSetting(SYNC);
+			try {
+				TrustProtocol.setSyncMode(TrustProtocol.SyncMode.valueOf(sync.trim().toUpperCase()));
+			} catch (IllegalArgumentException e) {
+				throw new SettingsError("Unknown sync mode '" + sync + "' for setting " +
+						s.getFullPropertyName(SYNC));
+			}
+		}
+		
+		if (s.contains(DELIVERY)) {
+			String delivery = s.getSetting(DELIVERY);
+			try {
+				SimulationNetworkInterface.setDelivery(
+						SimulationNetworkInterface.Delivery.valueOf(delivery.trim().toUpperCase()));
+			} catch (IllegalArgumentException e) {
+				throw new SettingsError("Unknown delivery mode '" + delivery + "' for setting " +
+						s.getFullPropertyName(DELIVERY));
+			}
+		}
+		
 		System.out.println("Degree : " + TRUST_DEGREE + ", RUNS: " + NUMBEROFRUNS +", KEY: " + KEY_PARAMETER);
 		
 		//System.out.println("Seed0: " + seeds[0] + ", Seed1: " + seeds[1] + ", Seed2: " + seeds[2]);
 		
 		SimulationConfig.RANDOM_SEED = seeds[NUMBEROFRUNS-1];
+		if (s.contains(SEED))
+			SimulationConfig.RANDOM_SEED = s.getLong(SEED);
 		SimulationConfig.RANDOM = new Random(SimulationConfig.RANDOM_SEED);
 		
 		SimulationConfig.SIMULATION_THREADS = Executors.newScheduledThreadPool(8);
@@ -209,8 +253,24 @@ public class AuthenticationApplication extends Application {
 								"M-auth-" + host, 10000);
 		
 		runSimulation(host);
+
+		// messages sent before an early return are delivered within the step
+		SimulationNetworkInterface.dispatchPending();
 	}
 	
+	/**
+	 * Returns the current time: every update counts a step of the host
+	 * ({@link DTNHost#STEPHOST}), which schedules the metrics recording, so
+	 * no update can be skipped.
+	 *
+	 * @param host to which the application instance is attached
+	 * @return The current time
+	 */
+	@Override
+	public double getNextUpdateTime(DTNHost host) {
+		return SimClock.getTime();
+	}
+
 	/**
 	 * @param host
 	 */
@@ -285,6 +345,9 @@ public class AuthenticationApplication extends Application {
 	 * Waits for all threads to finish the recent work queue.
 	 */
 	private void waitForBackgroundThreads() {
+		// deliver messages queued by the inline mode
+		SimulationNetworkInterface.dispatchPending();
+
 		// await background threads to finish running tasks
 		Future<?> future = null;
 		while ((future = SimulationConfig.SIMULATION_FUTURE_QUEUE.poll()) != null) {
@@ -190,6 +190,17 @@ public class PingApplication extends Application {
 		}
 	}
 
+	/**
+	 * Returns the time of the next ping (or Double.MAX_VALUE in the passive
+	 * mode); the updates do nothing before it.
+	 * @param host The host this application instance is attached to
+	 * @return The time of the next ping
+	 */
+	@Override
+	public double getNextUpdateTime(DTNHost host) {
+		return this.passive ? Double.MAX_VALUE : this.lastPing + this.interval;
+	}
+
 	/**
 	 * @return the lastPing
 	 */
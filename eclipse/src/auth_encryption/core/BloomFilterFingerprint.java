@@ -1,8 +1,11 @@
 package auth_encryption.core;
 
+import java.io.Serializable;
 import java.util.BitSet;
 
-public class BloomFilterFingerprint {
+public class BloomFilterFingerprint implements Serializable {
+	private static final long serialVersionUID = 1L;
+
 	private static final int MAX_HASHES = 8;
 	private static final long[] byteTable;
 	private static final long HSTART = 0xBB40E64DA205B064L;
@@ -72,6 +75,11 @@ public class BloomFilterFingerprint {
 	    }
 	}
 
+	// size of the bit array in bytes (as sent over the network)
+	public int getSize() {
+		return (this.hashMask + 1 + 7) / 8;
+	}
+
 	public boolean contains(String s) {
 		for (int n = 0; n < noHashes; n++) {
 			long hc = hashCode(s, n);
@@ -0,0 +1,346 @@
+package auth_encryption.core;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+
+import auth_encryption.primitives.Fingerprint;
+import auth_encryption.primitives.Signature;
+
+/**
+ * Keeps the length of the shortest certification path (owner -> ... ->
+ * subject) for every subject of a {@link TrustManager} up to date while
+ * subjects and signatures are added or removed. Only the part of the graph
+ * whose distances can actually change is touched, instead of running a full
+ * BFS per subject.
+ *
+ * A path may only pass through subjects that are currently part of the
+ * repository. Signatures are edges issuer -> subject, their issuer does not
+ * need to be known (the edge becomes usable as soon as the issuer is added).
+ */
+public final class CertificationGraph {
+	/* the owner of the repository, always at distance 0 */
+	private final Fingerprint root;
+
+	/* subjects currently part of the repository */
+	private final Set<Fingerprint> nodes = new HashSet<>();
+	/* subject -> issuer -> number of signatures */
+	private final Map<Fingerprint, Map<Fingerprint, Integer>> incoming = new HashMap<>();
+	/* issuer -> subject -> number of signatures (issuer might be unknown) */
+	private final Map<Fingerprint, Map<Fingerprint, Integer>> outgoing = new HashMap<>();
+	/* length of the shortest certification path (reachable subjects only) */
+	private final Map<Fingerprint, Integer> distances = new HashMap<>();
+
+	/* incremented on every structural change */
+	private long modCount = 0;
+
+	public CertificationGraph(final Fingerprint root) {
+		if (root == null)
+			throw new IllegalArgumentException();
+
+		this.root = root;
+		this.distances.put(root, 0);
+	}
+
+	// ---- GETTER
+
+	/**
+	 * Returns the length of the shortest certification path from the owner to
+	 * the given subject, or -1 if there is none.
+	 */
+	public int getDegree(Fingerprint fingerprint) {
+		Integer distance = this.distances.get(fingerprint);
+		if (distance == null)
+			return -1;
+
+		return distance;
+	}
+
+	public long getModCount() {
+		return this.modCount;
+	}
+
+	// ---- MODIFICATION
+
+	public void clear() {
+		this.nodes.clear();
+		this.incoming.clear();
+		this.outgoing.clear();
+		this.distances.clear();
+		this.distances.put(this.root, 0);
+		this.modCount++;
+	}
+
+	/**
+	 * Adds a subject together with all signatures issued for it.
+	 */
+	public void addSubject(Fingerprint fingerprint, Collection<Signature> issuers) {
+		if (!this.nodes.add(fingerprint))
+			return;
+
+		this.modCount++;
+		this.incoming.put(fingerprint, new HashMap<Fingerprint, Integer>());
+
+		for (Signature signature : issuers)
+			this.link(signature.getIssuer(), fingerprint);
+
+		if (this.root.equals(fingerprint))
+			return;
+
+		// determine distance from all known issuers
+		int best = -1;
+		for (Fingerprint issuer : this.incoming.get(fingerprint).keySet()) {
+			int distance = this.getUsableDegree(issuer);
+			if (distance >= 0 && (best == -1 || distance + 1 < best))
+				best = distance + 1;
+		}
+
+		if (best == -1)
+			return;
+
+		this.distances.put(fingerprint, best);
+		this.propagateDecrease(fingerprint);
+	}
+
+	/**
+	 * Removes a subject together with all signatures issued for it. Signatures
+	 * issued by the subject stay in place and become usable again once the
+	 * subject is re-added.
+	 */
+	public void removeSubject(Fingerprint fingerprint) {
+		if (this.root.equals(fingerprint) || !this.nodes.remove(fingerprint))
+			return;
+
+		this.modCount++;
+
+		Map<Fingerprint, Integer> issuers = this.incoming.remove(fingerprint);
+		for (Fingerprint issuer : issuers.keySet())
+			this.unlinkOutgoing(issuer, fingerprint);
+
+		Integer distance = this.distances.remove(fingerprint);
+		if (distance == null)
+			return;
+
+		this.repair(this.getTightChildren(fingerprint, distance));
+	}
+
+	/**
+	 * Adds a signature whose subject is already part of the graph.
+	 */
+	public void addSignature(Signature signature) {
+		Fingerprint issuer = signature.getIssuer();
+		Fingerprint subject = signature.getSubject();
+
+		if (!this.nodes.contains(subject))
+			return;
+
+		this.modCount++;
+		this.link(issuer, subject);
+
+		int distance = this.getUsableDegree(issuer);
+		if (distance < 0 || issuer.equals(subject) || this.root.equals(subject))
+			return;
+
+		int current = this.getDegree(subject);
+		if (current != -1 && current <= distance + 1)
+			return;
+
+		this.distances.put(subject, distance + 1);
+		this.propagateDecrease(subject);
+	}
+
+	public void removeSignature(Signature signature) {
+		Fingerprint issuer = signature.getIssuer();
+		Fingerprint subject = signature.getSubject();
+
+		if (!this.nodes.contains(subject))
+			return;
+
+		Map<Fingerprint, Integer> issuers = this.incoming.get(subject);
+		Integer count = issuers.get(issuer);
+		if (count == null)
+			return;
+
+		this.modCount++;
+
+		if (count > 1) {
+			issuers.put(issuer, count - 1);
+			this.outgoing.get(issuer).put(subject, count - 1);
+			return;
+		}
+
+		issuers.remove(issuer);
+		this.unlinkOutgoing(issuer, subject);
+
+		// check if the removed edge was part of a shortest path
+		int distance = this.getUsableDegree(issuer);
+		if (distance < 0 || issuer.equals(subject) || this.getDegree(subject) != distance + 1)
+			return;
+
+		Set<Fingerprint> seeds = new HashSet<>();
+		seeds.add(subject);
+		this.repair(seeds);
+	}
+
+	// ---- HELPER
+
+	// distance of an issuer that may be used as part of a path
+	private int getUsableDegree(Fingerprint issuer) {
+		if (!this.root.equals(issuer) && !this.nodes.contains(issuer))
+			return -1;
+
+		return this.getDegree(issuer);
+	}
+
+	private void link(Fingerprint issuer, Fingerprint subject) {
+		Map<Fingerprint, Integer> issuers = this.incoming.get(subject);
+		Integer count = issuers.get(issuer);
+		issuers.put(issuer, count == null ? 1 : count + 1);
+
+		Map<Fingerprint, Integer> subjects = this.outgoing.get(issuer);
+		if (subjects == null) {
+			subjects = new HashMap<>();
+			this.outgoing.put(issuer, subjects);
+		}
+		count = subjects.get(subject);
+		subjects.put(subject, count == null ? 1 : count + 1);
+	}
+
+	private void unlinkOutgoing(Fingerprint issuer, Fingerprint subject) {
+		Map<Fingerprint, Integer> subjects = this.outgoing.get(issuer);
+		if (subjects == null)
+			return;
+
+		subjects.remove(subject);
+		if (subjects.isEmpty())
+			this.outgoing.remove(issuer);
+	}
+
+	// all children whose shortest path might run over the given subject
+	private Set<Fingerprint> getTightChildren(Fingerprint fingerprint, int distance) {
+		Set<Fingerprint> result = new HashSet<>();
+
+		Map<Fingerprint, Integer> subjects = this.outgoing.get(fingerprint);
+		if (subjects == null)
+			return result;
+
+		for (Fingerprint child : subjects.keySet()) {
+			if (child.equals(fingerprint) || this.getDegree(child) != distance + 1)
+				continue;
+
+			result.add(child);
+		}
+
+		return result;
+	}
+
+	// BFS after a distance has decreased
+	private void propagateDecrease(Fingerprint start) {
+		Queue<Fingerprint> queue = new ArrayDeque<>();
+		queue.add(start);
+
+		while (!queue.isEmpty()) {
+			Fingerprint current = queue.remove();
+			int distance = this.distances.get(current);
+
+			Map<Fingerprint, Integer> subjects = this.outgoing.get(current);
+			if (subjects == null)
+				continue;
+
+			for (Fingerprint child : subjects.keySet()) {
+				if (this.root.equals(child) || !this.nodes.contains(child))
+					continue;
+
+				int old = this.getDegree(child);
+				if (old != -1 && old <= distance + 1)
+					continue;
+
+				this.distances.put(child, distance + 1);
+				queue.add(child);
+			}
+		}
+	}
+
+	// recomputes the distances of all subjects that (may) depend on the seeds
+	private void repair(Set<Fingerprint> seeds) {
+		if (seeds.isEmpty())
+			return;
+
+		// collect all subjects reachable via tight edges
+		Set<Fingerprint> affected = new HashSet<>(seeds);
+		Queue<Fingerprint> queue = new ArrayDeque<>(seeds);
+		while (!queue.isEmpty()) {
+			Fingerprint current = queue.remove();
+			for (Fingerprint child : this.getTightChildren(current, this.distances.get(current))) {
+				if (this.root.equals(child) || !this.nodes.contains(child))
+					continue;
+
+				if (affected.add(child))
+					queue.add(child);
+			}
+		}
+
+		for (Fingerprint current : affected)
+			this.distances.remove(current);
+
+		// seed with the best path over unaffected issuers
+		final Map<Fingerprint, Integer> candidates = new HashMap<>();
+		PriorityQueue<Fingerprint> pending = new PriorityQueue<>(affected.size(), new Comparator<Fingerprint>() {
+			@Override
+			public int compare(Fingerprint o1, Fingerprint o2) {
+				return Integer.compare(candidates.get(o1), candidates.get(o2));
+			}
+		});
+
+		for (Fingerprint current : affected) {
+			int best = -1;
+			for (Fingerprint issuer : this.incoming.get(current).keySet()) {
+				if (affected.contains(issuer))
+					continue;
+
+				int distance = this.getUsableDegree(issuer);
+				if (distance >= 0 && (best == -1 || distance + 1 < best))
+					best = distance + 1;
+			}
+
+			if (best == -1)
+				continue;
+
+			candidates.put(current, best);
+			pending.add(current);
+		}
+
+		// dijkstra restricted to the affected subjects
+		while (!pending.isEmpty()) {
+			Fingerprint current = pending.remove();
+			if (this.distances.containsKey(current))
+				continue;
+
+			int distance = candidates.get(current);
+			this.distances.put(current, distance);
+
+			Map<Fingerprint, Integer> subjects = this.outgoing.get(current);
+			if (subjects == null)
+				continue;
+
+			for (Fingerprint child : subjects.keySet()) {
+				if (!affected.contains(child) || this.distances.containsKey(child))
+					continue;
+
+				Integer old = candidates.get(child);
+				if (old != null && old <= distance + 1)
+					continue;
+
+				pending.remove(child);
+				candidates.put(child, distance + 1);
+				pending.add(child);
+			}
+		}
+	}
+}
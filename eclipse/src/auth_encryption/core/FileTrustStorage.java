@@ -0,0 +1,111 @@
+package auth_encryption.core;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+
+import auth_encryption.log.Log;
+
+/**
+ * Stores every trust object in its own file below the trust directory.
+ */
+public final class FileTrustStorage implements TrustStorage {
+	private static final String TAG = FileTrustStorage.class.getSimpleName();
+
+	private final File trustDir;
+
+	public FileTrustStorage(final File trustDir) {
+		this.trustDir = trustDir;
+
+		if (this.trustDir.exists() && !this.trustDir.isDirectory())
+			throw new IllegalArgumentException();
+
+		if (!this.trustDir.exists())
+			this.trustDir.mkdirs();
+	}
+
+	@Override
+	public boolean exists(String path) {
+		return new File(this.trustDir, path).isFile();
+	}
+
+	@Override
+	public boolean isDirectory(String path) {
+		return new File(this.trustDir, path).isDirectory();
+	}
+
+	@Override
+	public long length(String path) {
+		File file = new File(this.trustDir, path);
+		if (!file.isFile())
+			return -1;
+
+		return file.length();
+	}
+
+	@Override
+	public List<String> list(String directory) {
+		List<String> result = new ArrayList<>();
+
+		String[] names = new File(this.trustDir, directory).list();
+		if (names == null)
+			return result;
+
+		for (String name : names)
+			result.add(name);
+
+		return result;
+	}
+
+	@Override
+	public byte[] read(String path) throws IOException {
+		File file = new File(this.trustDir, path);
+		if (!file.exists() || !file.isFile())
+			throw new FileNotFoundException(path);
+
+		return Files.readAllBytes(file.toPath());
+	}
+
+	@Override
+	public boolean write(String path, byte[] data) throws IOException {
+		File file = new File(this.trustDir, path);
+		if (file.exists())
+			return false;
+
+		if (!file.getParentFile().exists())
+			file.getParentFile().mkdirs();
+
+		FileOutputStream fos = new FileOutputStream(file);
+		fos.write(data);
+		fos.close();
+
+		return true;
+	}
+
+	@Override
+	public boolean delete(String path) {
+		File file = new File(this.trustDir, path);
+
+		if (!file.isDirectory())
+			return file.delete();
+
+		try {
+			FileUtils.deleteDirectory(file);
+			return true;
+		} catch (Exception e) {
+			Log.e(TAG, "Could not delete directory: " + file.getAbsolutePath());
+			return false;
+		}
+	}
+
+	@Override
+	public void close() {
+		// nothing to release
+	}
+}
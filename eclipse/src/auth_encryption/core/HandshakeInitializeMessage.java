@@ -43,4 +43,9 @@ public class HandshakeInitializeMessage extends MessageAuthentication {
 	public void setResponse(boolean response) {
 		this.response = response;
 	}
+
+	@Override
+	protected int getPayloadSize() {
+		return TrustCodec.getSize(this.publicKey) + TrustCodec.getSize(this.signature) + 1;
+	}
 }
@@ -22,4 +22,9 @@ public class HandshakeSignatureMessage extends MessageAuthentication {
 	public Signature getSignature() {
 		return this.signature;
 	}
+
+	@Override
+	protected int getPayloadSize() {
+		return TrustCodec.getSize(this.signature);
+	}
 }
@@ -0,0 +1,247 @@
+package auth_encryption.core;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import auth_encryption.log.Log;
+
+/**
+ * Persists all trust objects in a single append-only log, which is memory
+ * mapped. An in-memory index (path -> position in the log) is rebuilt by
+ * replaying the log when the storage is opened.
+ * 
+ * Record layout: op (1 byte), path length (int), path (UTF-8), and for
+ * {@link #OP_PUT} data length (int), data. A zero op marks the end of the log.
+ * An incomplete or invalid record (e.g. torn by a crash while appending) is
+ * treated as the end of the log and overwritten by the next record.
+ */
+public final class MappedLogTrustStorage implements TrustStorage {
+	private static final String TAG = MappedLogTrustStorage.class.getSimpleName();
+
+	private static final byte OP_END = 0;
+	private static final byte OP_PUT = 1;
+	private static final byte OP_DELETE = 2;
+
+	private static final int INITIAL_CAPACITY = 1 << 20;
+
+	/**
+	 * Position of a stored object within the log.
+	 */
+	private static final class Entry {
+		private final int offset;
+		private final int length;
+
+		private Entry(int offset, int length) {
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	private final TreeMap<String, Entry> index = new TreeMap<>();
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private MappedByteBuffer buffer;
+	private int position = 0;
+
+	public MappedLogTrustStorage(final File logFile) throws IOException {
+		if (!logFile.getParentFile().exists())
+			logFile.getParentFile().mkdirs();
+
+		this.file = new RandomAccessFile(logFile, "rw");
+		this.channel = this.file.getChannel();
+		this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0,
+				Math.max(INITIAL_CAPACITY, this.channel.size()));
+
+		this.replay();
+	}
+
+	// ---- TRUST STORAGE
+
+	@Override
+	public synchronized boolean exists(String path) {
+		return this.index.containsKey(path);
+	}
+
+	@Override
+	public synchronized boolean isDirectory(String path) {
+		return !StoragePaths.children(this.index, path).isEmpty();
+	}
+
+	@Override
+	public synchronized long length(String path) {
+		Entry entry = this.index.get(path);
+		if (entry == null)
+			return -1;
+
+		return entry.length;
+	}
+
+	@Override
+	public synchronized List<String> list(String directory) {
+		return StoragePaths.list(this.index, directory);
+	}
+
+	@Override
+	public synchronized byte[] read(String path) throws IOException {
+		Entry entry = this.index.get(path);
+		if (entry == null)
+			throw new FileNotFoundException(path);
+
+		byte[] result = new byte[entry.length];
+		MappedByteBuffer view = this.buffer;
+		for (int i = 0; i < entry.length; i++)
+			result[i] = view.get(entry.offset + i);
+
+		return result;
+	}
+
+	@Override
+	public synchronized boolean write(String path, byte[] data) throws IOException {
+		if (this.index.containsKey(path))
+			return false;
+
+		byte[] name = path.getBytes(StandardCharsets.UTF_8);
+		this.ensureCapacity(1 + 4 + name.length + 4 + data.length + 1);
+
+		this.buffer.position(this.position);
+		this.buffer.put(OP_PUT);
+		this.buffer.putInt(name.length);
+		this.buffer.put(name);
+		this.buffer.putInt(data.length);
+		int offset = this.buffer.position();
+		this.buffer.put(data);
+		this.position = this.buffer.position();
+
+		this.index.put(path, new Entry(offset, data.length));
+		return true;
+	}
+
+	@Override
+	public synchronized boolean delete(String path) {
+		List<String> deleted = new ArrayList<>();
+		if (this.index.containsKey(path)) {
+			deleted.add(path);
+		} else {
+			deleted.addAll(StoragePaths.children(this.index, path).keySet());
+		}
+
+		if (deleted.isEmpty())
+			return false;
+
+		try {
+			for (String current : deleted) {
+				byte[] name = current.getBytes(StandardCharsets.UTF_8);
+				this.ensureCapacity(1 + 4 + name.length + 1);
+
+				this.buffer.position(this.position);
+				this.buffer.put(OP_DELETE);
+				this.buffer.putInt(name.length);
+				this.buffer.put(name);
+				this.position = this.buffer.position();
+
+				this.index.remove(current);
+			}
+		} catch (IOException e) {
+			return false;
+		}
+
+		return true;
+	}
+
+	// ---- LOG
+
+	/**
+	 * Forces all changes to the storage device and closes the log.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		this.buffer.force();
+		this.channel.close();
+		this.file.close();
+	}
+
+	// rebuild the index from the log
+	private void replay() {
+		MappedByteBuffer view = this.buffer;
+		view.position(0);
+
+		while (view.remaining() > 0) {
+			int start = view.position();
+			byte op = view.get();
+			if (op == OP_END) {
+				view.position(start);
+				break;
+			}
+
+			int nameLength = (op == OP_PUT || op == OP_DELETE) ? this.readLength(view) : -1;
+			if (nameLength <= 0) {
+				this.truncate(start);
+				return;
+			}
+
+			byte[] name = new byte[nameLength];
+			view.get(name);
+			String path = new String(name, StandardCharsets.UTF_8);
+
+			// a torn path is padded with zeros
+			int length = (op == OP_PUT) ? this.readLength(view) : 0;
+			if (path.indexOf('\0') >= 0 || length < 0) {
+				this.truncate(start);
+				return;
+			}
+
+			if (op == OP_PUT) {
+				this.index.put(path, new Entry(view.position(), length));
+				view.position(view.position() + length);
+			} else {
+				this.index.remove(path);
+			}
+		}
+
+		this.position = view.position();
+	}
+
+	// reads a length field, -1 if it is missing or exceeds the log
+	private int readLength(MappedByteBuffer view) {
+		if (view.remaining() < 4)
+			return -1;
+
+		int length = view.getInt();
+		return (length >= 0 && length <= view.remaining()) ? length : -1;
+	}
+
+	// drop an incomplete record at the end of the log
+	private void truncate(int start) {
+		Log.w(TAG, "Dropping incomplete trust log record at " + start);
+
+		MappedByteBuffer view = this.buffer;
+		for (int i = start; i < view.limit(); i++)
+			view.put(i, OP_END);
+
+		this.position = start;
+	}
+
+	// grow (and re-map) the log if the next record does not fit
+	private void ensureCapacity(int required) throws IOException {
+		long capacity = this.buffer.capacity();
+		if (this.position + required <= capacity)
+			return;
+
+		while (this.position + required > capacity)
+			capacity *= 2;
+
+		if (capacity > Integer.MAX_VALUE)
+			throw new IOException("Trust log exceeds maximum size!");
+
+		this.buffer.force();
+		this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+	}
+}
@@ -0,0 +1,75 @@
+package auth_encryption.core;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Keeps all trust objects in memory (nothing is persisted). Intended for
+ * simulations, where the repositories do not need to outlive the run.
+ */
+public final class MemoryTrustStorage implements TrustStorage {
+	private final TreeMap<String, byte[]> objects = new TreeMap<>();
+
+	@Override
+	public synchronized boolean exists(String path) {
+		return this.objects.containsKey(path);
+	}
+
+	@Override
+	public synchronized boolean isDirectory(String path) {
+		return !StoragePaths.children(this.objects, path).isEmpty();
+	}
+
+	@Override
+	public synchronized long length(String path) {
+		byte[] data = this.objects.get(path);
+		if (data == null)
+			return -1;
+
+		return data.length;
+	}
+
+	@Override
+	public synchronized List<String> list(String directory) {
+		return StoragePaths.list(this.objects, directory);
+	}
+
+	@Override
+	public synchronized byte[] read(String path) throws IOException {
+		byte[] data = this.objects.get(path);
+		if (data == null)
+			throw new FileNotFoundException(path);
+
+		return data;
+	}
+
+	@Override
+	public synchronized boolean write(String path, byte[] data) throws IOException {
+		if (this.objects.containsKey(path))
+			return false;
+
+		this.objects.put(path, data);
+		return true;
+	}
+
+	@Override
+	public synchronized boolean delete(String path) {
+		if (this.objects.remove(path) != null)
+			return true;
+
+		NavigableMap<String, byte[]> children = StoragePaths.children(this.objects, path);
+		if (children.isEmpty())
+			return false;
+
+		children.clear();
+		return true;
+	}
+
+	@Override
+	public void close() {
+		// nothing to release
+	}
+}
@@ -70,13 +70,26 @@ public abstract class MessageAuthentication extends Message implements Serializa
 		}
 		this.setAppID(AuthenticationApplication.APP_ID);
 		//Set the size of a message before it is created
-        this.setSize((int)SimulationUtils.getNetworkObjectSize(this));
+        this.setSize((int)SimulationUtils.getNetworkMessageSize(this));
         //Change the message id for the auth msg
         this.setId(this.getId() + this.subTypeToString());
         //after the set all the init configuration, the message is created
         this.getFrom().createNewMessage(this);
     }
 	
+	/**
+	 * return the size of the message encoded by the TrustCodec (header, type
+	 * and payload)
+	 * */
+	public int getEncodedSize() {
+		return TrustCodec.HEADER_SIZE + 1 + this.getPayloadSize();
+	}
+
+	/**
+	 * return the encoded size of the message specific fields
+	 * */
+	protected abstract int getPayloadSize();
+
 	public static String getSubtype(){
 		return staticSubtype;
 	}
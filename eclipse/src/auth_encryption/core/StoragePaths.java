@@ -0,0 +1,57 @@
+package auth_encryption.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+
+/**
+ * Directory semantics for storages that keep their objects in a sorted map
+ * keyed by the relative path.
+ */
+final class StoragePaths {
+	private StoragePaths() {
+		// hide
+	}
+
+	/**
+	 * Returns all entries below the given directory ("" for all).
+	 */
+	static <V> NavigableMap<String, V> children(NavigableMap<String, V> objects, String directory) {
+		String prefix = toPrefix(directory);
+		if (prefix.isEmpty())
+			return objects;
+
+		return objects.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+	}
+
+	/**
+	 * Returns the names of all objects and directories directly below the
+	 * given directory.
+	 */
+	static <V> List<String> list(NavigableMap<String, V> objects, String directory) {
+		List<String> result = new ArrayList<>();
+
+		String prefix = toPrefix(directory);
+		String last = null;
+		for (String path : children(objects, directory).keySet()) {
+			int end = path.indexOf('/', prefix.length());
+			String name = (end == -1) ? path.substring(prefix.length()) : path.substring(prefix.length(), end);
+
+			// paths are sorted, equal names are adjacent
+			if (name.equals(last))
+				continue;
+
+			result.add(name);
+			last = name;
+		}
+
+		return result;
+	}
+
+	private static String toPrefix(String directory) {
+		if (directory.isEmpty() || directory.endsWith("/"))
+			return directory;
+
+		return directory + "/";
+	}
+}
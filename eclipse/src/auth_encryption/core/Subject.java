@@ -1,5 +1,6 @@
 package auth_encryption.core;
 
+import java.io.Serializable;
 import java.security.PublicKey;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -21,6 +22,8 @@ public class Subject {
 	public Map<KeyID, SubKeyEntry> subKeys = new HashMap<>();
 	public TrustInfo trustInfo = new TrustInfo();
 	public long lastSynchronization = 0;
+	/* local sequence numbers of public key, issuers and sub keys */
+	public Map<Serializable, Long> sequences = new HashMap<>();
 	public long startImporting = 0;// delete
 
 	@Override
@@ -15,12 +15,48 @@ public class SyncMessage extends MessageAuthentication {
 
     private Set<Serializable> relatedData = null;
 
+    // delta synchronization: new watermark + nonce of the request (optional)
+    private long sequence = -1;
+    private int nonce = 0;
+
     public SyncMessage(Set<Serializable> relatedData, DTNHost to) {
         super(SyncMessage.TYPE_SYNC, to);
         this.relatedData = relatedData;
     }
 
+    public SyncMessage(Set<Serializable> relatedData, long sequence, int nonce, DTNHost to) {
+        this(relatedData, to);
+        this.sequence = sequence;
+        this.nonce = nonce;
+    }
+
     public Set<Serializable> getRelatedData() {
         return this.relatedData;
     }
+
+    public boolean isDelta() {
+        return this.sequence >= 0;
+    }
+
+    public long getSequence() {
+        return this.sequence;
+    }
+
+    public int getNonce() {
+        return this.nonce;
+    }
+
+    @Override
+    protected int getPayloadSize() {
+        int size = 4;
+        for (Serializable object : this.relatedData)
+            size += TrustCodec.getSize(object);
+
+        // mode (+ sequence + nonce)
+        size += 1;
+        if (this.isDelta())
+            size += 8 + 4;
+
+        return size;
+    }
 }
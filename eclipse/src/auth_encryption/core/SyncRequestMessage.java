@@ -15,13 +15,78 @@ public class SyncRequestMessage extends MessageAuthentication {
 
 	private Set<Fingerprint> subjects = null;
 
+	// salts the bloom filter, echoed by delta responses
+	private int nonce = 0;
+
+	// objects the requester already has (optional)
+	private BloomFilterFingerprint known = null;
+
+	// delta synchronization (optional): watermark + subjects not covered by it
+	private long watermark = -1;
+	private Set<Fingerprint> fresh = null;
+
 	public SyncRequestMessage(Set<Fingerprint> subjects, DTNHost to) {
 		super(SyncRequestMessage.TYPE_SYNC_REQUEST, to);
 
 		this.subjects = subjects;
 	}
 
+	public SyncRequestMessage(Set<Fingerprint> subjects, BloomFilterFingerprint known, int nonce, DTNHost to) {
+		this(subjects, to);
+
+		this.known = known;
+		this.nonce = nonce;
+	}
+
+	public SyncRequestMessage(Set<Fingerprint> subjects, long watermark, Set<Fingerprint> fresh, int nonce,
+			DTNHost to) {
+		this(subjects, to);
+
+		this.watermark = watermark;
+		this.fresh = fresh;
+		this.nonce = nonce;
+	}
+
 	public Set<Fingerprint> getTrustedSubjects() {
 		return this.subjects;
 	}
+
+	public int getNonce() {
+		return this.nonce;
+	}
+
+	public BloomFilterFingerprint getKnownData() {
+		return this.known;
+	}
+
+	public boolean isDelta() {
+		return this.fresh != null;
+	}
+
+	public long getWatermark() {
+		return this.watermark;
+	}
+
+	public Set<Fingerprint> getFreshSubjects() {
+		return this.fresh;
+	}
+
+	@Override
+	protected int getPayloadSize() {
+		// fingerprints are sent raw
+		int size = 4 + this.subjects.size() * Fingerprint.SIZE;
+
+		// mode
+		size += 1;
+
+		// nonce + number of bits + bit array
+		if (this.known != null)
+			size += 4 + 4 + this.known.getSize();
+
+		// nonce + watermark + bitmap of fresh subjects
+		if (this.fresh != null)
+			size += 4 + 8 + (this.subjects.size() + 7) / 8;
+
+		return size;
+	}
 }
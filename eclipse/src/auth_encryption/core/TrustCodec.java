@@ -0,0 +1,309 @@
+package auth_encryption.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Date;
+
+import auth_encryption.primitives.AppDetails;
+import auth_encryption.primitives.Fingerprint;
+import auth_encryption.primitives.KeyID;
+import auth_encryption.primitives.Signature;
+import auth_encryption.primitives.SubKeySignature;
+
+/**
+ * Compact, versioned binary encoding of the trust objects, used instead of
+ * Java serialization for storage and for the on-air size of trust messages.
+ *
+ * Every encoded object consists of a header (magic, version) followed by a
+ * tag and the fields of the object. Fingerprints and key IDs are written raw
+ * (fixed size), variable sized fields as length-prefixed blobs (length -1 for
+ * null).
+ */
+public final class TrustCodec {
+	public static final int VERSION = 1;
+
+	// not a valid first byte of Base64 encoded Java serialization
+	private static final byte MAGIC = (byte) 0xB7;
+
+	public static final int HEADER_SIZE = 2;
+
+	// ---- TAGS
+
+	private static final byte TAG_FINGERPRINT = 1;
+	private static final byte TAG_KEY_ID = 2;
+	private static final byte TAG_SIGNATURE = 3;
+	private static final byte TAG_SUB_KEY_SIGNATURE = 4;
+	private static final byte TAG_SUB_KEY_ENTRY = 5;
+	private static final byte TAG_PUBLIC_KEY = 6;
+	private static final byte TAG_BYTES = 7;
+
+	private TrustCodec() {
+		// hide
+	}
+
+	// ---- ENCODED DATA
+
+	/**
+	 * Encodes a single trust object including the header.
+	 */
+	public static byte[] encode(Object object) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream(HEADER_SIZE + getSize(object));
+		DataOutputStream out = new DataOutputStream(baos);
+		out.writeByte(MAGIC);
+		out.writeByte(VERSION);
+		write(out, object);
+		out.close();
+
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Decodes a trust object previously encoded by {@link #encode(Object)}.
+	 */
+	public static Object decode(byte[] data) throws IOException {
+		if (!isEncoded(data))
+			throw new IOException("Not encoded by TrustCodec!");
+
+		if (data[1] != VERSION)
+			throw new IOException("Unsupported codec version: " + data[1]);
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, HEADER_SIZE, data.length - HEADER_SIZE));
+		return read(in);
+	}
+
+	/**
+	 * Returns true if the given data has been encoded by this codec.
+	 */
+	public static boolean isEncoded(byte[] data) {
+		return data.length >= HEADER_SIZE && data[0] == MAGIC;
+	}
+
+	// ---- TAGGED OBJECTS
+
+	/**
+	 * Writes tag and fields of a trust object (without header).
+	 */
+	public static void write(DataOutput out, Object object) throws IOException {
+		if (object instanceof Fingerprint) {
+			out.writeByte(TAG_FINGERPRINT);
+			writeFingerprint(out, (Fingerprint) object);
+		} else if (object instanceof KeyID) {
+			out.writeByte(TAG_KEY_ID);
+			out.write(((KeyID) object).getData());
+		} else if (object instanceof Signature) {
+			out.writeByte(TAG_SIGNATURE);
+			writeSignature(out, (Signature) object);
+		} else if (object instanceof SubKeySignature) {
+			out.writeByte(TAG_SUB_KEY_SIGNATURE);
+			writeSubKeySignature(out, (SubKeySignature) object);
+		} else if (object instanceof SubKeyEntry) {
+			SubKeyEntry entry = (SubKeyEntry) object;
+			out.writeByte(TAG_SUB_KEY_ENTRY);
+			writeBlob(out, entry.publicKey);
+			out.writeBoolean(entry.signature != null);
+			if (entry.signature != null)
+				writeSubKeySignature(out, entry.signature);
+		} else if (object instanceof PublicKey) {
+			PublicKey key = (PublicKey) object;
+			out.writeByte(TAG_PUBLIC_KEY);
+			writeString(out, key.getAlgorithm());
+			writeBlob(out, key.getEncoded());
+		} else if (object instanceof byte[]) {
+			out.writeByte(TAG_BYTES);
+			writeBlob(out, (byte[]) object);
+		} else {
+			throw new IllegalArgumentException("Unsupported object: " + object);
+		}
+	}
+
+	/**
+	 * Reads a trust object written by {@link #write(DataOutput, Object)}.
+	 */
+	public static Object read(DataInput in) throws IOException {
+		byte tag = in.readByte();
+		switch (tag) {
+		case TAG_FINGERPRINT:
+			return readFingerprint(in);
+		case TAG_KEY_ID:
+			byte[] keyID = new byte[KeyID.SIZE];
+			in.readFully(keyID);
+			return KeyID.fromData(keyID);
+		case TAG_SIGNATURE:
+			return readSignature(in);
+		case TAG_SUB_KEY_SIGNATURE:
+			return readSubKeySignature(in);
+		case TAG_SUB_KEY_ENTRY:
+			SubKeyEntry entry = new SubKeyEntry();
+			entry.publicKey = readBlob(in);
+			if (in.readBoolean())
+				entry.signature = readSubKeySignature(in);
+			return entry;
+		case TAG_PUBLIC_KEY:
+			return readPublicKey(in);
+		case TAG_BYTES:
+			return readBlob(in);
+		default:
+			throw new IOException("Unknown tag: " + tag);
+		}
+	}
+
+	/**
+	 * Returns the number of bytes {@link #write(DataOutput, Object)} produces
+	 * for the given object (without header).
+	 */
+	public static int getSize(Object object) {
+		if (object instanceof Fingerprint)
+			return 1 + Fingerprint.SIZE;
+		if (object instanceof KeyID)
+			return 1 + KeyID.SIZE;
+		if (object instanceof Signature)
+			return 1 + getSignatureSize((Signature) object);
+		if (object instanceof SubKeySignature)
+			return 1 + getSubKeySignatureSize((SubKeySignature) object);
+		if (object instanceof SubKeyEntry) {
+			SubKeyEntry entry = (SubKeyEntry) object;
+			int size = 1 + getBlobSize(entry.publicKey) + 1;
+			if (entry.signature != null)
+				size += getSubKeySignatureSize(entry.signature);
+			return size;
+		}
+		if (object instanceof PublicKey) {
+			PublicKey key = (PublicKey) object;
+			return 1 + getStringSize(key.getAlgorithm()) + getBlobSize(key.getEncoded());
+		}
+		if (object instanceof byte[])
+			return 1 + getBlobSize((byte[]) object);
+
+		throw new IllegalArgumentException("Unsupported object: " + object);
+	}
+
+	// ---- FIELDS
+
+	private static void writeFingerprint(DataOutput out, Fingerprint fingerprint) throws IOException {
+		out.write(fingerprint.getData());
+	}
+
+	private static Fingerprint readFingerprint(DataInput in) throws IOException {
+		byte[] data = new byte[Fingerprint.SIZE];
+		in.readFully(data);
+		return Fingerprint.fromData(data);
+	}
+
+	private static void writeSignature(DataOutput out, Signature signature) throws IOException {
+		out.writeLong(signature.getTime().getTime());
+		writeFingerprint(out, signature.getIssuer());
+		writeFingerprint(out, signature.getSubject());
+		writeString(out, signature.getAlias());
+		writeBlob(out, signature.getData());
+	}
+
+	private static Signature readSignature(DataInput in) throws IOException {
+		Date time = new Date(in.readLong());
+		Fingerprint issuer = readFingerprint(in);
+		Fingerprint subject = readFingerprint(in);
+		String alias = readString(in);
+		byte[] data = readBlob(in);
+		return Signature.fromData(time, issuer, subject, alias, data);
+	}
+
+	private static int getSignatureSize(Signature signature) {
+		return 8 + 2 * Fingerprint.SIZE + getStringSize(signature.getAlias()) + getBlobSize(signature.getData());
+	}
+
+	private static void writeSubKeySignature(DataOutput out, SubKeySignature signature) throws IOException {
+		AppDetails details = signature.getAppAuthentication();
+
+		out.writeLong(signature.getTime().getTime());
+		writeFingerprint(out, signature.getOwner());
+		out.write(signature.getSubKey().getData());
+		writeString(out, details.packageName);
+		out.writeBoolean(details.signatureKeyFingerprint != null);
+		if (details.signatureKeyFingerprint != null)
+			writeFingerprint(out, details.signatureKeyFingerprint);
+		writeString(out, signature.getTag());
+		writeBlob(out, signature.getData());
+	}
+
+	private static SubKeySignature readSubKeySignature(DataInput in) throws IOException {
+		Date time = new Date(in.readLong());
+		Fingerprint owner = readFingerprint(in);
+		byte[] subKey = new byte[KeyID.SIZE];
+		in.readFully(subKey);
+
+		AppDetails details = new AppDetails(readString(in));
+		if (in.readBoolean())
+			details.signatureKeyFingerprint = readFingerprint(in);
+
+		String tag = readString(in);
+		byte[] data = readBlob(in);
+		return SubKeySignature.fromData(time, owner, KeyID.fromData(subKey), details, tag, data);
+	}
+
+	private static int getSubKeySignatureSize(SubKeySignature signature) {
+		AppDetails details = signature.getAppAuthentication();
+
+		int size = 8 + Fingerprint.SIZE + KeyID.SIZE + getStringSize(details.packageName) + 1;
+		if (details.signatureKeyFingerprint != null)
+			size += Fingerprint.SIZE;
+		return size + getStringSize(signature.getTag()) + getBlobSize(signature.getData());
+	}
+
+	private static PublicKey readPublicKey(DataInput in) throws IOException {
+		String algorithm = readString(in);
+		byte[] encoded = readBlob(in);
+
+		try {
+			return KeyFactory.getInstance(algorithm).generatePublic(new X509EncodedKeySpec(encoded));
+		} catch (Exception e) {
+			throw new IOException("Unable to decode " + algorithm + " public key!", e);
+		}
+	}
+
+	// ---- BLOBS
+
+	private static void writeBlob(DataOutput out, byte[] data) throws IOException {
+		if (data == null) {
+			out.writeInt(-1);
+			return;
+		}
+
+		out.writeInt(data.length);
+		out.write(data);
+	}
+
+	private static byte[] readBlob(DataInput in) throws IOException {
+		int length = in.readInt();
+		if (length < 0)
+			return null;
+
+		byte[] data = new byte[length];
+		in.readFully(data);
+		return data;
+	}
+
+	private static int getBlobSize(byte[] data) {
+		return 4 + ((data == null) ? 0 : data.length);
+	}
+
+	private static void writeString(DataOutput out, String value) throws IOException {
+		writeBlob(out, (value == null) ? null : value.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		byte[] data = readBlob(in);
+		return (data == null) ? null : new String(data, StandardCharsets.UTF_8);
+	}
+
+	private static int getStringSize(String value) {
+		return getBlobSize((value == null) ? null : value.getBytes(StandardCharsets.UTF_8));
+	}
+}
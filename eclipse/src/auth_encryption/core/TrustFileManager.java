@@ -1,19 +1,21 @@
 package auth_encryption.core;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.security.PublicKey;
 import java.security.SignatureException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.codec.binary.Base64InputStream;
 import org.apache.commons.codec.binary.Base64OutputStream;
-import org.apache.commons.io.FileUtils;
 
 import auth_encryption.log.Log;
 import auth_encryption.primitives.Config;
@@ -21,10 +23,41 @@ import auth_encryption.primitives.Fingerprint;
 import auth_encryption.primitives.KeyID;
 import auth_encryption.primitives.Signature;
 import auth_encryption.primitives.SubKeySignature;
+import core.DTNSim;
 
 public final class TrustFileManager {
 	private String TAG = TrustFileManager.class.getSimpleName();
 
+	// ---- BACKEND
+
+	/**
+	 * Available storages for the trust objects.
+	 */
+	public enum Backend {
+		/* one file per object below the trust directory */
+		FILE,
+		/* objects are kept in memory only */
+		MEMORY,
+		/* single memory mapped append-only log in the trust directory */
+		MAPPED_LOG;
+	}
+
+	private static volatile Backend backend = Backend.FILE;
+
+	/**
+	 * Selects the storage for all instances created afterwards.
+	 */
+	public static void setBackend(Backend backend) {
+		if (backend == null)
+			throw new IllegalArgumentException();
+
+		TrustFileManager.backend = backend;
+	}
+
+	public static Backend getBackend() {
+		return backend;
+	}
+
 	// ---- SINGLETON
 
 	private static volatile Map<String, TrustFileManager> _instances = new HashMap<>();
@@ -38,22 +71,175 @@ public final class TrustFileManager {
 		return entry;
 	}
 
+	static {
+		// storages of a run are closed before the next one
+		DTNSim.registerForReset(TrustFileManager.class.getCanonicalName());
+	}
+
+	/**
+	 * Closes the storages of all instances, later calls to
+	 * {@link #getInstance(String)} open them again.
+	 */
+	public static synchronized void reset() {
+		for (TrustFileManager entry : _instances.values()) {
+			try {
+				entry.storage.close();
+			} catch (IOException e) {
+				Log.e(entry.TAG, "Unable to close the trust storage!", e);
+			}
+		}
+		_instances.clear();
+	}
+
+	// ---- ACCOUNTING
+
+	/**
+	 * Categories of stored trust objects.
+	 */
+	public enum StorageType {
+		PUBLIC_KEY, SIGNATURE, SUB_KEY, SUB_KEY_SIGNATURE;
+	}
+
+	// running sizes (in bytes) and numbers of the stored files per category
+	private final AtomicLong[] storedBytes = new AtomicLong[StorageType.values().length];
+	private final AtomicLong[] storedObjects = new AtomicLong[StorageType.values().length];
+	private final AtomicLong storedBytesTotal = new AtomicLong(0);
+
 	// ---- CONSTRUCTOR
 
-	private final File trustDir;
+	private final TrustStorage storage;
 
 	private TrustFileManager(final String basePath) {
 		Log.d(TAG, "Creating a new FileManager instance at: " + basePath);
 		
 		this.TAG += "/" + basePath.substring(basePath.length() - 4, basePath.length());
 
-		this.trustDir = new File(basePath, Config.TRUST_PATH);
+		File trustDir = new File(basePath, Config.TRUST_PATH);
+		switch (backend) {
+		case MEMORY:
+			this.storage = new MemoryTrustStorage();
+			break;
+		case MAPPED_LOG:
+			try {
+				this.storage = new MappedLogTrustStorage(new File(trustDir, "trust.log"));
+			} catch (IOException e) {
+				throw new IllegalArgumentException("Unable to open trust log at: " + trustDir, e);
+			}
+			break;
+		default:
+			this.storage = new FileTrustStorage(trustDir);
+			break;
+		}
 
-		if (this.trustDir.exists() && !this.trustDir.isDirectory())
-			throw new IllegalArgumentException();
+		for (int i = 0; i < this.storedBytes.length; i++) {
+			this.storedBytes[i] = new AtomicLong(0);
+			this.storedObjects[i] = new AtomicLong(0);
+		}
+
+		// account for objects of previous runs (only once)
+		this.account("", 1);
+	}
+
+	// --- STORED SIZES
+
+	/**
+	 * Returns the size of all files in the trust directory (in bytes).
+	 */
+	public long getStoredBytes() {
+		return this.storedBytesTotal.get();
+	}
+
+	/**
+	 * Returns the size of all files of the given category (in bytes).
+	 */
+	public long getStoredBytes(StorageType type) {
+		return this.storedBytes[type.ordinal()].get();
+	}
+
+	/**
+	 * Returns the number of stored objects of the given category.
+	 */
+	public long getStoredObjects(StorageType type) {
+		return this.storedObjects[type.ordinal()].get();
+	}
+
+	// determine category of an object within the trust directory
+	private static StorageType getStorageType(String path) {
+		final int index = path.lastIndexOf('/');
+		final String name = path.substring(index + 1);
+		final String parent = (index >= 0) ? path.substring(0, index) : "";
+		final boolean inKeys = parent.equals("keys") || parent.endsWith("/keys");
+
+		if (inKeys && name.equals("public.key"))
+			return StorageType.PUBLIC_KEY;
+		if (inKeys && name.endsWith(".key"))
+			return StorageType.SUB_KEY;
+		if (inKeys && name.endsWith(".sig"))
+			return StorageType.SUB_KEY_SIGNATURE;
+		if (name.endsWith(".sig"))
+			return StorageType.SIGNATURE;
+
+		return null;
+	}
 
-		if (!this.trustDir.exists())
-			this.trustDir.mkdirs();
+	// adds (sign = 1) or removes (sign = -1) the given object or directory
+	private void account(String path, int sign) {
+		if (path.isEmpty() || this.storage.isDirectory(path)) {
+			for (String name : this.storage.list(path))
+				this.account(path.isEmpty() ? name : path + "/" + name, sign);
+
+			return;
+		}
+
+		long length = this.storage.length(path);
+		if (length < 0)
+			return;
+
+		this.storedBytesTotal.addAndGet(sign * length);
+
+		StorageType type = getStorageType(path);
+		if (type == null)
+			return;
+
+		this.storedBytes[type.ordinal()].addAndGet(sign * length);
+		this.storedObjects[type.ordinal()].addAndGet(sign);
+	}
+
+	// ---- LISTING
+
+	/**
+	 * Returns the (directory) names of all stored subjects.
+	 */
+	public List<String> listSubjects() {
+		List<String> result = new ArrayList<>();
+		for (String name : this.storage.list(""))
+			if (this.storage.isDirectory(name))
+				result.add(name);
+
+		return result;
+	}
+
+	/**
+	 * Returns the names of all signatures stored for the given subject.
+	 */
+	public List<String> listSignatures(String subject) {
+		return this.listObjects(subject, ".sig");
+	}
+
+	/**
+	 * Returns the names of all sub key signatures stored for the given subject.
+	 */
+	public List<String> listSubKeySignatures(String subject) {
+		return this.listObjects(subject + "/keys", ".sig");
+	}
+
+	private List<String> listObjects(String directory, String suffix) {
+		List<String> result = new ArrayList<>();
+		for (String name : this.storage.list(directory))
+			if (name.endsWith(suffix) && this.storage.exists(directory + "/" + name))
+				result.add(name);
+
+		return result;
 	}
 
 	// --- SIGNATURE
@@ -106,11 +292,7 @@ public final class TrustFileManager {
 		Fingerprint fpSubject = new Fingerprint(subject);
 
 		String path = fpSubject.toString() + "/" + fpIssuer.toString() + ".sig";
-		File file = new File(this.trustDir, path);
-		if (!file.exists() || !file.isFile())
-			return false;
-
-		return true;
+		return this.storage.exists(path);
 	}
 
 	// --- PUBLIC KEY
@@ -198,53 +380,52 @@ public final class TrustFileManager {
 	// --- GENERIC STORE / READ / DELETE
 
 	private Object readFileObject(String relativePath) throws Exception {
-		File file = new File(this.trustDir, relativePath);
-		if (!file.exists() || !file.isFile())
-			throw new FileNotFoundException(relativePath);
+		byte[] data = this.storage.read(relativePath);
+		if (TrustCodec.isEncoded(data))
+			return TrustCodec.decode(data);
 
-		FileInputStream fis = new FileInputStream(file);
-		Base64InputStream bis = new Base64InputStream(fis);
+		// Java serialization (previous runs or codec disabled)
+
+		ByteArrayInputStream bais = new ByteArrayInputStream(data);
+		Base64InputStream bis = new Base64InputStream(bais);
 		ObjectInputStream ois = new ObjectInputStream(bis);
 		Object result = ois.readObject();
 		ois.close();
-		bis.close();
-		fis.close();
 
 		return result;
 	}
 
 	private boolean saveFileObject(String relativePath, Object object) throws Exception {
-		File file = new File(this.trustDir, relativePath);
-		if (file.exists())
+		if (this.storage.exists(relativePath))
 			return false;
 
-		if (!file.exists() && !file.getParentFile().exists())
-			file.getParentFile().mkdirs();
+		byte[] data;
+		if (Config.TRUST_BINARY_CODEC) {
+			data = TrustCodec.encode(object);
+		} else {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			Base64OutputStream bos = new Base64OutputStream(baos);
+			ObjectOutputStream oos = new ObjectOutputStream(bos);
+			oos.writeObject(object);
+			oos.close();
+			data = baos.toByteArray();
+		}
+
+		if (!this.storage.write(relativePath, data))
+			return false;
 
-		FileOutputStream fos = new FileOutputStream(file);
-		Base64OutputStream bos = new Base64OutputStream(fos);
-		ObjectOutputStream oos = new ObjectOutputStream(bos);
-		oos.writeObject(object);
-		oos.close();
-		bos.close();
-		fos.close();
+		this.account(relativePath, 1);
 
 		return true;
 	}
 
 	private boolean deleteFile(String relativePath) {
-		File file = new File(this.trustDir, relativePath);
-
-		if (!file.isDirectory())
-			return file.delete();
-
-		try {
-			FileUtils.deleteDirectory(file);
+		// subtract first, re-add whatever is left on failure
+		this.account(relativePath, -1);
+		if (this.storage.delete(relativePath))
 			return true;
-		} catch (Exception e) {
-			Log.e(TAG, "Could not delete directory: " + file.getAbsolutePath());
-			return false;
-		}
+
+		this.account(relativePath, 1);
+		return false;
 	}
 }
-
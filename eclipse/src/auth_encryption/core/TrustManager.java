@@ -1,10 +1,10 @@
 package auth_encryption.core;
 
-import java.io.File;
 import java.io.Serializable;
 import java.security.PublicKey;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -34,7 +34,21 @@ public final class TrustManager {
 	private final TrustFileManager fileManager;
 	private final String basePath;
 
+	// incrementally maintained certification paths (null = full BFS per subject)
+	private final CertificationGraph graph;
+	// modification count of the graph after the last complete refresh
+	private long refreshedModCount = -1;
+
+	/* last assigned local sequence number (never reset) */
+	private long sequence = 0;
+	/* delta synchronization state per peer */
+	private final Map<Fingerprint, SyncWatermark> watermarks = new HashMap<>();
+
 	public TrustManager(final String basePath, final PublicKey owner) throws Exception {
+		this(basePath, owner, true);
+	}
+
+	public TrustManager(final String basePath, final PublicKey owner, boolean incremental) throws Exception {
 		//Log.d(TAG, "Initializing TrustManager");
 
 		this.TAG += "/" + basePath.substring(basePath.length() - 4, basePath.length());
@@ -61,33 +75,24 @@ public final class TrustManager {
 		}
 
 		this.subjects = new HashMap<>();
+		this.graph = incremental ? new CertificationGraph(this.owner.fingerprint) : null;
 	}
 
 	// ---- DEDUCTION
 
 	private void reset() {
 		this.subjects.clear();
+
+		if (this.graph != null)
+			this.graph.clear();
 	}
 
 	public void initialize() throws Exception {
 		this.reset();
 
-		// get trust directory
-		final File trustDir = new File(this.basePath, Config.TRUST_PATH);
-
-		if (trustDir.exists() && !trustDir.isDirectory())
-			throw new IllegalArgumentException("Illegal trust directory: " + trustDir);
-
-		if (!trustDir.exists())
-			trustDir.mkdirs();
-
-		File[] subjects = trustDir.listFiles();
-		for (File directory : subjects) {
-			if (!directory.isDirectory())
-				continue;
-
+		for (String directory : this.fileManager.listSubjects()) {
 			try {
-				Fingerprint fingerprint = Fingerprint.fromData(directory.getName());
+				Fingerprint fingerprint = Fingerprint.fromData(directory);
 
 				Subject subject = this.owner;
 				if (!this.owner.fingerprint.equals(fingerprint)) {
@@ -107,7 +112,16 @@ public final class TrustManager {
 
 				this.initializeSubKeys(directory, subject);
 
+				this.track(subject, subject.publicKey);
+				for (Signature signature : subject.issuers)
+					this.track(subject, signature);
+				for (SubKeyEntry entry : subject.subKeys.values())
+					this.track(subject, entry);
+
 				this.subjects.put(fingerprint, subject);
+				if (this.graph != null)
+					this.graph.addSubject(fingerprint, subject.issuers);
+
 				this.resolveUnboundSignatures(fingerprint);
 			} catch (Exception e) {
 				Log.e(TAG, "Unable to deduce subject from: " + directory, e);
@@ -118,15 +132,10 @@ public final class TrustManager {
 	}
 
 	// read signatures from dir
-	private void initializeSignatures(File directory, Subject subject) {
-		File[] files = directory.listFiles();
-		for (File file : files) {
-			if (file.isDirectory() || !file.getName().endsWith(".sig"))
-				continue;
-
+	private void initializeSignatures(String directory, Subject subject) {
+		for (String file : this.fileManager.listSignatures(directory)) {
 			try {
-				Fingerprint fingerprint = Fingerprint
-						.fromData(file.getName().substring(0, file.getName().length() - 4));
+				Fingerprint fingerprint = Fingerprint.fromData(file.substring(0, file.length() - 4));
 
 				Signature signature = null;
 
@@ -153,14 +162,10 @@ public final class TrustManager {
 		}
 	}
 
-	private void initializeSubKeys(File directory, Subject subject) {
-		File[] files = new File(directory, "keys/").listFiles();
-		for (File file : files) {
-			if (file.isDirectory() || !file.getName().endsWith(".sig"))
-				continue;
-
+	private void initializeSubKeys(String directory, Subject subject) {
+		for (String file : this.fileManager.listSubKeySignatures(directory)) {
 			try {
-				KeyID keyID = KeyID.fromData(file.getName().substring(0, file.getName().length() - 4));
+				KeyID keyID = KeyID.fromData(file.substring(0, file.length() - 4));
 
 				SubKeyEntry subKey = new SubKeyEntry();
 				// -> will verify key ID
@@ -238,6 +243,10 @@ public final class TrustManager {
 				try {
 					this.fileManager.deleteSignature(signature);
 					iter.remove();
+					subject.sequences.remove(signature);
+
+					if (this.graph != null)
+						this.graph.removeSignature(signature);
 				} catch (Exception e) {
 					// swallow
 				}
@@ -250,11 +259,17 @@ public final class TrustManager {
 	// ---- VALIDITY
 
 	public void refreshValidity() {
+		// nothing changed since the last fixed point was reached
+		if (this.graph != null && this.graph.getModCount() == this.refreshedModCount)
+			return;
+
 		int countChanged;
 		boolean deleteIfUnknown = false;
+		long roundModCount;
 		do {
 			// reset counter
 			countChanged = 0;
+			roundModCount = this.getModCount();
 
 			Queue<Fingerprint> queue = new LinkedList<>();
 			queue.add(this.owner.fingerprint);
@@ -294,6 +309,13 @@ public final class TrustManager {
 				deleteIfUnknown = true;
 			}
 		} while (countChanged > 0);
+
+		// the last round only is a fixed point if it did not delete anything
+		this.refreshedModCount = (this.getModCount() == roundModCount) ? roundModCount : -1;
+	}
+
+	private long getModCount() {
+		return (this.graph != null) ? this.graph.getModCount() : -1;
 	}
 
 	// do this after inserting new subjects (+ their signatures)
@@ -318,6 +340,7 @@ public final class TrustManager {
 
 			// update trust info since it changed!
 			subject.trustInfo = trustInfo;
+			this.refreshedModCount = -1;
 			return 1; // valid, changed!!!
 		}
 
@@ -330,6 +353,9 @@ public final class TrustManager {
 		this.subjects.remove(fingerprint);
 		this.fileManager.deleteSubject(fingerprint);
 
+		if (this.graph != null)
+			this.graph.removeSubject(fingerprint);
+
 		// remove signature references (which have just been deleted)
 		for (Signature signature : subject.issuers) {
 			if (!this.subjects.containsKey(signature.getIssuer()))
@@ -377,6 +403,9 @@ public final class TrustManager {
 	}
 
 	private int determineCertificationPath(Fingerprint fingerprint) {
+		if (this.graph != null)
+			return this.graph.getDegree(fingerprint);
+
 		Set<Fingerprint> visited = new HashSet<>();
 		Map<Fingerprint, Integer> distances = new HashMap<>();
 
@@ -547,6 +576,162 @@ public final class TrustManager {
 		return result;
 	}
 
+	/**
+	 * Returns a filter of all objects (public keys, signatures, sub keys) in
+	 * the repository, used by the requester of a synchronization.
+	 */
+	public BloomFilterFingerprint getKnownData(int salt) {
+		List<String> keys = new ArrayList<>();
+		for (Subject subject : this.subjects.values()) {
+			keys.add(getSyncKey(subject.fingerprint, salt));
+
+			for (Signature signature : subject.issuers)
+				keys.add(getSyncKey(signature, salt));
+
+			for (SubKeyEntry entry : subject.subKeys.values())
+				keys.add(getSyncKey(entry, salt));
+		}
+
+		BloomFilterFingerprint result = new BloomFilterFingerprint(Math.max(1, keys.size()),
+				Config.TRUST_SYNC_BLOOM_BITS_PER_ITEM, Config.TRUST_SYNC_BLOOM_HASHES);
+		for (String key : keys)
+			result.add(key);
+
+		return result;
+	}
+
+	/**
+	 * Returns the related data without the objects contained in the given
+	 * filter of the requester (see {@link #getKnownData(int)}).
+	 */
+	public Set<Serializable> getRelatedData(Set<Fingerprint> trustedSubjects, BloomFilterFingerprint known, int salt) {
+		Set<Serializable> result = this.getRelatedData(trustedSubjects);
+		if (known == null)
+			return result;
+
+		Map<PublicKey, Fingerprint> fingerprints = new HashMap<>();
+		for (Subject subject : this.subjects.values())
+			fingerprints.put(subject.publicKey, subject.fingerprint);
+
+		// public keys first, self signatures are required for missing ones
+		Set<Fingerprint> missing = new HashSet<>();
+		Iterator<Serializable> iterator = result.iterator();
+		while (iterator.hasNext()) {
+			Serializable object = iterator.next();
+			if (!(object instanceof PublicKey))
+				continue;
+
+			Fingerprint fingerprint = fingerprints.get(object);
+			if (known.contains(getSyncKey(fingerprint, salt)))
+				iterator.remove();
+			else
+				missing.add(fingerprint);
+		}
+
+		iterator = result.iterator();
+		while (iterator.hasNext()) {
+			Serializable object = iterator.next();
+			if (object instanceof PublicKey)
+				continue;
+
+			if (object instanceof Signature) {
+				Signature signature = (Signature) object;
+				if (signature.getIssuer().equals(signature.getSubject()) && missing.contains(signature.getSubject()))
+					continue;
+			}
+
+			if (known.contains(getSyncKey(object, salt)))
+				iterator.remove();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the related data that has changed since the given watermark
+	 * (local sequence number). Fresh subjects have not been covered by the
+	 * watermark, everything related to them is returned.
+	 */
+	public Set<Serializable> getRelatedData(Set<Fingerprint> trustedSubjects, long watermark, Set<Fingerprint> fresh) {
+		Set<Serializable> result = new HashSet<Serializable>();
+
+		for (Fingerprint current : trustedSubjects) {
+			if (!this.subjects.containsKey(current))
+				continue;
+
+			Subject issuer = this.subjects.get(current);
+			long since = fresh.contains(current) ? 0 : watermark;
+
+			this.addChanged(result, issuer, issuer.issuers, since);
+			this.addChanged(result, issuer, issuer.subKeys.values(), since);
+
+			for (Signature issued : issuer.issued) {
+				if (trustedSubjects.contains(issued.getSubject()))
+					continue;
+
+				Subject subject = this.subjects.get(issued.getSubject());
+
+				// newly issued, the requester has never seen the subject
+				long sinceSubject = (this.getSequence(subject, issued) > since) ? 0 : since;
+
+				if (this.getSequence(subject, subject.publicKey) > sinceSubject)
+					result.add(subject.publicKey);
+
+				this.addChanged(result, subject, subject.issuers, sinceSubject);
+				this.addChanged(result, subject, subject.subKeys.values(), sinceSubject);
+			}
+		}
+
+		return result;
+	}
+
+	private void addChanged(Set<Serializable> result, Subject subject, Collection<? extends Serializable> objects,
+			long since) {
+		for (Serializable object : objects)
+			if (this.getSequence(subject, object) > since)
+				result.add(object);
+	}
+
+	// ---- SEQUENCE NUMBERS
+
+	/**
+	 * Returns the last assigned local sequence number.
+	 */
+	public long getSequence() {
+		return this.sequence;
+	}
+
+	private void track(Subject subject, Serializable object) {
+		if (!subject.sequences.containsKey(object))
+			subject.sequences.put(object, ++this.sequence);
+	}
+
+	// untracked objects are always considered as changed
+	private long getSequence(Subject subject, Serializable object) {
+		Long result = subject.sequences.get(object);
+		return (result == null) ? Long.MAX_VALUE : result;
+	}
+
+	// identity of a public key within synchronization filters
+	private static String getSyncKey(Fingerprint subject, int salt) {
+		return salt + "P" + subject;
+	}
+
+	// identity of a signature / sub key within synchronization filters
+	private static String getSyncKey(Serializable object, int salt) {
+		if (object instanceof Signature) {
+			Signature signature = (Signature) object;
+			return salt + "S" + signature.getIssuer() + signature.getSubject();
+		}
+
+		if (object instanceof SubKeyEntry) {
+			SubKeySignature signature = ((SubKeyEntry) object).signature;
+			return salt + "K" + signature.getOwner() + signature.getSubKey();
+		}
+
+		throw new IllegalArgumentException("Unsupported object: " + object);
+	}
+
 	public MetaInformation getMetaInformation(Fingerprint fingerprint) {
 		if (!this.subjects.containsKey(fingerprint))
 			return null;
@@ -627,6 +812,8 @@ public final class TrustManager {
 		node.publicKey = publicKey;
 		node.issuers.add(self);
 		node.issued.add(self);
+		this.track(node, publicKey);
+		this.track(node, self);
 
 		// persistently store public key
 		if (!this.fileManager.savePublicKey(publicKey, self)) {
@@ -635,6 +822,8 @@ public final class TrustManager {
 		}
 
 		this.subjects.put(fingerprint, node);
+		if (this.graph != null)
+			this.graph.addSubject(fingerprint, node.issuers);
 
 		if (this.resolveUnboundSignatures(fingerprint))
 			Log.d(TAG, "- Unbound signatures have successfully been resolved!");
@@ -664,7 +853,11 @@ public final class TrustManager {
 		/////////////////////////////////////////////////////
 		
 		Subject subject = this.subjects.get(signature.getSubject());
-		subject.issuers.add(signature);
+		if (subject.issuers.add(signature)) {
+			this.track(subject, signature);
+			if (this.graph != null)
+				this.graph.addSignature(signature);
+		}
 
 		// when issuer not yet known to the device
 		if (!this.subjects.containsKey(signature.getIssuer()))
@@ -706,12 +899,36 @@ public final class TrustManager {
 		entry.signature = signature;
 		
 		subject.subKeys.put(signature.getSubKey(), entry);
+		this.track(subject, entry);
 
 		return true;
 	}
 
 	// ---- LAST SYNC
 
+	/**
+	 * Delta synchronization state with a peer: sequence number (in the
+	 * sequence space of the peer) up to which all data related to the given
+	 * subjects has been received.
+	 */
+	public static final class SyncWatermark {
+		public final long sequence;
+		public final Set<Fingerprint> subjects;
+
+		public SyncWatermark(long sequence, Set<Fingerprint> subjects) {
+			this.sequence = sequence;
+			this.subjects = subjects;
+		}
+	}
+
+	public SyncWatermark getSyncWatermark(Fingerprint peer) {
+		return this.watermarks.get(peer);
+	}
+
+	public void updateSyncWatermark(Fingerprint peer, long sequence, Set<Fingerprint> subjects) {
+		this.watermarks.put(peer, new SyncWatermark(sequence, subjects));
+	}
+
 	public boolean updateLastSynchronization(Fingerprint fingerprint) {
 		if (!this.subjects.containsKey(fingerprint))
 			return false;
@@ -4,12 +4,18 @@ import java.io.Serializable;
 import java.security.PublicKey;
 import java.security.SignatureException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 import auth_encryption.log.Log;
 import auth_encryption.primitives.Config;
@@ -31,8 +37,40 @@ public abstract class TrustProtocol {
 		public final long started = System.currentTimeMillis();
 	}
 
+	/**
+	 * Content of the synchronization requests.
+	 */
+	public enum SyncMode {
+		/* trusted subjects only, the responder sends all related data */
+		FULL,
+		/* additionally a bloom filter of all objects the requester has */
+		BLOOM,
+		/* only data that changed since the last synchronization with the peer */
+		DELTA;
+	}
+
+	private static volatile SyncMode syncMode = SyncMode.FULL;
+
+	public static void setSyncMode(SyncMode syncMode) {
+		if (syncMode == null)
+			throw new IllegalArgumentException();
+
+		TrustProtocol.syncMode = syncMode;
+	}
+
+	public static SyncMode getSyncMode() {
+		return syncMode;
+	}
+
 	private Object MUTEX_TRUST_MANAGER = new Object();
 
+	// nonce of the requests, salts the bloom filters (false positives differ
+	// between requests)
+	private int syncRequests = 0;
+
+	// delta synchronization: last request per peer (nonce + subjects)
+	private Map<Fingerprint, SyncRequestMessage> pendingSyncRequests = new ConcurrentHashMap<>();
+
 	protected final KeyManager keyManager;
 	protected TrustManager trustManager;
 
@@ -75,7 +113,7 @@ public abstract class TrustProtocol {
 
 			try {
 				//Log.d(TAG, "- Triggering update mechanism for " + current);
-				SyncRequestMessage request = new SyncRequestMessage(trustedSubjects, getHostByFingerprint(current));
+				SyncRequestMessage request = this.createSyncRequest(trustedSubjects, current);
 				//////////////////////////
 				request.setSizeSerializable(getHostByFingerprint(current));
 				//Log.d(TAG, "- Triggering update mechanism for device: " + request.getFrom());
@@ -96,7 +134,7 @@ public abstract class TrustProtocol {
 			synchronized (MUTEX_TRUST_MANAGER) {
 				trustedSubjects = this.trustManager.getSubjectsWithTrustLevel(TrustLevel.KNOWN);
 			}
-			MessageAuthentication send = new SyncRequestMessage(trustedSubjects, getHostByFingerprint(fingerprint));
+			MessageAuthentication send = this.createSyncRequest(trustedSubjects, fingerprint);
 			//////////////////////////
 			send.setSizeSerializable(getHostByFingerprint(fingerprint));
 			//Log.d(TAG, "(SY) onPerformSynchronization for device: " + send.getFrom());
@@ -110,6 +148,38 @@ public abstract class TrustProtocol {
 		}
 	}
 
+	private SyncRequestMessage createSyncRequest(Set<Fingerprint> trustedSubjects, Fingerprint fingerprint) {
+		if (syncMode == SyncMode.FULL)
+			return new SyncRequestMessage(trustedSubjects, getHostByFingerprint(fingerprint));
+
+		if (syncMode == SyncMode.DELTA) {
+			final SyncRequestMessage result;
+			synchronized (MUTEX_TRUST_MANAGER) {
+				TrustManager.SyncWatermark watermark = this.trustManager.getSyncWatermark(fingerprint);
+
+				// subjects that are not covered by the watermark yet
+				Set<Fingerprint> fresh = new HashSet<>(trustedSubjects);
+				if (watermark != null)
+					fresh.removeAll(watermark.subjects);
+
+				result = new SyncRequestMessage(trustedSubjects, (watermark != null) ? watermark.sequence : 0, fresh,
+						this.syncRequests++, getHostByFingerprint(fingerprint));
+			}
+
+			this.pendingSyncRequests.put(fingerprint, result);
+			return result;
+		}
+
+		final BloomFilterFingerprint known;
+		final int nonce;
+		synchronized (MUTEX_TRUST_MANAGER) {
+			nonce = this.syncRequests++;
+			known = this.trustManager.getKnownData(nonce);
+		}
+
+		return new SyncRequestMessage(trustedSubjects, known, nonce, getHostByFingerprint(fingerprint));
+	}
+
 	private void onSyncRequestMessageReceived(final Fingerprint fingerprint, final SyncRequestMessage message) {
 		try {			
 			///////////////////////////////////////////////////////////////////
@@ -119,8 +189,16 @@ public abstract class TrustProtocol {
 			///////////////////////////////////////////////////////////////////
 			final Set<Fingerprint> trustedSubjects = message.getTrustedSubjects();
 			Set<Serializable> relatedData;
+			long sequence = -1;
 			synchronized (MUTEX_TRUST_MANAGER) {
-				relatedData = this.trustManager.getRelatedData(trustedSubjects);
+				if (message.isDelta()) {
+					relatedData = this.trustManager.getRelatedData(trustedSubjects, message.getWatermark(),
+							message.getFreshSubjects());
+					sequence = this.trustManager.getSequence();
+				} else {
+					relatedData = this.trustManager.getRelatedData(trustedSubjects, message.getKnownData(),
+							message.getNonce());
+				}
 			}
 
 			if (relatedData.size() == 0) {
@@ -129,7 +207,9 @@ public abstract class TrustProtocol {
 			}
 
 			//Log.d(TAG, "(SY) - Send update response");
-			MessageAuthentication send = new SyncMessage(relatedData, getHostByFingerprint(fingerprint));
+			MessageAuthentication send = message.isDelta()
+					? new SyncMessage(relatedData, sequence, message.getNonce(), getHostByFingerprint(fingerprint))
+					: new SyncMessage(relatedData, getHostByFingerprint(fingerprint));
 			//////////////////////////
 			send.setSizeSerializable(getHostByFingerprint(fingerprint));
 			//Log.d(TAG, "(SY) - Send update response for device: " + send.getFrom());
@@ -152,6 +232,9 @@ public abstract class TrustProtocol {
 		int cPublicKeys = 0;
 		int cSubKeys = 0;
 
+		// was all received data applied? (otherwise the watermark is kept)
+		boolean complete = true;
+
 		// [sender] assess received related data
 		Iterator<Serializable> iterator;
 
@@ -173,56 +256,118 @@ public abstract class TrustProtocol {
 				iterator.remove();
 			} catch (Exception e) {
 				Log.e(TAG, "(SY) - Error extracting self-signatures! " + signature, e);
+				complete = false;
 			}
 		}
 
-		synchronized (MUTEX_TRUST_MANAGER) {
-			//Log.d(TAG, "(SY) - Extract all new subjects");
-			for (iterator = relatedData.iterator(); iterator.hasNext();) {
-				Serializable object = iterator.next();
-				if (!(object instanceof PublicKey))
-					continue;
-
-				PublicKey publicKey = (PublicKey) object;
+		//Log.d(TAG, "(SY) - Sort remaining related data");
+		Map<Fingerprint, PublicKey> publicKeys = new LinkedHashMap<>();
+		List<Signature> signatures = new ArrayList<>();
+		List<SubKeyEntry> subKeys = new ArrayList<>();
+		for (iterator = relatedData.iterator(); iterator.hasNext();) {
+			Serializable object = iterator.next();
 
+			if (object instanceof PublicKey) {
 				iterator.remove();
-
 				try {
 					// derive fingerprint from public key
-					Fingerprint subject = new Fingerprint(publicKey);
+					publicKeys.put(new Fingerprint((PublicKey) object), (PublicKey) object);
+				} catch (Exception e) {
+					Log.e(TAG, "(SY) - Error extracting subject!", e);
+					complete = false;
+				}
+			} else if (object instanceof Signature) {
+				iterator.remove();
+				signatures.add((Signature) object);
+			} else if (object instanceof SubKeyEntry) {
+				iterator.remove();
+				subKeys.add((SubKeyEntry) object);
+			}
+		}
+
+		//Log.d(TAG, "(SY) - Look up all keys required for verification");
+		final Map<Fingerprint, PublicKey> keys = new HashMap<>();
+		synchronized (MUTEX_TRUST_MANAGER) {
+			for (Signature signature : signatures) {
+				this.lookUpPublicKey(keys, signature.getIssuer());
+				this.lookUpPublicKey(keys, signature.getSubject());
+			}
+
+			if (Config.TRUST_VERIFY_SUB_KEYS)
+				for (SubKeyEntry subKey : subKeys)
+					this.lookUpPublicKey(keys, subKey.signature.getOwner());
+
+			// known subjects are skipped, new ones are verified by their self signature
+			for (Fingerprint subject : publicKeys.keySet())
+				this.lookUpPublicKey(keys, subject);
+		}
+
+		//Log.d(TAG, "(SY) - Verify all signatures (w/o holding the trust manager)");
+		Map<Object, Verification> verifications = new HashMap<>();
+		for (Map.Entry<Fingerprint, PublicKey> entry : publicKeys.entrySet()) {
+			if (keys.containsKey(entry.getKey()))
+				continue;
+
+			Signature self = selfSignatures.get(entry.getKey());
+			if (self != null)
+				verifications.put(entry.getValue(), new Verification(self, entry.getValue(), entry.getValue()));
+		}
+
+		for (Signature signature : signatures) {
+			PublicKey issuer = this.getPublicKey(keys, publicKeys, signature.getIssuer());
+			PublicKey subject = this.getPublicKey(keys, publicKeys, signature.getSubject());
+			if (issuer != null && subject != null)
+				verifications.put(signature, new Verification(signature, issuer, subject));
+		}
+
+		if (Config.TRUST_VERIFY_SUB_KEYS) {
+			for (SubKeyEntry subKey : subKeys) {
+				PublicKey owner = this.getPublicKey(keys, publicKeys, subKey.signature.getOwner());
+				if (owner != null)
+					verifications.put(subKey, new Verification(subKey, owner));
+			}
+		}
 
+		this.verifyAll(verifications.values());
+
+		synchronized (MUTEX_TRUST_MANAGER) {
+			// subjects added by this message (validity is checked at the end)
+			Set<Fingerprint> addedSubjects = new HashSet<>();
+
+			//Log.d(TAG, "(SY) - Extract all new subjects");
+			for (Map.Entry<Fingerprint, PublicKey> entry : publicKeys.entrySet()) {
+				Fingerprint subject = entry.getKey();
+				PublicKey publicKey = entry.getValue();
+
+				try {
 					TrustInfo info = this.trustManager.getTrustInfo(subject);
 					if (!info.equals(TrustInfo.UNKNOWN)) {
 						Log.w(TAG, "(SY) Subject is already known, skipping...");
 						continue;
 					}
 
-					// check for self signature & verify it
+					// check for self signature & its verification
 					Signature signature = selfSignatures.get(subject);
+					if (signature == null)
+						throw new IllegalArgumentException("Missing self signature! " + subject);
 
-					if (!signature.verify(publicKey, publicKey))
+					if (!this.isValid(verifications, publicKey, new Verification(signature, publicKey, publicKey)))
 						throw new SecurityException("Invalid signature! " + subject);
 
 					// check if it is a new subject
 					if (this.trustManager.addSubject(publicKey, signature)) {
+						addedSubjects.add(subject);
 						cPublicKeys++;
 						cSignatures++;
 					}
 				} catch (Exception e) {
 					Log.e(TAG, "(SY) - Error extracting subject!", e);
+					complete = false;
 				}
 			}
 
 			//Log.d(TAG, "(SY) - Extracting all remaining signatures...");
-			for (iterator = relatedData.iterator(); iterator.hasNext();) {
-				Serializable object = iterator.next();
-				if (!(object instanceof Signature))
-					continue;
-
-				Signature signature = (Signature) object;
-
-				iterator.remove();
-
+			for (Signature signature : signatures) {
 				try {
 					PublicKey subject = this.trustManager.getPublicKey(signature.getSubject());
 					if (subject == null)
@@ -230,7 +375,8 @@ public abstract class TrustProtocol {
 
 					// verify signature if issuer is known
 					PublicKey issuer = this.trustManager.getPublicKey(signature.getIssuer());
-					if (issuer != null && !signature.verify(issuer, subject))
+					if (issuer != null
+							&& !this.isValid(verifications, signature, new Verification(signature, issuer, subject)))
 						throw new SecurityException("Invalid signature!");
 
 					// signature valid || issuer = null
@@ -239,24 +385,25 @@ public abstract class TrustProtocol {
 					}
 				} catch (Exception e) {
 					Log.e(TAG, "(SY) - Unable to extract signature! " + signature, e);
+					complete = false;
 				}
 			}
 
 			//Log.d(TAG, "(SY) - Adding new sub keys to repository");
-			for (iterator = relatedData.iterator(); iterator.hasNext();) {
-				Serializable object = iterator.next();
-				if (!(object instanceof SubKeyEntry))
-					continue;
-
-				SubKeyEntry subKey = (SubKeyEntry) object;
-
-				iterator.remove();
-
+			for (SubKeyEntry subKey : subKeys) {
 				try {
+					// verify sub key signature if owner is known (optional)
+					if (Config.TRUST_VERIFY_SUB_KEYS) {
+						PublicKey owner = this.trustManager.getPublicKey(subKey.signature.getOwner());
+						if (owner != null && !this.isValid(verifications, subKey, new Verification(subKey, owner)))
+							throw new SecurityException("Invalid sub key signature!");
+					}
+
 					if (this.trustManager.addSubKey(subKey.publicKey, subKey.signature))
 						cSubKeys++;
 				} catch (Exception e) {
 					Log.e(TAG, "(SY) - Error extracting sub key! " + subKey, e);
+					complete = false;
 				}
 			}
 
@@ -265,7 +412,29 @@ public abstract class TrustProtocol {
 			this.trustManager.refreshValidity();
 			// }
 
+			// subjects that are not trusted enough (yet) are deleted again, they
+			// must be resent once their issuers are trusted
+			for (Fingerprint subject : addedSubjects) {
+				if (this.trustManager.getPublicKey(subject) == null) {
+					complete = false;
+					break;
+				}
+			}
+
 			this.trustManager.updateLastSynchronization(fingerprint);
+
+			// everything up to the sequence of the peer has been received, unless
+			// some data was rejected or deleted (e.g. a signature whose subject is
+			// still unknown): then the next request starts from the old watermark
+			SyncRequestMessage request = this.pendingSyncRequests.get(fingerprint);
+			if (message.isDelta() && request != null && request.getNonce() == message.getNonce()) {
+				if (complete && relatedData.isEmpty())
+					this.trustManager.updateSyncWatermark(fingerprint, message.getSequence(),
+							request.getTrustedSubjects());
+				else
+					Log.d(TAG, "(SY) - Keeping the watermark, not all data could be applied");
+				this.pendingSyncRequests.remove(fingerprint);
+			}
 		}
 
 		if (relatedData.size() > 0) {
@@ -276,6 +445,105 @@ public abstract class TrustProtocol {
 		//Log.d(TAG, "(SY) - Summary: " + cPublicKeys + ", " + cSignatures + ", " + cSubKeys);
 	}
 
+	// -- SIGNATURE VERIFICATION
+
+	/**
+	 * Verification of a (sub key) signature, executed outside of the trust
+	 * manager lock.
+	 */
+	private static final class Verification implements Callable<Boolean> {
+		private final Signature signature;
+		private final SubKeyEntry subKey;
+		private final PublicKey issuer;
+		private final PublicKey subject;
+
+		private boolean valid = false;
+		private Exception error = null;
+
+		private Verification(Signature signature, PublicKey issuer, PublicKey subject) {
+			this.signature = signature;
+			this.subKey = null;
+			this.issuer = issuer;
+			this.subject = subject;
+		}
+
+		private Verification(SubKeyEntry subKey, PublicKey owner) {
+			this.signature = null;
+			this.subKey = subKey;
+			this.issuer = owner;
+			this.subject = null;
+		}
+
+		// verified with the given keys?
+		private boolean matches(Verification other) {
+			return this.issuer.equals(other.issuer) && (this.subject == null || this.subject.equals(other.subject));
+		}
+
+		@Override
+		public Boolean call() {
+			try {
+				if (this.signature != null)
+					this.valid = this.signature.verify(this.issuer, this.subject);
+				else
+					this.valid = this.subKey.signature.verify(this.issuer, this.subKey.publicKey);
+			} catch (Exception e) {
+				this.error = e;
+				this.valid = false;
+			}
+
+			return this.valid;
+		}
+	}
+
+	// shared by all devices, worker threads do not keep the simulation alive
+	private static final ExecutorService VERIFIERS = new ForkJoinPool();
+
+	// runs all verifications, in parallel for larger batches
+	private void verifyAll(Collection<Verification> verifications) {
+		if (verifications.size() < Config.TRUST_PARALLEL_VERIFICATION_MIN) {
+			for (Verification verification : verifications)
+				verification.call();
+
+			return;
+		}
+
+		try {
+			VERIFIERS.invokeAll(verifications);
+		} catch (InterruptedException e) {
+			// remaining ones are verified when applied
+			Log.e(TAG, "(SY) - Interrupted while verifying signatures!", e);
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// result of a previous verification, verifies again if the keys changed
+	private boolean isValid(Map<Object, Verification> verifications, Object object, Verification expected)
+			throws Exception {
+		Verification verification = verifications.get(object);
+		if (verification == null || !verification.matches(expected)) {
+			verification = expected;
+			verification.call();
+		}
+
+		if (verification.error != null)
+			throw verification.error;
+
+		return verification.valid;
+	}
+
+	private void lookUpPublicKey(Map<Fingerprint, PublicKey> keys, Fingerprint fingerprint) {
+		PublicKey publicKey = this.trustManager.getPublicKey(fingerprint);
+		if (publicKey != null)
+			keys.put(fingerprint, publicKey);
+	}
+
+	// known public key or received along with the signature
+	private PublicKey getPublicKey(Map<Fingerprint, PublicKey> keys, Map<Fingerprint, PublicKey> received,
+			Fingerprint fingerprint) {
+		PublicKey result = keys.get(fingerprint);
+		return (result != null) ? result : received.get(fingerprint);
+	}
+
 	// -- HANDSHAKE PROTOCOL
 
 	@SuppressWarnings({ "rawtypes", "unchecked" })
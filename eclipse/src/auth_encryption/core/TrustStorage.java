@@ -0,0 +1,56 @@
+package auth_encryption.core;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Storage backend of the {@link TrustFileManager}. Objects are addressed by
+ * '/'-separated paths relative to the trust directory, e.g.
+ * <code>subject/issuer.sig</code>; directories only exist implicitly as long
+ * as they contain at least one object.
+ */
+public interface TrustStorage {
+	/**
+	 * Returns true if an object is stored at the given path.
+	 */
+	boolean exists(String path);
+
+	/**
+	 * Returns true if there are objects stored below the given path.
+	 */
+	boolean isDirectory(String path);
+
+	/**
+	 * Returns the size of the object in bytes, or -1 if it does not exist.
+	 */
+	long length(String path);
+
+	/**
+	 * Returns the names of all objects and directories directly below the
+	 * given directory ("" for the trust directory itself).
+	 */
+	List<String> list(String directory);
+
+	/**
+	 * Reads an object.
+	 * 
+	 * @throws java.io.FileNotFoundException
+	 *             if there is no such object
+	 */
+	byte[] read(String path) throws IOException;
+
+	/**
+	 * Stores an object, returns false if one already exists at the path.
+	 */
+	boolean write(String path, byte[] data) throws IOException;
+
+	/**
+	 * Deletes an object, or a directory with all objects below it.
+	 */
+	boolean delete(String path);
+
+	/**
+	 * Releases all resources of the storage, it must not be used afterwards.
+	 */
+	void close() throws IOException;
+}
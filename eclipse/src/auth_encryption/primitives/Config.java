@@ -10,11 +10,17 @@ public abstract class Config {
 	public static final String TRUST_PATH = "trust/";
 	// public static final long TRUST_TRIGGER_UPDATE_INTERVAL = 12 * 60 * 60 * 1000; // 12h
 	public static final boolean TRUST_EXTRA_SECURITY = true; // for TFM load operations
+	public static final boolean TRUST_BINARY_CODEC = true; // TrustCodec instead of Java serialization (storage + on-air size)
 	//public static int TRUST_MAX_DEGREE = AuthenticationApplication.TRUST_DEGREE;
 	public static final int TRUST_NUM_KNOWN_REQUIRED = 3;
 	public static final long TRUST_HANDSHAKE_TIMEOUT = 5 * 60 * 1000; // 5min
 	public static final int TRUST_MAX_META_ALIASES = 5;
 	public static final int TRUST_MAX_SUB_KEY_PER_APP = 5;
+	public static final int TRUST_SYNC_BLOOM_BITS_PER_ITEM = 10; // ~1% false positives
+	public static final int TRUST_SYNC_BLOOM_HASHES = 7;
+	public static final int TRUST_VERIFICATION_CACHE_SIZE = 65536; // entries, 0 disables the cache
+	public static final int TRUST_PARALLEL_VERIFICATION_MIN = 16; // smaller sync batches are verified inline
+	public static final boolean TRUST_VERIFY_SUB_KEYS = false; // check sub key signatures of known owners on sync
 	
 	//public static SignatureParameter KEY_SIGNATURE_PARAMETERS = AuthenticationApplication.KEY_PARAMETER;
 }
@@ -34,6 +34,10 @@ public class Signature implements Serializable {
 	private byte[] data = null; // contains sign(hash(all fields + public key to
 								// be signed))
 
+	private Signature() {
+		// only visible for generator functions
+	}
+
 	public Signature(PublicKey issuer, PublicKey subject) throws Exception {
 		if (issuer == null || subject == null)
 			throw new IllegalArgumentException();
@@ -43,6 +47,19 @@ public class Signature implements Serializable {
 		this.subject = new Fingerprint(subject);
 	}
 
+	public static Signature fromData(Date time, Fingerprint issuer, Fingerprint subject, String alias, byte[] data) {
+		if (time == null || issuer == null || subject == null)
+			throw new IllegalArgumentException();
+
+		Signature result = new Signature();
+		result.time = time;
+		result.issuer = issuer;
+		result.subject = subject;
+		result.alias = alias;
+		result.data = data;
+		return result;
+	}
+
 	public boolean verify(PublicKey issuer, PublicKey subject) throws Exception {
 		if (issuer == null || subject == null)
 			throw new IllegalArgumentException();
@@ -57,12 +74,28 @@ public class Signature implements Serializable {
 		if (!this.issuer.equals(fpIssuer) || !this.subject.equals(fpSubject))
 			throw new SignatureException("Fingerprints do not match!");
 
+		byte[] digest = this.getDigestData(subject);
+
+		// same signature verified before?
+		ByteBuffer key = null;
+		if (VerificationCache.isEnabled()) {
+			key = VerificationCache.getKey(VerificationCache.TYPE_SIGNATURE, this.issuer, digest, this.data);
+			Boolean cached = VerificationCache.get(key);
+			if (cached != null)
+				return cached;
+		}
+
 		COUNT.incrementAndGet();
 		
 		java.security.Signature sig = java.security.Signature.getInstance(AuthenticationApplication.KEY_PARAMETER.getSignatureAlgorithm());
 		sig.initVerify(issuer);
-		sig.update(this.getDigestData(subject));
-		return sig.verify(this.data);
+		sig.update(digest);
+		boolean result = sig.verify(this.data);
+
+		if (key != null)
+			VerificationCache.put(key, result);
+
+		return result;
 	}
 
 	public byte[] getDigestData(PublicKey subject) throws Exception {
@@ -44,6 +44,25 @@ public class SubKeySignature implements Serializable {
 		this.appAuth.signatureKeyFingerprint = details.signatureKeyFingerprint;
 	}
 
+	private SubKeySignature(Date time, Fingerprint owner, KeyID subKey, AppDetails appAuth) {
+		// only visible for generator functions
+		this.time = time;
+		this.owner = owner;
+		this.subKey = subKey;
+		this.appAuth = appAuth;
+	}
+
+	public static SubKeySignature fromData(Date time, Fingerprint owner, KeyID subKey, AppDetails appAuth, String tag,
+			byte[] data) {
+		if (time == null || owner == null || subKey == null || appAuth == null)
+			throw new IllegalArgumentException();
+
+		SubKeySignature result = new SubKeySignature(time, owner, subKey, appAuth);
+		result.tag = tag;
+		result.data = data;
+		return result;
+	}
+
 	public boolean verify(PublicKey owner, byte[] subKey) throws Exception {
 		if (owner == null || subKey == null)
 			throw new IllegalArgumentException();
@@ -58,13 +77,29 @@ public class SubKeySignature implements Serializable {
 		if (!this.owner.equals(fpOwner) || !this.subKey.equals(idSubject))
 			throw new SignatureException("Fingerprints do not match!");
 
+		byte[] digest = this.getDigestData(subKey);
+
+		// same signature verified before?
+		ByteBuffer key = null;
+		if (VerificationCache.isEnabled()) {
+			key = VerificationCache.getKey(VerificationCache.TYPE_SUB_KEY_SIGNATURE, this.owner, digest, this.data);
+			Boolean cached = VerificationCache.get(key);
+			if (cached != null)
+				return cached;
+		}
+
 		COUNT.incrementAndGet();
 
 		java.security.Signature sig = java.security.Signature
 				.getInstance(AuthenticationApplication.KEY_PARAMETER.getSignatureAlgorithm());
 		sig.initVerify(owner);
-		sig.update(this.getDigestData(subKey));
-		return sig.verify(this.data);
+		sig.update(digest);
+		boolean result = sig.verify(this.data);
+
+		if (key != null)
+			VerificationCache.put(key, result);
+
+		return result;
 	}
 
 	public byte[] getDigestData(byte[] subKey) throws Exception {
@@ -0,0 +1,107 @@
+package auth_encryption.primitives;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import core.DTNSim;
+
+/**
+ * Results of previous signature verifications, shared by all devices of a
+ * simulation. Entries are keyed by a digest over the signed data, the
+ * fingerprint of the signing key and the signature itself, the least recently
+ * used entries are evicted once {@link Config#TRUST_VERIFICATION_CACHE_SIZE}
+ * is reached.
+ */
+public final class VerificationCache {
+	public static final AtomicLong HITS = new AtomicLong(0);
+	public static final AtomicLong MISSES = new AtomicLong(0);
+
+	public static final byte TYPE_SIGNATURE = 1;
+	public static final byte TYPE_SUB_KEY_SIGNATURE = 2;
+
+	@SuppressWarnings("serial")
+	private static final Map<ByteBuffer, Boolean> entries = Collections
+			.synchronizedMap(new LinkedHashMap<ByteBuffer, Boolean>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Boolean> eldest) {
+					return this.size() > Config.TRUST_VERIFICATION_CACHE_SIZE;
+				}
+			});
+
+	// verifications of the current thread that must not use the cache
+	private static final ThreadLocal<Boolean> bypassed = new ThreadLocal<Boolean>() {
+		@Override
+		protected Boolean initialValue() {
+			return Boolean.FALSE;
+		}
+	};
+
+	static {
+		// results depend on the keys of a run
+		DTNSim.registerForReset(VerificationCache.class.getCanonicalName());
+	}
+
+	private VerificationCache() {
+		// hide
+	}
+
+	public static boolean isEnabled() {
+		return Config.TRUST_VERIFICATION_CACHE_SIZE > 0 && !bypassed.get();
+	}
+
+	/**
+	 * Bypasses the cache for all verifications of the current thread, e.g. to
+	 * measure cold verification times. Must be reset in a finally block.
+	 */
+	public static void setBypassed(boolean value) {
+		bypassed.set(value);
+	}
+
+	/**
+	 * Derives the key of a verification.
+	 * 
+	 * @param type TYPE_SIGNATURE or TYPE_SUB_KEY_SIGNATURE
+	 * @param signer fingerprint of the verifying public key
+	 * @param digest digest of the signed data
+	 * @param data signature
+	 */
+	public static ByteBuffer getKey(byte type, Fingerprint signer, byte[] digest, byte[] data) throws Exception {
+		MessageDigest md = MessageDigest.getInstance("SHA-256");
+		md.update(type);
+		md.update(signer.getData());
+		md.update(digest);
+		md.update(data);
+		return ByteBuffer.wrap(md.digest());
+	}
+
+	/**
+	 * Returns the cached result of a verification, or null if unknown.
+	 */
+	public static Boolean get(ByteBuffer key) {
+		Boolean result = entries.get(key);
+		if (result == null)
+			MISSES.incrementAndGet();
+		else
+			HITS.incrementAndGet();
+
+		return result;
+	}
+
+	public static void put(ByteBuffer key, boolean valid) {
+		entries.put(key, valid);
+	}
+
+	public static int size() {
+		return entries.size();
+	}
+
+	public static void reset() {
+		entries.clear();
+		HITS.set(0);
+		MISSES.set(0);
+	}
+}
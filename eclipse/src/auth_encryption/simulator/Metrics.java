@@ -1,10 +1,7 @@
 package auth_encryption.simulator;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
 
@@ -15,6 +12,7 @@ import com.google.gson.GsonBuilder;
 import applications.AuthenticationApplication;
 import auth_encryption.primitives.Config;
 import core.DTNHost;
+import core.DTNSim;
 import core.SimClock;
 
 /**
@@ -22,7 +20,8 @@ import core.SimClock;
  * PROPAGATION = T, MEMORY = M, BANDWIDTH = B, PERFORMANCE = P
  * MemoryTypes: PUBLIC KEYS = PK, SIGNATURES = SIG, SUB_KEYS = SK, SUB_KEYS_SIGNATURE = SKSIG
  * BandwidthTypes: SYNC_QUERY = QRY, SYNC_RESPONSE = RSP
- * PerformanceTypes: NUM_VERIFICATIONS = V, NUM_SIGNATURES = S, TIME_INITIALIZATION = I
+ * PerformanceTypes: NUM_VERIFICATIONS = V, NUM_SIGNATURES = S, TIME_INITIALIZATION = I,
+ * VERIFICATION_CACHE_HITS = VH, VERIFICATION_CACHE_MISSES = VM
  */
 public final class Metrics {
 	private static final String TAG = Metrics.class.getSimpleName();
@@ -30,6 +29,8 @@ public final class Metrics {
 	static {
 		// record the configurations at the beginning of a simulation
 		Metrics.recordConfig();
+		// close the metrics files of a run before the next batch run starts
+		DTNSim.registerForReset(Metrics.class.getCanonicalName());
 	}
 
 	private Metrics() {
@@ -127,6 +128,8 @@ public final class Metrics {
 		public static final String NUM_VERIFICATIONS = "V";
 		public static final String NUM_SIGNATURES = "S";
 		public static final String TIME_INITIALIZATION = "I";
+		public static final String VERIFICATION_CACHE_HITS = "VH";
+		public static final String VERIFICATION_CACHE_MISSES = "VM";
 	}
 
 	public static void recordPerformance(DTNHost d, String performanceType, double v) {
@@ -151,28 +154,21 @@ public final class Metrics {
 		//final File file = new File(SimulationConfig.METRICS_DIRECTORY, prefix + d.getUUID() + ".csv");
 		final File file = new File(SimulationConfig.METRICS_DIRECTORY, prefix + d.getUUID()+"-"+d.toString() + ".csv");
 
-		// create/append to the file
-		try (FileWriter fw = new FileWriter(file, true);
-				BufferedWriter bw = new BufferedWriter(fw);
-				PrintWriter out = new PrintWriter(bw)) {
-			//out.print(Simulator.STEP);
-			int step = d.STEPHOST ;/// 10;						
-			int precision = 2;
-			String duration = String.format("%." + precision + "f", SimClock.getTime());
-			//DeviceLog.d(null, TAG, "duration: "+duration);
-			out.print(duration);
-			out.print(";");
-			out.print(step);
-			out.print(";");
-			out.print(c);
-			out.print(";");
-			out.print(p);
-			out.print(";");
-			out.print(v);
-			out.println();
-		} catch (IOException e) {
-			DeviceLog.e(null, TAG, "Error writing metrics file!", e);
-		}
+		// time and step are taken now, the line is appended in the background
+		//out.print(Simulator.STEP);
+		int step = d.STEPHOST ;/// 10;
+		MetricsWriter.getInstance().write(file, SimClock.getTime(), step, c, p, v);
+	}
+
+	/**
+	 * Writes all pending metrics to disk and closes the metrics files.
+	 */
+	public static void flush() {
+		MetricsWriter.shutdown();
+	}
+
+	public static void reset() {
+		Metrics.flush();
 	}
 
 	/**
@@ -0,0 +1,176 @@
+package auth_encryption.simulator;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Asynchronous sink for the metrics files. Records are handed over through a
+ * bounded queue to a background thread, which keeps one buffered writer per
+ * metrics file open instead of opening and closing the file for every datum.
+ * The produced files are identical to the ones written synchronously before.
+ */
+final class MetricsWriter implements Runnable {
+	private static final String TAG = MetricsWriter.class.getSimpleName();
+
+	/**
+	 * A single datum of a metrics file.
+	 */
+	private static final class Record {
+		private final File file;
+		private final double time;
+		private final int step;
+		private final String category;
+		private final Object parameter;
+		private final double value;
+
+		private Record(File file, double time, int step, String category, Object parameter, double value) {
+			this.file = file;
+			this.time = time;
+			this.step = step;
+			this.category = category;
+			this.parameter = parameter;
+			this.value = value;
+		}
+	}
+
+	/* marks the end of the queue */
+	private static final Record CLOSE = new Record(null, 0, 0, null, null, 0);
+
+	private static MetricsWriter instance = null;
+
+	private final BlockingQueue<Record> queue;
+	private final Map<File, Writer> writers = new HashMap<>();
+	private final Thread thread;
+
+	private MetricsWriter() {
+		this.queue = new ArrayBlockingQueue<>(SimulationConfig.METRICS_QUEUE_SIZE);
+
+		this.thread = new Thread(this, TAG);
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * Returns the running writer (starts a new one if required).
+	 */
+	static synchronized MetricsWriter getInstance() {
+		if (instance == null) {
+			instance = new MetricsWriter();
+			Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					MetricsWriter.shutdown();
+				}
+			}));
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Writes all pending records and closes all files. A subsequent record
+	 * starts a new writer.
+	 */
+	static synchronized void shutdown() {
+		if (instance == null)
+			return;
+
+		try {
+			instance.queue.put(CLOSE);
+			instance.thread.join();
+		} catch (InterruptedException e) {
+			DeviceLog.e(null, TAG, "Interrupted while closing metrics files!", e);
+		}
+
+		instance = null;
+	}
+
+	/**
+	 * Queues a datum, blocks if the writer cannot keep up.
+	 */
+	void write(File file, double time, int step, String category, Object parameter, double value) {
+		try {
+			this.queue.put(new Record(file, time, step, category, parameter, value));
+		} catch (InterruptedException e) {
+			DeviceLog.e(null, TAG, "Interrupted while recording metric!", e);
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (true) {
+				Record record = this.queue.poll(SimulationConfig.METRICS_FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+
+				// flush whenever the simulation is idle
+				if (record == null) {
+					this.flush();
+					continue;
+				}
+
+				if (record == CLOSE)
+					break;
+
+				this.append(record);
+			}
+		} catch (InterruptedException e) {
+			DeviceLog.e(null, TAG, "Metrics writer interrupted!", e);
+		}
+
+		this.close();
+	}
+
+	private void append(Record record) {
+		try {
+			Writer out = this.writers.get(record.file);
+			if (out == null) {
+				out = new BufferedWriter(new FileWriter(record.file, true));
+				this.writers.put(record.file, out);
+			}
+
+			int precision = 2;
+			out.write(String.format("%." + precision + "f", record.time));
+			out.write(";");
+			out.write(String.valueOf(record.step));
+			out.write(";");
+			out.write(record.category);
+			out.write(";");
+			out.write(String.valueOf(record.parameter));
+			out.write(";");
+			out.write(String.valueOf(record.value));
+			out.write(System.lineSeparator());
+		} catch (IOException e) {
+			DeviceLog.e(null, TAG, "Error writing metrics file!", e);
+		}
+	}
+
+	private void flush() {
+		for (Writer out : this.writers.values()) {
+			try {
+				out.flush();
+			} catch (IOException e) {
+				DeviceLog.e(null, TAG, "Error flushing metrics file!", e);
+			}
+		}
+	}
+
+	private void close() {
+		for (Writer out : this.writers.values()) {
+			try {
+				out.close();
+			} catch (IOException e) {
+				DeviceLog.e(null, TAG, "Error closing metrics file!", e);
+			}
+		}
+
+		this.writers.clear();
+	}
+}
@@ -82,6 +82,7 @@ public class SimulationConfig implements Serializable {
 	public static final boolean DEBUG_LOG_CONSOLE = false; // log to console
 	public static final boolean DEBUG_LOG_INCLUDE_STEP = true; // indicate current step
 	public static final boolean DEBUG_EXIT_ON_ERROR = false;
+	public static final boolean DEBUG_VERIFY_MEMORY_METRICS = false; // cross-check memory counters with the trust directory
 
 	/*
 	 * Metrics for measurement of bandwidth, memory, performance
@@ -93,6 +94,8 @@ public class SimulationConfig implements Serializable {
 	public static transient File METRICS_DIRECTORY = new File(SimulationConfig.METRICS_BASE_DIR,
 			SimulationConfig.METRICS_DATE);
 	public static final int METRICS_INITIALIZATION_INTERVAL = 60; // how often to reinitialize the repository
+	public static final int METRICS_QUEUE_SIZE = 65536; // pending records before recording blocks
+	public static final long METRICS_FLUSH_INTERVAL = 1000; // flush files after being idle (in ms)
 
 	/*
 	 * Initialization
@@ -3,7 +3,9 @@ package auth_encryption.simulator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -13,6 +15,7 @@ import auth_encryption.core.MessageAuthentication;
 import auth_encryption.core.SyncMessage;
 import auth_encryption.core.SyncRequestMessage;
 import core.DTNHost;
+import core.DTNSim;
 
 /**
  * Network Interface for the simulation (simply forwards messages to the destined devices).
@@ -31,6 +34,25 @@ public class SimulationNetworkInterface {
 		void notifyNeighbors();
 	}
 
+	/**
+	 * Delivery of the messages to the destined devices.
+	 */
+	public enum Delivery {
+		/** messages are delivered by the thread pool after an artificial network delay */
+		THREADED,
+		/** messages are queued and dispatched in send order by the simulation thread */
+		INLINE
+	}
+
+	private static Delivery delivery = Delivery.THREADED;
+
+	/* messages awaiting inline delivery, in the order they have been sent */
+	private static final Queue<Runnable> PENDING = new ConcurrentLinkedQueue<>();
+
+	static {
+		DTNSim.registerForReset(SimulationNetworkInterface.class.getCanonicalName());
+	}
+
 	/*
 	 * Fields
 	 */
@@ -53,6 +75,41 @@ public class SimulationNetworkInterface {
 		this.counts.put(SyncMessage.TYPE_SYNC, new AtomicLong(0));
 	}
 
+	public static void setDelivery(Delivery delivery) {
+		SimulationNetworkInterface.delivery = delivery;
+	}
+
+	public static Delivery getDelivery() {
+		return delivery;
+	}
+
+	/**
+	 * Delivers all queued messages of the inline mode, including the ones sent
+	 * in response, until the queue is empty. As messages are queued in the
+	 * order they have been sent during the current step, they are delivered in
+	 * simulation time order.
+	 * 
+	 * @return Number of delivered messages
+	 */
+	public static int dispatchPending() {
+		int result = 0;
+		Runnable task = null;
+		while ((task = PENDING.poll()) != null) {
+			try {
+				task.run();
+			} catch (Exception e) {
+				DeviceLog.e(null, TAG, "Error while delivering message!", e);
+			}
+			result++;
+		}
+
+		return result;
+	}
+
+	public static void reset() {
+		PENDING.clear();
+	}
+
 	/**
 	 * Broadcasts a specific message to all given devices.
 	 * 
@@ -105,25 +162,38 @@ public class SimulationNetworkInterface {
 			DeviceLog.d(this.self, TAG, String.format("<TX> message subtype %s to %s", subType, target));
 		////////////////////////////////////////////////
 		
-		// register network task (run on the thread pool)
-		Future<?> future = SimulationConfig.SIMULATION_THREADS.submit(new Runnable() {
+		final Runnable task = new Runnable() {
 			@Override
 			public void run() {
 				////////////////////////////////////////////////
 				//DeviceLog.d(self, TAG, "-> " + target.getUUID());
 				//DeviceLog.d(self, TAG, "-> " + target);
 				////////////////////////////////////////////////
+				if (target.getReceiver() != null){					
+					target.getReceiver().onMessageReceived(SimulationNetworkInterface.this.self, message);				
+				}
+				// apply metrics
+				SimulationNetworkInterface.this.measureData(message);
+			}
+		};
+
+		// delivered by the simulation thread (no delay required)
+		if (delivery == Delivery.INLINE) {
+			PENDING.add(task);
+			return;
+		}
+
+		// register network task (run on the thread pool)
+		Future<?> future = SimulationConfig.SIMULATION_THREADS.submit(new Runnable() {
+			@Override
+			public void run() {
 				try {
 					// add artificial network delay.
 					Thread.sleep(SimulationConfig.NETWORK_SEND_DELAY);
 				} catch (Exception e) {
 					// swallow
 				}
-				if (target.getReceiver() != null){					
-					target.getReceiver().onMessageReceived(SimulationNetworkInterface.this.self, message);				
-				}
-				// apply metrics
-				SimulationNetworkInterface.this.measureData(message);
+				task.run();
 			}
 		});
 
@@ -141,7 +211,7 @@ public class SimulationNetworkInterface {
 			return;
 
 		// register count for given message type
-		long size = SimulationUtils.getNetworkObjectSize(message);
+		long size = SimulationUtils.getNetworkMessageSize(message);
 		this.counts.get(message.getType()).addAndGet(size);
 		this.counts.get(MessageAuthentication.TYPE_ALL).addAndGet(size);
 	}
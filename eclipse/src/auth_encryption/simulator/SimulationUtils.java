@@ -13,6 +13,9 @@ import javax.sound.sampled.DataLine;
 
 import org.apache.commons.io.FileUtils;
 
+import auth_encryption.core.MessageAuthentication;
+import auth_encryption.primitives.Config;
+
 /**
  * Globally required utilities.
  */
@@ -87,6 +90,21 @@ public final class SimulationUtils {
 		}
 	}
 
+	/**
+	 * Returns the size of a trust message as it is sent over the network,
+	 * either encoded by the TrustCodec or Java serialized (see
+	 * {@link Config#TRUST_BINARY_CODEC}).
+	 * 
+	 * @param message
+	 * @return
+	 */
+	public static long getNetworkMessageSize(MessageAuthentication message) {
+		if (Config.TRUST_BINARY_CODEC)
+			return message.getEncodedSize();
+
+		return getNetworkObjectSize(message);
+	}
+
 	private static final String SOUND_DIR = "sounds/";
 	private static final long SOUND_DELAY = 500;
 
@@ -75,6 +75,21 @@ public abstract class Application {
 	 */
 	public abstract void update(DTNHost host);
 
+	/**
+	 * Returns the earliest sim time when {@link #update(DTNHost)} can do
+	 * something, so the routers can tell when the host must be updated
+	 * again (see {@link routing.MessageRouter#getNextChangeTime()}). This
+	 * implementation returns the current time, i.e., the application is
+	 * updated at every update interval. Applications that act only at
+	 * certain times should override this.
+	 *
+	 * @param host	The host this application instance is attached to.
+	 * @return The time of the next update that can do something
+	 */
+	public double getNextUpdateTime(DTNHost host) {
+		return SimClock.getTime();
+	}
+
 	/**
 	 * <p>
 	 * Returns an unique application ID. The application will only receive
@@ -0,0 +1,255 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs batch mode runs in parallel. Every run is executed in its own child
+ * JVM (with the class path and JVM options of this JVM), so the static state
+ * of the simulator (settings, clock, and everything registered for
+ * resetting) is isolated between the runs. Each run gets a directory
+ * (<CODE>run-N</CODE> in the output directory) with the run's console
+ * output ({@value #LOG_FILE}), an additional settings file that points
+ * {@value report.Report#REPORTDIR_SETTING} to the run's
+ * {@value #REPORT_DIR} directory, and the reports.
+ * <P>
+ * The child JVMs are started in their run directories, so everything a run
+ * writes to relative paths (e.g., report outputs with relative names or the
+ * metrics of the authentication application) ends up in the run's own
+ * directory. Settings whose values are relative paths of existing files
+ * (e.g., map files) are given to the runs as absolute paths, so the inputs
+ * are still read from the current working directory.
+ * </P>
+ */
+public class BatchExecutor {
+	/** name of the console output file in the run directories */
+	public static final String LOG_FILE = "run.log";
+	/** name of the additional settings file in the run directories */
+	public static final String SETTINGS_FILE = "run_settings.txt";
+	/** name of the report directory in the run directories */
+	public static final String REPORT_DIR = "reports";
+
+	private List<String> confFiles;
+	private int firstRun;
+	private int lastRun;
+	private int maxParallel;
+	private File outputDir;
+
+	/**
+	 * Constructor.
+	 * @param confFiles Settings files for the runs
+	 * @param firstRun Index of the first run (zero based)
+	 * @param lastRun Index after the last run
+	 * @param maxParallel Maximum number of runs executed at the same time
+	 * @param outputDir Directory where the run directories are created
+	 */
+	public BatchExecutor(List<String> confFiles, int firstRun, int lastRun,
+			int maxParallel, File outputDir) {
+		this.confFiles = confFiles;
+		this.firstRun = firstRun;
+		this.lastRun = lastRun;
+		this.maxParallel = Math.max(1, maxParallel);
+		this.outputDir = outputDir;
+	}
+
+	/**
+	 * Executes all the runs and prints a summary of them
+	 * @return The number of runs that failed
+	 */
+	public int run() {
+		final Map<String, String> inputFiles = readInputFiles();
+		ExecutorService pool = Executors.newFixedThreadPool(maxParallel);
+		List<Future<RunResult>> futures = new ArrayList<Future<RunResult>>();
+		long startTime = System.currentTimeMillis();
+
+		print("Executing runs " + (firstRun + 1) + "-" + lastRun + ", " +
+				maxParallel + " at a time, output to " +
+				outputDir.getAbsolutePath());
+		for (int i=firstRun; i<lastRun; i++) {
+			final int runIndex = i;
+			futures.add(pool.submit(new Callable<RunResult>() {
+				public RunResult call() {
+					return execute(runIndex, inputFiles);
+				}
+			}));
+		}
+		pool.shutdown();
+
+		int nrofFailed = 0;
+		for (Future<RunResult> f : futures) {
+			RunResult r;
+			try {
+				r = f.get();
+			} catch (InterruptedException e) {
+				throw new SimError(e);
+			} catch (ExecutionException e) {
+				throw new SimError(e);
+			}
+			if (r.exitStatus != 0) {
+				nrofFailed++;
+			}
+			print(r.toString());
+		}
+
+		double duration = (System.currentTimeMillis() - startTime)/1000.0;
+		print("---\nAll done in " + String.format("%.2f", duration) + "s, " +
+				nrofFailed + " of " + futures.size() + " runs failed");
+
+		return nrofFailed;
+	}
+
+	/**
+	 * Finds the settings whose values are relative paths of existing files
+	 * @return Absolute paths of the files by setting keys
+	 */
+	private Map<String, String> readInputFiles() {
+		Properties props = new Properties();
+		for (String confFile : confFiles) {
+			try {
+				InputStream in = new FileInputStream(confFile);
+				try {
+					props.load(in);
+				} finally {
+					in.close();
+				}
+			} catch (IOException e) {
+				throw new SettingsError(e);
+			}
+		}
+
+		Map<String, String> inputFiles = new TreeMap<String, String>();
+		for (String key : props.stringPropertyNames()) {
+			File f = new File(props.getProperty(key).trim());
+			if (!f.isAbsolute() && f.isFile()) {
+				inputFiles.put(key, f.getAbsolutePath());
+			}
+		}
+		return inputFiles;
+	}
+
+	/**
+	 * Returns a class path with all entries as absolute paths
+	 * @param classPath The class path
+	 * @return The absolute class path
+	 */
+	private static String toAbsoluteClassPath(String classPath) {
+		StringBuilder sb = new StringBuilder();
+		for (String entry : classPath.split(File.pathSeparator)) {
+			if (entry.length() == 0) {
+				continue;
+			}
+			if (sb.length() > 0) {
+				sb.append(File.pathSeparator);
+			}
+			sb.append(new File(entry).getAbsolutePath());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Executes one run in a child JVM and waits for it to finish
+	 * @param runIndex Index of the run (zero based)
+	 * @param inputFiles Absolute paths of the input files by setting keys
+	 * @return The result of the run
+	 */
+	private RunResult execute(int runIndex, Map<String, String> inputFiles) {
+		RunResult result = new RunResult(runIndex);
+		File runDir = new File(outputDir, "run-" + (runIndex + 1));
+		File reportDir = new File(runDir, REPORT_DIR);
+		File settingsFile = new File(runDir, SETTINGS_FILE);
+		File logFile = new File(runDir, LOG_FILE);
+		long startTime = System.currentTimeMillis();
+
+		try {
+			if (!reportDir.isDirectory() && !reportDir.mkdirs()) {
+				throw new IOException("Couldn't create directory " + reportDir);
+			}
+			PrintWriter out = new PrintWriter(settingsFile);
+			for (Map.Entry<String, String> e : inputFiles.entrySet()) {
+				out.println(e.getKey() + " = " + e.getValue());
+			}
+			out.println(report.Report.REPORTDIR_SETTING + " = " +
+					reportDir.getAbsolutePath() + File.separator);
+			out.close();
+
+			List<String> command = new ArrayList<String>();
+			command.add(System.getProperty("java.home") + File.separator +
+					"bin" + File.separator + "java");
+			command.addAll(ManagementFactory.getRuntimeMXBean().
+					getInputArguments());
+			command.add("-cp");
+			command.add(toAbsoluteClassPath(
+					System.getProperty("java.class.path")));
+			command.add(DTNSim.class.getName());
+			command.add(DTNSim.BATCH_MODE_FLAG);
+			command.add((runIndex + 1) + DTNSim.RANGE_DELIMETER +
+					(runIndex + 1));
+			for (String confFile : confFiles) {
+				command.add(new File(confFile).getAbsolutePath());
+			}
+			command.add(settingsFile.getAbsolutePath());
+
+			ProcessBuilder pb = new ProcessBuilder(command);
+			pb.directory(runDir);
+			pb.redirectErrorStream(true);
+			pb.redirectOutput(logFile);
+			result.exitStatus = pb.start().waitFor();
+		} catch (IOException e) {
+			result.error = e.getMessage();
+		} catch (InterruptedException e) {
+			result.error = "interrupted";
+		}
+
+		result.duration = (System.currentTimeMillis() - startTime) / 1000.0;
+		result.logFile = logFile;
+		return result;
+	}
+
+	/**
+	 * Prints text to stdout
+	 * @param txt Text to print
+	 */
+	private static void print(String txt) {
+		System.out.println(txt);
+	}
+
+	/**
+	 * Wall-clock time and exit status of a finished run
+	 */
+	private static class RunResult {
+		private int runIndex;
+		private int exitStatus = -1;
+		private double duration;
+		private String error;
+		private File logFile;
+
+		public RunResult(int runIndex) {
+			this.runIndex = runIndex;
+		}
+
+		public String toString() {
+			String status = (error != null ? "failed to start: " + error :
+				"exit status " + exitStatus);
+			return String.format("Run %d: %s in %.2fs (%s)", runIndex + 1,
+					status, duration, logFile.getPath());
+		}
+	}
+}
@@ -22,11 +22,14 @@ import auth_encryption.core.MessageAuthentication;
 import auth_encryption.core.NetworkException;
 import auth_encryption.core.SyncMessage;
 import auth_encryption.core.SyncRequestMessage;
+import auth_encryption.core.TrustFileManager;
+import auth_encryption.core.TrustFileManager.StorageType;
 import auth_encryption.core.TrustManager;
 import auth_encryption.primitives.AppDetails;
 import auth_encryption.primitives.Fingerprint;
 import auth_encryption.primitives.Signature;
 import auth_encryption.primitives.SubKeySignature;
+import auth_encryption.primitives.VerificationCache;
 import auth_encryption.simulator.DeviceLog;
 import auth_encryption.simulator.Metrics;
 import auth_encryption.simulator.Metrics.BandwidthType;
@@ -255,14 +258,24 @@ public class DTNHost implements Comparable<DTNHost> {
 				/ SimulationConfig.NETWORK_NUM_DEVICES;
 
 		Metrics.recordPerformance(this, PerformanceType.NUM_VERIFICATIONS, num);
+		Metrics.recordPerformance(this, PerformanceType.VERIFICATION_CACHE_HITS,
+				(0.0f + VerificationCache.HITS.getAndSet(0)) / SimulationConfig.NETWORK_NUM_DEVICES);
+		Metrics.recordPerformance(this, PerformanceType.VERIFICATION_CACHE_MISSES,
+				(0.0f + VerificationCache.MISSES.getAndSet(0)) / SimulationConfig.NETWORK_NUM_DEVICES);
 		Metrics.recordPerformance(this, PerformanceType.NUM_SIGNATURES,
 				this.protocol.getKeyManager().count.getAndSet(0));
 		int steps = this.STEPHOST ;/// 10;
 		if ((steps == 1) || (steps % SimulationConfig.METRICS_INITIALIZATION_INTERVAL) == 0) {
 			try {
+				// measure a cold initialization, without the shared verification results
 				long start = System.currentTimeMillis();
 				TrustManager manager = new TrustManager(deviceDir, this.protocol.getKeyManager().getPublicKey());
-				manager.initialize();
+				VerificationCache.setBypassed(true);
+				try {
+					manager.initialize();
+				} finally {
+					VerificationCache.setBypassed(false);
+				}
 				long duration = System.currentTimeMillis() - start;
 				if (!manager.equals(this.protocol.getTrustManager())) {
 					// print additional logs if the re-initialization differs from the in-memory repository
@@ -283,6 +296,8 @@ public class DTNHost implements Comparable<DTNHost> {
 			// reset verification counts
 			Signature.COUNT.set(0);
 			SubKeySignature.COUNT.set(0);
+			VerificationCache.HITS.set(0);
+			VerificationCache.MISSES.set(0);
 		}
 
 		// -- Record Bandwidth
@@ -302,60 +317,85 @@ public class DTNHost implements Comparable<DTNHost> {
 		//Metrics.recordMessage(this, MessageType.HS_INIT, nwi.countsMessage.get(HandshakeInitializeMessage.TYPE_HANDSHAKE_INIT).getAndSet(0));
 		//Metrics.recordMessage(this, MessageType.HS_SIG, nwi.countsMessage.get(HandshakeSignatureMessage.TYPE_HANDSHAKE_SIGNATURE).getAndSet(0));		
 		
-		// -- Record Memory
-		final File trustDir = new File(deviceDir, "trust/");
-		
-		Metrics.recordSizeTrustDirectory(this, MemoryType.TOTAL, SimulationUtils.directorySize(trustDir, null));
-		Metrics.recordSizeTrustDirectory(this, MemoryType.PUBLIC_KEYS,
-				SimulationUtils.directorySize(trustDir, new FileFilter() {
-					@Override
-					public boolean accept(File pathname) {
-						if (pathname.isDirectory())
-							return true;
-		
-						return pathname.getAbsolutePath().endsWith("/keys/public.key");
-					}
-				}));
-		Metrics.recordSizeTrustDirectory(this, MemoryType.SIGNATURES,
-				SimulationUtils.directorySize(trustDir, new FileFilter() {
-					@Override
-					public boolean accept(File pathname) {
-						if (pathname.isDirectory())
-							return true;
+		// -- Record Memory (running counters of the file manager)
+		final TrustFileManager fm = TrustFileManager.getInstance(deviceDir);
 
-						if (pathname.getParent().endsWith("/keys"))
-							return false;
+		Metrics.recordSizeTrustDirectory(this, MemoryType.TOTAL, fm.getStoredBytes());
+		Metrics.recordSizeTrustDirectory(this, MemoryType.PUBLIC_KEYS, fm.getStoredBytes(StorageType.PUBLIC_KEY));
+		Metrics.recordSizeTrustDirectory(this, MemoryType.SIGNATURES, fm.getStoredBytes(StorageType.SIGNATURE));
+		Metrics.recordSizeTrustDirectory(this, MemoryType.SUB_KEYS, fm.getStoredBytes(StorageType.SUB_KEY));
+		Metrics.recordSizeTrustDirectory(this, MemoryType.SUB_KEY_SIGNATURES,
+				fm.getStoredBytes(StorageType.SUB_KEY_SIGNATURE));
 
-						return pathname.getName().endsWith(".sig");
-					}
-				}));
-		Metrics.recordSizeTrustDirectory(this, MemoryType.SUB_KEYS,
-				SimulationUtils.directorySize(trustDir, new FileFilter() {
-					@Override
-					public boolean accept(File pathname) {
-						if (pathname.isDirectory())
-							return true;
+		// only the file backend can be cross-checked on disk
+		if (SimulationConfig.DEBUG_VERIFY_MEMORY_METRICS && TrustFileManager.getBackend() == TrustFileManager.Backend.FILE)
+			this.verifyMemoryMetrics(fm, new File(deviceDir, "trust/"));
+	}
 
-						if (!pathname.getParent().endsWith("/keys"))
-							return false;
+	/**
+	 * Cross-checks the running counters of the file manager against the
+	 * actual size of the trust directory on disk.
+	 */
+	private void verifyMemoryMetrics(TrustFileManager fm, File trustDir) {
+		long total = SimulationUtils.directorySize(trustDir, null);
+		long publicKeys = SimulationUtils.directorySize(trustDir, new FileFilter() {
+			@Override
+			public boolean accept(File pathname) {
+				if (pathname.isDirectory())
+					return true;
 
-						final String name = pathname.getName();
-						return name.endsWith(".key") && !name.equals("public.key");
-					}
-				}));
-		Metrics.recordSizeTrustDirectory(this, MemoryType.SUB_KEY_SIGNATURES,
-				SimulationUtils.directorySize(trustDir, new FileFilter() {
-					@Override
-					public boolean accept(File pathname) {
-						if (pathname.isDirectory())
-							return true;
+				return pathname.getAbsolutePath().endsWith("/keys/public.key");
+			}
+		});
+		long signatures = SimulationUtils.directorySize(trustDir, new FileFilter() {
+			@Override
+			public boolean accept(File pathname) {
+				if (pathname.isDirectory())
+					return true;
 
-						if (!pathname.getParent().endsWith("/keys"))
-							return false;
+				if (pathname.getParent().endsWith("/keys"))
+					return false;
 
-						return pathname.getName().endsWith(".sig");
-					}
-				}));
+				return pathname.getName().endsWith(".sig");
+			}
+		});
+		long subKeys = SimulationUtils.directorySize(trustDir, new FileFilter() {
+			@Override
+			public boolean accept(File pathname) {
+				if (pathname.isDirectory())
+					return true;
+
+				if (!pathname.getParent().endsWith("/keys"))
+					return false;
+
+				final String name = pathname.getName();
+				return name.endsWith(".key") && !name.equals("public.key");
+			}
+		});
+		long subKeySignatures = SimulationUtils.directorySize(trustDir, new FileFilter() {
+			@Override
+			public boolean accept(File pathname) {
+				if (pathname.isDirectory())
+					return true;
+
+				if (!pathname.getParent().endsWith("/keys"))
+					return false;
+
+				return pathname.getName().endsWith(".sig");
+			}
+		});
+
+		if (total != fm.getStoredBytes()
+				|| publicKeys != fm.getStoredBytes(StorageType.PUBLIC_KEY)
+				|| signatures != fm.getStoredBytes(StorageType.SIGNATURE)
+				|| subKeys != fm.getStoredBytes(StorageType.SUB_KEY)
+				|| subKeySignatures != fm.getStoredBytes(StorageType.SUB_KEY_SIGNATURE)) {
+			DeviceLog.e(this, TAG, "!!! Memory counters out of sync with trust directory: " + total + "/"
+					+ publicKeys + "/" + signatures + "/" + subKeys + "/" + subKeySignatures + " on disk vs. "
+					+ fm.getStoredBytes() + "/" + fm.getStoredBytes(StorageType.PUBLIC_KEY) + "/"
+					+ fm.getStoredBytes(StorageType.SIGNATURE) + "/" + fm.getStoredBytes(StorageType.SUB_KEY) + "/"
+					+ fm.getStoredBytes(StorageType.SUB_KEY_SIGNATURE) + " counted");
+		}
 	}
 
 	@Override
@@ -524,6 +564,31 @@ public class DTNHost implements Comparable<DTNHost> {
 		return this.path;
 	}
 
+	/**
+	 * Returns the waypoint this node is moving towards (or has reached
+	 * last), or null if no waypoint has been set yet.
+	 * @return The current destination
+	 */
+	Coord getDestination() {
+		return this.destination;
+	}
+
+	/**
+	 * Returns the speed towards the current destination.
+	 * @return The current speed
+	 */
+	double getSpeed() {
+		return this.speed;
+	}
+
+	/**
+	 * Returns the time until which the node waits for its next path.
+	 * @return The next time the node moves
+	 */
+	double getNextTimeToMove() {
+		return this.nextTimeToMove;
+	}
+
 
 	/**
 	 * Sets the Node's location overriding any location set by movement model
@@ -531,6 +596,7 @@ public class DTNHost implements Comparable<DTNHost> {
 	 */
 	public void setLocation(Coord location) {
 		this.location = location.clone();
+		NetworkInterface.invalidateRanges();
 	}
 
 	/**
@@ -667,6 +733,32 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.router.update();
 	}
 
+	/**
+	 * Returns the earliest sim time when moving or updating this node can
+	 * change its state, i.e., all moves and updates before that time
+	 * (without any other changes in the world) have no effect.
+	 * @return The time of the next possible change (the current time if the
+	 * node can change right away)
+	 */
+	public double getNextChangeTime() {
+		double simTime = SimClock.getTime();
+		double next;
+
+		if (this.nextTimeToMove > simTime) {
+			next = this.nextTimeToMove; // waiting (whether active or not)
+		} else if (isMovementActive()) {
+			return simTime; // moving or asking for a new path
+		} else {
+			next = this.movement.getNextActivenessChangeTime();
+		}
+
+		for (NetworkInterface i : net) {
+			next = Math.min(next, i.getNextChangeTime());
+		}
+
+		return Math.min(next, this.router.getNextChangeTime());
+	}
+
 	/**
 	 * Tears down all connections for this host.
 	 */
@@ -728,6 +820,43 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.location.translate(dx, dy);
 	}
 
+	/**
+	 * Moves the node like {@link #move(double)} if this does not require a
+	 * new waypoint. Does not touch any shared state (e.g., the movement
+	 * model's random number generator) and can thus be called concurrently
+	 * for different nodes. Must only be called if the movement is active
+	 * (cf. {@link #isMovementActive()}).
+	 * @param timeIncrement How long time the node moves
+	 * @return True if the node has been moved (or does not move at all),
+	 * false if {@link #move(double)} needs to be called instead
+	 */
+	public boolean moveWithinPath(double timeIncrement) {
+		double possibleMovement;
+		double distance;
+		double dx, dy;
+
+		if (SimClock.getTime() < this.nextTimeToMove) {
+			return true;
+		}
+		if (this.destination == null) {
+			return false;
+		}
+
+		possibleMovement = timeIncrement * speed;
+		distance = this.location.distance(this.destination);
+		if (possibleMovement >= distance) {
+			return false;
+		}
+
+		// same computation as in move()
+		dx = (possibleMovement/distance) * (this.destination.getX() -
+				this.location.getX());
+		dy = (possibleMovement/distance) * (this.destination.getY() -
+				this.location.getY());
+		this.location.translate(dx, dy);
+		return true;
+	}
+
 	/**
 	 * Sets the next destination and speed to correspond the next waypoint
 	 * on the path.
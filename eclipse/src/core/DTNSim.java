@@ -5,12 +5,14 @@
 package core;
 import gui.DTNSimGUI;
 
+import java.io.File;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import auth_encryption.simulator.DeviceLog;
+import auth_encryption.simulator.Metrics;
 import auth_encryption.simulator.SimulationConfig;
 import ui.DTNSimTextUI;
 
@@ -23,6 +25,11 @@ public class DTNSim {
 	public static final String BATCH_MODE_FLAG = "-b";
 	/** Delimiter for batch mode index range values (colon) */
 	public static final String RANGE_DELIMETER = ":";
+	/** If this option ({@value}) follows the batch mode run range, the runs
+	 * are executed in parallel child JVMs (see {@link BatchExecutor}) */
+	public static final String PARALLEL_FLAG = "-j";
+	/** Directory where the parallel batch runs' directories are created */
+	public static final String PARALLEL_OUTPUT_DIR = "batch";
 
 	/** Name of the static method that all resettable classes must have
 	 * @see #registerForReset(String) */
@@ -40,7 +47,10 @@ public class DTNSim {
 	 * or a with a combination of starting run and the number of runs,
 	 * delimited with a {@value #RANGE_DELIMETER}. Different settings from run
 	 * arrays are used for different runs (see
-	 * {@link Settings#setRunIndex(int)}). Following arguments are the settings
+	 * {@link Settings#setRunIndex(int)}). The run range can be followed by
+	 * {@link #PARALLEL_FLAG} and the maximum number of runs to execute at the
+	 * same time (0 for the number of processors); then every run is executed in
+	 * its own VM. Following arguments are the settings
 	 * files for the simulation run (if any). For GUI mode, the number before
 	 * settings files (if given) is the run index to use for that run.
 	 * @param args Command line arguments
@@ -51,6 +61,8 @@ public class DTNSim {
 		String confFiles[];
 		int firstConfIndex = 0;
 		int guiIndex = 0;
+		boolean parallelMode = false;
+		int nrofParallel = 1;
 
 		/* set US locale to parse decimals in consistent way */
 		java.util.Locale.setDefault(java.util.Locale.US);
@@ -65,6 +77,11 @@ public class DTNSim {
                     nrofRuns = parseNrofRuns(args[1]);
                     firstConfIndex = 2;
                 }
+				if (args.length > 3 && args[2].equals(PARALLEL_FLAG)) {
+					parallelMode = true;
+					nrofParallel = parseNrofParallel(args[3]);
+					firstConfIndex = 4;
+				}
 			}
 			else { /* GUI mode */
 				try { /* is there a run index for the GUI mode ? */
@@ -83,7 +100,7 @@ public class DTNSim {
 
 		boolean use_default = false;
 		for (int i = firstConfIndex; i < confFiles.length; ++i) {
-			if (confFiles[i].equals(DEF_SETTINGS_FILE)) {
+			if (new File(confFiles[i]).getName().equals(DEF_SETTINGS_FILE)) {
 				use_default = true;
 				break;
 			}
@@ -92,6 +109,18 @@ public class DTNSim {
 			System.out.println("Compatibility warning: starting simulation without loading '" + DEF_SETTINGS_FILE + "'.");
 		initSettings(confFiles, firstConfIndex);
 
+		/* own VMs and run directories also for a single simultaneous run */
+		if (parallelMode) {
+			List<String> runConfFiles = new ArrayList<String>();
+			for (int i=firstConfIndex; i<confFiles.length; i++) {
+				runConfFiles.add(confFiles[i]);
+			}
+			int nrofFailed = new BatchExecutor(runConfFiles, nrofRuns[0],
+					nrofRuns[1], nrofParallel,
+					new File(PARALLEL_OUTPUT_DIR)).run();
+			System.exit(nrofFailed > 0 ? 1 : 0);
+		}
+
 		if (batchMode) {
 			long startTime = System.currentTimeMillis();
 			for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
@@ -122,6 +151,9 @@ public class DTNSim {
 		} catch (Exception e) {
 			DeviceLog.e(null, "ERROR DTNSim", "Error shutting down thread pool!", e);
 		}
+
+		// write all pending metrics
+		Metrics.flush();
 		/**
 		* END AUTHENTICATION
 		* */
@@ -251,6 +283,31 @@ public class DTNSim {
 		return val;
 	}
 
+	/**
+	 * Parses the maximum number of parallel runs from a command line argument
+	 * @param arg The argument to parse
+	 * @return The number of parallel runs
+	 */
+	private static int parseNrofParallel(String arg) {
+		int val = -1;
+		try {
+			val = Integer.parseInt(arg);
+		} catch (NumberFormatException e) {
+			// handled below
+		}
+
+		if (val < 0) {
+			System.err.println("Invalid argument '" + arg + "' for" +
+					" number of parallel runs");
+			System.exit(-1);
+		}
+		if (val == 0) {
+			val = Runtime.getRuntime().availableProcessors();
+		}
+
+		return val;
+	}
+
 	/**
 	 * Prints text to stdout
 	 * @param txt Text to print
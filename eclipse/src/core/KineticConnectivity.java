@@ -0,0 +1,634 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import input.EventQueue;
+import input.ExternalEvent;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Event driven connectivity for hosts that move along straight path
+ * segments at constant speed. Instead of checking the ranges every update
+ * interval, the times when two interfaces enter and leave each other's range
+ * are solved from the hosts' current segments and processed as events by
+ * the {@link World}, so contact start and end times are exact.
+ * <P>
+ * The predictions of a host are only recomputed when its movement changes,
+ * i.e., when it has reached a waypoint or starts or stops waiting (detected
+ * after every movement update), and after a configurable horizon (which
+ * bounds the area that needs to be searched for contacts). Contacts that
+ * begin or end between reaching a waypoint and the end of that update
+ * interval are only seen at the end of the interval, just like with the
+ * interval based connectivity.
+ * </P><P>
+ * The predicted ranges are handed to the interfaces as their in-range sets
+ * (cf. {@link NetworkInterface#isWithinRange(NetworkInterface)}), so the
+ * regular interface updates keep the connections consistent with the
+ * predictions. Scan intervals and radio activeness are still honored by the
+ * interfaces when the connections are created.
+ * </P>
+ */
+public class KineticConnectivity implements EventQueue {
+	/** host is waiting or its movement is not active */
+	private static final int STATIONARY = 0;
+	/** host moves towards its destination */
+	private static final int MOVING = 1;
+	/** host gets a new waypoint during the next movement update */
+	private static final int UNKNOWN = 2;
+
+	private final List<DTNHost> hosts;
+	private final double updateInterval;
+	private final double horizon;
+
+	/* all interfaces of all hosts */
+	private final NetworkInterface[] interfaces;
+	/** index of the host of every interface */
+	private final int[] hostOf;
+	/** interface type of every interface (only same types connect) */
+	private final int[] typeOf;
+	private final double[] ranges;
+	private final List<Set<NetworkInterface>> inRange;
+	private final Map<NetworkInterface, Integer> indices;
+	/** interfaces of host h are [firstInterface[h], firstInterface[h+1]) */
+	private final int[] firstInterface;
+
+	/* current linear movement of every host: x0 + vx * (t - t0) */
+	private final double[] x0, y0, t0, vx, vy;
+	/** time when the host reaches its destination */
+	private final double[] arrival;
+	/** time until which the contacts of the host have been predicted */
+	private final double[] horizonEnd;
+	/** incremented whenever the predictions of a host become invalid */
+	private final int[] stamps;
+
+	/* movement state the predictions are based on */
+	private final int[] state;
+	private final double[] destX, destY, speeds, nextTimeToMove;
+	private final boolean[] changed;
+
+	/* positions of the hosts at indexTime, bucketed by cells */
+	private final double[] indexX, indexY;
+	private final Map<Long, List<Integer>> cells;
+	private double indexTime;
+	private double cellSize;
+	private double maxRange;
+	private double maxSpeed;
+
+	private final PriorityQueue<ContactEvent> events;
+	private final PriorityQueue<Recheck> rechecks;
+	private long nextSequence = 0;
+	/** range version the in-range sets belong to (-1 before first sync) */
+	private int rangeVersion = -1;
+
+	/**
+	 * Creates connectivity predictions for the given hosts.
+	 * @param hosts The hosts (indexed by their network address)
+	 * @param updateInterval The update interval of the world
+	 * @param horizon The maximum time the contacts are predicted ahead
+	 */
+	public KineticConnectivity(List<DTNHost> hosts, double updateInterval,
+			double horizon) {
+		this.hosts = hosts;
+		this.updateInterval = updateInterval;
+		this.horizon = horizon;
+
+		int nrofHosts = hosts.size();
+		List<NetworkInterface> all = new ArrayList<NetworkInterface>();
+		this.firstInterface = new int[nrofHosts + 1];
+		for (int h=0; h<nrofHosts; h++) {
+			this.firstInterface[h] = all.size();
+			all.addAll(hosts.get(h).getInterfaces());
+		}
+		this.firstInterface[nrofHosts] = all.size();
+
+		int n = all.size();
+		this.interfaces = all.toArray(new NetworkInterface[n]);
+		this.hostOf = new int[n];
+		this.typeOf = new int[n];
+		this.ranges = new double[n];
+		this.inRange = new ArrayList<Set<NetworkInterface>>(n);
+		this.indices = new IdentityHashMap<NetworkInterface, Integer>();
+		Map<String, Integer> types = new HashMap<String, Integer>();
+		for (int h=0; h<nrofHosts; h++) {
+			for (int k=this.firstInterface[h]; k<this.firstInterface[h+1];
+					k++) {
+				String type = this.interfaces[k].getInterfaceType();
+				Integer id = types.get(type);
+				if (id == null) {
+					id = types.size();
+					types.put(type, id);
+				}
+				this.hostOf[k] = h;
+				this.typeOf[k] = id;
+				this.ranges[k] = -1;
+				this.inRange.add(new HashSet<NetworkInterface>());
+				this.indices.put(this.interfaces[k], k);
+			}
+		}
+
+		this.x0 = new double[nrofHosts];
+		this.y0 = new double[nrofHosts];
+		this.t0 = new double[nrofHosts];
+		this.vx = new double[nrofHosts];
+		this.vy = new double[nrofHosts];
+		this.arrival = new double[nrofHosts];
+		this.horizonEnd = new double[nrofHosts];
+		this.stamps = new int[nrofHosts];
+		this.state = new int[nrofHosts];
+		this.destX = new double[nrofHosts];
+		this.destY = new double[nrofHosts];
+		this.speeds = new double[nrofHosts];
+		this.nextTimeToMove = new double[nrofHosts];
+		this.changed = new boolean[nrofHosts];
+		this.indexX = new double[nrofHosts];
+		this.indexY = new double[nrofHosts];
+		this.cells = new HashMap<Long, List<Integer>>();
+
+		this.events = new PriorityQueue<ContactEvent>(11,
+				new Comparator<ContactEvent>() {
+			public int compare(ContactEvent e1, ContactEvent e2) {
+				int c = Double.compare(e1.getTime(), e2.getTime());
+				return c != 0 ? c : Long.compare(e1.sequence, e2.sequence);
+			}
+		});
+		this.rechecks = new PriorityQueue<Recheck>(11,
+				new Comparator<Recheck>() {
+			public int compare(Recheck r1, Recheck r2) {
+				int c = Double.compare(r1.time, r2.time);
+				return c != 0 ? c : Long.compare(r1.sequence, r2.sequence);
+			}
+		});
+	}
+
+	/**
+	 * Brings the predictions up to date if any host has moved or any range
+	 * has changed since the last call. Must be called after the hosts have
+	 * been moved and before they are updated.
+	 */
+	public void update() {
+		if (this.rangeVersion == NetworkInterface.getRangeVersion()) {
+			return;
+		}
+
+		double now = SimClock.getTime();
+		boolean anyChanged = false;
+		for (int h=0, n=this.hosts.size(); h<n; h++) {
+			this.changed[h] = updateMovement(h, now);
+			anyChanged |= this.changed[h];
+		}
+
+		if (anyChanged) {
+			buildIndex(now);
+			for (int h=0, n=this.hosts.size(); h<n; h++) {
+				if (this.changed[h]) {
+					this.stamps[h]++;
+					this.horizonEnd[h] = (this.state[h] == MOVING ?
+							now + this.horizon : Double.MAX_VALUE);
+				}
+			}
+			for (int h=0, n=this.hosts.size(); h<n; h++) {
+				if (this.changed[h]) {
+					predict(h, now, true);
+					scheduleRecheck(h);
+				}
+			}
+		}
+
+		for (int k=0; k<this.interfaces.length; k++) {
+			this.interfaces[k].setInRange(this.inRange.get(k));
+		}
+		this.rangeVersion = NetworkInterface.getRangeVersion();
+	}
+
+	/**
+	 * Updates the movement of a host from its current state.
+	 * @param h Index of the host
+	 * @param now Current time
+	 * @return True if the movement (or a range) has changed and the
+	 * predictions of the host need to be recomputed
+	 */
+	private boolean updateMovement(int h, double now) {
+		DTNHost host = this.hosts.get(h);
+		Coord loc = host.getLocation();
+		Coord dest = host.getDestination();
+		double speed = host.getSpeed();
+		double next = host.getNextTimeToMove();
+
+		int newState;
+		double distance = 0;
+		if (!host.isMovementActive() || now < next) {
+			newState = STATIONARY;
+		}
+		else if (dest == null || speed <= 0 ||
+				(distance = loc.distance(dest)) == 0) {
+			newState = UNKNOWN;
+		}
+		else {
+			newState = MOVING;
+		}
+
+		boolean rangeChanged = false;
+		for (int k=this.firstInterface[h]; k<this.firstInterface[h+1]; k++) {
+			double range = this.interfaces[k].getTransmitRange();
+			if (range != this.ranges[k]) {
+				this.ranges[k] = range;
+				rangeChanged = true;
+			}
+		}
+
+		if (this.stamps[h] > 0 && this.state[h] != UNKNOWN &&
+				newState == this.state[h]) {
+			if (newState == STATIONARY && next == this.nextTimeToMove[h]) {
+				return rangeChanged;
+			}
+			if (newState == MOVING && speed == this.speeds[h] &&
+					dest.getX() == this.destX[h] &&
+					dest.getY() == this.destY[h]) {
+				return rangeChanged;
+			}
+		}
+
+		this.state[h] = newState;
+		this.nextTimeToMove[h] = next;
+		this.speeds[h] = speed;
+		this.destX[h] = (dest != null ? dest.getX() : 0);
+		this.destY[h] = (dest != null ? dest.getY() : 0);
+		this.x0[h] = loc.getX();
+		this.y0[h] = loc.getY();
+		this.t0[h] = now;
+
+		if (newState == MOVING) {
+			this.vx[h] = speed * (dest.getX() - loc.getX()) / distance;
+			this.vy[h] = speed * (dest.getY() - loc.getY()) / distance;
+			this.arrival[h] = now + distance / speed;
+		}
+		else {
+			this.vx[h] = 0;
+			this.vy[h] = 0;
+			this.arrival[h] = (newState == UNKNOWN ? now : Double.MAX_VALUE);
+		}
+
+		return true;
+	}
+
+	private double getX(int h, double time) {
+		return this.x0[h] + this.vx[h] * (time - this.t0[h]);
+	}
+
+	private double getY(int h, double time) {
+		return this.y0[h] + this.vy[h] * (time - this.t0[h]);
+	}
+
+	/**
+	 * Returns the time until which the current movement of a host and its
+	 * predictions are valid.
+	 */
+	private double getEnd(int h) {
+		return Math.min(this.arrival[h], this.horizonEnd[h]);
+	}
+
+	/**
+	 * Buckets the current positions of all hosts.
+	 * @param now Current time
+	 */
+	private void buildIndex(double now) {
+		this.maxRange = 0;
+		for (double range : this.ranges) {
+			this.maxRange = Math.max(this.maxRange, range);
+		}
+		this.cellSize = (this.maxRange > 0 ? this.maxRange : 1);
+		this.maxSpeed = 0;
+		this.cells.clear();
+
+		for (int h=0, n=this.hosts.size(); h<n; h++) {
+			this.indexX[h] = getX(h, now);
+			this.indexY[h] = getY(h, now);
+			this.maxSpeed = Math.max(this.maxSpeed, Math.sqrt(
+					this.vx[h] * this.vx[h] + this.vy[h] * this.vy[h]));
+
+			long key = cellKey(cellIndex(this.indexX[h]),
+					cellIndex(this.indexY[h]));
+			List<Integer> cell = this.cells.get(key);
+			if (cell == null) {
+				cell = new ArrayList<Integer>();
+				this.cells.put(key, cell);
+			}
+			cell.add(h);
+		}
+		this.indexTime = now;
+	}
+
+	private long cellIndex(double value) {
+		return (long)Math.floor(value / this.cellSize);
+	}
+
+	private static long cellKey(long x, long y) {
+		return (x << 32) ^ (y & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Predicts the contacts of a host with all hosts that can come within
+	 * range before the end of its current movement.
+	 * @param h Index of the host
+	 * @param now Time from which on the contacts are predicted
+	 * @param sync If true, the in-range sets are set to the current state
+	 * (only when the world is at <CODE>now</CODE>)
+	 */
+	private void predict(int h, double now, boolean sync) {
+		double end = getEnd(h);
+
+		if (sync) {
+			/* drop stale in-range interfaces that are not near anymore */
+			for (int k=this.firstInterface[h]; k<this.firstInterface[h+1];
+					k++) {
+				List<Integer> stale = new ArrayList<Integer>();
+				for (NetworkInterface ni : this.inRange.get(k)) {
+					int m = getInterfaceIndex(ni);
+					if (!isWithinRange(k, m, now)) {
+						stale.add(m);
+					}
+				}
+				for (int m : stale) {
+					setInRange(k, m, false);
+				}
+			}
+		}
+
+		/* the other host moves at most maxSpeed until the end */
+		double radius = this.maxRange + 2 * this.maxSpeed *
+			Math.max(0, Math.min(end, now + this.horizon) - this.indexTime);
+		long span = (long)Math.ceil(radius / this.cellSize);
+		long cx = cellIndex(this.indexX[h]);
+		long cy = cellIndex(this.indexY[h]);
+
+		if ((2 * span + 1) * (2 * span + 1) >= this.cells.size()) {
+			for (int g=0, n=this.hosts.size(); g<n; g++) {
+				predictPair(h, g, now, sync);
+			}
+			return;
+		}
+
+		for (long x=cx-span; x<=cx+span; x++) {
+			for (long y=cy-span; y<=cy+span; y++) {
+				List<Integer> cell = this.cells.get(cellKey(x, y));
+				if (cell == null) {
+					continue;
+				}
+				for (int g : cell) {
+					predictPair(h, g, now, sync);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Predicts the contacts between the interfaces of two hosts.
+	 */
+	private void predictPair(int h, int g, double now, boolean sync) {
+		if (g == h) {
+			return;
+		}
+		/* pairs of hosts that both changed are handled once */
+		if (sync && this.changed[g] && g < h) {
+			return;
+		}
+		/* the other host's predictions are renewed anyway */
+		if (!sync && getEnd(g) <= now) {
+			return;
+		}
+
+		double end = Math.min(getEnd(h), getEnd(g));
+		for (int k=this.firstInterface[h]; k<this.firstInterface[h+1]; k++) {
+			for (int m=this.firstInterface[g]; m<this.firstInterface[g+1];
+					m++) {
+				if (this.typeOf[k] != this.typeOf[m]) {
+					continue;
+				}
+				if (sync) {
+					setInRange(k, m, isWithinRange(k, m, now));
+				}
+				if (end > now) {
+					predictInterfaces(k, m, now, end);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Solves when two interfaces enter and leave each other's range within
+	 * (from, to] and schedules the events.
+	 */
+	private void predictInterfaces(int k, int m, double from, double to) {
+		int h = this.hostOf[k];
+		int g = this.hostOf[m];
+		double dvx = this.vx[g] - this.vx[h];
+		double dvy = this.vy[g] - this.vy[h];
+		double a = dvx * dvx + dvy * dvy;
+		if (a == 0) {
+			return; /* distance does not change */
+		}
+
+		double dx = getX(g, from) - getX(h, from);
+		double dy = getY(g, from) - getY(h, from);
+		double range = Math.min(this.ranges[k], this.ranges[m]);
+		double b = 2 * (dx * dvx + dy * dvy);
+		double c = dx * dx + dy * dy - range * range;
+		double discriminant = b * b - 4 * a * c;
+		if (discriminant < 0) {
+			return; /* never within range */
+		}
+
+		/* within range between the roots */
+		double root = Math.sqrt(discriminant);
+		double enter = from + (-b - root) / (2 * a);
+		double leave = from + (-b + root) / (2 * a);
+		if (enter > from && enter <= to) {
+			schedule(k, m, true, enter);
+		}
+		if (leave > from && leave <= to) {
+			schedule(k, m, false, leave);
+		}
+	}
+
+	private boolean isWithinRange(int k, int m, double time) {
+		int h = this.hostOf[k];
+		int g = this.hostOf[m];
+		double dx = getX(g, time) - getX(h, time);
+		double dy = getY(g, time) - getY(h, time);
+		double range = Math.min(this.ranges[k], this.ranges[m]);
+		return dx * dx + dy * dy <= range * range;
+	}
+
+	private void setInRange(int k, int m, boolean within) {
+		if (within) {
+			this.inRange.get(k).add(this.interfaces[m]);
+			this.inRange.get(m).add(this.interfaces[k]);
+		}
+		else {
+			this.inRange.get(k).remove(this.interfaces[m]);
+			this.inRange.get(m).remove(this.interfaces[k]);
+		}
+	}
+
+	/**
+	 * Returns the index of an interface (which must be in an in-range set).
+	 */
+	private int getInterfaceIndex(NetworkInterface ni) {
+		return this.indices.get(ni);
+	}
+
+	private void schedule(int k, int m, boolean up, double time) {
+		this.events.add(new ContactEvent(k, m, up, time,
+				this.stamps[this.hostOf[k]], this.stamps[this.hostOf[m]],
+				this.nextSequence++));
+	}
+
+	private void scheduleRecheck(int h) {
+		if (this.horizonEnd[h] < this.arrival[h]) {
+			this.rechecks.add(new Recheck(h, this.horizonEnd[h],
+					this.stamps[h], this.nextSequence++));
+		}
+	}
+
+	/**
+	 * Extends the predictions of the hosts whose horizon ends before the
+	 * given time. Only adds events, the in-range sets are not touched.
+	 * @param until Time until which the rechecks are done
+	 */
+	private void processRechecks(double until) {
+		while (!this.rechecks.isEmpty() &&
+				this.rechecks.peek().time <= until) {
+			Recheck r = this.rechecks.poll();
+			int h = r.host;
+			if (r.stamp != this.stamps[h] || r.time != this.horizonEnd[h]) {
+				continue; /* recomputed in the meantime */
+			}
+
+			this.horizonEnd[h] = r.time + this.horizon;
+			predict(h, r.time, false);
+			scheduleRecheck(h);
+		}
+	}
+
+	private boolean isValid(ContactEvent e) {
+		return e.fromStamp == this.stamps[this.hostOf[e.from]] &&
+			e.toStamp == this.stamps[this.hostOf[e.to]];
+	}
+
+	/**
+	 * Returns the time of the next contact event (after bringing the
+	 * predictions up to date).
+	 */
+	public double nextEventsTime() {
+		update();
+		processRechecks(SimClock.getTime() + this.updateInterval);
+		while (!this.events.isEmpty() && !isValid(this.events.peek())) {
+			this.events.poll();
+		}
+
+		if (this.events.isEmpty()) {
+			return Double.MAX_VALUE;
+		}
+		return this.events.peek().getTime();
+	}
+
+	/**
+	 * Returns the next contact event.
+	 */
+	public ExternalEvent nextEvent() {
+		nextEventsTime();
+		if (this.events.isEmpty()) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+		return this.events.poll();
+	}
+
+	/**
+	 * Applies a contact event.
+	 */
+	private void process(ContactEvent e) {
+		update();
+		if (!isValid(e)) {
+			return;
+		}
+
+		NetworkInterface from = this.interfaces[e.from];
+		NetworkInterface to = this.interfaces[e.to];
+		setInRange(e.from, e.to, e.up);
+		if (!e.up) {
+			from.destroyConnection(to);
+		}
+		else if (from.getHost().isRadioActive()) {
+			from.connect(to);
+		}
+	}
+
+	/**
+	 * Two interfaces enter or leave each other's range.
+	 */
+	@SuppressWarnings("serial")
+	private class ContactEvent extends ExternalEvent {
+		private final int from;
+		private final int to;
+		private final boolean up;
+		private final int fromStamp;
+		private final int toStamp;
+		private final long sequence;
+
+		public ContactEvent(int from, int to, boolean up, double time,
+				int fromStamp, int toStamp, long sequence) {
+			super(time);
+			this.from = from;
+			this.to = to;
+			this.up = up;
+			this.fromStamp = fromStamp;
+			this.toStamp = toStamp;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public void processEvent(World world) {
+			process(this);
+		}
+
+		@Override
+		public int[] getHostAddresses() {
+			return new int[] {interfaces[from].getHost().getAddress(),
+					interfaces[to].getHost().getAddress()};
+		}
+
+		@Override
+		public String toString() {
+			return "KINETIC " + (up ? "up" : "down") + " @" + this.time +
+				" " + interfaces[from] + "<->" + interfaces[to];
+		}
+	}
+
+	/**
+	 * End of the prediction horizon of a host.
+	 */
+	private static class Recheck {
+		private final int host;
+		private final double time;
+		private final int stamp;
+		private final long sequence;
+
+		public Recheck(int host, double time, int stamp, long sequence) {
+			this.host = host;
+			this.time = time;
+			this.stamp = stamp;
+			this.sequence = sequence;
+		}
+	}
+}
@@ -9,6 +9,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A message that is created at a node or passed between nodes.
@@ -20,6 +22,8 @@ public class Message implements Comparable<Message> {
 	private DTNHost to;
 	/** Identifier of the message */
 	private String id;
+	/** Handle of the message identifier (see {@link #getHandle()}) */
+	private int handle;
 	/** Size of the message (bytes) */
 	private int size;
 	/** List of nodes this message has passed */
@@ -28,6 +32,12 @@ public class Message implements Comparable<Message> {
 	private static int nextUniqueId;
 	/** Unique ID of this message */
 	private int uniqueId;
+	/** Handles of all the message identifiers seen so far. Messages can be
+	 * created by several threads (e.g., applications), so the table is
+	 * concurrent. */
+	private static ConcurrentHashMap<String, Integer> handles;
+	/** Next handle to be given */
+	private static AtomicInteger nextHandle;
 	/** The time this message was received */
 	private double timeReceived;
 	/** The time when this message was created */
@@ -66,6 +76,7 @@ public class Message implements Comparable<Message> {
 		this.from = from;
 		this.to = to;
 		this.id = id;
+		this.handle = registerHandle(id);
 		this.size = size;
 		this.path = new ArrayList<DTNHost>();
 		this.uniqueId = nextUniqueId;
@@ -92,6 +103,7 @@ public class Message implements Comparable<Message> {
 		this.from = m.from;
 		this.to = m.to;
 		this.id = m.id;
+		this.handle = m.handle;
 		this.size = m.size;
 		this.path = new ArrayList<DTNHost>(m.path);
 		this.uniqueId = nextUniqueId;
@@ -138,6 +150,48 @@ public class Message implements Comparable<Message> {
 		return this.id;
 	}
 
+	/**
+	 * Returns the handle of the message's ID. Handles are small non-negative
+	 * integers that are given to IDs when they are first seen, so all the
+	 * messages with the same ID (e.g., replicates) have the same handle.
+	 * They can be used as keys of primitive maps and bit sets instead of the
+	 * IDs. Messages may be created by several threads, so the handles
+	 * should not be used for ordering anything.
+	 * @return The handle of the message ID
+	 */
+	public int getHandle() {
+		return this.handle;
+	}
+
+	/**
+	 * Returns the handle of a message ID
+	 * @param id The message ID
+	 * @return The handle of the ID or -1 if no message has had the ID
+	 * @see #getHandle()
+	 */
+	public static int getHandle(String id) {
+		Integer handle = handles.get(id);
+		return handle == null ? -1 : handle;
+	}
+
+	/**
+	 * Returns the handle of a message ID, giving a new handle to an ID that
+	 * hasn't been seen before
+	 * @param id The message ID
+	 * @return The handle of the ID
+	 */
+	private static int registerHandle(String id) {
+		Integer handle = handles.get(id);
+		if (handle == null) {
+			Integer newHandle = nextHandle.getAndIncrement();
+			handle = handles.putIfAbsent(id, newHandle);
+			if (handle == null) {
+				handle = newHandle; // this thread registered the ID
+			}
+		}
+		return handle;
+	}
+
 	/**
 	 * Returns an ID that is unique per message instance
 	 * (different for replicates too)
@@ -195,6 +249,20 @@ public class Message implements Comparable<Message> {
 		}
 	}
 
+	/**
+	 * Returns the simulation time when the TTL of the message reaches zero
+	 * or Double.MAX_VALUE if the TTL is infinite. A message with an earlier
+	 * expiry time never has a bigger TTL than a message with a later one.
+	 * @return The expiry time
+	 */
+	public double getExpiryTime() {
+		if (this.initTtl == INFINITE_TTL) {
+			return Double.MAX_VALUE;
+		}
+		else {
+			return this.timeCreated + this.initTtl * 60.0;
+		}
+	}
 
 	/**
 	 * Sets the initial TTL (time-to-live) for this message. The initial
@@ -352,6 +420,8 @@ public class Message implements Comparable<Message> {
 	 */
 	public static void reset() {
 		nextUniqueId = 0;
+		handles = new ConcurrentHashMap<String, Integer>();
+		nextHandle = new AtomicInteger();
 	}
 
 	/**
@@ -378,6 +448,7 @@ public class Message implements Comparable<Message> {
 	
 	public void setId(String id){
 		this.id = id;
+		this.handle = registerHandle(id);
 	}
 	
 	public void setTo(DTNHost to){
@@ -10,6 +10,7 @@ import interfaces.ConnectivityOptimizer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 
 import routing.util.EnergyModel;
 
@@ -50,6 +51,9 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	private static final int CON_DOWN = 2;
 
 	private static Random rng;
+	/** incremented whenever a location or a range changes; invalidates the
+	 * in-range sets computed by the parallel update phase */
+	private static int rangeVersion;
 	protected DTNHost host = null;
 
 	protected String interfacetype;
@@ -60,6 +64,14 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	protected double oldTransmitRange;
 	protected int transmitSpeed;
 	protected ConnectivityOptimizer optimizer = null;
+	/** tries to connect to every visited interface (cf. {@link
+	 * ConnectivityOptimizer#forEachNearInterface}) */
+	protected final ConnectivityOptimizer.InterfaceVisitor connector =
+		new ConnectivityOptimizer.InterfaceVisitor() {
+			public void visit(NetworkInterface ni) {
+				connect(ni);
+			}
+		};
 	/** scanning interval, or 0.0 if n/a */
 	private double scanInterval;
 	private double lastScanTime;
@@ -70,6 +82,11 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	private int activenessJitterMax;
 	/** this interface's activeness jitter value */
 	private int activenessJitterValue;
+	/** interfaces within range (computed in parallel, null if n/a) */
+	private Set<NetworkInterface> inRange = null;
+	private int inRangeVersion;
+	/** index of this interface in its connectivity optimizer (-1 if n/a) */
+	private int optimizerIndex = -1;
 
 	static {
 		DTNSim.registerForReset(NetworkInterface.class.getCanonicalName());
@@ -81,6 +98,22 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	public static void reset() {
 		rng = new Random(0);
+		rangeVersion = 0;
+	}
+
+	/**
+	 * Invalidates all in-range sets. Must be called whenever a host is moved.
+	 */
+	public static void invalidateRanges() {
+		rangeVersion++;
+	}
+
+	/**
+	 * Returns the current version of the locations and ranges
+	 * @return the current version of the locations and ranges
+	 */
+	public static int getRangeVersion() {
+		return rangeVersion;
 	}
 
 	/**
@@ -163,6 +196,22 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		}
 	}
 
+	/**
+	 * Returns the index of this interface in its connectivity optimizer
+	 * @return the index, or -1 if the interface has not been added
+	 */
+	public int getOptimizerIndex() {
+		return this.optimizerIndex;
+	}
+
+	/**
+	 * Sets the index of this interface in its connectivity optimizer
+	 * @param index The index, or -1 if the interface has been removed
+	 */
+	public void setOptimizerIndex(int index) {
+		this.optimizerIndex = index;
+	}
+
 	/**
 	 * Sets group-based settings for the network interface
 	 * @param s The settings object using the right group namespace
@@ -298,6 +347,31 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		return false;
 	}
 
+	/**
+	 * Returns the earliest sim time when an update of this interface can
+	 * change its connections, assuming that no host moves until then.
+	 * Changes can be due to transfers, activeness and scanning.
+	 * @return The time of the next possible change (the current time if an
+	 * update can change something right away)
+	 */
+	public double getNextChangeTime() {
+		double simTime = SimClock.getTime();
+		double next = Double.MAX_VALUE;
+
+		if (isTransferring()) {
+			return simTime;
+		}
+		if (ah != null) {
+			next = ah.getNextChangeTime(this.activenessJitterValue);
+		}
+		if (scanInterval > 0.0) {
+			next = Math.min(next, simTime < lastScanTime ? lastScanTime :
+				lastScanTime + scanInterval);
+		}
+
+		return next;
+	}
+
 	/**
 	 * Connects the interface to another interface.
 	 *
@@ -354,6 +428,21 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 * @return True if the interface is within range, false if not
 	 */
 	protected boolean isWithinRange(NetworkInterface anotherInterface) {
+		if (this.inRange != null && this.inRangeVersion == rangeVersion) {
+			return this.inRange.contains(anotherInterface);
+		}
+
+		return computeWithinRange(anotherInterface);
+	}
+
+	/**
+	 * Computes if another interface is within range (cf.
+	 * {@link #isWithinRange(NetworkInterface)}) without using the in-range
+	 * set. Safe to call concurrently as long as no host moves.
+	 * @param anotherInterface The another interface
+	 * @return True if the interface is within range, false if not
+	 */
+	boolean computeWithinRange(NetworkInterface anotherInterface) {
 		double smallerRange = anotherInterface.getTransmitRange();
 		double myRange = getTransmitRange();
 		if (myRange < smallerRange) {
@@ -364,6 +453,16 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 				anotherInterface.getHost().getLocation()) <= smallerRange;
 	}
 
+	/**
+	 * Sets all interfaces within range of this interface until the next
+	 * location or range change.
+	 * @param inRange The interfaces within range
+	 */
+	void setInRange(Set<NetworkInterface> inRange) {
+		this.inRange = inRange;
+		this.inRangeVersion = rangeVersion;
+	}
+
 	/**
 	 * Returns true if the given NetworkInterface is connected to this host.
 	 * @param netinterface The other NetworkInterface to check
@@ -436,6 +535,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		}
 		else if (key.equals(RANGE_ID)) {
 			this.transmitRange = (Double)newValue;
+			invalidateRanges();
 		}
 		else {
 			throw new SimError("Unexpected combus ID " + key);
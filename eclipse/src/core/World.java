@@ -6,12 +6,26 @@ package core;
 
 import input.EventQueue;
 import input.ExternalEvent;
+import input.ExternalEventsQueue;
+import input.MessageEventGenerator;
 import input.ScheduledUpdatesQueue;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * World contains all the nodes and is responsible for updating their
@@ -37,6 +51,69 @@ public class World {
 	 */
 	public static final String SIMULATE_CON_ONCE_S = "simulateConnectionsOnce";
 
+	/**
+	 * Should hosts be moved and their connectivity be computed by multiple
+	 * threads -setting id ({@value}). Boolean (true/false) variable. Only
+	 * the work that does not depend on the update order runs in parallel,
+	 * connection changes and router updates are still committed in the
+	 * (randomized) update order, so the results are identical to the
+	 * sequential updates. Default is false.
+	 */
+	public static final String PARALLEL_UPDATES_S = "parallelUpdates";
+	/**
+	 * Number of threads for the parallel updates -setting id ({@value}).
+	 * Default is the number of available processors.
+	 */
+	public static final String NROF_THREADS_S = "nrofThreads";
+	/**
+	 * Should the contacts be predicted from the hosts' path segments instead
+	 * of checking the ranges every update interval -setting id ({@value}).
+	 * Boolean (true/false) variable. Contacts start and end at their exact
+	 * times, so coarser update intervals can be used. Default is false.
+	 * @see KineticConnectivity
+	 */
+	public static final String KINETIC_CONTACTS_S = "kineticContacts";
+	/**
+	 * How far ahead (seconds) the contacts of a moving host are predicted
+	 * -setting id ({@value}). Longer horizons need to consider more hosts
+	 * per prediction. Default is {@link #DEF_KINETIC_HORIZON}.
+	 */
+	public static final String KINETIC_HORIZON_S = "kineticHorizon";
+	/** default prediction horizon ({@value}) */
+	public static final double DEF_KINETIC_HORIZON = 60;
+	/**
+	 * Should external events with the same time be processed together
+	 * -setting id ({@value}). Boolean (true/false) variable. If true, all
+	 * events of the same time are followed by a single host update, which
+	 * only includes the hosts the events concern (cf.
+	 * {@link ExternalEvent#getHostAddresses()}). Default is false (all hosts
+	 * are updated after every event).
+	 */
+	public static final String BATCH_EVENTS_S = "batchEvents";
+	/**
+	 * Should update intervals where nothing can change be skipped
+	 * -setting id ({@value}). Boolean (true/false) variable. If true, the
+	 * world skips the update intervals before the next event, movement,
+	 * transfer, activeness change, scan or TTL check of any host
+	 * (cf. {@link DTNHost#getNextChangeTime()}). The skipped intervals are
+	 * still reported to the update listeners, so the results are identical
+	 * to the fixed interval updates. Default is false.
+	 */
+	public static final String ADAPTIVE_STEPS_S = "adaptiveSteps";
+	/**
+	 * Maximum time (seconds) skipped by a single update -setting id
+	 * ({@value}). Default is {@link #DEF_MAX_STEP_SIZE}.
+	 */
+	public static final String MAX_STEP_SIZE_S = "maxStepSize";
+	/** default maximum step size ({@value}) */
+	public static final double DEF_MAX_STEP_SIZE = 60;
+	/** number of work items per thread of a parallel phase ({@value}) */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	/** threads shared by all worlds (null if not used yet) */
+	private static ExecutorService updateThreads = null;
+	private static int updateThreadCount = 0;
+
 	private int sizeX;
 	private int sizeY;
 	private List<EventQueue> eventQueues;
@@ -56,6 +133,35 @@ public class World {
 	/** Queue of scheduled update requests */
 	private ScheduledUpdatesQueue scheduledUpdates;
 	private boolean simulateConOnce;
+	/** number of threads for the parallel updates (0 for sequential updates) */
+	private int nrofThreads;
+	/** version of the in-range sets of the interfaces (-1 if not computed) */
+	private int rangesVersion = -1;
+	/** contact predictions (null if the ranges are checked every update) */
+	private KineticConnectivity kinetic = null;
+	/** should events with the same time be processed together */
+	private boolean batchEvents;
+	/** all event sources (scheduled updates first, then the event queues) */
+	private List<EventQueue> eventSources;
+	/** event sources with pending events, ordered by their next event */
+	private PriorityQueue<CalendarEntry> calendar;
+	/** current calendar entry of every event source */
+	private CalendarEntry[] calendarEntries;
+	/** indexes of the event sources whose next event can change without
+	 * the world knowing it (checked before every calendar lookup) */
+	private int[] polledSources;
+	/** index of the event source with the next event */
+	private int nextEventSource;
+	/** number of processed external events */
+	private long nrofProcessedEvents = 0;
+	/** maximum skipped time per update (0 if intervals are not skipped) */
+	private double maxStepSize;
+	/** end time of the simulation (intervals after it are not skipped) */
+	private double endTime;
+	/** have all hosts been updated since they last moved */
+	private boolean hostsSettled = false;
+	/** number of skipped update intervals */
+	private long nrofSkippedSteps = 0;
 
 	/**
 	 * Constructor.
@@ -75,8 +181,9 @@ public class World {
 		this.scheduledUpdates = new ScheduledUpdatesQueue();
 		this.isCancelled = false;
 
-		setNextEventQueue();
 		initSettings();
+		initCalendar();
+		setNextEventQueue();
 	}
 
 	/**
@@ -91,6 +198,46 @@ public class World {
 		}
 		simulateConOnce = s.getBoolean(SIMULATE_CON_ONCE_S, false);
 
+		this.nrofThreads = 0;
+		if (s.getBoolean(PARALLEL_UPDATES_S, false)) {
+			this.nrofThreads = s.getInt(NROF_THREADS_S,
+					Runtime.getRuntime().availableProcessors());
+			if (this.nrofThreads < 1) {
+				throw new SettingsError("Invalid number of threads (" +
+						this.nrofThreads + ") for setting " +
+						s.getFullPropertyName(NROF_THREADS_S));
+			}
+		}
+
+		if (s.getBoolean(KINETIC_CONTACTS_S, false) && simulateConnections &&
+				!simulateConOnce) {
+			double horizon = s.getDouble(KINETIC_HORIZON_S,
+					DEF_KINETIC_HORIZON);
+			if (horizon <= 0) {
+				throw new SettingsError("Invalid horizon (" + horizon +
+						") for setting " +
+						s.getFullPropertyName(KINETIC_HORIZON_S));
+			}
+			this.kinetic = new KineticConnectivity(this.hosts,
+					this.updateInterval, horizon);
+			this.eventQueues = new ArrayList<EventQueue>(this.eventQueues);
+			this.eventQueues.add(this.kinetic);
+		}
+
+		this.batchEvents = s.getBoolean(BATCH_EVENTS_S, false);
+
+		this.maxStepSize = 0;
+		if (s.getBoolean(ADAPTIVE_STEPS_S, false)) {
+			this.maxStepSize = s.getDouble(MAX_STEP_SIZE_S, DEF_MAX_STEP_SIZE);
+			if (this.maxStepSize <= 0) {
+				throw new SettingsError("Invalid step size (" +
+						this.maxStepSize + ") for setting " +
+						s.getFullPropertyName(MAX_STEP_SIZE_S));
+			}
+			this.endTime = new Settings(SimScenario.SCENARIO_NS).getDouble(
+					SimScenario.END_TIME_S, Double.MAX_VALUE);
+		}
+
 		if(randomizeUpdates) {
 			// creates the update order array that can be shuffled
 			this.updateOrder = new ArrayList<DTNHost>(this.hosts);
@@ -123,23 +270,95 @@ public class World {
 	}
 
 	/**
-	 * Goes through all event Queues and sets the
-	 * event queue that has the next event.
+	 * Puts all event sources to the event calendar.
 	 */
-	public void setNextEventQueue() {
-		EventQueue nextQueue = scheduledUpdates;
-		double earliest = nextQueue.nextEventsTime();
-
-		/* find the queue that has the next event */
-		for (EventQueue eq : eventQueues) {
-			if (eq.nextEventsTime() < earliest){
-				nextQueue = eq;
-				earliest = eq.nextEventsTime();
+	private void initCalendar() {
+		this.eventSources = new ArrayList<EventQueue>();
+		this.eventSources.add(this.scheduledUpdates);
+		this.eventSources.addAll(this.eventQueues);
+
+		this.calendarEntries = new CalendarEntry[this.eventSources.size()];
+		this.calendar = new PriorityQueue<CalendarEntry>(
+				this.eventSources.size());
+		List<Integer> polled = new ArrayList<Integer>();
+		for (int i=0; i<this.eventSources.size(); i++) {
+			reschedule(i);
+			if (!isSelfContained(this.eventSources.get(i))) {
+				polled.add(i);
+			}
+		}
+		this.polledSources = new int[polled.size()];
+		for (int i=0; i<polled.size(); i++) {
+			this.polledSources[i] = polled.get(i);
+		}
+	}
+
+	/**
+	 * Returns true if the next event time of an event source changes only
+	 * when its events are consumed or when the world itself changes it
+	 * (and reschedules the source). The events of other sources (e.g.,
+	 * {@link input.DTN2Events}) can be added from outside at any time.
+	 * @param source The event source
+	 * @return true if the source does not need to be polled
+	 */
+	private boolean isSelfContained(EventQueue source) {
+		return source instanceof ScheduledUpdatesQueue ||
+			source instanceof ExternalEventsQueue ||
+			source instanceof MessageEventGenerator ||
+			source instanceof KineticConnectivity;
+	}
+
+	/**
+	 * Updates the calendar entries of the event sources whose next event
+	 * may have changed from outside since they were last checked.
+	 */
+	private void pollSources() {
+		for (int source : this.polledSources) {
+			if (this.eventSources.get(source).nextEventsTime() !=
+					this.calendarEntries[source].time) {
+				reschedule(source);
 			}
 		}
+	}
+
+	/**
+	 * Updates the calendar entry of an event source after its next event
+	 * has been consumed or changed.
+	 * @param source Index of the event source
+	 */
+	private void reschedule(int source) {
+		CalendarEntry entry = new CalendarEntry(source,
+				this.eventSources.get(source).nextEventsTime());
+		this.calendarEntries[source] = entry;
+		if (entry.time < Double.MAX_VALUE) {
+			this.calendar.add(entry);
+		}
+	}
+
+	/**
+	 * Sets the event queue that has the next event. On equal times, the
+	 * scheduled updates come first and then the event queues in their
+	 * order.
+	 */
+	public void setNextEventQueue() {
+		pollSources();
 
-		this.nextEventQueue = nextQueue;
-		this.nextQueueEventTime = earliest;
+		/* drop entries that have been replaced in the meantime */
+		while (!this.calendar.isEmpty() && this.calendarEntries[
+				this.calendar.peek().source] != this.calendar.peek()) {
+			this.calendar.poll();
+		}
+
+		if (this.calendar.isEmpty()) {
+			this.nextEventSource = 0;
+			this.nextEventQueue = this.scheduledUpdates;
+			this.nextQueueEventTime = Double.MAX_VALUE;
+		}
+		else {
+			this.nextEventSource = this.calendar.peek().source;
+			this.nextEventQueue = this.eventSources.get(this.nextEventSource);
+			this.nextQueueEventTime = this.calendar.peek().time;
+		}
 	}
 
 	/**
@@ -148,23 +367,55 @@ public class World {
 	 * this method is called and after one update interval.
 	 */
 	public void update () {
-		double runUntil = SimClock.getTime() + this.updateInterval;
-
+		rescheduleKinetic();
 		setNextEventQueue();
+		if (this.maxStepSize > 0 && this.hostsSettled) {
+			skipIdleSteps();
+		}
+
+		double runUntil = SimClock.getTime() + this.updateInterval;
+		double moveTime = SimClock.getTime();
 
 		/* process all events that are due until next interval update */
 		while (this.nextQueueEventTime <= runUntil) {
-			simClock.setTime(this.nextQueueEventTime);
-			ExternalEvent ee = this.nextEventQueue.nextEvent();
-			ee.processEvent(this);
-			updateHosts(); // update all hosts after every event
+			double time = this.nextQueueEventTime;
+			BitSet concerned = (this.batchEvents ? new BitSet() : null);
+			simClock.setTime(time);
+
+			do {
+				if (this.nextEventQueue != this.kinetic) {
+					moveTime = time;
+				}
+				ExternalEvent ee = this.nextEventQueue.nextEvent();
+				ee.processEvent(this);
+				this.nrofProcessedEvents++;
+				concerned = addHostAddresses(ee, concerned);
+
+				reschedule(this.nextEventSource);
+				setNextEventQueue();
+			} while (this.batchEvents && this.nextQueueEventTime == time);
+
+			if (concerned == null) {
+				updateHosts(); // update all hosts after every event
+			}
+			else {
+				updateHosts(concerned);
+			}
+			rescheduleKinetic();
 			setNextEventQueue();
 		}
 
+		/* predicted contacts must not change the movement's timing */
+		simClock.setTime(moveTime);
 		moveHosts(this.updateInterval);
 		simClock.setTime(runUntil);
 
+		if (this.kinetic != null) {
+			this.kinetic.update();
+			rescheduleKinetic();
+		}
 		updateHosts();
+		this.hostsSettled = true;
 
 		/* inform all update listeners */
 		for (UpdateListener ul : this.updateListeners) {
@@ -172,12 +423,48 @@ public class World {
 		}
 	}
 
+	/**
+	 * Skips the update intervals where no event is due and no host can
+	 * change (i.e., moving and updating the hosts would have no effect). The
+	 * update order is shuffled and the update listeners are informed for
+	 * every skipped interval just like in a full update.
+	 */
+	private void skipIdleSteps() {
+		double next = SimClock.getTime() + this.updateInterval;
+		double until = Math.min(this.nextQueueEventTime,
+				SimClock.getTime() + this.maxStepSize);
+		until = Math.min(until, this.endTime);
+
+		for (int i=0, n = hosts.size(); i < n && next < until; i++) {
+			until = Math.min(until, hosts.get(i).getNextChangeTime());
+		}
+
+		while (next < until && !this.isCancelled) {
+			simClock.setTime(next);
+			if (this.updateOrder != null) {
+				Collections.shuffle(this.updateOrder,
+						new Random(SimClock.getIntTime()));
+			}
+			for (UpdateListener ul : this.updateListeners) {
+				ul.updated(this.hosts);
+			}
+			this.nrofSkippedSteps++;
+			next = SimClock.getTime() + this.updateInterval;
+		}
+	}
+
 	/**
 	 * Updates all hosts (calls update for every one of them). If update
 	 * order randomizing is on (updateOrder array is defined), the calls
 	 * are made in random order.
 	 */
 	private void updateHosts() {
+		if (this.nrofThreads > 0 && simulateConnections &&
+				this.kinetic == null &&
+				this.rangesVersion != NetworkInterface.getRangeVersion()) {
+			computeRanges();
+		}
+
 		if (this.updateOrder == null) { // randomizing is off
 			for (int i=0, n = hosts.size();i < n; i++) {
 				if (this.isCancelled) {
@@ -204,15 +491,234 @@ public class World {
 		}
 	}
 
+	/**
+	 * Adds the addresses of the hosts an event concerns to a set.
+	 * @param ee The event
+	 * @param concerned The addresses so far (null if all hosts)
+	 * @return The addresses, or null if the event concerns all hosts
+	 */
+	private BitSet addHostAddresses(ExternalEvent ee, BitSet concerned) {
+		if (concerned == null) {
+			return null;
+		}
+
+		int[] addresses = ee.getHostAddresses();
+		if (addresses == null) {
+			return null;
+		}
+		for (int address : addresses) {
+			concerned.set(address);
+		}
+		return concerned;
+	}
+
+	/**
+	 * Updates the given hosts (in the order of their addresses).
+	 * @param addresses Addresses of the hosts to update
+	 */
+	private void updateHosts(BitSet addresses) {
+		for (int i = addresses.nextSetBit(0); i >= 0 && !this.isCancelled;
+				i = addresses.nextSetBit(i + 1)) {
+			getNodeByAddress(i).update(simulateConnections);
+		}
+	}
+
+	/**
+	 * Updates the calendar entry of the contact predictions, whose next
+	 * event can change whenever the hosts are moved or updated.
+	 */
+	private void rescheduleKinetic() {
+		if (this.kinetic != null) {
+			reschedule(this.eventSources.indexOf(this.kinetic));
+		}
+	}
+
 	/**
 	 * Moves all hosts in the world for a given amount of time
 	 * @param timeIncrement The time how long all nodes should move
 	 */
 	private void moveHosts(double timeIncrement) {
+		if (this.nrofThreads > 0) {
+			moveHostsParallel(timeIncrement);
+		}
+		else {
+			for (int i=0,n = hosts.size(); i<n; i++) {
+				DTNHost host = hosts.get(i);
+				host.move(timeIncrement);
+			}
+		}
+
+		NetworkInterface.invalidateRanges();
+	}
+
+	/**
+	 * Moves all hosts that stay on their current path in parallel. Hosts that
+	 * need a new waypoint (and thus use the movement models' shared state)
+	 * are moved afterwards in the same order as by the sequential update.
+	 * @param timeIncrement The time how long all nodes should move
+	 */
+	private void moveHostsParallel(final double timeIncrement) {
+		final List<DTNHost> movable = new ArrayList<DTNHost>(hosts.size());
 		for (int i=0,n = hosts.size(); i<n; i++) {
 			DTNHost host = hosts.get(i);
-			host.move(timeIncrement);
+			if (host.isMovementActive()) {
+				movable.add(host);
+			}
+		}
+
+		final boolean[] deferred = new boolean[movable.size()];
+		runParallel(movable.size(), new RangeTask() {
+			public void run(int from, int to) {
+				for (int i=from; i<to; i++) {
+					deferred[i] = !movable.get(i).moveWithinPath(timeIncrement);
+				}
+			}
+		});
+
+		for (int i=0,n = movable.size(); i<n; i++) {
+			if (deferred[i]) {
+				movable.get(i).move(timeIncrement);
+			}
+		}
+	}
+
+	/**
+	 * Computes the interfaces within range of every interface in parallel.
+	 * The sets are used by the (sequential) connectivity updates until a host
+	 * moves or a range changes.
+	 */
+	private void computeRanges() {
+		final List<NetworkInterface> interfaces =
+			new ArrayList<NetworkInterface>(hosts.size());
+		double maxRange = 0;
+		for (int i=0,n = hosts.size(); i<n; i++) {
+			for (NetworkInterface ni : hosts.get(i).getInterfaces()) {
+				interfaces.add(ni);
+				maxRange = Math.max(maxRange, ni.getTransmitRange());
+			}
+		}
+
+		/* interfaces within range are in the same or a neighboring cell */
+		final double cellSize = (maxRange > 0 ? maxRange : 1);
+		final Map<Long, List<NetworkInterface>> cells =
+			new HashMap<Long, List<NetworkInterface>>();
+		for (NetworkInterface ni : interfaces) {
+			Coord c = ni.getLocation();
+			long key = cellKey(cellIndex(c.getX(), cellSize),
+					cellIndex(c.getY(), cellSize));
+			List<NetworkInterface> cell = cells.get(key);
+			if (cell == null) {
+				cell = new ArrayList<NetworkInterface>();
+				cells.put(key, cell);
+			}
+			cell.add(ni);
 		}
+
+		runParallel(interfaces.size(), new RangeTask() {
+			public void run(int from, int to) {
+				for (int i=from; i<to; i++) {
+					NetworkInterface ni = interfaces.get(i);
+					Coord c = ni.getLocation();
+					long x = cellIndex(c.getX(), cellSize);
+					long y = cellIndex(c.getY(), cellSize);
+
+					Set<NetworkInterface> inRange =
+						new HashSet<NetworkInterface>();
+					for (long dx=-1; dx<=1; dx++) {
+						for (long dy=-1; dy<=1; dy++) {
+							List<NetworkInterface> cell =
+								cells.get(cellKey(x + dx, y + dy));
+							if (cell == null) {
+								continue;
+							}
+							for (NetworkInterface other : cell) {
+								if (ni.computeWithinRange(other)) {
+									inRange.add(other);
+								}
+							}
+						}
+					}
+					ni.setInRange(inRange);
+				}
+			}
+		});
+
+		this.rangesVersion = NetworkInterface.getRangeVersion();
+	}
+
+	private static long cellIndex(double value, double cellSize) {
+		return (long)Math.floor(value / cellSize);
+	}
+
+	private static long cellKey(long x, long y) {
+		return (x << 32) ^ (y & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Part of a parallel update phase, processes the items [from, to).
+	 */
+	private interface RangeTask {
+		public void run(int from, int to);
+	}
+
+	/**
+	 * Splits the items [0, n) into chunks and processes them by the update
+	 * threads. Returns when all chunks have been processed.
+	 * @param n Number of items
+	 * @param task Task processing the chunks
+	 */
+	private void runParallel(int n, final RangeTask task) {
+		int nrofChunks = Math.min(n, this.nrofThreads * CHUNKS_PER_THREAD);
+		if (this.nrofThreads == 1 || nrofChunks <= 1) {
+			task.run(0, n);
+			return;
+		}
+
+		List<Callable<Void>> chunks = new ArrayList<Callable<Void>>();
+		for (int i=0; i<nrofChunks; i++) {
+			final int from = (int)((long)n * i / nrofChunks);
+			final int to = (int)((long)n * (i + 1) / nrofChunks);
+			chunks.add(new Callable<Void>() {
+				public Void call() {
+					task.run(from, to);
+					return null;
+				}
+			});
+		}
+
+		try {
+			for (Future<Void> f : getUpdateThreads(this.nrofThreads).invokeAll(chunks)) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			throw new SimError("Interrupted during parallel update");
+		} catch (ExecutionException e) {
+			throw new SimError(e);
+		}
+	}
+
+	/**
+	 * Returns the shared update threads (creates them if required).
+	 * @param nrofThreads Number of threads
+	 */
+	private static synchronized ExecutorService getUpdateThreads(
+			int nrofThreads) {
+		if (updateThreads == null || updateThreadCount != nrofThreads) {
+			if (updateThreads != null) {
+				updateThreads.shutdown();
+			}
+			updateThreads = Executors.newFixedThreadPool(nrofThreads,
+					new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "World-update");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			updateThreadCount = nrofThreads;
+		}
+
+		return updateThreads;
 	}
 
 	/**
@@ -271,5 +777,56 @@ public class World {
 	 */
 	public void scheduleUpdate(double simTime) {
 		scheduledUpdates.addUpdate(simTime);
+		reschedule(0);
+	}
+
+	/**
+	 * Returns the number of external events processed so far.
+	 * @return The number of processed events
+	 */
+	public long getNrofProcessedEvents() {
+		return this.nrofProcessedEvents;
+	}
+
+	/**
+	 * Returns the number of update intervals skipped by the adaptive steps
+	 * @return The number of skipped update intervals
+	 */
+	public long getNrofSkippedSteps() {
+		return this.nrofSkippedSteps;
+	}
+
+	/**
+	 * Returns the number of pending scheduled updates plus the number of
+	 * other event sources that have pending events.
+	 * @return The depth of the event calendar
+	 */
+	public int getEventQueueDepth() {
+		pollSources();
+		int depth = this.scheduledUpdates.size();
+		for (int i=1; i<this.calendarEntries.length; i++) {
+			if (this.calendarEntries[i].time < Double.MAX_VALUE) {
+				depth++;
+			}
+		}
+		return depth;
+	}
+
+	/**
+	 * Entry of an event source in the event calendar.
+	 */
+	private static class CalendarEntry implements Comparable<CalendarEntry> {
+		private final int source;
+		private final double time;
+
+		public CalendarEntry(int source, double time) {
+			this.source = source;
+			this.time = time;
+		}
+
+		public int compareTo(CalendarEntry other) {
+			int c = Double.compare(this.time, other.time);
+			return (c != 0 ? c : this.source - other.source);
+		}
 	}
 }
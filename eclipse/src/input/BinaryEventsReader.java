@@ -17,7 +17,9 @@ import core.SimError;
 
 /**
  * Reads External Events from a binary file. Can also create binary files
- * from a list of external events.
+ * from a list of external events. The files depend on the serialized form
+ * of the event classes; see {@link CompactEventsReader} for a more compact
+ * and faster format.
  */
 public class BinaryEventsReader implements ExternalEventsReader {
 	/** Extension of binary external events file */
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import core.SimError;
+
+/**
+ * <P>
+ * Reads external events from a compact binary trace file (created with
+ * {@link CompactEventsWriter}). Unlike the files of
+ * {@link BinaryEventsReader}, the format does not depend on the Java
+ * serialization of the event classes.
+ * </P><P>
+ * Format (all numbers big-endian): a header with the magic number
+ * {@link #MAGIC} and the format version ({@link #VERSION}), followed by
+ * records that start with a one byte type tag:
+ * </P>
+ * <UL>
+ * <LI>{@link #TAG_ID}: int length, UTF-8 bytes. Adds a message (or
+ * interface) ID to the ID table; the IDs are referred by their index in
+ * the order of appearance.</LI>
+ * <LI>{@link #TAG_CONN_UP}, {@link #TAG_CONN_DOWN}: double time, int host
+ * address, int host2 address, int interface ID index (-1 for none)</LI>
+ * <LI>{@link #TAG_CREATE}: double time, int from, int to, int message ID
+ * index, int size, int response size</LI>
+ * <LI>{@link #TAG_SEND}, {@link #TAG_DELIVERED}, {@link #TAG_ABORT}:
+ * double time, int from, int to, int message ID index</LI>
+ * <LI>{@link #TAG_DROP}, {@link #TAG_REMOVE}: double time, int host
+ * address, int message ID index</LI>
+ * <LI>{@link #TAG_END}: end of the events</LI>
+ * </UL>
+ * <P>
+ * The file is read through a channel either into a buffer or by memory
+ * mapping windows of it.
+ * </P>
+ */
+public class CompactEventsReader implements ExternalEventsReader {
+	/** Extension of compact external events files */
+	public static final String COMPACT_EXT = ".ceee";
+	/** Magic number of the file header ("ONEE") */
+	public static final int MAGIC = 0x4F4E4545;
+	/** Version of the file format */
+	public static final int VERSION = 1;
+
+	/** Record type of the end of the events */
+	public static final byte TAG_END = 0;
+	/** Record type of an ID table entry */
+	public static final byte TAG_ID = 1;
+	/** Record type of a connection up event */
+	public static final byte TAG_CONN_UP = 2;
+	/** Record type of a connection down event */
+	public static final byte TAG_CONN_DOWN = 3;
+	/** Record type of a message creation event */
+	public static final byte TAG_CREATE = 4;
+	/** Record type of a message transfer start event */
+	public static final byte TAG_SEND = 5;
+	/** Record type of a message delivered event */
+	public static final byte TAG_DELIVERED = 6;
+	/** Record type of a message transfer aborted event */
+	public static final byte TAG_ABORT = 7;
+	/** Record type of a message dropped event */
+	public static final byte TAG_DROP = 8;
+	/** Record type of a message removed event */
+	public static final byte TAG_REMOVE = 9;
+
+	/** charset of the IDs */
+	static final Charset ID_CHARSET = Charset.forName("UTF-8");
+
+	/** size of the read buffer (bytes) */
+	private static final int BUFFER_SIZE = 1 << 20;
+	/** size of the memory mapped windows of the file (bytes) */
+	private static final long MAP_WINDOW = 1 << 28;
+
+	private File eventsFile;
+	private FileInputStream in;
+	private FileChannel channel;
+	private long fileSize;
+	private boolean memoryMap;
+	private ByteBuffer buffer;
+	/** file offset of the beginning of the buffer */
+	private long bufferStart = 0;
+	private List<String> ids = new ArrayList<String>();
+	private boolean allEventsRead = false;
+
+	/**
+	 * Constructor.
+	 * @param eventsFile The file where the events are read
+	 */
+	public CompactEventsReader(File eventsFile) {
+		this(eventsFile, false);
+	}
+
+	/**
+	 * Constructor.
+	 * @param eventsFile The file where the events are read
+	 * @param memoryMap If true, the file is memory mapped instead of read
+	 * into a buffer
+	 */
+	public CompactEventsReader(File eventsFile, boolean memoryMap) {
+		this.eventsFile = eventsFile;
+		this.memoryMap = memoryMap;
+		try {
+			this.in = new FileInputStream(eventsFile);
+			this.channel = in.getChannel();
+			this.fileSize = channel.size();
+		} catch (IOException e) {
+			if (this.in != null) {
+				close();
+			}
+			throw new SimError(e.getMessage(), e);
+		}
+
+		if (!memoryMap) {
+			this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		} else {
+			this.buffer = ByteBuffer.allocate(0);
+		}
+		this.buffer.limit(0);
+
+		boolean headerOk = false;
+		try {
+			readHeader();
+			headerOk = true;
+		} finally {
+			if (!headerOk) {
+				close();
+			}
+		}
+	}
+
+	/**
+	 * Reads and checks the file header
+	 * @throws SimError if the header is not valid
+	 */
+	private void readHeader() {
+		ensure(8);
+		if (buffer.getInt() != MAGIC) {
+			throw new SimError("Not a compact events file: " +
+					eventsFile.getAbsolutePath());
+		}
+		int version = buffer.getInt();
+		if (version != VERSION) {
+			throw new SimError("Unsupported version (" + version + ") of " +
+					"compact events file " + eventsFile.getAbsolutePath());
+		}
+	}
+
+	/**
+	 * Read events from the file
+	 * @param nrof Maximum number of events to read
+	 * @return Events in an ArrayList (empty list if didn't read any)
+	 */
+	public List<ExternalEvent> readEvents(int nrof) {
+		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(nrof);
+
+		while (events.size() < nrof && !allEventsRead) {
+			ensure(1);
+			byte tag = buffer.get();
+			switch (tag) {
+			case TAG_END:
+				allEventsRead = true;
+				close();
+				break;
+			case TAG_ID:
+				ensure(4);
+				int length = buffer.getInt();
+				if (length < 0) {
+					throw new SimError("Invalid ID length " + length + " at " +
+							(bufferStart + buffer.position() - 4) + " in " +
+							eventsFile.getAbsolutePath());
+				}
+				ensure(length);
+				byte[] bytes = new byte[length];
+				buffer.get(bytes);
+				ids.add(new String(bytes, ID_CHARSET));
+				break;
+			case TAG_CONN_UP:
+			case TAG_CONN_DOWN:
+				ensure(20);
+				double time = buffer.getDouble();
+				int from = buffer.getInt();
+				int to = buffer.getInt();
+				events.add(new ConnectionEvent(from, to, id(buffer.getInt()),
+						tag == TAG_CONN_UP, time));
+				break;
+			case TAG_CREATE:
+				ensure(28);
+				time = buffer.getDouble();
+				from = buffer.getInt();
+				to = buffer.getInt();
+				String id = id(buffer.getInt());
+				int size = buffer.getInt();
+				events.add(new MessageCreateEvent(from, to, id, size,
+						buffer.getInt(), time));
+				break;
+			case TAG_SEND:
+			case TAG_DELIVERED:
+			case TAG_ABORT:
+				ensure(20);
+				time = buffer.getDouble();
+				from = buffer.getInt();
+				to = buffer.getInt();
+				events.add(new MessageRelayEvent(from, to, id(buffer.getInt()),
+						time, tag - TAG_SEND + MessageRelayEvent.SENDING));
+				break;
+			case TAG_DROP:
+			case TAG_REMOVE:
+				ensure(16);
+				time = buffer.getDouble();
+				from = buffer.getInt();
+				events.add(new MessageDeleteEvent(from, id(buffer.getInt()),
+						time, tag == TAG_DROP));
+				break;
+			default:
+				throw new SimError("Invalid record type " + tag + " at " +
+						(bufferStart + buffer.position() - 1) + " in " +
+						eventsFile.getAbsolutePath());
+			}
+		}
+
+		return events;
+	}
+
+	/**
+	 * Returns an ID from the ID table
+	 * @param index Index of the ID (-1 for none)
+	 * @return The ID or null for index -1
+	 */
+	private String id(int index) {
+		if (index == -1) {
+			return null;
+		}
+		if (index < 0 || index >= ids.size()) {
+			throw new SimError("Invalid ID index " + index + " in " +
+					eventsFile.getAbsolutePath());
+		}
+		return ids.get(index);
+	}
+
+	/**
+	 * Makes sure that the buffer has at least the given number of bytes left
+	 * @param nrof The number of bytes needed
+	 * @throws SimError if the file does not have that many bytes left
+	 */
+	private void ensure(int nrof) {
+		if (buffer.remaining() >= nrof) {
+			return;
+		}
+
+		long position = bufferStart + buffer.position();
+		if (fileSize - position < nrof) { /* check before allocating */
+			throw new SimError("Unexpected end of compact events file " +
+					eventsFile.getAbsolutePath());
+		}
+
+		try {
+			if (memoryMap) {
+				long length = Math.min(Math.max(MAP_WINDOW, nrof),
+						fileSize - position);
+				buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+						length);
+			} else {
+				buffer.compact();
+				if (buffer.capacity() < nrof) {
+					buffer.flip();
+					buffer = ByteBuffer.allocate(nrof).put(buffer);
+				}
+				while (buffer.position() < nrof &&
+						channel.read(buffer) >= 0) {
+					// continue until enough or end of file
+				}
+				buffer.flip();
+			}
+		} catch (IOException e) {
+			throw new SimError("Reading from external event file failed.", e);
+		}
+		bufferStart = position;
+
+		if (buffer.remaining() < nrof) {
+			throw new SimError("Unexpected end of compact events file " +
+					eventsFile.getAbsolutePath());
+		}
+	}
+
+	/**
+	 * Checks if the given file is a compact external events file
+	 * @param file The file to check
+	 * @return True if the file has the extension {@link #COMPACT_EXT} and
+	 * starts with a valid header
+	 */
+	public static boolean isCompactEeFile(File file) {
+		if (!file.getName().endsWith(COMPACT_EXT)) {
+			return false;
+		}
+
+		try {
+			new CompactEventsReader(file).close();
+		}
+		catch (SimError e) {
+			return false;
+		}
+		return true;
+	}
+
+	public void close() {
+		try {
+			this.in.close();
+		} catch (IOException e) {}
+	}
+}
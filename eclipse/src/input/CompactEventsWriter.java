@@ -0,0 +1,239 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import static input.CompactEventsReader.COMPACT_EXT;
+import static input.CompactEventsReader.ID_CHARSET;
+import static input.CompactEventsReader.MAGIC;
+import static input.CompactEventsReader.TAG_CONN_DOWN;
+import static input.CompactEventsReader.TAG_CONN_UP;
+import static input.CompactEventsReader.TAG_CREATE;
+import static input.CompactEventsReader.TAG_DROP;
+import static input.CompactEventsReader.TAG_END;
+import static input.CompactEventsReader.TAG_ID;
+import static input.CompactEventsReader.TAG_REMOVE;
+import static input.CompactEventsReader.TAG_SEND;
+import static input.CompactEventsReader.VERSION;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes external events to a compact binary file that can be read with
+ * {@link CompactEventsReader}. Message and interface IDs are interned: each
+ * distinct ID is stored only once, before the first event that refers to it.
+ * <P>
+ * Can also be run as a converter from the standard text format:
+ * <CODE>CompactEventsWriter &lt;textFile&gt; [compactFile]</CODE>.
+ * </P>
+ */
+public class CompactEventsWriter {
+	/** number of events read at a time when converting */
+	private static final int CONVERT_BATCH_SIZE = 10000;
+
+	private DataOutputStream out;
+	private Map<String, Integer> ids;
+	private long nrofEvents;
+
+	/**
+	 * Creates a writer and writes the file header
+	 * @param file The file where the events are written to
+	 * @throws IOException if the file can't be written
+	 */
+	public CompactEventsWriter(File file) throws IOException {
+		this.out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file), 1 << 16));
+		this.ids = new HashMap<String, Integer>();
+		this.nrofEvents = 0;
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+	}
+
+	/**
+	 * Writes an event to the file
+	 * @param ee The event to write
+	 * @throws IOException if writing fails
+	 * @throws IllegalArgumentException if the type of the event is not
+	 * supported by the format
+	 */
+	public void write(ExternalEvent ee) throws IOException {
+		if (ee instanceof ConnectionEvent) {
+			ConnectionEvent ce = (ConnectionEvent)ee;
+			int idIndex = idIndex(ce.interfaceId);
+			writeHeader(ce.isUp ? TAG_CONN_UP : TAG_CONN_DOWN, ee.getTime(),
+					ce.fromAddr);
+			out.writeInt(ce.toAddr);
+			out.writeInt(idIndex);
+		}
+		else if (ee instanceof MessageCreateEvent) {
+			MessageCreateEvent mce = (MessageCreateEvent)ee;
+			int idIndex = idIndex(mce.id);
+			writeHeader(TAG_CREATE, ee.getTime(), mce.fromAddr);
+			out.writeInt(mce.toAddr);
+			out.writeInt(idIndex);
+			out.writeInt(mce.getSize());
+			out.writeInt(mce.getResponseSize());
+		}
+		else if (ee instanceof MessageRelayEvent) {
+			MessageRelayEvent mre = (MessageRelayEvent)ee;
+			int idIndex = idIndex(mre.id);
+			writeHeader((byte)(TAG_SEND + mre.getStage() -
+					MessageRelayEvent.SENDING), ee.getTime(), mre.fromAddr);
+			out.writeInt(mre.toAddr);
+			out.writeInt(idIndex);
+		}
+		else if (ee instanceof MessageDeleteEvent) {
+			MessageDeleteEvent mde = (MessageDeleteEvent)ee;
+			int idIndex = idIndex(mde.id);
+			writeHeader(mde.isDrop() ? TAG_DROP : TAG_REMOVE, ee.getTime(),
+					mde.fromAddr);
+			out.writeInt(idIndex);
+		}
+		else {
+			throw new IllegalArgumentException("Can't store event " + ee +
+					" to a compact events file");
+		}
+		nrofEvents++;
+	}
+
+	/**
+	 * Writes all the events of a list
+	 * @param events The events to write
+	 * @throws IOException if writing fails
+	 */
+	public void write(List<ExternalEvent> events) throws IOException {
+		for (ExternalEvent ee : events) {
+			write(ee);
+		}
+	}
+
+	/**
+	 * Returns the number of events written so far
+	 * @return the number of events written so far
+	 */
+	public long getNrofEvents() {
+		return this.nrofEvents;
+	}
+
+	/**
+	 * Writes the end of the events and closes the file
+	 * @throws IOException if writing fails
+	 */
+	public void close() throws IOException {
+		out.writeByte(TAG_END);
+		out.close();
+	}
+
+	private void writeHeader(byte tag, double time, int host)
+			throws IOException {
+		out.writeByte(tag);
+		out.writeDouble(time);
+		out.writeInt(host);
+	}
+
+	/**
+	 * Returns the index of an ID in the ID table. If the ID is not in the
+	 * table yet, it is added and an ID record is written to the file.
+	 * @param id The ID (or null)
+	 * @return Index of the ID or -1 for null
+	 * @throws IOException if writing the ID record fails
+	 */
+	private int idIndex(String id) throws IOException {
+		if (id == null) {
+			return -1;
+		}
+
+		Integer index = ids.get(id);
+		if (index == null) {
+			index = ids.size();
+			ids.put(id, index);
+			byte[] bytes = id.getBytes(ID_CHARSET);
+			out.writeByte(TAG_ID);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+		return index;
+	}
+
+	/**
+	 * Stores the events to a compact file
+	 * @param fileName Path to the file where the events are stored
+	 * @param events List of events to store
+	 * @throws IOException if something in storing went wrong
+	 */
+	public static void storeToCompactFile(String fileName,
+			List<ExternalEvent> events) throws IOException {
+		CompactEventsWriter w = new CompactEventsWriter(new File(fileName));
+		w.write(events);
+		w.close();
+	}
+
+	/**
+	 * Converts an external events file (of any readable format) to a
+	 * compact file. The events are streamed, so the whole file doesn't have
+	 * to fit in memory.
+	 * @param source The file to convert
+	 * @param target The compact file to create
+	 * @return Number of converted events
+	 * @throws IOException if writing the target file fails
+	 */
+	public static long convert(File source, File target) throws IOException {
+		ExternalEventsReader reader;
+		if (BinaryEventsReader.isBinaryEeFile(source)) {
+			reader = new BinaryEventsReader(source);
+		}
+		else if (CompactEventsReader.isCompactEeFile(source)) {
+			reader = new CompactEventsReader(source);
+		}
+		else {
+			reader = new StandardEventsReader(source);
+		}
+
+		CompactEventsWriter w = new CompactEventsWriter(target);
+		try {
+			List<ExternalEvent> events = reader.readEvents(CONVERT_BATCH_SIZE);
+			while (events.size() > 0) {
+				w.write(events);
+				events = reader.readEvents(CONVERT_BATCH_SIZE);
+			}
+		} finally {
+			reader.close();
+			w.close();
+		}
+		return w.getNrofEvents();
+	}
+
+	/**
+	 * Converts an external events file to the compact format
+	 * @param args source file and (optionally) target file. Default target
+	 * is the source file name with extension
+	 * {@link CompactEventsReader#COMPACT_EXT}.
+	 * @throws IOException if the conversion fails
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println("Usage: CompactEventsWriter <eventsFile> " +
+					"[compactFile]");
+			System.exit(1);
+		}
+
+		String target = args.length > 1 ? args[1] : args[0];
+		if (!target.endsWith(COMPACT_EXT)) {
+			target += COMPACT_EXT;
+		}
+
+		long start = System.currentTimeMillis();
+		long nrof = convert(new File(args[0]), new File(target));
+		System.out.println("Converted " + nrof + " events to " + target +
+				" in " + (System.currentTimeMillis() - start) / 1000.0 + "s");
+	}
+}
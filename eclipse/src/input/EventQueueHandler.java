@@ -48,6 +48,12 @@ public class EventQueueHandler  {
 	public static final String PRELOAD_SETTING = "nrofPreload";
 	/** path of external events file -setting id ({@value})*/
 	public static final String PATH_SETTING = "filePath";
+	/** should the external events be read in the background -setting id
+	 * ({@value}). See {@link ExternalEventsQueue#PREFETCH_SETTING} */
+	public static final String PREFETCH_SETTING = "prefetch";
+	/** should compact external events files be memory mapped -setting id
+	 * ({@value}). See {@link ExternalEventsQueue#MEMORY_MAP_SETTING} */
+	public static final String MEMORY_MAP_SETTING = "memoryMap";
 
 	private List<EventQueue> queues;
 
@@ -71,7 +77,9 @@ public class EventQueueHandler  {
 				}
 				path = s.getSetting(PATH_SETTING);
 
-				queues.add(new ExternalEventsQueue(path, preload));
+				queues.add(new ExternalEventsQueue(path, preload,
+						s.getBoolean(PREFETCH_SETTING, false),
+						s.getBoolean(MEMORY_MAP_SETTING, false)));
 			}
 			else if (s.contains(CLASS_SETTING)) { // event generator class
 				String className = CLASS_PACKAGE + "." +
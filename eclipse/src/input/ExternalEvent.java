@@ -29,6 +29,15 @@ public class ExternalEvent implements Comparable<ExternalEvent>, Serializable {
 		// this is just a dummy event
 	}
 
+	/**
+	 * Returns the network addresses of the hosts this event concerns, i.e.,
+	 * the hosts that need to be updated after the event.
+	 * @return The addresses or null if the event may concern any host
+	 */
+	public int[] getHostAddresses() {
+		return null;
+	}
+
 	/**
 	 * Returns the time when this event should happen.
 	 * @return Event's time
@@ -7,8 +7,11 @@ package input;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import core.Settings;
+import core.SimError;
 
 /**
  * Queue of external events. This class also takes care of buffering
@@ -21,9 +24,25 @@ public class ExternalEventsQueue implements EventQueue {
 	public static final String PRELOAD_SETTING = "nrofPreload";
 	/** path of external events file -setting id ({@value})*/
 	public static final String PATH_SETTING = "filePath";
+	/**
+	 * Should the events be read by a background thread -setting id
+	 * ({@value}). Boolean (true/false) variable. If true, the next batch of
+	 * events is read while the simulation processes the current one.
+	 * Default is false.
+	 */
+	public static final String PREFETCH_SETTING = "prefetch";
+	/**
+	 * Should compact events files be memory mapped -setting id ({@value}).
+	 * Boolean (true/false) variable. Only affects files in the format of
+	 * {@link CompactEventsReader}. Default is false.
+	 */
+	public static final String MEMORY_MAP_SETTING = "memoryMap";
 
 	/** default number of preloaded events */
 	public static final int DEFAULT_NROF_PRELOAD = 500;
+	/** maximum size of prefetched batches (times the number of preloaded
+	 * events) */
+	public static final int MAX_BATCH_FACTOR = 64;
 
 	private File eventsFile;
 	private ExternalEventsReader reader;
@@ -31,19 +50,51 @@ public class ExternalEventsQueue implements EventQueue {
 	private int nrofPreload;
 	private List<ExternalEvent> queue;
 	private boolean allEventsRead = false;
+	/** background reader (null if the events are read when needed) */
+	private Prefetcher prefetcher = null;
+	/** time the simulation has waited for events (nanoseconds) */
+	private long stallTime = 0;
 
 	/**
 	 * Creates a new Queue from a file
 	 * @param filePath Path to the file where the events are read from. If
 	 * file ends with extension defined in {@link BinaryEventsReader#BINARY_EXT}
-	 * the file is assumed to be a binary file.
+	 * or {@link CompactEventsReader#COMPACT_EXT} the file is assumed to be a
+	 * binary or a compact file, respectively.
 	 * @param nrofPreload How many events to preload
 	 * @see BinaryEventsReader#BINARY_EXT
 	 * @see BinaryEventsReader#storeToBinaryFile(String, List)
+	 * @see CompactEventsWriter#storeToCompactFile(String, List)
 	 */
 	public ExternalEventsQueue(String filePath, int nrofPreload) {
+		this(filePath, nrofPreload, false);
+	}
+
+	/**
+	 * Creates a new Queue from a file
+	 * @param filePath Path to the file where the events are read from
+	 * @param nrofPreload How many events to preload
+	 * @param prefetch If true, the events are read by a background thread
+	 * @see #PREFETCH_SETTING
+	 */
+	public ExternalEventsQueue(String filePath, int nrofPreload,
+			boolean prefetch) {
+		this(filePath, nrofPreload, prefetch, false);
+	}
+
+	/**
+	 * Creates a new Queue from a file
+	 * @param filePath Path to the file where the events are read from
+	 * @param nrofPreload How many events to preload
+	 * @param prefetch If true, the events are read by a background thread
+	 * @param memoryMap If true, a compact events file is memory mapped
+	 * @see #PREFETCH_SETTING
+	 * @see #MEMORY_MAP_SETTING
+	 */
+	public ExternalEventsQueue(String filePath, int nrofPreload,
+			boolean prefetch, boolean memoryMap) {
 		setNrofPreload(nrofPreload);
-		init(filePath);
+		init(filePath, prefetch, memoryMap);
 	}
 
 	/**
@@ -59,7 +110,8 @@ public class ExternalEventsQueue implements EventQueue {
 			setNrofPreload(DEFAULT_NROF_PRELOAD);
 		}
         String eeFilePath = s.valueFillString(s.getSetting(PATH_SETTING));
-        init(eeFilePath);
+        init(eeFilePath, s.getBoolean(PREFETCH_SETTING, false),
+        		s.getBoolean(MEMORY_MAP_SETTING, false));
     }
 
 	/**
@@ -74,16 +126,24 @@ public class ExternalEventsQueue implements EventQueue {
 		this.nrofPreload = nrof;
 	}
 
-	private void init(String eeFilePath) {
+	private void init(String eeFilePath, boolean prefetch,
+			boolean memoryMap) {
 		this.eventsFile = new File(eeFilePath);
 
 		if (BinaryEventsReader.isBinaryEeFile(eventsFile)) {
 			this.reader = new BinaryEventsReader(eventsFile);
 		}
+		else if (CompactEventsReader.isCompactEeFile(eventsFile)) {
+			this.reader = new CompactEventsReader(eventsFile, memoryMap);
+		}
 		else {
 			this.reader = new StandardEventsReader(eventsFile);
 		}
 
+		if (prefetch) {
+			this.prefetcher = new Prefetcher();
+		}
+
 		this.queue = readEvents(nrofPreload);
 		this.nextEventIndex = 0;
 	}
@@ -139,6 +199,39 @@ public class ExternalEventsQueue implements EventQueue {
 	}
 
 
+	/**
+	 * Returns the total time the simulation has waited for events to be
+	 * read from the file
+	 * @return The time waited (seconds)
+	 */
+	public double getStallTime() {
+		return this.stallTime / 1000000000.0;
+	}
+
+	/**
+	 * Returns the name of the events file
+	 * @return the name of the events file
+	 */
+	public String getFileName() {
+		return this.eventsFile.getName();
+	}
+
+	/**
+	 * Stops reading events and closes the events file. No more events are
+	 * returned after this.
+	 */
+	public void close() {
+		if (this.prefetcher != null) {
+			this.prefetcher.stop();
+		}
+		else if (!allEventsRead) {
+			reader.close();
+		}
+		allEventsRead = true;
+		queue = new ArrayList<ExternalEvent>(0);
+		nextEventIndex = 0;
+	}
+
 	/**
 	 * Read some events from the external events reader
 	 * @param nrof Maximum number of events to read
@@ -150,14 +243,107 @@ public class ExternalEventsQueue implements EventQueue {
 			return new ArrayList<ExternalEvent>(0);
 		}
 
-		List<ExternalEvent> events = reader.readEvents(nrof);
+		long start = System.nanoTime();
+		List<ExternalEvent> events;
+		if (prefetcher != null) {
+			events = prefetcher.take(); // reader closes itself at the end
+		}
+		else {
+			events = reader.readEvents(nrof);
+			if (nrof > 0 && events.size() == 0) {
+				reader.close();
+			}
+		}
+		this.stallTime += System.nanoTime() - start;
 
 		if (nrof > 0 && events.size() == 0) {
-			reader.close();
 			allEventsRead = true;
 		}
 
 		return events;
 	}
 
+	/**
+	 * Reads the events in a background thread. One batch can wait for the
+	 * simulation while the next one is read. Whenever the simulation has to
+	 * wait, i.e., it consumes the events faster than they are read, the
+	 * following batches are made larger (up to {@link #MAX_BATCH_FACTOR}
+	 * times the number of preloaded events) so that dense parts of the
+	 * file are read further ahead.
+	 */
+	private class Prefetcher implements Runnable {
+		private BlockingQueue<List<ExternalEvent>> ready =
+			new ArrayBlockingQueue<List<ExternalEvent>>(1);
+		private Thread thread;
+		private volatile int batchSize = nrofPreload;
+		/** error thrown by the reader (null if none) */
+		private volatile Throwable error = null;
+		/** has the first batch been taken */
+		private boolean started = false;
+
+		public Prefetcher() {
+			this.thread = new Thread(this, "Prefetch " + eventsFile.getName());
+			this.thread.setDaemon(true);
+			this.thread.start();
+		}
+
+		public void run() {
+			try {
+				List<ExternalEvent> events;
+				do {
+					events = reader.readEvents(batchSize);
+					ready.put(events);
+				} while (events.size() > 0);
+			} catch (InterruptedException e) {
+				/* stopped */
+			} catch (RuntimeException e) {
+				fail(e);
+			} catch (Error e) {
+				fail(e);
+			} finally {
+				reader.close();
+			}
+		}
+
+		private void fail(Throwable t) {
+			this.error = t;
+			ready.clear();
+			ready.offer(new ArrayList<ExternalEvent>(0));
+		}
+
+		/**
+		 * Returns the next batch of events, waiting for it if necessary
+		 * @return The events or an empty list if there are no more events
+		 */
+		public List<ExternalEvent> take() {
+			List<ExternalEvent> events = ready.poll();
+			if (events == null) {
+				if (started) {
+					batchSize = Math.min(batchSize * 2,
+							nrofPreload * MAX_BATCH_FACTOR);
+				}
+				try {
+					events = ready.take();
+				} catch (InterruptedException e) {
+					throw new SimError("Interrupted while reading events " +
+							"from " + eventsFile);
+				}
+			}
+			started = true;
+
+			if (error instanceof Error) {
+				throw (Error)error;
+			} else if (error != null) {
+				throw (RuntimeException)error;
+			}
+			return events;
+		}
+
+		/**
+		 * Stops the reading thread
+		 */
+		public void stop() {
+			this.thread.interrupt();
+		}
+	}
 }
@@ -9,6 +9,7 @@ import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
+import java.util.regex.Pattern;
 
 import util.Tuple;
 
@@ -39,6 +40,7 @@ import core.SettingsError;
 public class ExternalMovementReader {
 	/* Prefix for comment lines (lines starting with this are ignored) */
 	public static final String COMMENT_PREFIX = "#";
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
 	private Scanner scanner;
 	private double lastTimeStamp = -1;
 	private String lastLine;
@@ -49,6 +51,11 @@ public class ExternalMovementReader {
 	private double minY;
 	private double maxY;
 	private boolean normalize;
+	/* values of the last parsed line */
+	private double lineTime;
+	private String lineId;
+	private double lineX;
+	private double lineY;
 
 
 	/**
@@ -106,11 +113,11 @@ public class ExternalMovementReader {
 			return moves;
 		}
 
-		Scanner lineScan = new Scanner(lastLine);
-		double time = lineScan.nextDouble();
-		String id = lineScan.next();
-		double x = lineScan.nextDouble();
-		double y = lineScan.nextDouble();
+		parseLine(lastLine);
+		double time = lineTime;
+		String id = lineId;
+		double x = lineX;
+		double y = lineY;
 
 		if (normalize) {
 			time -= minTime;
@@ -131,16 +138,11 @@ public class ExternalMovementReader {
 			// add previous line's tuple
 			moves.add(new Tuple<String, Coord>(id, new Coord(x,y)));
 
-			lineScan = new Scanner(lastLine);
-
-			try {
-				time = lineScan.nextDouble();
-				id = lineScan.next();
-				x = lineScan.nextDouble();
-				y = lineScan.nextDouble();
-			} catch (Exception e) {
-				throw new SettingsError("Invalid line '" + lastLine + "'");
-			}
+			parseLine(lastLine);
+			time = lineTime;
+			id = lineId;
+			x = lineX;
+			y = lineY;
 
 			if (normalize) {
 				time -= minTime;
@@ -156,6 +158,26 @@ public class ExternalMovementReader {
 		return moves;
 	}
 
+	/**
+	 * Parses a data line to the line* fields
+	 * @param line The line to parse
+	 * @throws SettingsError if the line is not a valid data line
+	 */
+	private void parseLine(String line) {
+		String[] fields = WHITESPACE.split(line.trim());
+		if (fields.length < 4) {
+			throw new SettingsError("Invalid line '" + line + "'");
+		}
+		try {
+			lineTime = Double.parseDouble(fields[0]);
+			lineId = fields[1];
+			lineX = Double.parseDouble(fields[2]);
+			lineY = Double.parseDouble(fields[3]);
+		} catch (NumberFormatException e) {
+			throw new SettingsError("Invalid line '" + line + "'");
+		}
+	}
+
 	/**
 	 * Returns the time stamp where the last moves read with
 	 * {@link #readNextMovements()} belong to.
@@ -46,6 +46,30 @@ public class MessageCreateEvent extends MessageEvent {
 		from.createNewMessage(m);
 	}
 
+	/**
+	 * Only the creator of the message is concerned.
+	 */
+	@Override
+	public int[] getHostAddresses() {
+		return new int[] {this.fromAddr};
+	}
+
+	/**
+	 * Returns the size of the message
+	 * @return the size of the message
+	 */
+	int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the size of the requested response (0 if none)
+	 * @return the size of the requested response
+	 */
+	int getResponseSize() {
+		return this.responseSize;
+	}
+
 	@Override
 	public String toString() {
 		return super.toString() + " [" + fromAddr + "->" + toAddr + "] " +
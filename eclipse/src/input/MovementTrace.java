@@ -0,0 +1,542 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import util.Tuple;
+
+import core.Coord;
+import core.SettingsError;
+
+/**
+ * Time-location trace of the {@link ExternalMovementReader} format stored in
+ * primitive arrays. Host IDs are replaced with integer host indexes (in the
+ * order of the first appearance) and the samples are grouped by time
+ * instances (steps).
+ * <P>
+ * Traces can be stored to a binary file ({@link #TRACE_EXT}) which is
+ * memory mapped when loaded. The file contains, in big-endian byte order:
+ * magic number, version, the six offset header values of the text format,
+ * host ID table (count, UTF-8 length-value pairs), number of steps and
+ * samples, and then the columns: step times, first sample index of each
+ * step, host index, x and y coordinate of each sample.
+ * </P>
+ * <P>
+ * Run as a program to convert a text trace:
+ * <CODE>MovementTrace &lt;textFile&gt; [traceFile]</CODE>
+ * </P>
+ */
+public class MovementTrace {
+	/** Extension of binary trace files */
+	public static final String TRACE_EXT = ".mtrace";
+	/** Magic number of the file header ("ONEM") */
+	public static final int MAGIC = 0x4F4E454D;
+	/** Version of the file format */
+	public static final int VERSION = 1;
+
+	private static final Charset ID_CHARSET = Charset.forName("UTF-8");
+
+	private double minTime;
+	private double maxTime;
+	private double minX;
+	private double maxX;
+	private double minY;
+	private double maxY;
+
+	private String[] hostIds;
+	private double[] stepTimes;
+	private int[] stepStarts;
+	private int[] hosts;
+	private double[] xs;
+	private double[] ys;
+
+	/** first position of each host in the host index (lazily built) */
+	private int[] hostStarts;
+	/** steps of the samples ordered by host and time (lazily built) */
+	private int[] hostSteps;
+	/** sample indexes ordered by host and time (lazily built) */
+	private int[] hostSamples;
+
+	private MovementTrace() {}
+
+	/**
+	 * Reads the whole trace from a text reader
+	 * @param reader The reader to read from. Normalizing of the reader
+	 * applies also to the trace
+	 */
+	public MovementTrace(ExternalMovementReader reader) {
+		this.minTime = reader.getMinTime();
+		this.maxTime = reader.getMaxTime();
+		this.minX = reader.getMinX();
+		this.maxX = reader.getMaxX();
+		this.minY = reader.getMinY();
+		this.maxY = reader.getMaxY();
+
+		Map<String, Integer> ids = new HashMap<String, Integer>();
+		List<String> idList = new ArrayList<String>();
+		int nrofSteps = 0;
+		int nrofSamples = 0;
+		stepTimes = new double[16];
+		stepStarts = new int[16];
+		hosts = new int[1024];
+		xs = new double[1024];
+		ys = new double[1024];
+
+		List<Tuple<String, Coord>> moves = reader.readNextMovements();
+		while (moves.size() > 0) {
+			if (nrofSteps == stepTimes.length) {
+				stepTimes = Arrays.copyOf(stepTimes, nrofSteps * 2);
+				stepStarts = Arrays.copyOf(stepStarts, nrofSteps * 2);
+			}
+			stepTimes[nrofSteps] = reader.getLastTimeStamp();
+			stepStarts[nrofSteps] = nrofSamples;
+			nrofSteps++;
+
+			if (nrofSamples + moves.size() > hosts.length) {
+				int size = Math.max(hosts.length * 2,
+						nrofSamples + moves.size());
+				hosts = Arrays.copyOf(hosts, size);
+				xs = Arrays.copyOf(xs, size);
+				ys = Arrays.copyOf(ys, size);
+			}
+			for (Tuple<String, Coord> t : moves) {
+				Integer host = ids.get(t.getKey());
+				if (host == null) {
+					host = idList.size();
+					ids.put(t.getKey(), host);
+					idList.add(t.getKey());
+				}
+				hosts[nrofSamples] = host;
+				xs[nrofSamples] = t.getValue().getX();
+				ys[nrofSamples] = t.getValue().getY();
+				nrofSamples++;
+			}
+			moves = reader.readNextMovements();
+		}
+
+		this.hostIds = idList.toArray(new String[idList.size()]);
+		this.stepTimes = Arrays.copyOf(stepTimes, nrofSteps);
+		this.stepStarts = Arrays.copyOf(stepStarts, nrofSteps);
+		this.hosts = Arrays.copyOf(hosts, nrofSamples);
+		this.xs = Arrays.copyOf(xs, nrofSamples);
+		this.ys = Arrays.copyOf(ys, nrofSamples);
+	}
+
+	/**
+	 * Loads a trace from a binary trace file
+	 * @param file The file to load
+	 * @param normalize If true, the times and coordinates are decremented by
+	 * minimum values of the offsets (like {@link ExternalMovementReader}
+	 * does by default)
+	 * @return The trace
+	 * @throws SettingsError if the file can't be read or is not a trace file
+	 */
+	public static MovementTrace load(File file, boolean normalize) {
+		MovementTrace t = new MovementTrace();
+		RandomAccessFile raf = null;
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(file)));
+			long headerSize;
+			int nrofSteps;
+			int nrofSamples;
+			try {
+				if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+					throw new SettingsError("Invalid movement trace file " +
+							file);
+				}
+				t.minTime = in.readDouble();
+				t.maxTime = in.readDouble();
+				t.minX = in.readDouble();
+				t.maxX = in.readDouble();
+				t.minY = in.readDouble();
+				t.maxY = in.readDouble();
+				headerSize = 4 * 3 + 8 * 6;
+
+				t.hostIds = new String[in.readInt()];
+				for (int i=0; i < t.hostIds.length; i++) {
+					byte[] bytes = new byte[in.readInt()];
+					in.readFully(bytes);
+					t.hostIds[i] = new String(bytes, ID_CHARSET);
+					headerSize += 4 + bytes.length;
+				}
+				nrofSteps = in.readInt();
+				nrofSamples = in.readInt();
+				headerSize += 4 * 2;
+			} finally {
+				in.close();
+			}
+
+			raf = new RandomAccessFile(file, "r");
+			FileChannel channel = raf.getChannel();
+			long pos = headerSize;
+			t.stepTimes = new double[nrofSteps];
+			map(channel, pos, 8L * nrofSteps).asDoubleBuffer().get(t.stepTimes);
+			pos += 8L * nrofSteps;
+			t.stepStarts = new int[nrofSteps];
+			map(channel, pos, 4L * nrofSteps).asIntBuffer().get(t.stepStarts);
+			pos += 4L * nrofSteps;
+			t.hosts = new int[nrofSamples];
+			map(channel, pos, 4L * nrofSamples).asIntBuffer().get(t.hosts);
+			pos += 4L * nrofSamples;
+			t.xs = new double[nrofSamples];
+			map(channel, pos, 8L * nrofSamples).asDoubleBuffer().get(t.xs);
+			pos += 8L * nrofSamples;
+			t.ys = new double[nrofSamples];
+			map(channel, pos, 8L * nrofSamples).asDoubleBuffer().get(t.ys);
+		} catch (IOException e) {
+			throw new SettingsError("Couldn't read movement trace file " +
+					file + ": " + e.getMessage());
+		} finally {
+			if (raf != null) {
+				try {
+					raf.close();
+				} catch (IOException e) {}
+			}
+		}
+
+		if (normalize) {
+			for (int i=0; i < t.stepTimes.length; i++) {
+				t.stepTimes[i] -= t.minTime;
+			}
+			for (int i=0; i < t.xs.length; i++) {
+				t.xs[i] -= t.minX;
+				t.ys[i] -= t.minY;
+			}
+		}
+
+		return t;
+	}
+
+	private static ByteBuffer map(FileChannel channel, long pos, long size)
+			throws IOException {
+		if (pos + size > channel.size()) {
+			throw new IOException("Unexpected end of file");
+		}
+		return channel.map(FileChannel.MapMode.READ_ONLY, pos, size);
+	}
+
+	/**
+	 * Stores the trace to a binary trace file
+	 * @param file The file to write to
+	 * @throws IOException if writing fails
+	 */
+	public void store(File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeDouble(minTime);
+			out.writeDouble(maxTime);
+			out.writeDouble(minX);
+			out.writeDouble(maxX);
+			out.writeDouble(minY);
+			out.writeDouble(maxY);
+
+			out.writeInt(hostIds.length);
+			for (String id : hostIds) {
+				byte[] bytes = id.getBytes(ID_CHARSET);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+			out.writeInt(stepTimes.length);
+			out.writeInt(hosts.length);
+
+			for (double d : stepTimes) {
+				out.writeDouble(d);
+			}
+			for (int i : stepStarts) {
+				out.writeInt(i);
+			}
+			for (int i : hosts) {
+				out.writeInt(i);
+			}
+			for (double d : xs) {
+				out.writeDouble(d);
+			}
+			for (double d : ys) {
+				out.writeDouble(d);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Checks if the given file is a binary trace file
+	 * @param file The file to check
+	 * @return True if the file has the extension {@link #TRACE_EXT} and
+	 * starts with the magic number
+	 */
+	public static boolean isTraceFile(File file) {
+		if (!file.getName().endsWith(TRACE_EXT)) {
+			return false;
+		}
+
+		try {
+			DataInputStream in = new DataInputStream(new FileInputStream(file));
+			try {
+				return in.readInt() == MAGIC;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the number of hosts in the trace
+	 * @return the number of hosts in the trace
+	 */
+	public int getNrofHosts() {
+		return hostIds.length;
+	}
+
+	/**
+	 * Returns the ID a host had in the original trace
+	 * @param host Index of the host
+	 * @return The ID of the host
+	 */
+	public String getHostId(int host) {
+		return hostIds[host];
+	}
+
+	/**
+	 * Returns the number of time instances in the trace
+	 * @return the number of time instances in the trace
+	 */
+	public int getNrofSteps() {
+		return stepTimes.length;
+	}
+
+	/**
+	 * Returns the time of a time instance
+	 * @param step Index of the time instance
+	 * @return The time
+	 */
+	public double getStepTime(int step) {
+		return stepTimes[step];
+	}
+
+	/**
+	 * Returns the index of the first sample of a time instance
+	 * @param step Index of the time instance
+	 * @return The index of the first sample
+	 */
+	public int getStepStart(int step) {
+		return stepStarts[step];
+	}
+
+	/**
+	 * Returns the index after the last sample of a time instance
+	 * @param step Index of the time instance
+	 * @return The index after the last sample
+	 */
+	public int getStepEnd(int step) {
+		return step + 1 < stepStarts.length ? stepStarts[step + 1] :
+			hosts.length;
+	}
+
+	/**
+	 * Returns the number of samples in the trace
+	 * @return the number of samples in the trace
+	 */
+	public int getNrofSamples() {
+		return hosts.length;
+	}
+
+	/**
+	 * Returns the host of a sample
+	 * @param sample Index of the sample
+	 * @return Index of the host
+	 */
+	public int getHost(int sample) {
+		return hosts[sample];
+	}
+
+	/**
+	 * Returns the x coordinate of a sample
+	 * @param sample Index of the sample
+	 * @return The x coordinate
+	 */
+	public double getX(int sample) {
+		return xs[sample];
+	}
+
+	/**
+	 * Returns the y coordinate of a sample
+	 * @param sample Index of the sample
+	 * @return The y coordinate
+	 */
+	public double getY(int sample) {
+		return ys[sample];
+	}
+
+	/**
+	 * Returns the location of a host at the given time. Locations between
+	 * the samples of the host are linearly interpolated. Before the first
+	 * (after the last) sample the first (last) location is returned.
+	 * @param host Index of the host
+	 * @param time The time
+	 * @return The location or null if the host has no samples
+	 */
+	public Coord getLocationAt(int host, double time) {
+		if (hostStarts == null) {
+			buildHostIndex();
+		}
+
+		int low = hostStarts[host];
+		int high = hostStarts[host + 1] - 1;
+		if (low > high) {
+			return null;
+		}
+		if (time <= stepTimes[hostSteps[low]]) {
+			return new Coord(xs[hostSamples[low]], ys[hostSamples[low]]);
+		}
+		if (time >= stepTimes[hostSteps[high]]) {
+			return new Coord(xs[hostSamples[high]], ys[hostSamples[high]]);
+		}
+
+		/* find the last sample at or before the time */
+		while (high - low > 1) {
+			int mid = (low + high) >>> 1;
+			if (stepTimes[hostSteps[mid]] <= time) {
+				low = mid;
+			} else {
+				high = mid;
+			}
+		}
+
+		double t0 = stepTimes[hostSteps[low]];
+		double ratio = (time - t0) / (stepTimes[hostSteps[high]] - t0);
+		int s0 = hostSamples[low];
+		int s1 = hostSamples[high];
+		return new Coord(xs[s0] + (xs[s1] - xs[s0]) * ratio,
+				ys[s0] + (ys[s1] - ys[s0]) * ratio);
+	}
+
+	/**
+	 * Builds the per host index of the samples (counting sort by host that
+	 * keeps the time order of each host's samples)
+	 */
+	private void buildHostIndex() {
+		int[] starts = new int[hostIds.length + 1];
+		for (int h : hosts) {
+			starts[h + 1]++;
+		}
+		for (int i=0; i < hostIds.length; i++) {
+			starts[i + 1] += starts[i];
+		}
+
+		int[] next = Arrays.copyOf(starts, hostIds.length);
+		int[] steps = new int[hosts.length];
+		int[] samples = new int[hosts.length];
+		for (int step=0; step < stepTimes.length; step++) {
+			for (int i=stepStarts[step], end=getStepEnd(step); i < end; i++) {
+				int pos = next[hosts[i]]++;
+				steps[pos] = step;
+				samples[pos] = i;
+			}
+		}
+
+		this.hostSteps = steps;
+		this.hostSamples = samples;
+		this.hostStarts = starts;
+	}
+
+	/**
+	 * Returns offset maxTime
+	 * @return the maxTime
+	 */
+	public double getMaxTime() {
+		return maxTime;
+	}
+
+	/**
+	 * Returns offset maxX
+	 * @return the maxX
+	 */
+	public double getMaxX() {
+		return maxX;
+	}
+
+	/**
+	 * Returns offset maxY
+	 * @return the maxY
+	 */
+	public double getMaxY() {
+		return maxY;
+	}
+
+	/**
+	 * Returns offset minTime
+	 * @return the minTime
+	 */
+	public double getMinTime() {
+		return minTime;
+	}
+
+	/**
+	 * Returns offset minX
+	 * @return the minX
+	 */
+	public double getMinX() {
+		return minX;
+	}
+
+	/**
+	 * Returns offset minY
+	 * @return the minY
+	 */
+	public double getMinY() {
+		return minY;
+	}
+
+	/**
+	 * Converts a text trace to a binary trace file
+	 * @param args text file and (optionally) target file. Default target is
+	 * the text file name with extension {@link #TRACE_EXT}.
+	 * @throws IOException if writing the trace file fails
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1 || args.length > 2) {
+			System.err.println("Usage: MovementTrace <textFile> [traceFile]");
+			System.exit(1);
+		}
+
+		String target = args.length > 1 ? args[1] : args[0];
+		if (!target.endsWith(TRACE_EXT)) {
+			target += TRACE_EXT;
+		}
+
+		long start = System.currentTimeMillis();
+		ExternalMovementReader reader = new ExternalMovementReader(args[0]);
+		reader.setNormalize(false);
+		MovementTrace trace = new MovementTrace(reader);
+		trace.store(new File(target));
+		System.out.println("Converted " + trace.getNrofSamples() +
+				" samples of " + trace.getNrofHosts() + " hosts to " + target +
+				" in " + (System.currentTimeMillis() - start) / 1000.0 + "s");
+	}
+}
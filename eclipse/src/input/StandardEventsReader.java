@@ -4,17 +4,18 @@
  */
 package input;
 
-import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.Integer;
 import java.lang.NumberFormatException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Scanner;
-import java.util.regex.Pattern;
 
 import core.SimError;
 
@@ -43,6 +44,12 @@ import core.SimError;
  * message ID for referring to all messages the node has in message buffer
  * (i.e., to delete all messages).
  * </P>
+ * <P> The file is parsed byte by byte (the default charset must be ASCII
+ * compatible) without a Scanner or regular expressions. Decimal times,
+ * integer sizes (with optional k, M, G, kiB, MiB or GiB suffix) and host IDs
+ * are decoded directly; other number formats are passed to a Scanner like
+ * before.
+ * </P>
  */
 public class StandardEventsReader implements ExternalEventsReader {
 	/** Identifier of message creation event ({@value}) */
@@ -66,76 +73,85 @@ public class StandardEventsReader implements ExternalEventsReader {
 	/** Message identifier to use to refer to all messages ({@value}) */
 	public static final String ALL_MESSAGES_ID = "*";
 
-	//private Scanner scanner;
-	private BufferedReader reader;
+	/** size of the file read buffer (bytes) */
+	private static final int BUFFER_SIZE = 1 << 16;
+	/** maximum number of significant digits that are decoded exactly */
+	private static final int MAX_EXACT_DIGITS = 15;
+	/** powers of ten that are exact double values */
+	private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4,
+		1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+		1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+	private static final byte[] CREATE_B = CREATE.getBytes();
+	private static final byte[] SEND_B = SEND.getBytes();
+	private static final byte[] DELIVERED_B = DELIVERED.getBytes();
+	private static final byte[] ABORT_B = ABORT.getBytes();
+	private static final byte[] DROP_B = DROP.getBytes();
+	private static final byte[] REMOVE_B = REMOVE.getBytes();
+	private static final byte[] CONNECTION_B = CONNECTION.getBytes();
+
+	private InputStream in;
+	private Charset charset;
+	private byte[] buffer = new byte[BUFFER_SIZE];
+	private int bufferPos = 0;
+	private int bufferLimit = 0;
+	/** has the previous line ended with '\r' (i.e., skip '\n') */
+	private boolean skipLf = false;
+
+	/** bytes of the current line */
+	private byte[] line = new byte[256];
+	private int lineLength;
+	/** start and end (exclusive) offsets of the tokens on the current line */
+	private int[] tokenStart = new int[8];
+	private int[] tokenEnd = new int[8];
+	private int nrofTokens;
 
 	public StandardEventsReader(File eventsFile){
 		try {
-			//this.scanner = new Scanner(eventsFile);
-			this.reader = new BufferedReader(new FileReader(eventsFile));
+			this.in = new FileInputStream(eventsFile);
 		} catch (FileNotFoundException e) {
 			throw new SimError(e.getMessage(),e);
 		}
+		this.charset = Charset.defaultCharset();
 	}
 
 
 	public List<ExternalEvent> readEvents(int nrof) {
 		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(nrof);
 		int eventsRead = 0;
-		// skip empty and comment lines
-		Pattern skipPattern = Pattern.compile("(#.*)|(^\\s*$)");
 
-		String line;
-		try {
-			line = this.reader.readLine();
-		} catch (IOException e1) {
-			throw new SimError("Reading from external event file failed.");
-		}
-		while (eventsRead < nrof && line != null) {
-			Scanner lineScan = new Scanner(line);
-			if (skipPattern.matcher(line).matches()) {
-				// skip empty and comment lines
-				try {
-					line = this.reader.readLine();
-				} catch (IOException e) {
-					throw new SimError("Reading from external event file " +
-							"failed.");
-				}
-				continue;
+		while (eventsRead < nrof && readLine()) {
+			if (isSkippedLine()) {
+				continue; // skip empty and comment lines
 			}
+			tokenize();
 
-			double time;
-			String action;
-			String msgId;
 			int hostAddr;
 			int host2Addr;
 
 			try {
-				time = lineScan.nextDouble();
-				action = lineScan.next();
+				double time = parseDouble(0);
+				int action = 1;
 
-				if (action.equals(DROP)) {
-					msgId = lineScan.next();
-					hostAddr = getHostAddress(lineScan.next());
-					events.add(new MessageDeleteEvent(hostAddr, msgId,
+				if (tokenEquals(action, DROP_B)) {
+					hostAddr = parseHostAddress(3);
+					events.add(new MessageDeleteEvent(hostAddr, token(2),
 							time, true));
 				}
-				else if (action.equals(REMOVE)) {
-					msgId = lineScan.next();
-					hostAddr = getHostAddress(lineScan.next());
-					events.add(new MessageDeleteEvent(hostAddr, msgId,
+				else if (tokenEquals(action, REMOVE_B)) {
+					hostAddr = parseHostAddress(3);
+					events.add(new MessageDeleteEvent(hostAddr, token(2),
 							time, false));
 				}
-				else if (action.equals(CONNECTION)) {
-					String connEventType;
+				else if (tokenEquals(action, CONNECTION_B)) {
 					boolean isUp;
-					hostAddr = getHostAddress(lineScan.next());
-					host2Addr = getHostAddress(lineScan.next());
-					connEventType = lineScan.next();
+					hostAddr = parseHostAddress(2);
+					host2Addr = parseHostAddress(3);
+					String connEventType = token(4);
 
 					String interfaceId = null;
-					if (lineScan.hasNext()) {
-						interfaceId = lineScan.next();
+					if (nrofTokens > 5) {
+						interfaceId = token(5);
 					}
 
 					if (connEventType.equalsIgnoreCase(CONNECTION_UP)) {
@@ -149,70 +165,52 @@ public class StandardEventsReader implements ExternalEventsReader {
 								connEventType + "'");
 					}
 
-					ConnectionEvent ce = new ConnectionEvent(hostAddr,
-							host2Addr, interfaceId, isUp, time);
-
-					events.add(ce);
+					events.add(new ConnectionEvent(hostAddr, host2Addr,
+							interfaceId, isUp, time));
 				}
 				else {
-					msgId = lineScan.next();
-					hostAddr = getHostAddress(lineScan.next());
-
-					host2Addr = getHostAddress(lineScan.next());
+					String msgId = token(2);
+					hostAddr = parseHostAddress(3);
+					host2Addr = parseHostAddress(4);
 
-					if (action.equals(CREATE)){
-						int size = 0;
-
-						if (lineScan.hasNextInt()){
-							size = lineScan.nextInt();
-						}
-						else if (lineScan.hasNext()){
-							size = convertToInteger(lineScan.next());
-						}else{
-							throw new Exception("Invalid number of columns for CREATE event");
+					if (tokenEquals(action, CREATE_B)){
+						if (nrofTokens <= 5) {
+							throw new Exception("Invalid number of columns " +
+									"for CREATE event");
 						}
-
+						int size = parseSize(5);
 						int respSize = 0;
-						if (lineScan.hasNextInt()) {
-							respSize = lineScan.nextInt();
-						}
-						else if(lineScan.hasNext()) {
-							respSize = convertToInteger(lineScan.next());
+						if (nrofTokens > 6) {
+							respSize = parseSize(6);
 						}
 						events.add(new MessageCreateEvent(hostAddr, host2Addr,
 								msgId, size, respSize, time));
 					}
 					else {
 						int stage = -1;
-						if (action.equals(SEND)) {
+						if (tokenEquals(action, SEND_B)) {
 							stage = MessageRelayEvent.SENDING;
 						}
-						else if (action.equals(DELIVERED)) {
+						else if (tokenEquals(action, DELIVERED_B)) {
 							stage = MessageRelayEvent.TRANSFERRED;
 						}
-						else if (action.equals(ABORT)) {
+						else if (tokenEquals(action, ABORT_B)) {
 							stage = MessageRelayEvent.ABORTED;
 						}
 						else {
-							throw new SimError("Unknown action '" + action +
-								"' in external events");
+							throw new SimError("Unknown action '" +
+								token(action) + "' in external events");
 						}
 						events.add(new MessageRelayEvent(hostAddr, host2Addr,
 								msgId, time, stage));
 					}
 				}
-				// discard the newline in the end
-				if (lineScan.hasNextLine()) {
-					lineScan.nextLine(); // TODO: test
-				}
 				eventsRead++;
-				if (eventsRead < nrof) {
-					line = this.reader.readLine();
-				}
 			} catch (Exception e) {
 				e.printStackTrace();
 				throw new SimError("Can't parse external event " +
-						(eventsRead+1) + " from '" + line + "'", e);
+						(eventsRead+1) + " from '" +
+						new String(line, 0, lineLength, charset) + "'", e);
 			}
 		}
 
@@ -220,31 +218,287 @@ public class StandardEventsReader implements ExternalEventsReader {
 	}
 
 	/**
-	 * Parses a host address from a hostId string (the numeric part after
+	 * Reads the next line (without the line terminator) to the line buffer.
+	 * Lines are terminated like in BufferedReader: by '\n', '\r' or "\r\n".
+	 * @return True if a line was read, false if the end of file was reached
+	 */
+	private boolean readLine() {
+		lineLength = 0;
+		boolean any = false;
+
+		while (true) {
+			if (bufferPos >= bufferLimit && !fillBuffer()) {
+				return any;
+			}
+			byte b = buffer[bufferPos++];
+			if (skipLf) {
+				skipLf = false;
+				if (b == '\n') {
+					continue;
+				}
+			}
+			any = true;
+			if (b == '\n') {
+				return true;
+			}
+			if (b == '\r') {
+				skipLf = true;
+				return true;
+			}
+			if (lineLength == line.length) {
+				byte[] larger = new byte[line.length * 2];
+				System.arraycopy(line, 0, larger, 0, lineLength);
+				line = larger;
+			}
+			line[lineLength++] = b;
+		}
+	}
+
+	/**
+	 * Reads more data from the file to the buffer
+	 * @return False if the end of file was reached, true otherwise
+	 */
+	private boolean fillBuffer() {
+		int n;
+		try {
+			do {
+				n = in.read(buffer, 0, buffer.length);
+			} while (n == 0);
+		} catch (IOException e) {
+			throw new SimError("Reading from external event file failed.");
+		}
+		if (n < 0) {
+			return false;
+		}
+		bufferPos = 0;
+		bufferLimit = n;
+		return true;
+	}
+
+	/**
+	 * Returns true if the current line is a comment line or an empty line
+	 * (i.e., only contains the whitespace characters of a regular expression)
+	 */
+	private boolean isSkippedLine() {
+		if (lineLength > 0 && line[0] == '#') {
+			return true;
+		}
+		for (int i=0; i<lineLength; i++) {
+			byte b = line[i];
+			if (b != ' ' && b != '\t' && b != 0x0B && b != '\f') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true for the (ASCII) whitespace characters that separate
+	 * tokens (cf. Character.isWhitespace)
+	 */
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || (b >= 0x09 && b <= 0x0D) || (b >= 0x1C && b <= 0x1F);
+	}
+
+	/**
+	 * Finds the whitespace separated tokens of the current line
+	 */
+	private void tokenize() {
+		nrofTokens = 0;
+		int i = 0;
+		while (true) {
+			while (i < lineLength && isWhitespace(line[i])) {
+				i++;
+			}
+			if (i >= lineLength) {
+				return;
+			}
+			if (nrofTokens == tokenStart.length) {
+				int[] larger = new int[nrofTokens * 2];
+				System.arraycopy(tokenStart, 0, larger, 0, nrofTokens);
+				tokenStart = larger;
+				larger = new int[nrofTokens * 2];
+				System.arraycopy(tokenEnd, 0, larger, 0, nrofTokens);
+				tokenEnd = larger;
+			}
+			tokenStart[nrofTokens] = i;
+			while (i < lineLength && !isWhitespace(line[i])) {
+				i++;
+			}
+			tokenEnd[nrofTokens++] = i;
+		}
+	}
+
+	/**
+	 * Returns the start offset of a token
+	 * @throws NoSuchElementException if the line does not have the token
+	 */
+	private int start(int token) {
+		if (token >= nrofTokens) {
+			throw new NoSuchElementException();
+		}
+		return tokenStart[token];
+	}
+
+	private String token(int token) {
+		int start = start(token);
+		return new String(line, start, tokenEnd[token] - start, charset);
+	}
+
+	private boolean tokenEquals(int token, byte[] value) {
+		int start = start(token);
+		if (tokenEnd[token] - start != value.length) {
+			return false;
+		}
+		for (int i=0; i<value.length; i++) {
+			if (line[start + i] != value[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parses a double value from a token. Plain decimal numbers with at most
+	 * {@link #MAX_EXACT_DIGITS} digits are decoded directly (the result is
+	 * exact, i.e., the same as by Double.parseDouble), other values with a
+	 * Scanner.
+	 */
+	private double parseDouble(int token) {
+		int i = start(token);
+		int end = tokenEnd[token];
+		boolean negative = false;
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = 0;
+		boolean point = false;
+
+		if (line[i] == '-' || line[i] == '+') {
+			negative = (line[i] == '-');
+			i++;
+		}
+		for (; i < end; i++) {
+			byte b = line[i];
+			if (b >= '0' && b <= '9') {
+				mantissa = mantissa * 10 + (b - '0');
+				digits++;
+				if (point) {
+					fractionDigits++;
+				}
+			} else if (b == '.' && !point) {
+				point = true;
+			} else {
+				break;
+			}
+		}
+
+		if (i < end || digits == 0 || digits > MAX_EXACT_DIGITS) {
+			return new Scanner(token(token)).nextDouble();
+		}
+		double value = mantissa / POWERS_OF_TEN[fractionDigits];
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parses a non-negative integer from the given range of the line
+	 * @return The value or -1 if the range is not a (non-empty) integer
+	 * that fits to an int
+	 */
+	private int parseDigits(int start, int end) {
+		if (start >= end || end - start > 10) {
+			return -1;
+		}
+		long value = 0;
+		for (int i=start; i<end; i++) {
+			byte b = line[i];
+			if (b < '0' || b > '9') {
+				return -1;
+			}
+			value = value * 10 + (b - '0');
+		}
+		return value > Integer.MAX_VALUE ? -1 : (int)value;
+	}
+
+	/**
+	 * Parses a message size with an optional unit suffix (see
+	 * {@link #convertToInteger(String)})
+	 */
+	private int parseSize(int token) {
+		int start = start(token);
+		int end = tokenEnd[token];
+		int unitStart = start;
+		while (unitStart < end && line[unitStart] >= '0' &&
+				line[unitStart] <= '9') {
+			unitStart++;
+		}
+
+		int number = parseDigits(start, unitStart);
+		if (number >= 0) {
+			int unitLength = end - unitStart;
+			if (unitLength == 0) {
+				return number;
+			}
+			byte unit = line[unitStart];
+			int multiplier = 0;
+			if (unitLength == 1) {
+				multiplier = (unit == 'k' ? 1000 : unit == 'M' ? 1000000 :
+					unit == 'G' ? 1000000000 : 0);
+			}
+			else if (unitLength == 3 && line[unitStart + 1] == 'i' &&
+					line[unitStart + 2] == 'B') {
+				multiplier = (unit == 'k' ? 1024 : unit == 'M' ? 1048576 :
+					unit == 'G' ? 1073741824 : 0);
+			}
+			if (multiplier != 0) {
+				return number * multiplier;
+			}
+		}
+
+		/* signs, grouping, other units etc. */
+		String str = token(token);
+		Scanner s = new Scanner(str);
+		if (s.hasNextInt()) {
+			return s.nextInt();
+		}
+		return convertToInteger(str);
+	}
+
+	/**
+	 * Parses a host address from a hostId token (the numeric part after
 	 * optional non-numeric part).
-	 * @param hostId The id to parse the address from
+	 * @param token Index of the token to parse the address from
 	 * @return The address
 	 * @throws SimError if no address could be parsed from the id
 	 */
-	private int getHostAddress(String hostId) {
-		String addressPart = "";
-		if (hostId.matches("^\\d+$")) {
-			addressPart = hostId; // host id is only the address
+	private int parseHostAddress(int token) {
+		int start = start(token);
+		int end = tokenEnd[token];
+		int digitsStart = end;
+		while (digitsStart > start && line[digitsStart - 1] >= '0' &&
+				line[digitsStart - 1] <= '9') {
+			digitsStart--;
 		}
-		else if (hostId.matches("^\\D+\\d+$")) {
-			String [] parts = hostId.split("\\D");
-			addressPart = parts[parts.length-1]; // last occurence is the addr
+
+		if (digitsStart == end) {
+			throw new SimError("Invalid host ID '" + token(token) + "'");
 		}
-		else {
-			throw new SimError("Invalid host ID '" + hostId + "'");
+		for (int i=start; i<digitsStart; i++) {
+			if (line[i] >= '0' && line[i] <= '9') {
+				throw new SimError("Invalid host ID '" + token(token) + "'");
+			}
 		}
 
-		return Integer.parseInt(addressPart);
+		int address = parseDigits(digitsStart, end);
+		if (address < 0) { // too large
+			return Integer.parseInt(new String(line, digitsStart,
+					end - digitsStart, charset));
+		}
+		return address;
 	}
 
 	public void close() {
 		try {
-			this.reader.close();
+			this.in.close();
 		} catch (IOException e) {}
 	}
 
@@ -5,8 +5,10 @@
 package interfaces;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 
 import movement.MovementModel;
 
@@ -34,6 +36,13 @@ import core.World;
  * connection. Then only that subset of interfaces is checked for possible
  * connectivity.
  * </P>
+ * <P>Interfaces are identified by their index in the grid. Once per
+ * simulation step (i.e., after any host has moved), all interfaces are sorted
+ * into the cells by a counting sort and every pair of interfaces in the same
+ * or neighboring cells is tested once for being close enough to connect with
+ * any of the ranges. The result is kept as a flat adjacency list and visiting
+ * the near interfaces does not allocate anything.
+ * </P>
  * <P>
  * <strong>Note:</strong> this class does NOT support negative
  * coordinates. Also, it makes sense to normalize the coordinates to start
@@ -53,16 +62,50 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	public static final String CELL_SIZE_MULT_S = "cellSizeMult";
 	/** default value for cell size multiplier ({@value}) */
 	public static final int DEF_CON_CELL_SIZE_MULT = 5;
+	/** initial capacity of the per interface arrays */
+	private static final int INITIAL_CAPACITY = 16;
 
-	private GridCell[][] cells;
-	private HashMap<NetworkInterface, GridCell> ginterfaces;
 	private int cellSize;
 	private int rows;
 	private int cols;
+	/** maximum range the grid was created for */
+	private double maxRange;
 	private static int worldSizeX;
 	private static int worldSizeY;
 	private static int cellSizeMultiplier;
 
+	/* registered interfaces, indexed by their optimizer index */
+	private NetworkInterface[] interfaces;
+	private int size;
+	/* order in which the interfaces were added, by optimizer index */
+	private long[] addOrder;
+	private long nextAddOrder;
+
+	/* locations and cells of the interfaces when the grid was built */
+	private double[] xs;
+	private double[] ys;
+	private int[] cellOf;
+
+	/* interfaces sorted by cell: members of cell c are
+	 * cellMembers[cellStart[c]] .. cellMembers[cellStart[c+1]-1] */
+	private int[] cellStart;
+	private int[] cellFill;
+	private int[] cellMembers;
+
+	/* near interfaces of interface i (in the order they were added):
+	 * near[nearStart[i]] .. near[nearStart[i+1]-1] */
+	private int[] nearStart;
+	private int[] nearFill;
+	private int[] near;
+	/* pairs of near interfaces (i, j) found while building */
+	private int[] pairs;
+	private int nrofPairs;
+
+	/** has an interface been added/removed/moved since the last build */
+	private boolean dirty;
+	/** version of the locations when the grid was built */
+	private int builtVersion;
+
 	static HashMap<Integer,ConnectivityGrid> gridobjects;
 
 	static {
@@ -96,20 +139,31 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * Creates a new overlay connectivity grid
 	 * @param cellSize Cell's edge's length (must be larger than the largest
 	 * 	radio coverage's diameter)
+	 * @param maxRange Maximum range used by the radio technology
 	 */
-	private ConnectivityGrid(int cellSize) {
+	private ConnectivityGrid(int cellSize, double maxRange) {
 		this.rows = worldSizeY/cellSize + 1;
 		this.cols = worldSizeX/cellSize + 1;
-		// leave empty cells on both sides to make neighbor search easier
-		this.cells = new GridCell[rows+2][cols+2];
 		this.cellSize = cellSize;
-
-		for (int i=0; i<rows+2; i++) {
-			for (int j=0; j<cols+2; j++) {
-				this.cells[i][j] = new GridCell();
-			}
-		}
-		ginterfaces = new HashMap<NetworkInterface,GridCell>();
+		this.maxRange = maxRange;
+
+		// leave empty cells on all sides to make neighbor search easier
+		int nrofCells = (rows+2) * (cols+2);
+		this.cellStart = new int[nrofCells + 1];
+		this.cellFill = new int[nrofCells];
+
+		this.interfaces = new NetworkInterface[INITIAL_CAPACITY];
+		this.addOrder = new long[INITIAL_CAPACITY];
+		this.xs = new double[INITIAL_CAPACITY];
+		this.ys = new double[INITIAL_CAPACITY];
+		this.cellOf = new int[INITIAL_CAPACITY];
+		this.cellMembers = new int[INITIAL_CAPACITY];
+		this.nearStart = new int[INITIAL_CAPACITY + 1];
+		this.nearFill = new int[INITIAL_CAPACITY];
+		this.near = new int[INITIAL_CAPACITY];
+		this.pairs = new int[2 * INITIAL_CAPACITY];
+		this.size = 0;
+		this.dirty = true;
 	}
 
 	/**
@@ -126,7 +180,7 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		} else {
 			ConnectivityGrid newgrid =
 				new ConnectivityGrid((int)Math.ceil(maxRange *
-						cellSizeMultiplier));
+						cellSizeMultiplier), maxRange);
 			gridobjects.put((Integer)key,newgrid);
 			return newgrid;
 		}
@@ -137,9 +191,19 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The new network interface
 	 */
 	public void addInterface(NetworkInterface ni) {
-		GridCell c = cellFromCoord(ni.getLocation());
-		c.addInterface(ni);
-		ginterfaces.put(ni,c);
+		if (contains(ni)) {
+			return;
+		}
+
+		if (size == interfaces.length) {
+			grow(2 * size);
+		}
+
+		interfaces[size] = ni;
+		addOrder[size] = nextAddOrder++;
+		ni.setOptimizerIndex(size);
+		size++;
+		dirty = true;
 	}
 
 	/**
@@ -147,11 +211,19 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The interface to be removed
 	 */
 	public void removeInterface(NetworkInterface ni) {
-		GridCell c = ginterfaces.get(ni);
-		if (c != null) {
-			c.removeInterface(ni);
+		if (!contains(ni)) {
+			return;
 		}
-		ginterfaces.remove(ni);
+
+		// move the last interface to the free index
+		int index = ni.getOptimizerIndex();
+		size--;
+		interfaces[index] = interfaces[size];
+		addOrder[index] = addOrder[size];
+		interfaces[index].setOptimizerIndex(index);
+		interfaces[size] = null;
+		ni.setOptimizerIndex(-1);
+		dirty = true;
 	}
 
 	/**
@@ -169,155 +241,231 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The interface to update
 	 */
 	public void updateLocation(NetworkInterface ni) {
-		GridCell oldCell = (GridCell)ginterfaces.get(ni);
-		GridCell newCell = cellFromCoord(ni.getLocation());
+		if (dirty || !contains(ni)) {
+			return;
+		}
 
-		if (newCell != oldCell) {
-			oldCell.moveInterface(ni, newCell);
-			ginterfaces.put(ni,newCell);
+		int index = ni.getOptimizerIndex();
+		Coord c = ni.getLocation();
+		if (c.getX() != xs[index] || c.getY() != ys[index]) {
+			dirty = true;
 		}
 	}
 
 	/**
-	 * Finds all neighboring cells and the cell itself based on the coordinates
-	 * @param c The coordinates
-	 * @return Array of neighboring cells
+	 * Returns all interfaces that use the same technology and channel
 	 */
-	private GridCell[] getNeighborCellsByCoord(Coord c) {
-		// +1 due empty cells on both sides of the matrix
-		int row = (int)(c.getY()/cellSize) + 1;
-		int col = (int)(c.getX()/cellSize) + 1;
-		return getNeighborCells(row,col);
+	public Collection<NetworkInterface> getAllInterfaces() {
+		return new ArrayList<NetworkInterface>(
+				Arrays.asList(interfaces).subList(0, size));
 	}
 
 	/**
-	 * Returns an array of Cells that contains the neighbors of a certain
-	 * cell and the cell itself.
-	 * @param row Row index of the cell
-	 * @param col Column index of the cell
-	 * @return Array of neighboring Cells
+	 * Returns all interfaces that are near (i.e., possibly within range)
+	 * and use the same technology and channel as the given interface
+	 * @param ni The interface whose neighboring interfaces are returned
+	 * @return List of near interfaces
 	 */
-	private GridCell[] getNeighborCells(int row, int col) {
-		return new GridCell[] {
-			cells[row-1][col-1],cells[row-1][col],cells[row-1][col+1],//1st row
-			cells[row][col-1],cells[row][col],cells[row][col+1],//2nd row
-			cells[row+1][col-1],cells[row+1][col],cells[row+1][col+1]//3rd row
-		};
+	public Collection<NetworkInterface> getNearInterfaces(
+			NetworkInterface ni) {
+		List<NetworkInterface> niList = new ArrayList<NetworkInterface>();
+		if (!contains(ni)) {
+			return niList;
+		}
+
+		ensureBuilt();
+		int index = ni.getOptimizerIndex();
+		for (int k=nearStart[index], end=nearStart[index+1]; k<end; k++) {
+			niList.add(interfaces[near[k]]);
+		}
+
+		return niList;
 	}
 
 	/**
-	 * Get the cell having the specific coordinates
-	 * @param c Coordinates
-	 * @return The cell
+	 * Visits all interfaces that are near (i.e., possibly within range) and
+	 * use the same technology and channel as the given interface, in the
+	 * order they have been added to the grid. Does not allocate anything.
+	 * @param ni The interface whose neighboring interfaces are visited
+	 * @param visitor The visitor
 	 */
-	private GridCell cellFromCoord(Coord c) {
-		// +1 due empty cells on both sides of the matrix
-		int row = (int)(c.getY()/cellSize) + 1;
-		int col = (int)(c.getX()/cellSize) + 1;
+	public void forEachNearInterface(NetworkInterface ni,
+			InterfaceVisitor visitor) {
+		if (!contains(ni)) {
+			return;
+		}
 
-		assert row > 0 && row <= rows && col > 0 && col <= cols : "Location " +
-		c + " is out of world's bounds";
+		ensureBuilt();
+		int index = ni.getOptimizerIndex();
+		for (int k=nearStart[index], end=nearStart[index+1]; k<end; k++) {
+			visitor.visit(interfaces[near[k]]);
+		}
+	}
 
-		return this.cells[row][col];
+	private boolean contains(NetworkInterface ni) {
+		int index = ni.getOptimizerIndex();
+		return index >= 0 && index < size && interfaces[index] == ni;
 	}
 
 	/**
-	 * Returns all interfaces that use the same technology and channel
+	 * Builds the grid if any interface has been added, removed or moved
 	 */
-	public Collection<NetworkInterface> getAllInterfaces() {
-		return (Collection<NetworkInterface>)ginterfaces.keySet();
+	private void ensureBuilt() {
+		int version = NetworkInterface.getRangeVersion();
+		if (!dirty && builtVersion == version) {
+			return;
+		}
+
+		build();
+		dirty = false;
+		builtVersion = version;
 	}
 
 	/**
-	 * Returns all interfaces that are "near" (i.e., in neighboring grid cells)
-	 * and use the same technology and channel as the given interface
-	 * @param ni The interface whose neighboring interfaces are returned
-	 * @return List of near interfaces
+	 * Sorts all interfaces into the cells and finds all near pairs
 	 */
-	public Collection<NetworkInterface> getNearInterfaces(
-			NetworkInterface ni) {
-		ArrayList<NetworkInterface> niList = new ArrayList<NetworkInterface>();
-		GridCell loc = (GridCell)ginterfaces.get(ni);
-
-		if (loc != null) {
-			GridCell[] neighbors =
-				getNeighborCellsByCoord(ni.getLocation());
-			for (int i=0; i < neighbors.length; i++) {
-				niList.addAll(neighbors[i].getInterfaces());
+	private void build() {
+		int stride = cols + 2;
+		int nrofCells = cellFill.length;
+
+		// -- cells of all interfaces (the current ranges may exceed maxRange)
+		double range = maxRange;
+		for (int i=0; i<size; i++) {
+			Coord c = interfaces[i].getLocation();
+			xs[i] = c.getX();
+			ys[i] = c.getY();
+			cellOf[i] = cellIndex(xs[i], ys[i]);
+			range = Math.max(range, interfaces[i].getTransmitRange());
+		}
+		range = Math.min(range, cellSize);
+
+		// -- counting sort by cell (ascending index within a cell)
+		Arrays.fill(cellStart, 0);
+		for (int i=0; i<size; i++) {
+			cellStart[cellOf[i] + 1]++;
+		}
+		for (int c=0; c<nrofCells; c++) {
+			cellStart[c + 1] += cellStart[c];
+		}
+		System.arraycopy(cellStart, 0, cellFill, 0, nrofCells);
+		for (int i=0; i<size; i++) {
+			cellMembers[cellFill[cellOf[i]]++] = i;
+		}
+
+		// -- test every pair in the same or neighboring cells once
+		nrofPairs = 0;
+		for (int c=0; c<nrofCells; c++) {
+			for (int k=cellStart[c], end=cellStart[c+1]; k<end; k++) {
+				int a = cellMembers[k];
+				findPairs(a, k + 1, end, range);
+				// forward neighbors (interior cells only have members)
+				findPairs(a, c + 1, range);
+				findPairs(a, c + stride - 1, range);
+				findPairs(a, c + stride, range);
+				findPairs(a, c + stride + 1, range);
 			}
 		}
 
-		return niList;
+		// -- adjacency lists
+		Arrays.fill(nearStart, 0, size + 1, 0);
+		for (int p=0; p<nrofPairs; p++) {
+			nearStart[pairs[2*p] + 1]++;
+			nearStart[pairs[2*p + 1] + 1]++;
+		}
+		for (int i=0; i<size; i++) {
+			nearStart[i + 1] += nearStart[i];
+		}
+		if (near.length < nearStart[size]) {
+			near = new int[Math.max(nearStart[size], 2 * near.length)];
+		}
+		System.arraycopy(nearStart, 0, nearFill, 0, size);
+		for (int p=0; p<nrofPairs; p++) {
+			int a = pairs[2*p];
+			int b = pairs[2*p + 1];
+			near[nearFill[a]++] = b;
+			near[nearFill[b]++] = a;
+		}
+		for (int i=0; i<size; i++) {
+			sortByAddOrder(near, nearStart[i], nearStart[i+1]);
+		}
 	}
 
+	private void findPairs(int a, int cell, double range) {
+		findPairs(a, cellStart[cell], cellStart[cell+1], range);
+	}
 
 	/**
-	 * Returns a string representation of the ConnectivityCells object
-	 * @return a string representation of the ConnectivityCells object
+	 * Records all pairs of the interface and the cell members [from, to)
+	 * that are within the given range
 	 */
-	public String toString() {
-		return getClass().getSimpleName() + " of size " +
-			this.cols + "x" + this.rows + ", cell size=" + this.cellSize;
+	private void findPairs(int a, int from, int to, double range) {
+		for (int k=from; k<to; k++) {
+			int b = cellMembers[k];
+			double dx = xs[a] - xs[b];
+			double dy = ys[a] - ys[b];
+			if (Math.sqrt(dx*dx + dy*dy) > range) {
+				continue;
+			}
+
+			if (2 * nrofPairs + 2 > pairs.length) {
+				pairs = Arrays.copyOf(pairs, 2 * pairs.length);
+			}
+			pairs[2*nrofPairs] = a;
+			pairs[2*nrofPairs + 1] = b;
+			nrofPairs++;
+		}
 	}
 
 	/**
-	 * A single cell in the cell grid. Contains the interfaces that are
-	 * currently in that part of the grid.
+	 * Insertion sort of a (short) range of interface indexes by the order
+	 * the interfaces were added
 	 */
-	public class GridCell {
-		// how large array is initially chosen
-		private static final int EXPECTED_INTERFACE_COUNT = 5;
-		private ArrayList<NetworkInterface> interfaces;
-
-		private GridCell() {
-			this.interfaces = new ArrayList<NetworkInterface>(
-					EXPECTED_INTERFACE_COUNT);
-		}
-
-		/**
-		 * Returns a list of of interfaces in this cell
-		 * @return a list of of interfaces in this cell
-		 */
-		public ArrayList<NetworkInterface> getInterfaces() {
-			return this.interfaces;
+	private void sortByAddOrder(int[] values, int from, int to) {
+		for (int i=from + 1; i<to; i++) {
+			int value = values[i];
+			int j = i - 1;
+			while (j >= from && addOrder[values[j]] > addOrder[value]) {
+				values[j + 1] = values[j];
+				j--;
+			}
+			values[j + 1] = value;
 		}
+	}
 
-		/**
-		 * Adds an interface to this cell
-		 * @param ni The interface to add
-		 */
-		public void addInterface(NetworkInterface ni) {
-			this.interfaces.add(ni);
-		}
+	/**
+	 * Get the index of the cell having the specific coordinates
+	 * @param x X coordinate
+	 * @param y Y coordinate
+	 * @return The index of the cell
+	 */
+	private int cellIndex(double x, double y) {
+		// +1 due empty cells on both sides of the matrix
+		int row = (int)(y/cellSize) + 1;
+		int col = (int)(x/cellSize) + 1;
 
-		/**
-		 * Removes an interface from this cell
-		 * @param ni The interface to remove
-		 */
-		public void removeInterface(NetworkInterface ni) {
-			this.interfaces.remove(ni);
-		}
+		assert row > 0 && row <= rows && col > 0 && col <= cols : "Location " +
+		x + "," + y + " is out of world's bounds";
 
-		/**
-		 * Moves a interface in a Cell to another Cell
-		 * @param ni The interface to move
-		 * @param to The cell where the interface should be moved to
-		 */
-		public void moveInterface(NetworkInterface ni, GridCell to) {
-			to.addInterface(ni);
-			boolean removeOk = this.interfaces.remove(ni);
-			assert removeOk : "interface " + ni +
-				" not found from cell with " + interfaces.toString();
-		}
+		return row * (cols + 2) + col;
+	}
 
-		/**
-		 * Returns a string representation of the cell
-		 * @return a string representation of the cell
-		 */
-		public String toString() {
-			return getClass().getSimpleName() + " with " +
-				this.interfaces.size() + " interfaces :" + this.interfaces;
-		}
+	private void grow(int capacity) {
+		interfaces = Arrays.copyOf(interfaces, capacity);
+		addOrder = Arrays.copyOf(addOrder, capacity);
+		xs = Arrays.copyOf(xs, capacity);
+		ys = Arrays.copyOf(ys, capacity);
+		cellOf = Arrays.copyOf(cellOf, capacity);
+		cellMembers = Arrays.copyOf(cellMembers, capacity);
+		nearStart = Arrays.copyOf(nearStart, capacity + 1);
+		nearFill = Arrays.copyOf(nearFill, capacity);
 	}
 
+	/**
+	 * Returns a string representation of the ConnectivityCells object
+	 * @return a string representation of the ConnectivityCells object
+	 */
+	public String toString() {
+		return getClass().getSimpleName() + " of size " +
+			this.cols + "x" + this.rows + ", cell size=" + this.cellSize;
+	}
 }
@@ -14,6 +14,17 @@ import core.NetworkInterface;
  */
 abstract public class ConnectivityOptimizer {
 
+	/**
+	 * Callback for visiting near network interfaces
+	 */
+	public interface InterfaceVisitor {
+		/**
+		 * Called for every near network interface
+		 * @param ni The near network interface
+		 */
+		public void visit(NetworkInterface ni);
+	}
+
 	/**
 	 * Adds a network interface to the optimizer (unless it is already present)
 	 */
@@ -40,6 +51,22 @@ abstract public class ConnectivityOptimizer {
 	abstract public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface ni);
 
+	/**
+	 * Visits all network interfaces that might be located so that they can
+	 * be connected with the network interface (cf.
+	 * {@link #getNearInterfaces(NetworkInterface)}).
+	 *
+	 * @param ni network interface that needs to be connected
+	 * @param visitor Visitor called for every network interface within
+	 * proximity
+	 */
+	public void forEachNearInterface(NetworkInterface ni,
+			InterfaceVisitor visitor) {
+		for (NetworkInterface other : getNearInterfaces(ni)) {
+			visitor.visit(other);
+		}
+	}
+
 	/**
 	 * Finds all other interfaces that are registered to the
 	 * ConnectivityOptimizer
@@ -4,7 +4,6 @@
  */
 package interfaces;
 
-import java.util.Collection;
 import core.Connection;
 import core.NetworkInterface;
 import core.Settings;
@@ -95,11 +94,7 @@ public class DistanceCapacityInterface extends NetworkInterface {
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces =
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) {
-			connect(i);
-		}
+		optimizer.forEachNearInterface(this, connector);
 
 		/* update all connections */
 		for (Connection con : getConnections()) {
@@ -4,8 +4,6 @@
  */
 package interfaces;
 
-import java.util.Collection;
-
 import core.Connection;
 import core.NetworkInterface;
 import core.Settings;
@@ -98,10 +96,7 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces =
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces)
-			connect(i);
+		optimizer.forEachNearInterface(this, connector);
 
 		// Find the current number of transmissions
 		// (to calculate the current transmission speed
@@ -5,7 +5,9 @@
 package movement;
 
 import input.ExternalMovementReader;
+import input.MovementTrace;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -20,7 +22,9 @@ import core.Settings;
 import core.SimClock;
 
 /**
- * Movement model that uses external data of node locations.
+ * Movement model that uses external data of node locations. The data is
+ * read with {@link ExternalMovementReader} or, if the file is a binary
+ * trace (see {@link MovementTrace#TRACE_EXT}), from a {@link MovementTrace}.
  */
 public class ExternalMovement extends MovementModel {
 	/** Namespace for settings */
@@ -34,11 +38,23 @@ public class ExternalMovement extends MovementModel {
 	private static final Coord DEF_INIT_LOC = new Coord(0,0);
 	private static ExternalMovementReader reader;
 	private static String inputFileName;
+	/** size of the area covered by the data */
+	private static int maxX;
+	private static int maxY;
 
 	/** mapping of external id to movement model */
 	private static Map<String, ExternalMovement> idMapping;
 	/** initial locations for nodes */
 	private static List<Tuple<String, Coord>> initLocations;
+
+	/** binary trace (null if the data is read with the reader) */
+	private static MovementTrace trace;
+	/** mapping of trace's host indexes to movement models */
+	private static ExternalMovement[] hostMapping;
+	/** index of the next unused initial location sample of the trace */
+	private static int nextInitSample;
+	/** index of the next time instance to read from the trace */
+	private static int nextStep;
 	/** time of the very first location data */
 	private static double initTime;
 	/** sampling interval (seconds) of the location data */
@@ -82,10 +98,23 @@ public class ExternalMovement extends MovementModel {
 			Settings s = new Settings(EXTERNAL_MOVEMENT_NS);
 			idMapping = new HashMap<String, ExternalMovement>();
 			inputFileName = s.getSetting(MOVEMENT_FILE_S);
-			reader = new ExternalMovementReader(inputFileName);
-
-			initLocations = reader.readNextMovements();
-			initTime = reader.getLastTimeStamp();
+			if (MovementTrace.isTraceFile(new File(inputFileName))) {
+				trace = MovementTrace.load(new File(inputFileName), true);
+				hostMapping = new ExternalMovement[trace.getNrofHosts()];
+				initLocations = new LinkedList<Tuple<String, Coord>>();
+				nextInitSample = 0;
+				nextStep = 1;
+				initTime = trace.getNrofSteps() > 0 ? trace.getStepTime(0) : -1;
+				maxX = (int)(trace.getMaxX() - trace.getMinX()) + 1;
+				maxY = (int)(trace.getMaxY() - trace.getMinY()) + 1;
+			}
+			else {
+				reader = new ExternalMovementReader(inputFileName);
+				initLocations = reader.readNextMovements();
+				initTime = reader.getLastTimeStamp();
+				maxX = (int)(reader.getMaxX() - reader.getMinX()) + 1;
+				maxY = (int)(reader.getMaxY() - reader.getMinY()) + 1;
+			}
 			samplingInterval = -1;
 			lastPreloadTime = -1;
 
@@ -110,7 +139,16 @@ public class ExternalMovement extends MovementModel {
 		pathQueue = new LinkedList<Tuple<Double, Path>>();
 		latestPath = null;
 
-		if (initLocations.size() > 0) { // we have location data left
+		if (trace != null && trace.getNrofSteps() > 0 &&
+				nextInitSample < trace.getStepEnd(0)) {
+			int sample = nextInitSample++;
+			this.intialLocation = this.latestLocation =
+				new Coord(trace.getX(sample), trace.getY(sample));
+			this.latestPathStartTime = initTime;
+			hostMapping[trace.getHost(sample)] = this;
+			isActive = true;
+		}
+		else if (initLocations.size() > 0) { // we have location data left
 			// gets a new location from the list
 			Tuple<String, Coord> initLoc = initLocations.remove(0);
 			this.intialLocation = this.latestLocation = initLoc.getValue();
@@ -155,6 +193,11 @@ public class ExternalMovement extends MovementModel {
 		return isActive;
 	}
 
+	@Override
+	public double getNextActivenessChangeTime() {
+		return SimClock.getTime(); // changes whenever new data is read
+	}
+
 	/**
 	 * Adds a new location with a time to this model's move pattern. If the
 	 * node stayed stationary during the update, the current path is put to the
@@ -224,12 +267,12 @@ public class ExternalMovement extends MovementModel {
 
 	@Override
 	public int getMaxX() {
-		return (int)(reader.getMaxX() - reader.getMinX()) + 1;
+		return maxX;
 	}
 
 	@Override
 	public int getMaxY() {
-		return (int)(reader.getMaxY() - reader.getMinY()) + 1;
+		return maxY;
 	}
 
 
@@ -244,6 +287,10 @@ public class ExternalMovement extends MovementModel {
 	 * were read.
 	 */
 	private static double readMorePaths() {
+		if (trace != null) {
+			return readMoreTracePaths();
+		}
+
 		List<Tuple<String, Coord>> list = reader.readNextMovements();
 		double time = reader.getLastTimeStamp();
 
@@ -267,11 +314,40 @@ public class ExternalMovement extends MovementModel {
 		}
 	}
 
+	/**
+	 * Reads paths for the next time instance from the binary trace
+	 * @return The time stamp of the time instance or Double.NaN if all
+	 * time instances were already read.
+	 */
+	private static double readMoreTracePaths() {
+		if (nextStep >= trace.getNrofSteps()) {
+			return Double.NaN;
+		}
+
+		double time = trace.getStepTime(nextStep);
+		if (samplingInterval == -1) {
+			samplingInterval = time - initTime;
+		}
+
+		for (int i = trace.getStepStart(nextStep),
+				end = trace.getStepEnd(nextStep); i < end; i++) {
+			ExternalMovement em = hostMapping[trace.getHost(i)];
+			if (em != null) { // skip hosts not mentioned in the init phase
+				em.addLocation(new Coord(trace.getX(i), trace.getY(i)), time);
+			}
+		}
+		nextStep++;
+
+		return time;
+	}
+
 	/**
 	 * Reset state so that next instance will have a fresh state
 	 */
 	public static void reset() {
 		idMapping = null;
+		trace = null;
+		hostMapping = null;
 	}
 
 }
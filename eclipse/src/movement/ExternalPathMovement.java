@@ -81,6 +81,22 @@ public class ExternalPathMovement extends MovementModel {
 		return false;
 	}
 
+	@Override
+	public double getNextActivenessChangeTime() {
+		double t = SimClock.getTime();
+		double next = Double.MAX_VALUE;
+
+		for (ExternalPathMovementReader.ActiveTime a : this.active) {
+			if (a.start > t) {
+				next = Math.min(next, a.start);
+			} else if (a.end >= t) {
+				next = Math.min(next, a.end);
+			}
+		}
+
+		return next;
+	}
+
 	@Override
 	public Path getPath() {
 		// Make sure to not give out paths when the node is not active
@@ -232,6 +232,17 @@ public abstract class MovementModel {
 		return ah.isActive();
 	}
 
+	/**
+	 * Returns the earliest sim time when the value of {@link #isActive()}
+	 * can change. Models that override isActive() should override this
+	 * method too.
+	 * @return The time of the next change, the current time if it can not be
+	 * told, or Double.MAX_VALUE if the value never changes
+	 */
+	public double getNextActivenessChangeTime() {
+		return ah.getNextChangeTime(0);
+	}
+
 	/**
 	 * Returns a sim time when the next path is available. This implementation
 	 * returns a random time in future that is {@link #WAIT_TIME} from now.
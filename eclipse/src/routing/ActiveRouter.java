@@ -5,6 +5,7 @@
 package routing;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -18,6 +19,7 @@ import java.util.Random;
 import routing.util.EnergyModel;
 import routing.util.MessageTransferAcceptPolicy;
 import routing.util.RoutingInfo;
+import routing.util.TransferQueue;
 import util.Tuple;
 
 import core.Connection;
@@ -54,8 +56,11 @@ public abstract class ActiveRouter extends MessageRouter {
 	private MessageTransferAcceptPolicy policy;
 	private EnergyModel energy;
 
-	private Map<Connection, List<Message>> transferQueues;
+	private Map<Connection, TransferQueue> transferQueues;
 	private Map<DTNHost, List<Message>> deliveryQueue;
+	/** summary vectors of the other ends of the connections
+	 * (see {@link #requestSummaryVector(Connection)}) */
+	private Map<Connection, BitSet> peerSummaries;
 
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -94,6 +99,7 @@ public abstract class ActiveRouter extends MessageRouter {
 		this.lastTtlCheck = 0;
 		this.transferQueues = new HashMap<>();
 		this.deliveryQueue = new HashMap<>();
+		this.peerSummaries = new HashMap<>();
 	}
 
 	/**
@@ -107,6 +113,56 @@ public abstract class ActiveRouter extends MessageRouter {
 		if (this.energy != null && con.isUp() && !con.isInitiator(getHost())) {
 			this.energy.reduceDiscoveryEnergy();
 		}
+		if (!con.isUp()) {
+			this.peerSummaries.remove(con);
+		}
+	}
+
+	/**
+	 * Requests the summary vector (see {@link MessageRouter#getSummaryVector()})
+	 * of the other end of a connection that just came up. As both ends of the
+	 * connection are informed about the new connection, routers that call
+	 * this from {@link #changedConnection(Connection)} exchange their
+	 * summaries. The messages in the summary are not offered to the other
+	 * node over the connection; this spares the transfer attempts that the
+	 * other node would reject as old.
+	 * <P>
+	 * The summary is updated with the messages that are transferred, or
+	 * rejected as old, over the connection. Messages that the other node
+	 * drops during the connection are not offered to it again.
+	 * </P>
+	 * @param con The connection that came up
+	 */
+	protected void requestSummaryVector(Connection con) {
+		if (con.isUp()) {
+			DTNHost other = con.getOtherNode(getHost());
+			this.peerSummaries.put(con, other.getRouter().getSummaryVector());
+		}
+	}
+
+	/**
+	 * Returns true if the other end of the connection is known to have seen
+	 * the message (according to its summary vector)
+	 * @param m The message
+	 * @param con The connection
+	 * @return true if the message is known to the other end of the connection
+	 */
+	protected boolean isKnownByPeer(Message m, Connection con) {
+		BitSet summary = this.peerSummaries.get(con);
+		return summary != null && summary.get(m.getHandle());
+	}
+
+	/**
+	 * Adds a message to the summary vector of the other end of a connection
+	 * (if the summary was requested for the connection)
+	 * @param m The message the other end has seen
+	 * @param con The connection
+	 */
+	private void setKnownByPeer(Message m, Connection con) {
+		BitSet summary = this.peerSummaries.get(con);
+		if (summary != null) {
+			summary.set(m.getHandle());
+		}
 	}
 
 	@Override
@@ -191,7 +247,15 @@ public abstract class ActiveRouter extends MessageRouter {
 			return MessageRouter.DENIED_POLICY;
 		}
 
-		retVal = con.startTransfer(getHost(), m);
+		if (isKnownByPeer(m, con)) {
+			retVal = DENIED_OLD; // no need to ask the other node
+		} else {
+			retVal = con.startTransfer(getHost(), m);
+			if (retVal == DENIED_OLD) {
+				setKnownByPeer(m, con);
+			}
+		}
+
 		if (retVal == RCV_OK) { // started transfer
 			addToSendingConnections(con);
 		}
@@ -237,8 +301,8 @@ public abstract class ActiveRouter extends MessageRouter {
 			return TRY_LATER_BUSY; // only one connection at a time
 		}
 
-		if ( hasMessage(m.getId()) || isDeliveredMessage(m) ||
-				super.isBlacklistedMessage(m.getId())) {
+		if ( hasMessage(m.getHandle()) || isDeliveredMessage(m) ||
+				super.isBlacklistedMessage(m.getHandle())) {
 			return DENIED_OLD; // already seen this message -> reject it
 		}
 
@@ -296,12 +360,8 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * Drops messages whose TTL is less than zero.
 	 */
 	protected void dropExpiredMessages() {
-		Message[] messages = getMessageCollection().toArray(new Message[0]);
-		for (int i=0; i<messages.length; i++) {
-			int ttl = messages[i].getTtl();
-			if (ttl <= 0) {
-				deleteMessage(messages[i].getId(), true);
-			}
+		for (Message m : getMessageStore().getExpired()) {
+			deleteMessage(m.getId(), true);
 		}
 	}
 
@@ -319,10 +379,11 @@ public abstract class ActiveRouter extends MessageRouter {
 	@Override
 	protected void addToMessages(Message m, boolean newMessage) {
 		super.addToMessages(m, newMessage);
-		for (List<Message> queue : transferQueues.values()) {
-			// FIXME can this cause a concurrent modification exception?
-			queue.add(m);
-			sortByQueueMode(queue);
+		for (Map.Entry<Connection, TransferQueue> e :
+				transferQueues.entrySet()) {
+			if (!isKnownByPeer(m, e.getKey())) {
+				e.getValue().add(m);
+			}
 		}
 		List<Message> queue = deliveryQueue.get(m.getTo());
 		if (queue != null) {
@@ -333,8 +394,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	@Override
 	protected Message removeFromMessages(String id) {
 		Message m = super.removeFromMessages(id);
-		for (List<Message> queue : transferQueues.values()) {
-			// FIXME can this cause a concurrent modification exception?
+		for (TransferQueue queue : transferQueues.values()) {
 			queue.remove(m);
 		}
 		List<Message> queue = deliveryQueue.get(m.getTo());
@@ -345,8 +405,10 @@ public abstract class ActiveRouter extends MessageRouter {
 	}
 
 	/**
-	 * Returns the oldest (by receive time) message in the message buffer
-	 * (that is not being sent if excludeMsgBeingSent is true).
+	 * Returns the message with the lowest TTL in the message buffer
+	 * (that is not being sent if excludeMsgBeingSent is true). Of messages
+	 * that expire at the same time, the one added first to the buffer is
+	 * returned.
 	 * @param excludeMsgBeingSent If true, excludes message(s) that are
 	 * being sent from the oldest message check (i.e. if oldest message is
 	 * being sent, the second oldest message is returned)
@@ -355,23 +417,17 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * exludeMsgBeingSent is true)
 	 */
 	protected Message getNextMessageToRemove(boolean excludeMsgBeingSent) {
-		Collection<Message> messages = this.getMessageCollection();
-		Message oldest = null;
-		for (Message m : messages) {
-
-			if (excludeMsgBeingSent && isSending(m.getId())) {
-				continue; // skip the message(s) that router is sending
-			}
-
-			if (oldest == null ) {
-				oldest = m;
-			}
-			else if (oldest.getTtl() > m.getTtl()) {
-				oldest = m;
+		BitSet sending = null;
+		if (excludeMsgBeingSent && isSending()) {
+			sending = new BitSet();
+			for (Connection con : this.sendingConnections) {
+				if (con.getMessage() != null) { // not finalized
+					sending.set(con.getMessage().getHandle());
+				}
 			}
 		}
 
-		return oldest;
+		return getMessageStore().getFirstToExpire(sending);
 	}
 
 	/**
@@ -439,11 +495,11 @@ public abstract class ActiveRouter extends MessageRouter {
 	  * for receiving (or doesn't accept any). If a transfer is started, the
 	  * connection is included in the list of sending connections.
 	  * @param con Connection trough which the messages are sent
-	  * @param messages A list of messages to try
+	  * @param messages The messages to try (in the iteration order)
 	  * @return The message whose transfer was started or null if no
 	  * transfer was started.
 	  */
-	protected Message tryAllMessages(Connection con, List<Message> messages) {
+	protected Message tryAllMessages(Connection con, Iterable<Message> messages) {
 		for (Iterator<Message> iterator = messages.iterator(); iterator.hasNext(); ) {
 			Message m = iterator.next();
 			int retVal = startTransfer(m, con);
@@ -485,15 +541,17 @@ public abstract class ActiveRouter extends MessageRouter {
 	/**
 	 * Tries to send all messages that this router is carrying to all
 	 * connections this node has. Messages are ordered using the
-	 * {@link MessageRouter#sortByQueueMode(List)}.
+	 * {@link MessageRouter#sortByQueueMode(List)}. Messages that are known
+	 * to the other node (see {@link #requestSummaryVector(Connection)}) are
+	 * left out of the connection's transfer queue.
 	 * @return The connections that started a transfer or null if no connection
 	 * accepted a message.
 	 */
 	protected Connection tryAllMessagesToAllConnections(){
 		Set<Connection> connections = new HashSet<>(getConnections());
 
-		for (Iterator<Map.Entry<Connection, List<Message>>> iterator = transferQueues.entrySet().iterator(); iterator.hasNext(); /* next() in loop */) {
-			Map.Entry<Connection, List<Message>> entry = iterator.next();
+		for (Iterator<Map.Entry<Connection, TransferQueue>> iterator = transferQueues.entrySet().iterator(); iterator.hasNext(); /* next() in loop */) {
+			Map.Entry<Connection, TransferQueue> entry = iterator.next();
 			Connection con = entry.getKey();
 			if (!connections.contains(con)) {
 				// Connection no longer active, remove
@@ -507,11 +565,18 @@ public abstract class ActiveRouter extends MessageRouter {
 		}
 
 		for (Connection con : connections) {
-			List<Message> messages =
-					new ArrayList<Message>(this.getMessageCollection());
+			List<Message> messages = new ArrayList<Message>();
+			for (Message m : this.getMessageCollection()) {
+				if (!isKnownByPeer(m, con)) {
+					messages.add(m);
+				}
+			}
 			this.sortByQueueMode(messages);
-			transferQueues.put(con, messages);
-			if (tryAllMessages(con, messages) != null) {
+			TransferQueue queue = new TransferQueue(
+					getSendQueueMode() == Q_MODE_RANDOM, SimClock.getIntTime());
+			queue.addAll(messages);
+			transferQueues.put(con, queue);
+			if (tryAllMessages(con, queue) != null) {
 				return con;
 			}
 		}
@@ -620,11 +685,21 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * @return True if the message is being sent false if not
 	 */
 	public boolean isSending(String msgId) {
+		return isSending(Message.getHandle(msgId));
+	}
+
+	/**
+	 * Returns true if this router is currently sending a message with the
+	 * given ID handle.
+	 * @param handle Handle of the message's ID (see {@link Message#getHandle()})
+	 * @return True if the message is being sent false if not
+	 */
+	public boolean isSending(int handle) {
 		for (Connection con : this.sendingConnections) {
 			if (con.getMessage() == null) {
 				continue; // transmission is finalized
 			}
-			if (con.getMessage().getId().equals(msgId)) {
+			if (con.getMessage().getHandle() == handle) {
 				return true;
 			}
 		}
@@ -659,8 +734,10 @@ public abstract class ActiveRouter extends MessageRouter {
 			/* finalize ready transfers */
 			if (con.isMessageTransferred()) {
 				if (con.getMessage() != null) {
+					Message m = con.getMessage();
 					transferDone(con);
 					con.finalizeTransfer();
+					setKnownByPeer(m, con);
 				} /* else: some other entity aborted transfer */
 				removeCurrent = true;
 			}
@@ -700,6 +777,22 @@ public abstract class ActiveRouter extends MessageRouter {
 		}
 	}
 
+	/**
+	 * Returns the current time if the router is transferring or can start a
+	 * transfer (or has an energy model, whose state changes at every
+	 * update). Otherwise, only the next TTL check or the next update of the
+	 * applications can change the state.
+	 */
+	@Override
+	public double getNextChangeTime() {
+		if (energy != null || sendingConnections.size() > 0 ||
+				isTransferring() || canStartTransfer()) {
+			return SimClock.getTime();
+		}
+		return Math.min(lastTtlCheck + TTL_CHECK_INTERVAL,
+				getNextApplicationUpdateTime());
+	}
+
 	/**
 	 * Method is called just before a transfer is aborted at {@link #update()}
 	 * due connection going down. This happens on the sending host.
@@ -127,7 +127,7 @@ public class EpidemicOracleRouter extends ActiveRouter {
 	}
 
 	protected int checkReceiving(Message m) {
-		if ( isIncomingMessage(m.getId()) || hasMessage(m.getId()) ||
+		if ( isIncomingMessage(m.getId()) || hasMessage(m.getHandle()) ||
 				isDeliveredMessage(m) ){
 			return DENIED_OLD; // already seen this message -> reject it
 		}
@@ -4,6 +4,7 @@
  */
 package routing;
 
+import core.Connection;
 import core.Settings;
 
 /**
@@ -31,6 +32,12 @@ public class EpidemicRouter extends ActiveRouter {
 		//TODO: copy epidemic settings here (if any)
 	}
 
+	@Override
+	public void changedConnection(Connection con) {
+		super.changedConnection(con);
+		requestSummaryVector(con); // don't offer messages the peer has seen
+	}
+
 	@Override
 	public void update() {
 		super.update();
@@ -5,6 +5,7 @@
 package routing;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -17,6 +18,7 @@ import java.util.Set;
 import routing.maxprop.MaxPropDijkstra;
 import routing.maxprop.MeetingProbabilitySet;
 import routing.util.RoutingInfo;
+import util.IntHashSet;
 import util.Tuple;
 import core.Connection;
 import core.DTNHost;
@@ -53,8 +55,9 @@ public class MaxPropRouter extends ActiveRouter {
 	private Map<Integer, MeetingProbabilitySet> allProbs;
 	/** the cost-to-node calculator */
 	private MaxPropDijkstra dijkstra;
-	/** IDs of the messages that are known to have reached the final dst */
-	private Set<String> ackedMessageIds;
+	/** ID handles of the messages that are known to have reached the final
+	 * dst */
+	private BitSet ackedMessages;
 	/** mapping of the current costs for all messages. This should be set to
 	 * null always when the costs should be updated (a host is met or a new
 	 * message is received) */
@@ -63,7 +66,7 @@ public class MaxPropRouter extends ActiveRouter {
 	private DTNHost lastCostFrom;
 
 	/** Map of which messages have been sent to which hosts from this host */
-	private Map<DTNHost, Set<String>> sentMessages;
+	private Map<DTNHost, IntHashSet> sentMessages;
 
 	/** Over how many samples the "average number of bytes transferred per
 	 * transfer opportunity" is taken */
@@ -115,9 +118,9 @@ public class MaxPropRouter extends ActiveRouter {
 		this.probs = new MeetingProbabilitySet(probSetMaxSize, this.alpha);
 		this.allProbs = new HashMap<Integer, MeetingProbabilitySet>();
 		this.dijkstra = new MaxPropDijkstra(this.allProbs);
-		this.ackedMessageIds = new HashSet<String>();
+		this.ackedMessages = new BitSet();
 		this.avgSamples = new int[BYTES_TRANSFERRED_AVG_SAMPLES];
-		this.sentMessages = new HashMap<DTNHost, Set<String>>();
+		this.sentMessages = new HashMap<DTNHost, IntHashSet>();
 	}
 
 	@Override
@@ -139,8 +142,8 @@ public class MaxPropRouter extends ActiveRouter {
 				MaxPropRouter otherRouter = (MaxPropRouter)mRouter;
 
 				/* exchange ACKed message data */
-				this.ackedMessageIds.addAll(otherRouter.ackedMessageIds);
-				otherRouter.ackedMessageIds.addAll(this.ackedMessageIds);
+				this.ackedMessages.or(otherRouter.ackedMessages);
+				otherRouter.ackedMessages.or(this.ackedMessages);
 				deleteAckedMessages();
 				otherRouter.deleteAckedMessages();
 
@@ -183,11 +186,16 @@ public class MaxPropRouter extends ActiveRouter {
 	 * Deletes the messages from the message buffer that are known to be ACKed
 	 */
 	private void deleteAckedMessages() {
-		for (String id : this.ackedMessageIds) {
-			if (this.hasMessage(id) && !isSending(id)) {
-				this.deleteMessage(id, false);
+		List<Message> acked = new ArrayList<Message>();
+		for (Message m : getMessageCollection()) {
+			if (this.ackedMessages.get(m.getHandle()) &&
+					!isSending(m.getHandle())) {
+				acked.add(m);
 			}
 		}
+		for (Message m : acked) {
+			this.deleteMessage(m.getId(), false);
+		}
 	}
 
 	@Override
@@ -196,7 +204,7 @@ public class MaxPropRouter extends ActiveRouter {
 		Message m = super.messageTransferred(id, from);
 		/* was this node the final recipient of the message? */
 		if (isDeliveredMessage(m)) {
-			this.ackedMessageIds.add(id);
+			this.ackedMessages.set(Message.getHandle(id));
 		}
 		return m;
 	}
@@ -210,22 +218,21 @@ public class MaxPropRouter extends ActiveRouter {
 	@Override
 	protected void transferDone(Connection con) {
 		Message m = con.getMessage();
-		String id = m.getId();
 		DTNHost recipient = con.getOtherNode(getHost());
-		Set<String> sentMsgIds = this.sentMessages.get(recipient);
+		IntHashSet sentMsgs = this.sentMessages.get(recipient);
 
 		/* was the message delivered to the final recipient? */
 		if (m.getTo() == recipient) {
-			this.ackedMessageIds.add(m.getId()); // yes, add to ACKed messages
+			this.ackedMessages.set(m.getHandle()); // yes, add to ACKed messages
 			this.deleteMessage(m.getId(), false); // delete from buffer
 		}
 
 		/* update the map of where each message is already sent */
-		if (sentMsgIds == null) {
-			sentMsgIds = new HashSet<String>();
-			this.sentMessages.put(recipient, sentMsgIds);
+		if (sentMsgs == null) {
+			sentMsgs = new IntHashSet();
+			this.sentMessages.put(recipient, sentMsgs);
 		}
-		sentMsgIds.add(id);
+		sentMsgs.add(m.getHandle());
 	}
 
 	/**
@@ -273,7 +280,7 @@ public class MaxPropRouter extends ActiveRouter {
 		List<Message> validMessages = new ArrayList<Message>();
 
 		for (Message m : messages) {
-			if (excludeMsgBeingSent && isSending(m.getId())) {
+			if (excludeMsgBeingSent && isSending(m.getHandle())) {
 				continue; // skip the message(s) that router is sending
 			}
 			validMessages.add(m);
@@ -353,7 +360,7 @@ public class MaxPropRouter extends ActiveRouter {
 		for (Connection con : getConnections()) {
 			DTNHost other = con.getOtherNode(getHost());
 			MaxPropRouter othRouter = (MaxPropRouter)other.getRouter();
-			Set<String> sentMsgIds = this.sentMessages.get(other);
+			IntHashSet sentMsgs = this.sentMessages.get(other);
 
 			if (othRouter.isTransferring()) {
 				continue; // skip hosts that are transferring
@@ -362,13 +369,13 @@ public class MaxPropRouter extends ActiveRouter {
 			for (Message m : msgCollection) {
 				/* skip messages that the other host has or that have
 				 * passed the other host */
-				if (othRouter.hasMessage(m.getId()) ||
+				if (othRouter.hasMessage(m.getHandle()) ||
 						m.getHops().contains(other)) {
 					continue;
 				}
 				/* skip message if this host has already sent it to the other
 				   host (regardless of if the other host still has it) */
-				if (sentMsgIds != null && sentMsgIds.contains(m.getId())) {
+				if (sentMsgs != null && sentMsgs.contains(m.getHandle())) {
 					continue;
 				}
 				/* message was a good candidate for sending */
@@ -4,6 +4,7 @@
  */
 package routing;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -20,7 +21,9 @@ import core.Settings;
 import core.SettingsError;
 import core.SimClock;
 import core.SimError;
+import routing.util.MessageStore;
 import routing.util.RoutingInfo;
+import util.IntHashMap;
 import util.Tuple;
 
 /**
@@ -83,14 +86,17 @@ public abstract class MessageRouter {
 	public static final int DENIED_UNSPECIFIED = -99;
 
 	private List<MessageListener> mListeners;
-	/** The messages being transferred with msgID_hostName keys */
-	private HashMap<String, Message> incomingMessages;
+	/** The messages being transferred with (msgID handle, host address)
+	 * keys (see {@link #incomingKey(int, DTNHost)}) */
+	private HashMap<Long, Message> incomingMessages;
 	/** The messages this router is carrying */
-	private HashMap<String, Message> messages;
-	/** The messages this router has received as the final recipient */
-	private HashMap<String, Message> deliveredMessages;
-	/** The messages that Applications on this router have blacklisted */
-	private HashMap<String, Object> blacklistedMessages;
+	private MessageStore messages;
+	/** The messages this router has received as the final recipient, by
+	 * message ID handles */
+	private IntHashMap<Message> deliveredMessages;
+	/** ID handles of the messages that Applications on this router have
+	 * blacklisted */
+	private BitSet blacklistedMessages;
 	/** Host where this router belongs to */
 	private DTNHost host;
 	/** size of the buffer */
@@ -153,10 +159,10 @@ public abstract class MessageRouter {
 	 * @param mListeners The message listeners
 	 */
 	public void init(DTNHost host, List<MessageListener> mListeners) {
-		this.incomingMessages = new HashMap<String, Message>();
-		this.messages = new HashMap<String, Message>();
-		this.deliveredMessages = new HashMap<String, Message>();
-		this.blacklistedMessages = new HashMap<String, Object>();
+		this.incomingMessages = new HashMap<Long, Message>();
+		this.messages = new MessageStore();
+		this.deliveredMessages = new IntHashMap<Message>();
+		this.blacklistedMessages = new BitSet();
 		this.mListeners = mListeners;
 		this.host = host;
 		this.bufferOccupancy = 0;
@@ -192,6 +198,36 @@ public abstract class MessageRouter {
 		}
 	}
 
+	/**
+	 * Returns the earliest sim time when updating this router (and its
+	 * applications) can change its state, assuming that the connections do
+	 * not change until then. This implementation can not tell and returns
+	 * the current time, i.e., the router must be updated at every update
+	 * interval. Routers that override this must also consider the state
+	 * that changes in their {@link #update()}.
+	 * @return The time of the next possible change
+	 */
+	public double getNextChangeTime() {
+		return SimClock.getTime();
+	}
+
+	/**
+	 * Returns the earliest time when updating the applications of this
+	 * router can do something
+	 * @return The earliest next update time of the applications or
+	 * Double.MAX_VALUE if there are no applications
+	 * @see Application#getNextUpdateTime(DTNHost)
+	 */
+	protected double getNextApplicationUpdateTime() {
+		double next = Double.MAX_VALUE;
+		for (Collection<Application> apps : this.applications.values()) {
+			for (Application app : apps) {
+				next = Math.min(next, app.getNextUpdateTime(getHost()));
+			}
+		}
+		return next;
+	}
+
 	/**
 	 * Informs the router about change in connections state.
 	 * @param con The connection that changed
@@ -213,7 +249,17 @@ public abstract class MessageRouter {
 	 * @return True if the router has message with this id, false if not
 	 */
 	public boolean hasMessage(String id) {
-		return this.messages.containsKey(id);
+		return this.messages.contains(id);
+	}
+
+	/**
+	 * Checks if this router has a message with certain ID handle buffered.
+	 * @param handle Handle of the message's identifier
+	 * (see {@link Message#getHandle()})
+	 * @return True if the router has message with this id, false if not
+	 */
+	public boolean hasMessage(int handle) {
+		return this.messages.contains(handle);
 	}
 
 	/**
@@ -225,7 +271,7 @@ public abstract class MessageRouter {
 	 * this host as the final recipient.
 	 */
 	protected boolean isDeliveredMessage(Message m) {
-		return (this.deliveredMessages.containsKey(m.getId()));
+		return this.deliveredMessages.containsKey(m.getHandle());
 	}
 
 	/**
@@ -238,7 +284,37 @@ public abstract class MessageRouter {
 	 * @return <code>true</code> if blacklisted, <code>false</code> otherwise.
 	 */
 	protected boolean isBlacklistedMessage(String id) {
-		return this.blacklistedMessages.containsKey(id);
+		return isBlacklistedMessage(Message.getHandle(id));
+	}
+
+	/**
+	 * Returns <code>true</code> if the message with the given ID handle has
+	 * been blacklisted.
+	 * @param handle Handle of the message's identifier
+	 * @return <code>true</code> if blacklisted, <code>false</code> otherwise.
+	 * @see #isBlacklistedMessage(String)
+	 */
+	protected boolean isBlacklistedMessage(int handle) {
+		return handle >= 0 && this.blacklistedMessages.get(handle);
+	}
+
+	/**
+	 * Returns the summary vector of this router, i.e., the ID handles (see
+	 * {@link Message#getHandle()}) of the messages this router has already
+	 * seen: the buffered, delivered and blacklisted messages. Other routers
+	 * can use the summary to skip the messages that this router would reject
+	 * as old.
+	 * @return The summary vector in a new bit set
+	 */
+	public BitSet getSummaryVector() {
+		BitSet summary = (BitSet)this.blacklistedMessages.clone();
+		for (Message m : this.messages.values()) {
+			summary.set(m.getHandle());
+		}
+		for (int handle : this.deliveredMessages.keys()) {
+			summary.set(handle);
+		}
+		return summary;
 	}
 
 	/**
@@ -253,6 +329,14 @@ public abstract class MessageRouter {
 		return this.messages.values();
 	}
 
+	/**
+	 * Returns the message buffer of this router
+	 * @return The message buffer
+	 */
+	protected MessageStore getMessageStore() {
+		return this.messages;
+	}
+
 	/**
 	 * Returns the number of messages this router has
 	 * @return How many messages this router has
@@ -378,11 +462,11 @@ public abstract class MessageRouter {
 			// -> put to buffer
 			addToMessages(aMessage, false);
 		} else if (isFirstDelivery) {
-			this.deliveredMessages.put(id, aMessage);
+			this.deliveredMessages.put(incoming.getHandle(), aMessage);
 		} else if (outgoing == null) {
 			// Blacklist messages that an app wants to drop.
 			// Otherwise the peer will just try to send it back again.
-			this.blacklistedMessages.put(id, null);
+			this.blacklistedMessages.set(incoming.getHandle());
 		}
 
 		for (MessageListener ml : this.mListeners) {
@@ -400,7 +484,7 @@ public abstract class MessageRouter {
 	 * @param from Who the message was from (previous hop).
 	 */
 	protected void putToIncomingBuffer(Message m, DTNHost from) {
-		this.incomingMessages.put(m.getId() + "_" + from.toString(), m);
+		this.incomingMessages.put(incomingKey(m.getHandle(), from), m);
 	}
 
 	/**
@@ -411,7 +495,18 @@ public abstract class MessageRouter {
 	 * @return The found message or null if such message wasn't found
 	 */
 	protected Message removeFromIncomingBuffer(String id, DTNHost from) {
-		return this.incomingMessages.remove(id + "_" + from.toString());
+		return this.incomingMessages.remove(
+				incomingKey(Message.getHandle(id), from));
+	}
+
+	/**
+	 * Returns the key of an incoming message
+	 * @param handle Handle of the message's identifier
+	 * @param from The host that sent the message (previous hop)
+	 * @return The key for {@link #incomingMessages}
+	 */
+	private static long incomingKey(int handle, DTNHost from) {
+		return ((long)handle << 32) | (from.getAddress() & 0xFFFFFFFFL);
 	}
 
 	/**
@@ -421,7 +516,13 @@ public abstract class MessageRouter {
 	 * @return True if such message is incoming right now
 	 */
 	protected boolean isIncomingMessage(String id) {
-		return this.incomingMessages.containsKey(id);
+		int handle = Message.getHandle(id);
+		for (Message m : this.incomingMessages.values()) {
+			if (m.getHandle() == handle) {
+				return true;
+			}
+		}
+		return false;
 	}
 
 	/**
@@ -441,7 +542,7 @@ public abstract class MessageRouter {
 	 * message, if false, nothing is informed.
 	 */
 	protected void addToMessages(Message m, boolean newMessage) {
-		this.messages.put(m.getId(), m);
+		this.messages.put(m);
 		this.bufferOccupancy += m.getSize();
 
 		if (newMessage) {
@@ -512,6 +613,14 @@ public abstract class MessageRouter {
 		}
 	}
 
+	/**
+	 * Returns the sending queue mode of this router
+	 * @return {@link #Q_MODE_RANDOM} or {@link #Q_MODE_FIFO}
+	 */
+	protected int getSendQueueMode() {
+		return this.sendQueueMode;
+	}
+
 	/**
 	 * Sorts/shuffles the given list according to the current sending queue
 	 * mode. The list can contain either Message or Tuple<Message, Connection>
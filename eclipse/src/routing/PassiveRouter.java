@@ -31,6 +31,11 @@ public class PassiveRouter extends MessageRouter {
 		super.update();
 	}
 
+	@Override
+	public double getNextChangeTime() {
+		return getNextApplicationUpdateTime();
+	}
+
 	@Override
 	public void changedConnection(Connection con) {
 		// -"-
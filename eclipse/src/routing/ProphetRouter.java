@@ -7,11 +7,9 @@ package routing;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
+import routing.util.PredictabilityTable;
 import routing.util.RoutingInfo;
 
 import util.Tuple;
@@ -55,7 +53,7 @@ public class ProphetRouter extends ActiveRouter {
 	private double beta;
 
 	/** delivery predictabilities */
-	private Map<DTNHost, Double> preds;
+	private PredictabilityTable preds;
 	/** last delivery predictability update (sim)time */
 	private double lastAgeUpdate;
 
@@ -93,7 +91,7 @@ public class ProphetRouter extends ActiveRouter {
 	 * Initializes predictability hash
 	 */
 	private void initPreds() {
-		this.preds = new HashMap<DTNHost, Double>();
+		this.preds = new PredictabilityTable();
 	}
 
 	@Override
@@ -115,7 +113,7 @@ public class ProphetRouter extends ActiveRouter {
 	private void updateDeliveryPredFor(DTNHost host) {
 		double oldValue = getPredFor(host);
 		double newValue = oldValue + (1 - oldValue) * P_INIT;
-		preds.put(host, newValue);
+		preds.set(host, newValue);
 	}
 
 	/**
@@ -126,12 +124,7 @@ public class ProphetRouter extends ActiveRouter {
 	 */
 	public double getPredFor(DTNHost host) {
 		ageDeliveryPreds(); // make sure preds are updated before getting
-		if (preds.containsKey(host)) {
-			return preds.get(host);
-		}
-		else {
-			return 0;
-		}
+		return preds.get(host);
 	}
 
 	/**
@@ -146,17 +139,19 @@ public class ProphetRouter extends ActiveRouter {
 			" with other routers of same type";
 
 		double pForHost = getPredFor(host); // P(a,b)
-		Map<DTNHost, Double> othersPreds =
+		PredictabilityTable othersPreds =
 			((ProphetRouter)otherRouter).getDeliveryPreds();
+		int self = getHost().getAddress();
 
-		for (Map.Entry<DTNHost, Double> e : othersPreds.entrySet()) {
-			if (e.getKey() == getHost()) {
+		for (int c=0, n=othersPreds.getAddressLimit(); c<n; c++) {
+			if (c == self || !othersPreds.hasEntry(c)) {
 				continue; // don't add yourself
 			}
 
-			double pOld = getPredFor(e.getKey()); // P(a,c)_old
-			double pNew = pOld + ( 1 - pOld) * pForHost * e.getValue() * beta;
-			preds.put(e.getKey(), pNew);
+			double pOld = preds.get(c); // P(a,c)_old (aged above)
+			double pNew = pOld + ( 1 - pOld) * pForHost * othersPreds.get(c) *
+				beta;
+			preds.set(othersPreds.getHost(c), pNew);
 		}
 	}
 
@@ -164,6 +159,7 @@ public class ProphetRouter extends ActiveRouter {
 	 * Ages all entries in the delivery predictions.
 	 * <CODE>P(a,b) = P(a,b)_old * (GAMMA ^ k)</CODE>, where k is number of
 	 * time units that have elapsed since the last time the metric was aged.
+	 * All the entries share a scale factor, so this takes constant time.
 	 * @see #SECONDS_IN_UNIT_S
 	 */
 	private void ageDeliveryPreds() {
@@ -174,19 +170,16 @@ public class ProphetRouter extends ActiveRouter {
 			return;
 		}
 
-		double mult = Math.pow(GAMMA, timeDiff);
-		for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-			e.setValue(e.getValue()*mult);
-		}
+		preds.scale(Math.pow(GAMMA, timeDiff));
 
 		this.lastAgeUpdate = SimClock.getTime();
 	}
 
 	/**
-	 * Returns a map of this router's delivery predictions
-	 * @return a map of this router's delivery predictions
+	 * Returns this router's delivery predictions
+	 * @return this router's delivery predictions
 	 */
-	private Map<DTNHost, Double> getDeliveryPreds() {
+	private PredictabilityTable getDeliveryPreds() {
 		ageDeliveryPreds(); // make sure the aging is done
 		return this.preds;
 	}
@@ -212,8 +205,7 @@ public class ProphetRouter extends ActiveRouter {
 	 * @return The return value of {@link #tryMessagesForConnected(List)}
 	 */
 	private Tuple<Message, Connection> tryOtherMessages() {
-		List<Tuple<Message, Connection>> messages =
-			new ArrayList<Tuple<Message, Connection>>();
+		List<Candidate> candidates = new ArrayList<Candidate>();
 
 		Collection<Message> msgCollection = getMessageCollection();
 
@@ -228,50 +220,54 @@ public class ProphetRouter extends ActiveRouter {
 			}
 
 			for (Message m : msgCollection) {
-				if (othRouter.hasMessage(m.getId())) {
+				if (othRouter.hasMessage(m.getHandle())) {
 					continue; // skip messages that the other one has
 				}
-				if (othRouter.getPredFor(m.getTo()) > getPredFor(m.getTo())) {
+				double pOther = othRouter.getPredFor(m.getTo());
+				if (pOther > getPredFor(m.getTo())) {
 					// the other node has higher probability of delivery
-					messages.add(new Tuple<Message, Connection>(m,con));
+					candidates.add(new Candidate(m, con, pOther));
 				}
 			}
 		}
 
-		if (messages.size() == 0) {
+		if (candidates.size() == 0) {
 			return null;
 		}
 
 		// sort the message-connection tuples
-		Collections.sort(messages, new TupleComparator());
+		Collections.sort(candidates);
+		List<Tuple<Message, Connection>> messages =
+			new ArrayList<Tuple<Message, Connection>>(candidates.size());
+		for (Candidate c : candidates) {
+			messages.add(c.tuple);
+		}
 		return tryMessagesForConnected(messages);	// try to send messages
 	}
 
 	/**
-	 * Comparator for Message-Connection-Tuples that orders the tuples by
-	 * their delivery probability by the host on the other side of the
-	 * connection (GRTRMax)
+	 * Message-connection tuple and the delivery probability of the message
+	 * by the host on the other side of the connection. Candidates are
+	 * ordered by the probability (GRTRMax); the probability is computed
+	 * once, before sorting.
 	 */
-	private class TupleComparator implements Comparator
-		<Tuple<Message, Connection>> {
-
-		public int compare(Tuple<Message, Connection> tuple1,
-				Tuple<Message, Connection> tuple2) {
-			// delivery probability of tuple1's message with tuple1's connection
-			double p1 = ((ProphetRouter)tuple1.getValue().
-					getOtherNode(getHost()).getRouter()).getPredFor(
-					tuple1.getKey().getTo());
-			// -"- tuple2...
-			double p2 = ((ProphetRouter)tuple2.getValue().
-					getOtherNode(getHost()).getRouter()).getPredFor(
-					tuple2.getKey().getTo());
+	private class Candidate implements Comparable<Candidate> {
+		private Tuple<Message, Connection> tuple;
+		private double pred;
 
+		public Candidate(Message m, Connection con, double pred) {
+			this.tuple = new Tuple<Message, Connection>(m, con);
+			this.pred = pred;
+		}
+
+		public int compareTo(Candidate other) {
 			// bigger probability should come first
-			if (p2-p1 == 0) {
+			if (other.pred-this.pred == 0) {
 				/* equal probabilities -> let queue mode decide */
-				return compareByQueueMode(tuple1.getKey(), tuple2.getKey());
+				return compareByQueueMode(this.tuple.getKey(),
+						other.tuple.getKey());
 			}
-			else if (p2-p1 < 0) {
+			else if (other.pred-this.pred < 0) {
 				return -1;
 			}
 			else {
@@ -287,9 +283,12 @@ public class ProphetRouter extends ActiveRouter {
 		RoutingInfo ri = new RoutingInfo(preds.size() +
 				" delivery prediction(s)");
 
-		for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-			DTNHost host = e.getKey();
-			Double value = e.getValue();
+		for (int i=0, n=preds.getAddressLimit(); i<n; i++) {
+			DTNHost host = preds.getHost(i);
+			if (host == null) {
+				continue;
+			}
+			double value = preds.get(i);
 
 			ri.addMoreInfo(new RoutingInfo(String.format("%s : %.6f",
 					host, value)));
@@ -7,15 +7,14 @@
 package routing;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import java.util.Random;
 
+import routing.util.PredictabilityTable;
 import routing.util.RoutingInfo;
 
 
@@ -61,10 +60,10 @@ public class ProphetV2Router extends ActiveRouter {
 	private double beta;
 
 	/** delivery predictabilities */
-	private Map<DTNHost, Double> preds;
+	private PredictabilityTable preds;
 
-	/** last encouter timestamp (sim)time */
-	private Map<DTNHost, Double> lastEncouterTime;
+	/** last encouter timestamps (sim)time by host addresses */
+	private double[] lastEncouterTime;
 
 	/** last delivery predictability update (sim)time */
 	private double lastAgeUpdate;
@@ -103,17 +102,17 @@ public class ProphetV2Router extends ActiveRouter {
 	}
 
 	/**
-	 * Initializes lastEncouterTime hash
+	 * Initializes lastEncouterTime array
 	 */
 	private void initEncTimes() {
-		this.lastEncouterTime = new HashMap<DTNHost, Double>();
+		this.lastEncouterTime = new double[0];
 	}
 
 		/**
 	 * Initializes predictability hash
 	 */
 	private void initPreds() {
-		this.preds = new HashMap<DTNHost, Double>();
+		this.preds = new PredictabilityTable();
 	}
 
 	@Override
@@ -149,8 +148,13 @@ public class ProphetV2Router extends ActiveRouter {
 
 		double oldValue = getPredFor(host);
 		double newValue = oldValue + (1 - oldValue) * PEnc;
-		preds.put(host, newValue);
-		lastEncouterTime.put(host, simTime);
+		preds.set(host, newValue);
+		int address = host.getAddress();
+		if (address >= lastEncouterTime.length) {
+			lastEncouterTime = Arrays.copyOf(lastEncouterTime,
+					Math.max(address + 1, lastEncouterTime.length * 2));
+		}
+		lastEncouterTime[address] = simTime;
 	}
 
 	/**
@@ -160,12 +164,9 @@ public class ProphetV2Router extends ActiveRouter {
 	 * @return the last timestamp of encouter with the host
 	 */
 	public double getEncTimeFor(DTNHost host) {
-		if (lastEncouterTime.containsKey(host)) {
-			return lastEncouterTime.get(host);
-		}
-		else {
-			return 0;
-		}
+		int address = host.getAddress();
+		return address < lastEncouterTime.length ?
+				lastEncouterTime[address] : 0;
 	}
 
 		/**
@@ -176,12 +177,7 @@ public class ProphetV2Router extends ActiveRouter {
 	 */
 	public double getPredFor(DTNHost host) {
 		ageDeliveryPreds(); // make sure preds are updated before getting
-		if (preds.containsKey(host)) {
-			return preds.get(host);
-		}
-		else {
-			return 0;
-		}
+		return preds.get(host);
 	}
 
 	/**
@@ -196,19 +192,20 @@ public class ProphetV2Router extends ActiveRouter {
 			"PRoPHETv2 only works with other routers of same type";
 
 		double pForHost = getPredFor(host); // P(a,b)
-		Map<DTNHost, Double> othersPreds =
+		PredictabilityTable othersPreds =
 			((ProphetV2Router)otherRouter).getDeliveryPreds();
+		int self = getHost().getAddress();
 
-		for (Map.Entry<DTNHost, Double> e : othersPreds.entrySet()) {
-			if (e.getKey() == getHost()) {
+		for (int c=0, n=othersPreds.getAddressLimit(); c<n; c++) {
+			if (c == self || !othersPreds.hasEntry(c)) {
 				continue; // don't add yourself
 			}
 
 //ProphetV2 max(old,new)
-			double pOld = getPredFor(e.getKey()); // P(a,c)_old
-			double pNew = pForHost * e.getValue() * beta;
+			double pOld = preds.get(c); // P(a,c)_old (aged above)
+			double pNew = pForHost * othersPreds.get(c) * beta;
 			if(pNew>pOld)
-				preds.put(e.getKey(), pNew);
+				preds.set(othersPreds.getHost(c), pNew);
 
 		}
 	}
@@ -217,6 +214,7 @@ public class ProphetV2Router extends ActiveRouter {
 	 * Ages all entries in the delivery predictions.
 	 * <CODE>P(a,b) = P(a,b)_old * (GAMMA ^ k)</CODE>, where k is number of
 	 * time units that have elapsed since the last time the metric was aged.
+	 * All the entries share a scale factor, so this takes constant time.
 	 * @see #SECONDS_IN_UNIT_S
 	 */
 	private void ageDeliveryPreds() {
@@ -227,19 +225,16 @@ public class ProphetV2Router extends ActiveRouter {
 			return;
 		}
 
-		double mult = Math.pow(GAMMA, timeDiff);
-		for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-			e.setValue(e.getValue()*mult);
-		}
+		preds.scale(Math.pow(GAMMA, timeDiff));
 
 		this.lastAgeUpdate = SimClock.getTime();
 	}
 
 	/**
-	 * Returns a map of this router's delivery predictions
-	 * @return a map of this router's delivery predictions
+	 * Returns this router's delivery predictions
+	 * @return this router's delivery predictions
 	 */
-	private Map<DTNHost, Double> getDeliveryPreds() {
+	private PredictabilityTable getDeliveryPreds() {
 		ageDeliveryPreds(); // make sure the aging is done
 		return this.preds;
 	}
@@ -265,8 +260,7 @@ public class ProphetV2Router extends ActiveRouter {
 	 * @return The return value of {@link #tryMessagesForConnected(List)}
 	 */
 	private Tuple<Message, Connection> tryOtherMessages() {
-		List<Tuple<Message, Connection>> messages =
-			new ArrayList<Tuple<Message, Connection>>();
+		List<Candidate> candidates = new ArrayList<Candidate>();
 
 		Collection<Message> msgCollection = getMessageCollection();
 
@@ -281,51 +275,53 @@ public class ProphetV2Router extends ActiveRouter {
 			}
 
 			for (Message m : msgCollection) {
-				if (othRouter.hasMessage(m.getId())) {
+				if (othRouter.hasMessage(m.getHandle())) {
 					continue; // skip messages that the other one has
 				}
-				if((othRouter.getPredFor(m.getTo()) >= getPredFor(m.getTo())))
-				{
-
-					messages.add(new Tuple<Message, Connection>(m,con));
+				double pOther = othRouter.getPredFor(m.getTo());
+				if (pOther >= getPredFor(m.getTo())) {
+					candidates.add(new Candidate(m, con, pOther));
 				}
 			}
 		}
 
-		if (messages.size() == 0) {
+		if (candidates.size() == 0) {
 			return null;
 		}
 
 		// sort the message-connection tuples
-		Collections.sort(messages, new TupleComparator());
+		Collections.sort(candidates);
+		List<Tuple<Message, Connection>> messages =
+			new ArrayList<Tuple<Message, Connection>>(candidates.size());
+		for (Candidate c : candidates) {
+			messages.add(c.tuple);
+		}
 		return tryMessagesForConnected(messages);	// try to send messages
 	}
 
 	/**
-	 * Comparator for Message-Connection-Tuples that orders the tuples by
-	 * their delivery probability by the host on the other side of the
-	 * connection (GRTRMax)
+	 * Message-connection tuple and the delivery probability of the message
+	 * by the host on the other side of the connection. Candidates are
+	 * ordered by the probability (GRTRMax); the probability is computed
+	 * once, before sorting.
 	 */
-	private class TupleComparator implements Comparator
-		<Tuple<Message, Connection>> {
-
-		public int compare(Tuple<Message, Connection> tuple1,
-				Tuple<Message, Connection> tuple2) {
-			// delivery probability of tuple1's message with tuple1's connection
-			double p1 = ((ProphetV2Router)tuple1.getValue().
-					getOtherNode(getHost()).getRouter()).getPredFor(
-					tuple1.getKey().getTo());
-			// -"- tuple2...
-			double p2 = ((ProphetV2Router)tuple2.getValue().
-					getOtherNode(getHost()).getRouter()).getPredFor(
-					tuple2.getKey().getTo());
+	private class Candidate implements Comparable<Candidate> {
+		private Tuple<Message, Connection> tuple;
+		private double pred;
 
+		public Candidate(Message m, Connection con, double pred) {
+			this.tuple = new Tuple<Message, Connection>(m, con);
+			this.pred = pred;
+		}
+
+		public int compareTo(Candidate other) {
 			// bigger probability should come first
-			if (p2-p1 == 0) {
+			if (other.pred-this.pred == 0) {
 				/* equal probabilities -> let queue mode decide */
-				return compareByQueueMode(tuple1.getKey(), tuple2.getKey());
+				return compareByQueueMode(this.tuple.getKey(),
+						other.tuple.getKey());
 			}
-			else if (p2-p1 < 0) {
+			else if (other.pred-this.pred < 0) {
 				return -1;
 			}
 			else {
@@ -341,9 +337,12 @@ public class ProphetV2Router extends ActiveRouter {
 		RoutingInfo ri = new RoutingInfo(preds.size() +
 				" delivery prediction(s)");
 
-		for (Map.Entry<DTNHost, Double> e : preds.entrySet()) {
-			DTNHost host = e.getKey();
-			Double value = e.getValue();
+		for (int i=0, n=preds.getAddressLimit(); i<n; i++) {
+			DTNHost host = preds.getHost(i);
+			if (host == null) {
+				continue;
+			}
+			double value = preds.get(i);
 
 			ri.addMoreInfo(new RoutingInfo(String.format("%s : %.6f",
 					host, value)));
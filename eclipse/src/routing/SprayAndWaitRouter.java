@@ -50,6 +50,12 @@ public class SprayAndWaitRouter extends ActiveRouter {
 		this.isBinary = r.isBinary;
 	}
 
+	@Override
+	public void changedConnection(Connection con) {
+		super.changedConnection(con);
+		requestSummaryVector(con); // don't offer messages the peer has seen
+	}
+
 	@Override
 	public int receiveMessage(Message m, DTNHost from) {
 		return super.receiveMessage(m, from);
@@ -62,6 +62,12 @@ public class WaveRouter extends ActiveRouter {
 		this.custodyMessages = new HashMap<String, Double>();
 	}
 
+	@Override
+	public void changedConnection(Connection con) {
+		super.changedConnection(con);
+		requestSummaryVector(con); // don't offer messages the peer has seen
+	}
+
 	@Override
 	protected int checkReceiving(Message m, DTNHost from) {
 		Double lastTime = this.recentMessages.get(m.getId());
@@ -99,7 +105,7 @@ public class WaveRouter extends ActiveRouter {
 			}
 
 
-			if (excludeMsgBeingSent && isSending(m.getId())) {
+			if (excludeMsgBeingSent && isSending(m.getHandle())) {
 				continue; /* skip the message(s) that router is sending */
 			}
 
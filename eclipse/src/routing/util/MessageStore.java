@@ -0,0 +1,231 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+import util.IntHashMap;
+import core.Message;
+
+/**
+ * Message buffer of a router. Messages are indexed by the handles of their
+ * IDs (see {@link Message#getHandle()}) and ordered
+ * by their expiry time (see {@link Message#getExpiryTime()}), so the message
+ * with the lowest TTL and the expired messages are found without going
+ * through the whole buffer. Messages with the same expiry time are ordered
+ * by the order they were added to the store.
+ * <P>
+ * The TTL of a message must not be changed while it is in the store.
+ * </P>
+ */
+public class MessageStore {
+	/** entries by message ID handles */
+	private IntHashMap<Entry> entries;
+	/** entries ordered by expiry time */
+	private TreeSet<Entry> byExpiry;
+	/** read-only view of the messages */
+	private Collection<Message> messages;
+	/** insertion sequence number of the next entry */
+	private long nextSeq;
+
+	/**
+	 * Creates an empty store.
+	 */
+	public MessageStore() {
+		this.entries = new IntHashMap<Entry>();
+		this.byExpiry = new TreeSet<Entry>();
+		this.messages = new MessageCollection();
+		this.nextSeq = 0;
+	}
+
+	/**
+	 * Adds a message to the store. A message with the same ID is replaced.
+	 * @param m The message to add
+	 */
+	public void put(Message m) {
+		Entry e = new Entry(m, nextSeq++);
+		Entry old = entries.put(m.getHandle(), e);
+		if (old != null) {
+			byExpiry.remove(old);
+		}
+		byExpiry.add(e);
+	}
+
+	/**
+	 * Removes a message from the store
+	 * @param id ID of the message to remove
+	 * @return The removed message or null if there was no message with the ID
+	 */
+	public Message remove(String id) {
+		return remove(Message.getHandle(id));
+	}
+
+	/**
+	 * Removes a message from the store
+	 * @param handle Handle of the ID of the message to remove
+	 * @return The removed message or null if there was no message with the ID
+	 */
+	public Message remove(int handle) {
+		Entry e = entries.remove(handle);
+		if (e == null) {
+			return null;
+		}
+		byExpiry.remove(e);
+		return e.message;
+	}
+
+	/**
+	 * Returns a message by its ID
+	 * @param id ID of the message
+	 * @return The message or null if there was no message with the ID
+	 */
+	public Message get(String id) {
+		return get(Message.getHandle(id));
+	}
+
+	/**
+	 * Returns a message by the handle of its ID
+	 * @param handle Handle of the ID of the message
+	 * @return The message or null if there was no message with the ID
+	 */
+	public Message get(int handle) {
+		Entry e = entries.get(handle);
+		return e == null ? null : e.message;
+	}
+
+	/**
+	 * Returns true if the store has a message with the given ID
+	 * @param id ID of the message
+	 * @return true if the store has a message with the given ID
+	 */
+	public boolean contains(String id) {
+		return contains(Message.getHandle(id));
+	}
+
+	/**
+	 * Returns true if the store has a message with the given ID handle
+	 * @param handle Handle of the ID of the message
+	 * @return true if the store has a message with the given ID
+	 */
+	public boolean contains(int handle) {
+		return entries.containsKey(handle);
+	}
+
+	/**
+	 * Returns the number of messages in the store
+	 * @return the number of messages in the store
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns a read-only view of the messages. The view is iterated in the
+	 * order of the expiry times (and the order the messages were added), so
+	 * the order does not depend on the handles of the message IDs.
+	 * @return The messages
+	 */
+	public Collection<Message> values() {
+		return this.messages;
+	}
+
+	/**
+	 * Returns the message that expires first
+	 * @param excludedHandles ID handles of messages that should not be
+	 * returned (or null if all messages are allowed)
+	 * @return The message that expires first or null if there are no
+	 * (allowed) messages
+	 */
+	public Message getFirstToExpire(BitSet excludedHandles) {
+		for (Entry e : byExpiry) {
+			if (excludedHandles == null ||
+					!excludedHandles.get(e.message.getHandle())) {
+				return e.message;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the messages whose TTL is zero or less, in the order of their
+	 * expiry times
+	 * @return The expired messages
+	 */
+	public List<Message> getExpired() {
+		List<Message> expired = new ArrayList<Message>();
+		for (Entry e : byExpiry) {
+			if (e.message.getTtl() > 0) {
+				break; // rest of the messages expire later
+			}
+			expired.add(e.message);
+		}
+		return expired;
+	}
+
+	/**
+	 * A message and its position in the expiry order
+	 */
+	private static class Entry implements Comparable<Entry> {
+		private Message message;
+		private double expiryTime;
+		private long seq;
+
+		public Entry(Message message, long seq) {
+			this.message = message;
+			this.expiryTime = message.getExpiryTime();
+			this.seq = seq;
+		}
+
+		public int compareTo(Entry other) {
+			if (this.expiryTime != other.expiryTime) {
+				return this.expiryTime < other.expiryTime ? -1 : 1;
+			}
+			return this.seq < other.seq ? -1 : (this.seq == other.seq ? 0 : 1);
+		}
+	}
+
+	/**
+	 * Read-only collection view of the messages
+	 */
+	private class MessageCollection extends AbstractCollection<Message> {
+		@Override
+		public Iterator<Message> iterator() {
+			final Iterator<Entry> i = byExpiry.iterator();
+			return new Iterator<Message>() {
+				public boolean hasNext() {
+					return i.hasNext();
+				}
+
+				public Message next() {
+					return i.next().message;
+				}
+
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+			return entries.size();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			if (!(o instanceof Message)) {
+				return false;
+			}
+			Entry e = entries.get(((Message)o).getHandle());
+			return e != null && e.message.equals(o);
+		}
+	}
+}
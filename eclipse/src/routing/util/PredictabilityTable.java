@@ -0,0 +1,129 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.Arrays;
+
+import core.DTNHost;
+
+/**
+ * Delivery predictabilities of a router, stored in arrays indexed by host
+ * addresses. All the values share a common scale factor, so aging all the
+ * predictabilities (multiplying them by the same value) takes constant time.
+ */
+public class PredictabilityTable {
+	/** smallest scale before the scale is folded into the values */
+	private static final double MIN_SCALE = 1e-100;
+	/** initial number of addresses in the arrays */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** predictabilities divided by the scale, by host addresses */
+	private double[] values;
+	/** hosts of the entries by addresses (null if there is no entry) */
+	private DTNHost[] hosts;
+	/** common scale factor of all the values */
+	private double scale;
+	/** number of entries */
+	private int size;
+
+	/**
+	 * Creates an empty table.
+	 */
+	public PredictabilityTable() {
+		this.values = new double[INITIAL_CAPACITY];
+		this.hosts = new DTNHost[INITIAL_CAPACITY];
+		this.scale = 1;
+		this.size = 0;
+	}
+
+	/**
+	 * Returns the predictability for a host address
+	 * @param address Address of the host
+	 * @return The predictability or 0 if there is no entry for the address
+	 */
+	public double get(int address) {
+		if (address >= values.length) {
+			return 0;
+		}
+		return values[address] * scale;
+	}
+
+	/**
+	 * Returns the predictability for a host
+	 * @param host The host
+	 * @return The predictability or 0 if there is no entry for the host
+	 */
+	public double get(DTNHost host) {
+		return get(host.getAddress());
+	}
+
+	/**
+	 * Sets the predictability for a host
+	 * @param host The host
+	 * @param value The new predictability
+	 */
+	public void set(DTNHost host, double value) {
+		int address = host.getAddress();
+		if (address >= values.length) {
+			int capacity = Math.max(values.length * 2, address + 1);
+			values = Arrays.copyOf(values, capacity);
+			hosts = Arrays.copyOf(hosts, capacity);
+		}
+		if (hosts[address] == null) {
+			hosts[address] = host;
+			size++;
+		}
+		values[address] = value / scale;
+	}
+
+	/**
+	 * Returns true if the table has an entry for the host address
+	 * @param address Address of the host
+	 * @return true if the table has an entry for the address
+	 */
+	public boolean hasEntry(int address) {
+		return address < hosts.length && hosts[address] != null;
+	}
+
+	/**
+	 * Returns the host of an entry
+	 * @param address Address of the host
+	 * @return The host or null if there is no entry for the address
+	 */
+	public DTNHost getHost(int address) {
+		return address < hosts.length ? hosts[address] : null;
+	}
+
+	/**
+	 * Returns the upper bound (exclusive) of the addresses that can have
+	 * an entry in the table
+	 * @return The upper bound of the addresses
+	 */
+	public int getAddressLimit() {
+		return hosts.length;
+	}
+
+	/**
+	 * Returns the number of entries in the table
+	 * @return the number of entries in the table
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Multiplies all the predictabilities by the same value
+	 * @param mult The multiplier (greater than zero)
+	 */
+	public void scale(double mult) {
+		scale *= mult;
+		if (scale < MIN_SCALE) { /* fold the scale into the values */
+			for (int i=0; i<values.length; i++) {
+				values[i] *= scale;
+			}
+			scale = 1;
+		}
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import core.Message;
+
+/**
+ * Ordered queue of messages to try sending over a connection. Messages can
+ * be added and removed in logarithmic time without re-sorting the queue.
+ * <P>
+ * In FIFO order the messages are ordered by their receive times. In random
+ * order the initial messages keep the order they were given in and the
+ * messages added later are put to (seeded) random positions. The positions
+ * are in the range [0, 1), the initial messages are spread evenly over it.
+ * Messages with the same position are in the order they were added.
+ * </P><P>
+ * The iterator of the queue stays valid if messages are added to or removed
+ * from the queue during the iteration.
+ * </P>
+ */
+public class TransferQueue implements Iterable<Message> {
+	/** entries in the queue order */
+	private TreeSet<Entry> entries;
+	/** entries by message IDs */
+	private HashMap<String, Entry> byId;
+	/** random generator for positions (null for FIFO order) */
+	private Random rng;
+	/** insertion sequence number of the next entry */
+	private long nextSeq;
+
+	/**
+	 * Creates an empty queue.
+	 * @param randomOrder If true, the messages added with {@link #add(Message)}
+	 * get random positions; if false, the queue is in FIFO order
+	 * @param seed Seed for the random positions
+	 */
+	public TransferQueue(boolean randomOrder, long seed) {
+		this.entries = new TreeSet<Entry>();
+		this.byId = new HashMap<String, Entry>();
+		this.rng = randomOrder ? new Random(seed) : null;
+		this.nextSeq = 0;
+	}
+
+	/**
+	 * Adds messages that are already in the queue order
+	 * @param messages The messages to add
+	 */
+	public void addAll(List<Message> messages) {
+		int i = 0;
+		for (Message m : messages) {
+			put(m, rng == null ? m.getReceiveTime() :
+				i / (double)messages.size());
+			i++;
+		}
+	}
+
+	/**
+	 * Adds a message to its position in the queue
+	 * @param m The message to add
+	 */
+	public void add(Message m) {
+		put(m, rng == null ? m.getReceiveTime() :
+			rng.nextDouble());
+	}
+
+	private void put(Message m, double key) {
+		Entry e = new Entry(m, key, nextSeq++);
+		Entry old = byId.put(m.getId(), e);
+		if (old != null) {
+			entries.remove(old);
+		}
+		entries.add(e);
+	}
+
+	/**
+	 * Removes a message from the queue
+	 * @param m The message to remove
+	 * @return True if the message was in the queue
+	 */
+	public boolean remove(Message m) {
+		Entry e = byId.get(m.getId());
+		if (e == null || e.message != m) {
+			return false;
+		}
+		byId.remove(m.getId());
+		entries.remove(e);
+		return true;
+	}
+
+	/**
+	 * Returns the number of messages in the queue
+	 * @return the number of messages in the queue
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns an iterator over the messages in the queue order. Messages
+	 * added during the iteration are returned if their position is after the
+	 * current position of the iterator.
+	 * @return an iterator over the messages
+	 */
+	public Iterator<Message> iterator() {
+		return new Iterator<Message>() {
+			private Entry current = null;
+			private Entry next = entries.isEmpty() ? null : entries.first();
+
+			public boolean hasNext() {
+				if (current != null) {
+					next = entries.higher(current);
+				}
+				return next != null;
+			}
+
+			public Message next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				current = next;
+				return current.message;
+			}
+
+			public void remove() {
+				if (current == null) {
+					throw new IllegalStateException();
+				}
+				TransferQueue.this.remove(current.message);
+			}
+		};
+	}
+
+	/**
+	 * A message and its position in the queue
+	 */
+	private static class Entry implements Comparable<Entry> {
+		private Message message;
+		private double key;
+		private long seq;
+
+		public Entry(Message message, double key, long seq) {
+			this.message = message;
+			this.key = key;
+			this.seq = seq;
+		}
+
+		public int compareTo(Entry other) {
+			if (this.key != other.key) {
+				return this.key < other.key ? -1 : 1;
+			}
+			return this.seq < other.seq ? -1 : (this.seq == other.seq ? 0 : 1);
+		}
+	}
+}
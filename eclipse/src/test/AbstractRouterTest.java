@@ -63,6 +63,7 @@ public abstract class AbstractRouterTest extends TestCase {
 		this.utils.setMessageRouterProto(routerProto);
 		core.NetworkInterface.reset();
 		core.DTNHost.reset();
+		core.Message.reset();
 		this.h0 = utils.createHost(c0, "h0");
 		this.h1 = utils.createHost(c0, "h1");
 		this.h2 = utils.createHost(c0, "h2");
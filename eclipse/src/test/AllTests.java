@@ -36,6 +36,7 @@ public class AllTests {
 		suite.addTestSuite(AdjacencyGraphvizReportTest.class);
 		suite.addTestSuite(MessageGraphvizReportTest.class);
 		suite.addTestSuite(ExternalEventsQueueTest.class);
+		suite.addTestSuite(StandardEventsReaderTest.class);
 		suite.addTestSuite(ContactTimesReportTest.class);
 		suite.addTestSuite(TotalContactTimeReportTest.class);
 		suite.addTestSuite(EpidemicRouterTest.class);
@@ -48,8 +49,20 @@ public class AllTests {
 		suite.addTestSuite(MaxPropRouterTest.class);
 		suite.addTestSuite(ScheduledUpdatesQueueTest.class);
 		suite.addTestSuite(MessageTest.class);
+		suite.addTestSuite(MessageStoreTest.class);
+		suite.addTestSuite(TransferQueueTest.class);
+		suite.addTestSuite(IntHashMapTest.class);
+		suite.addTestSuite(PredictabilityTableTest.class);
 		suite.addTestSuite(ModuleCommunicationBusTest.class);
 		suite.addTestSuite(DTNHostTest.class);
+		suite.addTestSuite(TrustManagerTest.class);
+		suite.addTestSuite(TrustProtocolTest.class);
+		suite.addTestSuite(BatchExecutorTest.class);
+		suite.addTestSuite(TrustStorageTest.class);
+		suite.addTestSuite(TrustCodecTest.class);
+		suite.addTestSuite(VerificationCacheTest.class);
+		suite.addTestSuite(ConnectivityGridTest.class);
+		suite.addTestSuite(KineticConnectivityTest.class);
 		//$JUnit-END$
 		return suite;
 	}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+import core.BatchExecutor;
+
+/**
+ * Tests for the BatchExecutor class. Runs small scenarios in child JVMs.
+ */
+public class BatchExecutorTest extends TestCase {
+	private static final String SETTINGS_FILE = "auth_settings.txt";
+	private static final String OUTPUT = "batch_executor_test_stats.txt";
+
+	private File baseDir;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.baseDir = Files.createTempDirectory("batch-test").toFile();
+	}
+
+	protected void tearDown() throws Exception {
+		FileUtils.deleteDirectory(this.baseDir);
+		super.tearDown();
+	}
+
+	public void testRunsWriteToOwnDirectories() throws Exception {
+		File settings = new File(this.baseDir, "test_settings.txt");
+		PrintWriter out = new PrintWriter(settings);
+		out.println("Scenario.endTime = 10");
+		out.println("Group1.nrofHosts = 2");
+		out.println("authApp.destinationRange = 0,1");
+		out.println("authApp.keyparm = true");
+		out.println("Events1.hosts = 0,2");
+		out.println("Report.nrofReports = 1");
+		out.println("Report.report1 = MessageStatsReport");
+		out.println("MessageStatsReport.output = " + OUTPUT);
+		out.close();
+
+		List<String> confFiles = new ArrayList<String>();
+		confFiles.add(SETTINGS_FILE);
+		confFiles.add(settings.getPath());
+		File outputDir = new File(this.baseDir, "out");
+
+		BatchExecutor executor = new BatchExecutor(confFiles, 0, 2, 2,
+				outputDir);
+		assertEquals(0, executor.run());
+
+		/* relative outputs (reports with relative names, the metrics and
+		   the trust data of the application) are written to the runs' own
+		   directories */
+		assertFalse(new File(OUTPUT).exists());
+		for (int i=1; i<=2; i++) {
+			File runDir = new File(outputDir, "run-" + i);
+			assertTrue(new File(runDir, OUTPUT).isFile());
+			assertTrue(new File(runDir, "metrics").isDirectory());
+			String[] simDirs = runDir.list(new FilenameFilter() {
+				public boolean accept(File dir, String name) {
+					return name.startsWith("simulation-");
+				}
+			});
+			assertEquals(1, simDirs.length);
+		}
+	}
+}
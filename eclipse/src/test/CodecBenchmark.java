@@ -0,0 +1,138 @@
+package test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.codec.binary.Base64InputStream;
+import org.apache.commons.codec.binary.Base64OutputStream;
+import org.apache.commons.io.FileUtils;
+
+import applications.AuthenticationApplication;
+import auth_encryption.core.KeyManager;
+import auth_encryption.core.SubKeyEntry;
+import auth_encryption.core.TrustCodec;
+import auth_encryption.log.Log;
+import auth_encryption.primitives.AppDetails;
+import auth_encryption.primitives.SignatureParameter;
+import auth_encryption.simulator.SimulationConfig;
+import auth_encryption.simulator.SimulationKeyManager;
+
+/**
+ * Compares the TrustCodec against the Java serialization (+ Base64) path of
+ * the TrustFileManager: encoded sizes and encode/decode throughput.
+ * 
+ * Usage: CodecBenchmark [RSA|ECDSA] [iterations]
+ */
+public final class CodecBenchmark {
+	private static final int WARMUP_ROUNDS = 3;
+
+	private CodecBenchmark() {
+		// hide
+	}
+
+	public static void main(String[] args) throws Exception {
+		AuthenticationApplication.KEY_PARAMETER = SignatureParameter
+				.valueOf((args.length > 0) ? args[0] : SignatureParameter.ECDSA.name());
+		final int iterations = (args.length > 1) ? Integer.parseInt(args[1]) : 20000;
+
+		Log.setEnabled(false);
+		File baseDir = Files.createTempDirectory("codec-benchmark").toFile();
+
+		try {
+			KeyManager issuer = new SimulationKeyManager(new File(baseDir, "issuer").getPath(), null);
+			KeyManager subject = new SimulationKeyManager(new File(baseDir, "subject").getPath(), null);
+
+			byte[] subKey = new byte[SimulationConfig.TRUST_SIZE_SUBKEY];
+			SimulationConfig.RANDOM.nextBytes(subKey);
+
+			SubKeyEntry entry = new SubKeyEntry();
+			entry.publicKey = subKey;
+			entry.signature = subject.createSubKeySignature(subKey, new AppDetails("org.example.app"), false, null);
+
+			List<Object> objects = new ArrayList<>();
+			objects.add(subject.getFingerprint());
+			objects.add(subject.getPublicKey());
+			objects.add(issuer.createSignature(subject.getPublicKey(), "alias"));
+			objects.add(entry.signature);
+			objects.add(entry);
+
+			System.out.println("Key: " + AuthenticationApplication.KEY_PARAMETER + ", iterations: " + iterations);
+			System.out.println(String.format("%-16s %10s %10s %12s %12s %12s %12s", "object", "ser [B]", "codec [B]",
+					"ser enc", "codec enc", "ser dec", "codec dec"));
+
+			for (Object object : objects) {
+				byte[] serialized = serialize(object);
+				byte[] encoded = TrustCodec.encode(object);
+
+				// warm up
+				for (int i = 0; i < WARMUP_ROUNDS; i++) {
+					measureSerialize(object, iterations);
+					measureEncode(object, iterations);
+					measureDeserialize(serialized, iterations);
+					measureDecode(encoded, iterations);
+				}
+
+				System.out.println(String.format("%-16s %10d %10d %9.0f ns %9.0f ns %9.0f ns %9.0f ns",
+						object.getClass().getSimpleName(), serialized.length, encoded.length,
+						measureSerialize(object, iterations), measureEncode(object, iterations),
+						measureDeserialize(serialized, iterations), measureDecode(encoded, iterations)));
+			}
+		} finally {
+			FileUtils.deleteDirectory(baseDir);
+		}
+	}
+
+	// ---- MEASUREMENTS (average ns per operation)
+
+	private static double measureSerialize(Object object, int iterations) throws Exception {
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+			serialize(object);
+		return (System.nanoTime() - start) / (double) iterations;
+	}
+
+	private static double measureEncode(Object object, int iterations) throws Exception {
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+			TrustCodec.encode(object);
+		return (System.nanoTime() - start) / (double) iterations;
+	}
+
+	private static double measureDeserialize(byte[] data, int iterations) throws Exception {
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+			deserialize(data);
+		return (System.nanoTime() - start) / (double) iterations;
+	}
+
+	private static double measureDecode(byte[] data, int iterations) throws Exception {
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++)
+			TrustCodec.decode(data);
+		return (System.nanoTime() - start) / (double) iterations;
+	}
+
+	// ---- SERIALIZATION (as previously used by the TrustFileManager)
+
+	private static byte[] serialize(Object object) throws Exception {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		Base64OutputStream bos = new Base64OutputStream(baos);
+		ObjectOutputStream oos = new ObjectOutputStream(bos);
+		oos.writeObject(object);
+		oos.close();
+		return baos.toByteArray();
+	}
+
+	private static Object deserialize(byte[] data) throws Exception {
+		ObjectInputStream ois = new ObjectInputStream(new Base64InputStream(new ByteArrayInputStream(data)));
+		Object result = ois.readObject();
+		ois.close();
+		return result;
+	}
+}
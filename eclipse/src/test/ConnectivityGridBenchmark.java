@@ -0,0 +1,125 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.ConnectivityGrid;
+import interfaces.ConnectivityOptimizer;
+import interfaces.SimpleBroadcastInterface;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import movement.MovementModel;
+import auth_encryption.log.Log;
+import core.Coord;
+import core.DTNHost;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.World;
+import routing.PassiveRouter;
+
+/**
+ * Measures the time the connectivity grid needs per interface and step
+ * (re-sorting all moved interfaces and visiting all near interfaces) for
+ * different numbers of nodes at a constant node density.
+ *
+ * Usage: ConnectivityGridBenchmark [steps] [nrofNodes...]
+ */
+public class ConnectivityGridBenchmark {
+	private static final double RANGE = 10;
+	/** world area per node (m^2) */
+	private static final double AREA_PER_NODE = 2500;
+	/** maximum movement per step (m) */
+	private static final double STEP_DISTANCE = 2;
+	private static final int WARMUP_STEPS = 5;
+
+	/** counts the visited interfaces */
+	private static class Counter implements ConnectivityOptimizer.InterfaceVisitor {
+		private long count = 0;
+
+		public void visit(NetworkInterface ni) {
+			count++;
+		}
+	}
+
+	public static void main(String[] args) {
+		int steps = (args.length > 0) ? Integer.parseInt(args[0]) : 50;
+		int[] sizes = {1000, 10000, 100000};
+		if (args.length > 1) {
+			sizes = new int[args.length - 1];
+			for (int i=1; i<args.length; i++) {
+				sizes[i-1] = Integer.parseInt(args[i]);
+			}
+		}
+
+		Log.setEnabled(false);
+		for (int n : sizes) {
+			run(n, steps);
+		}
+	}
+
+	private static void run(int nrofNodes, int steps) {
+		int worldSize = (int)Math.ceil(Math.sqrt(nrofNodes * AREA_PER_NODE));
+
+		TestSettings ts = new TestSettings();
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.WORLD_SIZE, worldSize + "," + worldSize);
+		ts.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." +
+				ConnectivityGrid.CELL_SIZE_MULT_S, "5");
+		ts.putSetting(TestUtils.IFACE_NS + "." +
+				NetworkInterface.TRANSMIT_RANGE_S, String.valueOf(RANGE));
+		ts.putSetting(TestUtils.IFACE_NS + "." +
+				NetworkInterface.TRANSMIT_SPEED_S, "1");
+		ConnectivityGrid.reset();
+
+		TestSettings ifaceSettings = new TestSettings(TestUtils.IFACE_NS);
+		Random rng = new Random(nrofNodes);
+		List<DTNHost> hosts = new ArrayList<DTNHost>(nrofNodes);
+		List<NetworkInterface> interfaces =
+			new ArrayList<NetworkInterface>(nrofNodes);
+		for (int i=0; i<nrofNodes; i++) {
+			List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+			li.add(new SimpleBroadcastInterface(ifaceSettings));
+			DTNHost host = new DTNHost(null, null, "n", li,
+					new ModuleCommunicationBus(),
+					new StationaryMovement(new Coord(
+							rng.nextDouble() * worldSize,
+							rng.nextDouble() * worldSize)),
+					new PassiveRouter(ts), "n" + i);
+			hosts.add(host);
+			interfaces.add(host.getInterfaces().get(0));
+		}
+
+		ConnectivityOptimizer grid = ConnectivityGrid.ConnectivityGridFactory(
+				TestUtils.IFACE_NS.hashCode(), RANGE);
+		Counter counter = new Counter();
+		long elapsed = 0;
+		for (int step=0; step < WARMUP_STEPS + steps; step++) {
+			// move every host a bit (within the world)
+			for (DTNHost host : hosts) {
+				Coord c = host.getLocation();
+				double x = c.getX() + (rng.nextDouble() - 0.5) * STEP_DISTANCE;
+				double y = c.getY() + (rng.nextDouble() - 0.5) * STEP_DISTANCE;
+				host.setLocation(new Coord(Math.min(Math.max(x, 0), worldSize),
+						Math.min(Math.max(y, 0), worldSize)));
+			}
+
+			long start = System.nanoTime();
+			for (NetworkInterface ni : interfaces) {
+				grid.updateLocation(ni);
+				grid.forEachNearInterface(ni, counter);
+			}
+			if (step >= WARMUP_STEPS) {
+				elapsed += System.nanoTime() - start;
+			}
+		}
+
+		System.out.println(String.format(
+				"%7d nodes: %8.1f ns/interface, %5.2f near interfaces",
+				nrofNodes, (double)elapsed / steps / nrofNodes,
+				(double)counter.count / (WARMUP_STEPS + steps) / nrofNodes));
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.ConnectivityGrid;
+import interfaces.ConnectivityOptimizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import core.Coord;
+import core.DTNHost;
+import core.NetworkInterface;
+
+/**
+ * Tests for the connectivity grid
+ */
+public class ConnectivityGridTest extends TestCase {
+	private ConnectivityGrid grid;
+	private NetworkInterface[] nis;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		ConnectivityGrid.reset();
+		DTNHost.reset();
+		grid = ConnectivityGrid.ConnectivityGridFactory(-12345, 10);
+		nis = new NetworkInterface[5];
+		for (int i=0; i<nis.length; i++) {
+			DTNHost h = utils.createHost(new Coord(10 + i, 10), "h" + i);
+			nis[i] = h.getInterfaces().get(0);
+		}
+	}
+
+	public void testNearInterfacesInAddOrder() {
+		for (int i=0; i<4; i++) {
+			grid.addInterface(nis[i]);
+		}
+		assertEquals(list(nis[1], nis[2], nis[3]), near(nis[0]));
+
+		grid.removeInterface(nis[1]); // moves the last one to the free slot
+		grid.addInterface(nis[4]);
+		assertEquals(list(nis[2], nis[3], nis[4]), near(nis[0]));
+
+		final List<NetworkInterface> visited = new ArrayList<NetworkInterface>();
+		grid.forEachNearInterface(nis[4], new ConnectivityOptimizer.InterfaceVisitor() {
+			public void visit(NetworkInterface ni) {
+				visited.add(ni);
+			}
+		});
+		assertEquals(list(nis[0], nis[2], nis[3]), visited);
+	}
+
+	private List<NetworkInterface> near(NetworkInterface ni) {
+		return new ArrayList<NetworkInterface>(grid.getNearInterfaces(ni));
+	}
+
+	private List<NetworkInterface> list(NetworkInterface... items) {
+		List<NetworkInterface> l = new ArrayList<NetworkInterface>();
+		for (NetworkInterface ni : items) {
+			l.add(ni);
+		}
+		return l;
+	}
+}
@@ -4,8 +4,10 @@
  */
 package test;
 
+import routing.ActiveRouter;
 import routing.EpidemicRouter;
 import routing.MessageRouter;
+import applications.PingApplication;
 import core.DTNHost;
 import core.Message;
 
@@ -118,6 +120,63 @@ public class EpidemicRouterTest extends AbstractRouterTest {
 		assertFalse(mc.next());
 	}
 
+	/**
+	 * Tests that only the messages missing from the other node's summary
+	 * vector are offered to it
+	 */
+	public void testSummaryVectorExchange() {
+		Message m1 = new Message(h1, h3, msgId1, 1);
+		h1.createNewMessage(m1);
+		h2.createNewMessage(new Message(h2, h3, msgId1, 1));
+		Message m2 = new Message(h1, h3, msgId2, 1);
+		h1.createNewMessage(m2);
+		checkCreates(3);
+
+		MessageRouter r2 = h2.getRouter();
+		assertTrue(r2.getSummaryVector().get(m1.getHandle()));
+		assertFalse(r2.getSummaryVector().get(m2.getHandle()));
+
+		h1.connect(h2);
+		updateAllNodes();
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_START, mc.getLastType());
+		assertEquals(msgId2, mc.getLastMsg().getId());
+		assertFalse(mc.next());
+
+		clock.advance(10);
+		updateAllNodes();
+		assertTrue(mc.next());
+		assertEquals(mc.TYPE_RELAY, mc.getLastType());
+		assertTrue(r2.getSummaryVector().get(m2.getHandle()));
+
+		clock.advance(10);
+		updateAllNodes();
+		assertFalse(mc.next()); // nothing left to exchange
+	}
+
+	/**
+	 * Tests that an idle router asks its applications when it must be
+	 * updated again
+	 */
+	public void testNextChangeTime() {
+		MessageRouter r0 = h0.getRouter();
+		assertEquals(ActiveRouter.TTL_CHECK_INTERVAL, r0.getNextChangeTime(),
+				0.0001);
+
+		TestSettings ps = new TestSettings("pingTest");
+		ps.putSetting(PingApplication.PING_INTERVAL, "50");
+		ps.putSetting(PingApplication.PING_OFFSET, "5");
+		r0.addApplication(new PingApplication(ps));
+		assertEquals(55, r0.getNextChangeTime(), 0.0001);
+
+		/* passive applications never have to be updated */
+		ps.putSetting(PingApplication.PING_PASSIVE, "true");
+		MessageRouter r1 = h1.getRouter();
+		r1.addApplication(new PingApplication(ps));
+		assertEquals(ActiveRouter.TTL_CHECK_INTERVAL, r1.getNextChangeTime(),
+				0.0001);
+	}
+
 	/**
 	 * Checks that delivering many messages in a row works
 	 */
@@ -5,6 +5,9 @@
 package test;
 
 import input.BinaryEventsReader;
+import input.CompactEventsReader;
+import input.CompactEventsWriter;
+import input.ConnectionEvent;
 import input.ExternalEvent;
 import input.ExternalEventsQueue;
 import input.ExternalEventsReader;
@@ -13,6 +16,8 @@ import input.StandardEventsReader;
 
 import java.io.File;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import junit.framework.TestCase;
@@ -66,6 +71,47 @@ public class ExternalEventsQueueTest extends TestCase {
 	}
 
 
+	public void testPrefetchEEQ() {
+		int preload = 10;
+		eeq = new ExternalEventsQueue(tempFile.getAbsolutePath(), preload,
+				true);
+		checkEeq(eeq, preload);
+		assertEquals(Double.MAX_VALUE, eeq.nextEventsTime());
+
+		preload = 1;
+		eeq = new ExternalEventsQueue(tempFile.getAbsolutePath(), preload,
+				true);
+		checkEeq(eeq, preload);
+		assertEquals(Double.MAX_VALUE, eeq.nextEventsTime());
+		assertTrue(eeq.getStallTime() >= 0);
+	}
+
+	public void testPrefetchManyEvents() throws Exception {
+		int nrofEvents = 5000;
+		File manyFile = File.createTempFile("eeqManyTest", ".tmp");
+		PrintWriter out = new PrintWriter(manyFile);
+		for (int i=0; i < nrofEvents; i++) {
+			out.println(i + "	C	M" + i + "	p1	p2	100");
+		}
+		out.close();
+
+		eeq = new ExternalEventsQueue(manyFile.getAbsolutePath(), 3, true);
+		for (int i=0; i < nrofEvents; i++) {
+			assertEquals((double)i, eeq.nextEventsTime());
+			assertEquals((double)i, eeq.nextEvent().getTime());
+		}
+		assertEquals(Double.MAX_VALUE, eeq.nextEventsTime());
+
+		/* closing in the middle of the file stops reading */
+		eeq = new ExternalEventsQueue(manyFile.getAbsolutePath(), 3, true);
+		eeq.nextEvent();
+		eeq.close();
+		assertEquals(Double.MAX_VALUE, eeq.nextEventsTime());
+		assertEquals(Double.MAX_VALUE, eeq.nextEvent().getTime());
+
+		manyFile.delete();
+	}
+
 	public void testBinaryEEQ() throws Exception{
 		int preload = 7;
 		File tmpBinFile = File.createTempFile("TempBinTest",
@@ -81,6 +127,92 @@ public class ExternalEventsQueueTest extends TestCase {
 		assertTrue(tmpBinFile.delete()); // make sure all locks are gone
 	}
 
+	public void testCompactEEQ() throws Exception {
+		int preload = 7;
+		File compactFile = File.createTempFile("TempCompactTest",
+				CompactEventsReader.COMPACT_EXT);
+		String compactFileName = compactFile.getAbsolutePath();
+		CompactEventsWriter.convert(tempFile, compactFile);
+		assertTrue(CompactEventsReader.isCompactEeFile(compactFile));
+		assertFalse(CompactEventsReader.isCompactEeFile(tempFile));
+
+		eeq = new ExternalEventsQueue(compactFileName, preload);
+		checkEeq(eeq, preload);
+		eeq = new ExternalEventsQueue(compactFileName, preload, false, true);
+		checkEeq(eeq, preload);
+
+		/* events survive the round trip and converting again gives
+		 * exactly the same file */
+		List<ExternalEvent> events = new StandardEventsReader(
+				tempFile).readEvents(100);
+		events.add(new ConnectionEvent(1, 2, "bt", true, 200000));
+		events.add(new ConnectionEvent(1, 2, null, false, 200001));
+		CompactEventsWriter.storeToCompactFile(compactFileName, events);
+		for (boolean memoryMap : new boolean[] {false, true}) {
+			CompactEventsReader r = new CompactEventsReader(compactFile,
+					memoryMap);
+			List<ExternalEvent> read = new ArrayList<ExternalEvent>();
+			List<ExternalEvent> batch;
+			while ((batch = r.readEvents(3)).size() > 0) {
+				read.addAll(batch);
+			}
+			r.close();
+			assertEquals(events.toString(), read.toString());
+		}
+
+		File copy = File.createTempFile("TempCompactTest",
+				CompactEventsReader.COMPACT_EXT);
+		CompactEventsWriter.convert(compactFile, copy);
+		assertTrue(Arrays.equals(readBytes(compactFile), readBytes(copy)));
+
+		assertTrue(copy.delete());
+		assertTrue(compactFile.delete());
+	}
+
+	public void testCorruptCompactFile() throws Exception {
+		File f = File.createTempFile("TempCompactTest",
+				CompactEventsReader.COMPACT_EXT);
+
+		writeBytes(f, new byte[] {0x4F, 0x4E}); // truncated header
+		assertFalse(CompactEventsReader.isCompactEeFile(f));
+
+		java.io.ByteArrayOutputStream bytes =
+			new java.io.ByteArrayOutputStream();
+		java.io.DataOutputStream out = new java.io.DataOutputStream(bytes);
+		out.writeInt(CompactEventsReader.MAGIC);
+		out.writeInt(CompactEventsReader.VERSION);
+		out.writeByte(CompactEventsReader.TAG_ID);
+		out.writeInt(-5); // negative ID length
+		out.close();
+		writeBytes(f, bytes.toByteArray());
+		assertTrue(CompactEventsReader.isCompactEeFile(f));
+
+		CompactEventsReader r = new CompactEventsReader(f);
+		try {
+			r.readEvents(1);
+			fail("Negative ID length was accepted");
+		} catch (core.SimError e) {
+			// expected
+		}
+		r.close();
+
+		assertTrue(f.delete()); // no stream left open
+	}
+
+	private void writeBytes(File f, byte[] bytes) throws Exception {
+		java.io.FileOutputStream out = new java.io.FileOutputStream(f);
+		out.write(bytes);
+		out.close();
+	}
+
+	private byte[] readBytes(File f) throws Exception {
+		byte[] bytes = new byte[(int)f.length()];
+		java.io.DataInputStream in = new java.io.DataInputStream(
+				new java.io.FileInputStream(f));
+		in.readFully(bytes);
+		in.close();
+		return bytes;
+	}
 
 	private void checkEeq(ExternalEventsQueue eeq, int preloadVal) {
 		ExternalEvent ee;
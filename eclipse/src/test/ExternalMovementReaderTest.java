@@ -5,6 +5,7 @@
 package test;
 
 import input.ExternalMovementReader;
+import input.MovementTrace;
 
 import java.io.File;
 import java.io.PrintWriter;
@@ -37,10 +38,12 @@ public class ExternalMovementReaderTest extends TestCase {
 		  {new Coord(30,20), new Coord(30,30), new Coord(40,30)} };
 
 
+	private File tmpFile;
+
 	protected void setUp() throws Exception {
 		super.setUp();
 
-		File tmpFile = File.createTempFile("EMRTest","tmp");
+		tmpFile = File.createTempFile("EMRTest","tmp");
 		tmpFile.deleteOnExit();
 
 		PrintWriter pw = new PrintWriter(tmpFile);
@@ -63,6 +66,38 @@ public class ExternalMovementReaderTest extends TestCase {
 		assertEquals(0, list.size());
 	}
 
+	public void testTrace() throws Exception {
+		File traceFile = File.createTempFile("EMRTest",
+				MovementTrace.TRACE_EXT);
+		traceFile.deleteOnExit();
+		new MovementTrace(r).store(traceFile);
+		assertTrue(MovementTrace.isTraceFile(traceFile));
+		assertFalse(MovementTrace.isTraceFile(tmpFile));
+
+		MovementTrace t = MovementTrace.load(traceFile, true);
+		assertEquals(3, t.getNrofHosts());
+		assertEquals(times.length, t.getNrofSteps());
+		assertEquals(9, t.getNrofSamples());
+		for (int i=0; i<times.length; i++) {
+			assertEquals(times[i], t.getStepTime(i));
+			assertEquals(i * ids.length, t.getStepStart(i));
+			assertEquals((i + 1) * ids.length, t.getStepEnd(i));
+			for (int j=0; j<ids.length; j++) {
+				int sample = t.getStepStart(i) + j;
+				assertEquals(ids[j], t.getHostId(t.getHost(sample)));
+				assertEquals(coords[i][j],
+						new Coord(t.getX(sample), t.getY(sample)));
+			}
+		}
+
+		/* host "3" moves from (10,30) via (30,30) to (40,30) */
+		assertEquals(new Coord(10,30), t.getLocationAt(2, 0));
+		assertEquals(new Coord(20,30), t.getLocationAt(2, 15));
+		assertEquals(new Coord(30,30), t.getLocationAt(2, 20));
+		assertEquals(new Coord(35,30), t.getLocationAt(2, 25));
+		assertEquals(new Coord(40,30), t.getLocationAt(2, 100));
+	}
+
 	private void checkTuples(List<Tuple<String, Coord>> list, String[] ids,
 			Coord[] coords) {
 
@@ -4,6 +4,9 @@
  */
 package test;
 
+import input.ExternalMovementReader;
+import input.MovementTrace;
+
 import java.io.File;
 import java.io.PrintWriter;
 
@@ -49,6 +52,11 @@ public class ExternalMovementTest extends TestCase {
 	private SimClock clock;
 
 	protected void setUpUsing(String[] input) throws Exception {
+		setUpUsing(input, false);
+	}
+
+	protected void setUpUsing(String[] input, boolean binaryTrace)
+			throws Exception {
 		super.setUp();
 		ExternalMovement.reset();
 		TestSettings ts = new TestSettings();
@@ -64,6 +72,17 @@ public class ExternalMovementTest extends TestCase {
 
 		pw.close();
 
+		if (binaryTrace) {
+			File traceFile = File.createTempFile("eMovementTest",
+					MovementTrace.TRACE_EXT);
+			traceFile.deleteOnExit();
+			ExternalMovementReader r = new ExternalMovementReader(
+					outFile.getAbsolutePath());
+			r.setNormalize(false);
+			new MovementTrace(r).store(traceFile);
+			outFile = traceFile;
+		}
+
 		ts.putSetting(ExternalMovement.EXTERNAL_MOVEMENT_NS + "." +
 				ExternalMovement.MOVEMENT_FILE_S, outFile.getAbsolutePath());
 
@@ -80,7 +99,15 @@ public class ExternalMovementTest extends TestCase {
 
 	public void testMovement() throws Exception {
 		setUpUsing(INPUT);
+		checkMovement();
+	}
 
+	public void testTraceMovement() throws Exception {
+		setUpUsing(INPUT, true);
+		checkMovement();
+	}
+
+	private void checkMovement() {
 		// h3 should not get any fancy coordinates
 		assertEquals(c0, h3.getLocation());
 		assertFalse(h3.isMovementActive());
@@ -99,7 +126,15 @@ public class ExternalMovementTest extends TestCase {
 
 	public void testStationary() throws Exception {
 		setUpUsing(STATIONARY_INPUT);
+		checkStationary();
+	}
+
+	public void testTraceStationary() throws Exception {
+		setUpUsing(STATIONARY_INPUT, true);
+		checkStationary();
+	}
 
+	private void checkStationary() {
 		for (int i=0; i<3; i++) {
 			// hosts h1 & h2 should stay in the same place all the time
 			assertEquals((i+1) + ". coord of h1",
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import util.IntHashMap;
+import util.IntHashSet;
+
+/**
+ * Tests for the primitive int key hash map
+ */
+public class IntHashMapTest extends TestCase {
+
+	public void testBasics() {
+		IntHashMap<String> map = new IntHashMap<String>();
+		assertTrue(map.isEmpty());
+		assertNull(map.put(1, "a"));
+		assertNull(map.put(-5, "b"));
+		assertEquals("a", map.put(1, "c"));
+		assertEquals(2, map.size());
+		assertEquals("c", map.get(1));
+		assertEquals("b", map.get(-5));
+		assertNull(map.get(2));
+		assertTrue(map.containsKey(-5));
+
+		assertEquals("b", map.remove(-5));
+		assertNull(map.remove(-5));
+		assertFalse(map.containsKey(-5));
+		assertEquals(1, map.values().size());
+		map.clear();
+		assertTrue(map.isEmpty());
+	}
+
+	public void testRandomOperations() {
+		IntHashMap<Integer> map = new IntHashMap<Integer>();
+		HashMap<Integer, Integer> ref = new HashMap<Integer, Integer>();
+		Random rng = new Random(1);
+
+		for (int i=0; i<20000; i++) {
+			int key = rng.nextInt(500);
+			if (rng.nextInt(3) == 0) {
+				assertEquals(ref.remove(key), map.remove(key));
+			} else {
+				assertEquals(ref.put(key, i), map.put(key, i));
+			}
+		}
+
+		assertEquals(ref.size(), map.size());
+		for (int key=0; key<500; key++) {
+			assertEquals(ref.get(key), map.get(key));
+		}
+		assertEquals(new HashSet<Integer>(ref.values()),
+				new HashSet<Integer>(map.values()));
+	}
+
+	public void testModificationDuringIteration() {
+		IntHashMap<String> map = new IntHashMap<String>();
+		map.put(1, "a");
+		map.put(2, "b");
+
+		Iterator<String> i = map.values().iterator();
+		i.next();
+		map.put(1, "c"); // replacing a value is not a structural change
+		i.next();
+
+		i = map.values().iterator();
+		i.next();
+		map.put(3, "d");
+		try {
+			i.next();
+			fail("Iterator did not detect an added key");
+		} catch (ConcurrentModificationException e) {
+			// expected
+		}
+
+		i = map.values().iterator();
+		map.remove(2);
+		try {
+			i.next();
+			fail("Iterator did not detect a removed key");
+		} catch (ConcurrentModificationException e) {
+			// expected
+		}
+	}
+
+	public void testIntHashSet() {
+		IntHashSet set = new IntHashSet();
+		assertTrue(set.isEmpty());
+		assertTrue(set.add(1000000));
+		assertTrue(set.add(3));
+		assertFalse(set.add(3));
+		assertEquals(2, set.size());
+		assertTrue(set.contains(1000000));
+		assertFalse(set.contains(4));
+		assertTrue(set.remove(3));
+		assertFalse(set.remove(3));
+		assertEquals(1, set.toArray().length);
+		assertEquals(1000000, set.toArray()[0]);
+	}
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.EventQueue;
+import interfaces.ConnectivityGrid;
+import interfaces.SimpleBroadcastInterface;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.Path;
+import routing.PassiveRouter;
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.SimClock;
+import core.UpdateListener;
+import core.World;
+
+/**
+ * Tests for the kinetic contact prediction of the World
+ */
+public class KineticConnectivityTest extends TestCase {
+	private static final double DELTA = 0.000001;
+	private static final double RANGE = 10;
+	private static final double UPDATE_INTERVAL = 7;
+
+	private TestSettings ts;
+	private List<Double> ups;
+	private List<Double> downs;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		ConnectivityGrid.reset();
+		this.ts = new TestSettings();
+		this.ups = new ArrayList<Double>();
+		this.downs = new ArrayList<Double>();
+	}
+
+	protected void tearDown() throws Exception {
+		this.ts.putSetting(World.OPTIMIZATION_SETTINGS_NS + "." +
+				World.KINETIC_CONTACTS_S, "false");
+		super.tearDown();
+	}
+
+	public void testIntervalContacts() {
+		runPassBy(false, World.DEF_KINETIC_HORIZON);
+
+		/* contact is seen at the first update within range */
+		assertEquals(1, ups.size());
+		assertEquals(42, ups.get(0), DELTA);
+		assertEquals(1, downs.size());
+		assertEquals(63, downs.get(0), DELTA);
+	}
+
+	public void testKineticContacts() {
+		runPassBy(true, World.DEF_KINETIC_HORIZON);
+
+		assertEquals(1, ups.size());
+		assertEquals(40, ups.get(0), DELTA);
+		assertEquals(1, downs.size());
+		assertEquals(60, downs.get(0), DELTA);
+	}
+
+	public void testShortHorizon() {
+		runPassBy(true, 3);
+
+		assertEquals(1, ups.size());
+		assertEquals(40, ups.get(0), DELTA);
+		assertEquals(1, downs.size());
+		assertEquals(60, downs.get(0), DELTA);
+	}
+
+	/**
+	 * One host moves at 1 m/s from (0,0) to (100,0) past a host standing at
+	 * (50,0), i.e., they are within range between t=40 and t=60.
+	 */
+	private void runPassBy(boolean kinetic, double horizon) {
+		String ns = World.OPTIMIZATION_SETTINGS_NS + ".";
+		ts.putSetting(ns + World.KINETIC_CONTACTS_S, String.valueOf(kinetic));
+		ts.putSetting(ns + World.KINETIC_HORIZON_S, String.valueOf(horizon));
+		ts.putSetting(TestUtils.IFACE_NS + "." +
+				NetworkInterface.TRANSMIT_RANGE_S, String.valueOf(RANGE));
+		ts.putSetting(TestUtils.IFACE_NS + "." +
+				NetworkInterface.TRANSMIT_SPEED_S, "1");
+
+		List<ConnectionListener> cl = new ArrayList<ConnectionListener>();
+		cl.add(new ConnectionListener() {
+			public void hostsConnected(DTNHost host1, DTNHost host2) {
+				ups.add(SimClock.getTime());
+			}
+			public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+				downs.add(SimClock.getTime());
+			}
+		});
+
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		hosts.add(createHost(cl, new LineMovement(new Coord(0, 0),
+				new Coord(100, 0), 1)));
+		hosts.add(createHost(cl, new StationaryMovement(new Coord(50, 0))));
+
+		World world = new World(hosts, 100, 100, UPDATE_INTERVAL,
+				new ArrayList<UpdateListener>(), true,
+				new ArrayList<EventQueue>());
+		while (SimClock.getTime() < 100) {
+			world.update();
+		}
+	}
+
+	private DTNHost createHost(List<ConnectionListener> cl,
+			MovementModel mm) {
+		NetworkInterface ni = new SimpleBroadcastInterface(
+				new TestSettings(TestUtils.IFACE_NS));
+		ni.setClisteners(cl);
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(ni);
+		return new DTNHost(null, null, "h", li, new ModuleCommunicationBus(),
+				mm, new PassiveRouter(ts), "h");
+	}
+
+	/**
+	 * Moves once along a straight line and stops there
+	 */
+	private static class LineMovement extends MovementModel {
+		private Coord from;
+		private Coord to;
+		private double speed;
+		private boolean moved = false;
+
+		public LineMovement(Coord from, Coord to, double speed) {
+			this.from = from;
+			this.to = to;
+			this.speed = speed;
+		}
+
+		@Override
+		public Coord getInitialLocation() {
+			return from.clone();
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public Path getPath() {
+			if (moved) {
+				return null;
+			}
+			moved = true;
+			Path p = new Path(speed);
+			p.addWaypoint(from.clone());
+			p.addWaypoint(to.clone());
+			return p;
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			return moved ? Double.MAX_VALUE : 0;
+		}
+
+		@Override
+		public LineMovement replicate() {
+			return new LineMovement(from, to, speed);
+		}
+	}
+}
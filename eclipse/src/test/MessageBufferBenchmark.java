@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import routing.util.MessageStore;
+import core.Message;
+import core.SimClock;
+
+/**
+ * Measures eviction from a full message buffer: every new message causes
+ * the removal of the message with the lowest TTL. The indexed
+ * {@link MessageStore} is compared to a linear scan of a HashMap.
+ *
+ * Usage: MessageBufferBenchmark [operations] [bufferSize...]
+ */
+public class MessageBufferBenchmark {
+	private static final int ROUNDS = 3;
+
+	public static void main(String[] args) {
+		int operations = (args.length > 0) ? Integer.parseInt(args[0]) :
+			100000;
+		int[] sizes = {1000, 10000};
+		if (args.length > 1) {
+			sizes = new int[args.length - 1];
+			for (int i=1; i<args.length; i++) {
+				sizes[i-1] = Integer.parseInt(args[i]);
+			}
+		}
+
+		for (int size : sizes) {
+			for (int round=0; round<ROUNDS; round++) {
+				runStore(size, operations);
+				runScan(size, Math.max(1, operations / (size / 100)));
+			}
+		}
+	}
+
+	private static Message newMessage(Random rng, int id) {
+		SimClock.getInstance().setTime(id);
+		Message m = new Message(null, null, "M" + id, 100);
+		m.setTtl(1 + rng.nextInt(300));
+		return m;
+	}
+
+	private static void runStore(int size, int operations) {
+		Random rng = new Random(size);
+		MessageStore store = new MessageStore();
+		for (int i=0; i<size; i++) {
+			store.put(newMessage(rng, i));
+		}
+
+		long start = System.nanoTime();
+		for (int i=size; i<size + operations; i++) {
+			store.remove(store.getFirstToExpire(null).getId());
+			store.put(newMessage(rng, i));
+		}
+		print("MessageStore", size, operations, start);
+	}
+
+	private static void runScan(int size, int operations) {
+		Random rng = new Random(size);
+		HashMap<String, Message> messages = new HashMap<String, Message>();
+		for (int i=0; i<size; i++) {
+			Message m = newMessage(rng, i);
+			messages.put(m.getId(), m);
+		}
+
+		long start = System.nanoTime();
+		for (int i=size; i<size + operations; i++) {
+			Message oldest = null;
+			for (Message m : messages.values()) {
+				if (oldest == null || oldest.getTtl() > m.getTtl()) {
+					oldest = m;
+				}
+			}
+			messages.remove(oldest.getId());
+			Message m = newMessage(rng, i);
+			messages.put(m.getId(), m);
+		}
+		print("linear scan", size, operations, start);
+	}
+
+	private static void print(String name, int size, int operations,
+			long start) {
+		double duration = (System.nanoTime() - start) / 1000000000.0;
+		System.out.println(String.format("%-12s buffer %6d: %.0f evictions/s",
+				name, size, operations / duration));
+	}
+}
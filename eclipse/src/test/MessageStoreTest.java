@@ -0,0 +1,108 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.util.MessageStore;
+import core.Message;
+import core.SimClock;
+
+/**
+ * Tests for the indexed message buffer of routers
+ */
+public class MessageStoreTest extends TestCase {
+	private MessageStore store;
+	private SimClock clock;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		clock = SimClock.getInstance();
+		clock.setTime(0);
+		store = new MessageStore();
+	}
+
+	private Message add(String id, int ttl) {
+		Message m = new Message(null, null, id, 10);
+		m.setTtl(ttl);
+		store.put(m);
+		return m;
+	}
+
+	public void testIndex() {
+		Message m1 = add("M1", 10);
+		Message m2 = add("M2", 5);
+		assertEquals(2, store.size());
+		assertSame(m1, store.get("M1"));
+		assertTrue(store.contains("M2"));
+		assertTrue(store.values().contains(m2));
+
+		assertSame(m2, store.remove("M2"));
+		assertNull(store.remove("M2"));
+		assertFalse(store.contains("M2"));
+		assertFalse(store.values().contains(m2));
+		assertEquals(1, store.values().size());
+	}
+
+	public void testManyMessages() {
+		HashMap<String, Message> map = new HashMap<String, Message>();
+		for (int i=0; i<100; i++) {
+			Message m = add("M" + (i * 7919 % 1000), i);
+			map.put(m.getId(), m);
+		}
+		for (int i=0; i<100; i+=3) {
+			store.remove("M" + (i * 7919 % 1000));
+			map.remove("M" + (i * 7919 % 1000));
+		}
+		assertEquals(map.size(), store.size());
+		assertEquals(new HashSet<Message>(map.values()),
+				new HashSet<Message>(store.values()));
+		for (Message m : map.values()) {
+			assertSame(m, store.get(m.getHandle()));
+		}
+		assertNull(store.get("M1000"));
+	}
+
+	public void testFirstToExpire() {
+		Message m1 = add("M1", 10);
+		Message m2 = add("M2", 5);
+		Message m3 = add("M3", 5);
+		add("M4", Message.INFINITE_TTL);
+
+		clock.setTime(60); // same TTLs, but m2 added before m3
+		Message m5 = add("M5", 5);
+		assertSame(m2, store.getFirstToExpire(null));
+		BitSet excluded = new BitSet();
+		excluded.set(m2.getHandle());
+		assertSame(m3, store.getFirstToExpire(excluded));
+
+		store.remove("M2");
+		store.remove("M3");
+		assertSame(m5, store.getFirstToExpire(null));
+		store.remove("M5");
+		assertSame(m1, store.getFirstToExpire(null));
+	}
+
+	public void testExpired() {
+		add("M1", 1);
+		add("M2", 3);
+		add("M3", 2);
+		add("M4", Message.INFINITE_TTL);
+
+		assertEquals(0, store.getExpired().size());
+		clock.setTime(119); // TTLs (in full minutes) of M1 and M3 are 0
+		List<Message> expired = store.getExpired();
+		assertEquals(2, expired.size());
+		assertEquals("M1", expired.get(0).getId());
+		assertEquals("M3", expired.get(1).getId());
+
+		clock.setTime(Double.MAX_VALUE / 2);
+		assertEquals(3, store.getExpired().size());
+	}
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.util.PredictabilityTable;
+import core.Coord;
+import core.DTNHost;
+
+/**
+ * Tests for the delivery predictability tables of PRoPHET routers
+ */
+public class PredictabilityTableTest extends TestCase {
+	private static final int NROF_HOSTS = 40;
+	private DTNHost[] hosts;
+	private PredictabilityTable table;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		DTNHost.reset();
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		hosts = new DTNHost[NROF_HOSTS];
+		for (int i=0; i<NROF_HOSTS; i++) {
+			hosts[i] = utils.createHost(new Coord(0,0), "h" + i);
+		}
+		table = new PredictabilityTable();
+	}
+
+	public void testEntries() {
+		assertEquals(0.0, table.get(hosts[3]));
+		table.set(hosts[3], 0.5);
+		table.set(hosts[NROF_HOSTS - 1], 0.25);
+		table.set(hosts[3], 0.75);
+
+		assertEquals(2, table.size());
+		assertEquals(0.75, table.get(hosts[3]));
+		assertEquals(0.25, table.get(hosts[NROF_HOSTS - 1].getAddress()));
+		assertTrue(table.hasEntry(hosts[3].getAddress()));
+		assertFalse(table.hasEntry(hosts[4].getAddress()));
+		assertSame(hosts[3], table.getHost(hosts[3].getAddress()));
+		assertNull(table.getHost(10000));
+		assertTrue(table.getAddressLimit() >= NROF_HOSTS);
+	}
+
+	public void testScale() {
+		table.set(hosts[0], 0.5);
+		table.set(hosts[1], 1.0);
+		table.scale(0.5);
+		assertEquals(0.25, table.get(hosts[0]), 1e-15);
+		assertEquals(0.5, table.get(hosts[1]), 1e-15);
+
+		table.set(hosts[0], 0.8); // values set after scaling are not scaled
+		assertEquals(0.8, table.get(hosts[0]), 1e-15);
+
+		for (int i=0; i<10; i++) { // scale small enough to be folded
+			table.scale(1e-20);
+		}
+		assertEquals(0.8e-200, table.get(hosts[0]), 1e-210);
+		table.set(hosts[1], 0.1);
+		assertEquals(0.1, table.get(hosts[1]), 1e-15);
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ExternalEvent;
+import input.StandardEventsReader;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Measures how many lines per second the StandardEventsReader parses from
+ * an events file. Without file arguments, a file with message and connection
+ * events is generated.
+ *
+ * Usage: StandardEventsReaderBenchmark [nrofLines] [file...]
+ */
+public class StandardEventsReaderBenchmark {
+	private static final int BATCH_SIZE = 500;
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) throws IOException {
+		int nrofLines = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+
+		if (args.length > 1) {
+			for (int i=1; i<args.length; i++) {
+				run(new File(args[i]));
+			}
+			return;
+		}
+
+		File tmp = File.createTempFile("eventsBenchmark", ".txt");
+		try {
+			generate(tmp, nrofLines);
+			run(tmp);
+		} finally {
+			tmp.delete();
+		}
+	}
+
+	private static void run(File file) {
+		for (int round=0; round<ROUNDS; round++) {
+			long start = System.nanoTime();
+			long lines = 0;
+			StandardEventsReader reader = new StandardEventsReader(file);
+			List<ExternalEvent> events;
+			do {
+				events = reader.readEvents(BATCH_SIZE);
+				lines += events.size();
+			} while (events.size() > 0);
+			reader.close();
+
+			double duration = (System.nanoTime() - start) / 1000000000.0;
+			System.out.println(String.format(
+					"%s round %d: %d events, %.0f lines/s", file.getName(),
+					round + 1, lines, lines / duration));
+		}
+	}
+
+	/**
+	 * Writes a file with message creation, relay and connection events
+	 */
+	private static void generate(File file, int nrofLines) throws IOException {
+		Random rng = new Random(nrofLines);
+		BufferedWriter out = new BufferedWriter(new FileWriter(file));
+		double time = 0;
+		for (int i=0; i<nrofLines; i++) {
+			time += rng.nextInt(1000) / 100.0;
+			String t = String.format(Locale.US, "%.2f", time);
+			int from = rng.nextInt(1000);
+			int to = rng.nextInt(1000);
+			switch (i % 4) {
+			case 0:
+				out.write(t + "\tC\tM" + i + "\tp" + from + "\tp" + to + "\t" +
+						(1 + rng.nextInt(999)) + "k\n");
+				break;
+			case 1:
+				out.write(t + "\tS\tM" + (i - 1) + "\tp" + from + "\tp" + to +
+						"\n");
+				break;
+			default:
+				out.write(t + "\tCONN\t" + from + "\t" + to + "\t" +
+						(i % 4 == 2 ? "up" : "down") + "\n");
+			}
+		}
+		out.close();
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ExternalEvent;
+import input.StandardEventsReader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import junit.framework.TestCase;
+import core.SimError;
+
+/**
+ * Tests for the parsing of the StandardEventsReader
+ */
+public class StandardEventsReaderTest extends TestCase {
+	private File tempFile;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		tempFile = File.createTempFile("serTest", ".tmp");
+	}
+
+	protected void tearDown() throws Exception {
+		tempFile.delete();
+		super.tearDown();
+	}
+
+	public void testSizesAndHostIds() throws Exception {
+		List<ExternalEvent> events = read(
+				"1.5 C M1 p1 c22 10k\r\n" +
+				"2 C M2 3 4 2kiB 1M\r\n" +
+				"0.25\tC\tM3\tn007\tx1\t+7\n" +
+				"\u000b\n" +
+				"1e2 C M4 1 2 5MiB\r" +
+				"100.125 CONN p3 p4 UP bt\n" +
+				"101 CONN 3 4 down", 10);
+
+		assertEquals(6, events.size());
+		assertEquals("MSG @1.5 M1 [1->22] size:10000 CREATE",
+				events.get(0).toString());
+		assertEquals("MSG @2.0 M2 [3->4] size:2048 CREATE",
+				events.get(1).toString());
+		assertEquals("MSG @0.25 M3 [7->1] size:7 CREATE",
+				events.get(2).toString());
+		assertEquals("MSG @100.0 M4 [1->2] size:5242880 CREATE",
+				events.get(3).toString());
+		assertEquals("CONN up @100.125 3<->4", events.get(4).toString());
+		assertEquals("CONN down @101.0 3<->4", events.get(5).toString());
+	}
+
+	public void testBatches() throws Exception {
+		write("# comment\n1 S M1 p1 p2\n\n2 DE M1 p1 p2\n3 A M1 p1 p2\n" +
+				"4 DR M1 p2\n");
+		StandardEventsReader r = new StandardEventsReader(tempFile);
+		assertEquals(3, r.readEvents(3).size());
+		List<ExternalEvent> rest = r.readEvents(3);
+		assertEquals(1, rest.size());
+		assertEquals(4.0, rest.get(0).getTime());
+		assertEquals(0, r.readEvents(3).size());
+		r.close();
+	}
+
+	public void testInvalidLines() throws Exception {
+		assertParseError("1 C M1 p1 p2\n");
+		assertParseError("1 S M1 p1\n");
+		assertParseError("x S M1 p1 p2\n");
+		assertParseError("1 C M1 p1 p2 1.5k\n");
+		assertParseError("1 S M1 p1 1p\n");
+		assertParseError("1 Q M1 p1 p2\n");
+	}
+
+	private void assertParseError(String data) throws IOException {
+		try {
+			read(data, 10);
+			fail("Parsing '" + data.trim() + "' should fail");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+
+	private List<ExternalEvent> read(String data, int nrof)
+			throws IOException {
+		write(data);
+		StandardEventsReader r = new StandardEventsReader(tempFile);
+		try {
+			return r.readEvents(nrof);
+		} finally {
+			r.close();
+		}
+	}
+
+	private void write(String data) throws IOException {
+		FileOutputStream out = new FileOutputStream(tempFile);
+		out.write(data.getBytes("US-ASCII"));
+		out.close();
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.util.TransferQueue;
+import core.Message;
+
+/**
+ * Tests for the per-connection transfer queues of routers
+ */
+public class TransferQueueTest extends TestCase {
+	private Message[] msgs;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		msgs = new Message[6];
+		for (int i=0; i<msgs.length; i++) {
+			msgs[i] = new Message(null, null, "M" + i, 10);
+			msgs[i].setReceiveTime(i * 10);
+		}
+	}
+
+	public void testFifoOrder() {
+		TransferQueue q = new TransferQueue(false, 0);
+		q.addAll(Arrays.asList(msgs[0], msgs[2], msgs[4]));
+		q.add(msgs[5]);
+		q.add(msgs[1]); // received earlier, but added later
+		assertEquals("[M0, M1, M2, M4, M5]", toList(q).toString());
+
+		assertTrue(q.remove(msgs[2]));
+		assertFalse(q.remove(msgs[2]));
+		assertEquals("[M0, M1, M4, M5]", toList(q).toString());
+		assertEquals(4, q.size());
+	}
+
+	public void testModificationDuringIteration() {
+		TransferQueue q = new TransferQueue(false, 0);
+		q.addAll(Arrays.asList(msgs[0], msgs[1], msgs[3]));
+
+		List<Message> seen = new ArrayList<Message>();
+		for (Iterator<Message> i = q.iterator(); i.hasNext(); ) {
+			Message m = i.next();
+			seen.add(m);
+			if (m == msgs[0]) {
+				i.remove();
+				q.remove(msgs[1]);
+				q.add(msgs[2]);
+				q.add(msgs[5]);
+			}
+		}
+		assertEquals("[M0, M2, M3, M5]", seen.toString());
+		assertEquals("[M2, M3, M5]", toList(q).toString());
+	}
+
+	public void testRandomOrder() {
+		List<Message> initial = Arrays.asList(msgs[3], msgs[0], msgs[2]);
+		TransferQueue q1 = new TransferQueue(true, 42);
+		TransferQueue q2 = new TransferQueue(true, 42);
+		q1.addAll(initial);
+		q2.addAll(initial);
+		assertEquals(initial, toList(q1)); // initial order is kept
+
+		for (int i : new int[] {1, 4, 5}) {
+			q1.add(msgs[i]);
+			q2.add(msgs[i]);
+		}
+		assertEquals(6, q1.size());
+		assertEquals(toList(q1), toList(q2)); // same seed, same order
+
+		List<Message> initialLeft = new ArrayList<Message>(toList(q1));
+		initialLeft.retainAll(initial);
+		assertEquals(initial, initialLeft);
+	}
+
+	public void testRandomOrderFromEmpty() {
+		TransferQueue q1 = new TransferQueue(true, 42);
+		TransferQueue q2 = new TransferQueue(true, 42);
+		for (Message m : msgs) {
+			q1.add(m);
+			q2.add(m);
+		}
+		assertEquals(msgs.length, q1.size());
+		assertEquals(toList(q1), toList(q2)); // same seed, same order
+		assertFalse(Arrays.asList(msgs).equals(toList(q1))); // not FIFO
+	}
+
+	private List<Message> toList(TransferQueue q) {
+		List<Message> list = new ArrayList<Message>();
+		for (Message m : q) {
+			list.add(m);
+		}
+		return list;
+	}
+}
@@ -0,0 +1,102 @@
+package test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.security.PublicKey;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+import applications.AuthenticationApplication;
+import auth_encryption.core.KeyManager;
+import auth_encryption.core.SubKeyEntry;
+import auth_encryption.core.TrustCodec;
+import auth_encryption.log.Log;
+import auth_encryption.primitives.AppDetails;
+import auth_encryption.primitives.Signature;
+import auth_encryption.primitives.SignatureParameter;
+import auth_encryption.primitives.SubKeySignature;
+import auth_encryption.simulator.SimulationKeyManager;
+
+/**
+ * Tests for the TrustCodec class.
+ */
+public class TrustCodecTest extends TestCase {
+	private File baseDir;
+	private SignatureParameter oldKeyParameter;
+	private KeyManager issuer;
+	private KeyManager subject;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		Log.setEnabled(false);
+
+		this.oldKeyParameter = AuthenticationApplication.KEY_PARAMETER;
+		AuthenticationApplication.KEY_PARAMETER = SignatureParameter.ECDSA;
+
+		this.baseDir = Files.createTempDirectory("codec-test").toFile();
+		this.issuer = new SimulationKeyManager(new File(this.baseDir, "issuer").getPath(), null);
+		this.subject = new SimulationKeyManager(new File(this.baseDir, "subject").getPath(), null);
+	}
+
+	protected void tearDown() throws Exception {
+		AuthenticationApplication.KEY_PARAMETER = this.oldKeyParameter;
+		FileUtils.deleteDirectory(this.baseDir);
+		Log.setEnabled(true);
+		super.tearDown();
+	}
+
+	public void testSignature() throws Exception {
+		Signature signature = this.issuer.createSignature(this.subject.getPublicKey(), "alias");
+		Signature decoded = (Signature) roundTrip(signature);
+
+		assertEquals(signature, decoded);
+		assertTrue(decoded.verify(this.issuer.getPublicKey(), this.subject.getPublicKey()));
+
+		// self signature without alias
+		assertEquals(this.subject.getSignature(), roundTrip(this.subject.getSignature()));
+	}
+
+	public void testPublicKey() throws Exception {
+		PublicKey publicKey = this.subject.getPublicKey();
+		PublicKey decoded = (PublicKey) roundTrip(publicKey);
+
+		assertEquals(publicKey.getAlgorithm(), decoded.getAlgorithm());
+		assertTrue(Arrays.equals(publicKey.getEncoded(), decoded.getEncoded()));
+	}
+
+	public void testSubKey() throws Exception {
+		byte[] subKey = new byte[64];
+		for (int i = 0; i < subKey.length; i++)
+			subKey[i] = (byte) i;
+
+		AppDetails details = new AppDetails("org.example.app");
+		details.signatureKeyFingerprint = this.issuer.getFingerprint();
+
+		SubKeyEntry entry = new SubKeyEntry();
+		entry.publicKey = subKey;
+		entry.signature = this.subject.createSubKeySignature(subKey, details, true, "tag");
+
+		SubKeyEntry decoded = (SubKeyEntry) roundTrip(entry);
+		assertEquals(entry, decoded);
+		assertTrue(decoded.signature.verify(this.subject.getPublicKey(), subKey));
+
+		SubKeySignature unbound = this.subject.createSubKeySignature(subKey, details, false, null);
+		assertEquals(unbound, roundTrip(unbound));
+		assertTrue(Arrays.equals(subKey, (byte[]) roundTrip(subKey)));
+	}
+
+	public void testNotEncoded() throws Exception {
+		assertFalse(TrustCodec.isEncoded("rO0ABX".getBytes("US-ASCII")));
+		assertTrue(TrustCodec.isEncoded(TrustCodec.encode(this.issuer.getFingerprint())));
+		assertEquals(this.issuer.getFingerprint(), roundTrip(this.issuer.getFingerprint()));
+	}
+
+	private static Object roundTrip(Object object) throws Exception {
+		byte[] data = TrustCodec.encode(object);
+		assertEquals(TrustCodec.HEADER_SIZE + TrustCodec.getSize(object), data.length);
+		return TrustCodec.decode(data);
+	}
+}
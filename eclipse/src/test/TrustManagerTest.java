@@ -0,0 +1,223 @@
+package test;
+
+import java.io.File;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+import applications.AuthenticationApplication;
+import auth_encryption.core.KeyManager;
+import auth_encryption.core.TrustFileManager;
+import auth_encryption.core.TrustManager;
+import auth_encryption.log.Log;
+import auth_encryption.primitives.Fingerprint;
+import auth_encryption.primitives.Signature;
+import auth_encryption.primitives.SignatureParameter;
+import auth_encryption.primitives.TrustLevel;
+import auth_encryption.simulator.SimulationKeyManager;
+
+/**
+ * Tests for the TrustManager class. Compares the incremental validity engine
+ * against the original full-graph algorithm on random trust graphs.
+ */
+public class TrustManagerTest extends TestCase {
+	private static final int NROF_DEVICES = 20;
+	private static final int NROF_OPERATIONS = 250;
+
+	private File baseDir;
+	private List<KeyManager> devices;
+	private SignatureParameter oldKeyParameter;
+	private int oldTrustDegree;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		Log.setEnabled(false);
+
+		this.oldKeyParameter = AuthenticationApplication.KEY_PARAMETER;
+		this.oldTrustDegree = AuthenticationApplication.TRUST_DEGREE;
+		AuthenticationApplication.KEY_PARAMETER = SignatureParameter.ECDSA;
+		AuthenticationApplication.TRUST_DEGREE = 2;
+
+		this.baseDir = Files.createTempDirectory("trust-test").toFile();
+		this.devices = new ArrayList<KeyManager>();
+		for (int i = 0; i < NROF_DEVICES; i++) {
+			String path = new File(this.baseDir, "device" + i).getPath();
+			this.devices.add(new SimulationKeyManager(path, null));
+		}
+	}
+
+	protected void tearDown() throws Exception {
+		AuthenticationApplication.KEY_PARAMETER = this.oldKeyParameter;
+		AuthenticationApplication.TRUST_DEGREE = this.oldTrustDegree;
+		FileUtils.deleteDirectory(this.baseDir);
+		Log.setEnabled(true);
+		super.tearDown();
+	}
+
+	public void testIncrementalEqualsFullRefresh() throws Exception {
+		for (int seed = 0; seed < 3; seed++) {
+			Random rng = new Random(seed);
+			KeyManager owner = this.devices.get(0);
+
+			TrustManager incremental = createTrustManager("inc" + seed, owner, true);
+			TrustManager full = createTrustManager("full" + seed, owner, false);
+
+			for (int i = 0; i < NROF_OPERATIONS; i++) {
+				int op = rng.nextInt(10);
+				KeyManager subject = this.devices.get(1 + rng.nextInt(NROF_DEVICES - 1));
+
+				if (op < 3) {
+					incremental.addSubject(subject.getPublicKey(), subject.getSignature());
+					full.addSubject(subject.getPublicKey(), subject.getSignature());
+				} else if (op < 8) {
+					// owner signs more rarely than everybody else
+					KeyManager issuer = (rng.nextInt(8) == 0) ? owner : this.devices.get(rng.nextInt(NROF_DEVICES));
+					if (issuer == subject)
+						continue;
+
+					Signature signature = issuer.createSignature(subject.getPublicKey(), null);
+					assertEquals(full.addSignature(signature), incremental.addSignature(signature));
+				} else if (op < 9) {
+					assertEquals(full.checkValidity(subject.getFingerprint()),
+							incremental.checkValidity(subject.getFingerprint()));
+				} else {
+					incremental.refreshValidity();
+					full.refreshValidity();
+					assertSameTrust(full, incremental);
+				}
+			}
+
+			incremental.refreshValidity();
+			full.refreshValidity();
+			assertSameTrust(full, incremental);
+
+			// re-deduction from the stored files
+			incremental.initialize();
+			full.initialize();
+			assertSameTrust(full, incremental);
+			assertEquals(full.measureNumDirectTrustRelations(), incremental.measureNumDirectTrustRelations());
+		}
+	}
+
+	public void testRefreshWithoutChanges() throws Exception {
+		KeyManager owner = this.devices.get(0);
+		TrustManager tm = createTrustManager("refresh", owner, true);
+
+		KeyManager subject = this.devices.get(1);
+		tm.addSubject(subject.getPublicKey(), subject.getSignature());
+		tm.addSignature(owner.createSignature(subject.getPublicKey(), null));
+		tm.refreshValidity();
+		assertEquals(TrustLevel.TRUSTED, tm.getTrustInfo(subject.getFingerprint()).level);
+		assertEquals(1, tm.getTrustInfo(subject.getFingerprint()).degree);
+
+		tm.refreshValidity();
+		assertEquals(TrustLevel.TRUSTED, tm.getTrustInfo(subject.getFingerprint()).level);
+		assertEquals(1, tm.getTrustInfo(subject.getFingerprint()).degree);
+	}
+
+	public void testBloomFilteredRelatedData() throws Exception {
+		TrustManager responder = createTrustManager("responder", this.devices.get(0), true);
+		TrustManager requester = createTrustManager("requester", this.devices.get(1), true);
+
+		// identical repositories: chain 0 -> 1 -> ... -> 6
+		for (TrustManager tm : Arrays.asList(responder, requester)) {
+			for (int i = 0; i <= 6; i++) {
+				KeyManager subject = this.devices.get(i);
+				tm.addSubject(subject.getPublicKey(), subject.getSignature());
+			}
+			for (int i = 0; i < 6; i++) {
+				KeyManager issuer = this.devices.get(i);
+				tm.addSignature(issuer.createSignature(this.devices.get(i + 1).getPublicKey(), null));
+			}
+		}
+
+		Set<Fingerprint> trusted = requester.getSubjectsWithTrustLevel(TrustLevel.KNOWN);
+		assertFalse(responder.getRelatedData(trusted).isEmpty());
+		assertTrue(responder.getRelatedData(trusted, requester.getKnownData(1), 1).isEmpty());
+
+		// responder learns a new subject 6 -> 7
+		KeyManager subject = this.devices.get(7);
+		Signature signature = this.devices.get(6).createSignature(subject.getPublicKey(), null);
+		responder.addSubject(subject.getPublicKey(), subject.getSignature());
+		responder.addSignature(signature);
+
+		Set<Serializable> expected = new HashSet<Serializable>();
+		expected.add(subject.getPublicKey());
+		expected.add(subject.getSignature());
+		expected.add(signature);
+		assertEquals(expected, responder.getRelatedData(trusted, requester.getKnownData(2), 2));
+	}
+
+	public void testDeltaRelatedData() throws Exception {
+		TrustManager tm = createTrustManager("delta", this.devices.get(0), true);
+		for (int i = 1; i <= 4; i++) {
+			KeyManager subject = this.devices.get(i);
+			tm.addSubject(subject.getPublicKey(), subject.getSignature());
+			tm.addSignature(this.devices.get(i - 1).createSignature(subject.getPublicKey(), null));
+		}
+
+		// requester trusts 0..2, everything is fresh
+		Set<Fingerprint> trusted = new HashSet<Fingerprint>();
+		for (int i = 0; i <= 2; i++)
+			trusted.add(this.devices.get(i).getFingerprint());
+
+		assertEquals(tm.getRelatedData(trusted), tm.getRelatedData(trusted, 0, trusted));
+
+		// nothing changed since the watermark
+		long watermark = tm.getSequence();
+		Set<Fingerprint> none = new HashSet<Fingerprint>();
+		assertTrue(tm.getRelatedData(trusted, watermark, none).isEmpty());
+
+		// new signature on a trusted subject
+		Signature signature = this.devices.get(4).createSignature(this.devices.get(1).getPublicKey(), null);
+		tm.addSignature(signature);
+		assertEquals(new HashSet<Serializable>(Arrays.asList(signature)), tm.getRelatedData(trusted, watermark, none));
+
+		// newly issued signature introduces a subject the requester has never seen
+		watermark = tm.getSequence();
+		KeyManager subject = this.devices.get(5);
+		Signature issued = this.devices.get(2).createSignature(subject.getPublicKey(), null);
+		tm.addSubject(subject.getPublicKey(), subject.getSignature());
+		tm.addSignature(issued);
+
+		Set<Serializable> expected = new HashSet<Serializable>();
+		expected.add(subject.getPublicKey());
+		expected.add(subject.getSignature());
+		expected.add(issued);
+		assertEquals(expected, tm.getRelatedData(trusted, watermark, none));
+
+		// fresh subjects are sent completely
+		Set<Fingerprint> fresh = new HashSet<Fingerprint>(Arrays.asList(this.devices.get(0).getFingerprint()));
+		assertEquals(tm.getRelatedData(fresh), tm.getRelatedData(fresh, tm.getSequence(), fresh));
+	}
+
+	private TrustManager createTrustManager(String name, KeyManager owner, boolean incremental) throws Exception {
+		String path = new File(this.baseDir, name).getPath();
+		PublicKey publicKey = owner.getPublicKey();
+		TrustFileManager.getInstance(path).savePublicKey(publicKey, owner.getSignature());
+
+		TrustManager result = new TrustManager(path, publicKey, incremental);
+		result.initialize();
+		return result;
+	}
+
+	private void assertSameTrust(TrustManager expected, TrustManager actual) {
+		assertEquals(expected.getSubjectsWithTrustLevel(TrustLevel.KNOWN),
+				actual.getSubjectsWithTrustLevel(TrustLevel.KNOWN));
+
+		for (KeyManager device : this.devices) {
+			Fingerprint fingerprint = device.getFingerprint();
+			assertEquals(expected.getTrustInfo(fingerprint), actual.getTrustInfo(fingerprint));
+		}
+	}
+}
@@ -0,0 +1,210 @@
+package test;
+
+import java.io.File;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+import applications.AuthenticationApplication;
+import auth_encryption.core.KeyManager;
+import auth_encryption.core.MessageAuthentication;
+import auth_encryption.core.SyncMessage;
+import auth_encryption.core.SyncRequestMessage;
+import auth_encryption.core.TrustFileManager;
+import auth_encryption.core.TrustManager;
+import auth_encryption.core.TrustProtocol;
+import auth_encryption.log.Log;
+import auth_encryption.primitives.Fingerprint;
+import auth_encryption.primitives.Signature;
+import auth_encryption.primitives.SignatureParameter;
+import auth_encryption.primitives.TrustLevel;
+import auth_encryption.simulator.SimulationKeyManager;
+import core.ConnectionListener;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+
+/**
+ * Tests for the synchronization of the TrustProtocol class.
+ */
+public class TrustProtocolTest extends TestCase {
+	private File baseDir;
+	private SignatureParameter oldKeyParameter;
+	private int oldTrustDegree;
+	private TrustProtocol.SyncMode oldSyncMode;
+
+	private KeyManager owner;
+	private KeyManager subject;
+	private Fingerprint peer;
+	private TestProtocol protocol;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		Log.setEnabled(false);
+		Message.reset();
+
+		this.oldKeyParameter = AuthenticationApplication.KEY_PARAMETER;
+		this.oldTrustDegree = AuthenticationApplication.TRUST_DEGREE;
+		this.oldSyncMode = TrustProtocol.getSyncMode();
+		AuthenticationApplication.KEY_PARAMETER = SignatureParameter.ECDSA;
+		AuthenticationApplication.TRUST_DEGREE = 2;
+		TrustProtocol.setSyncMode(TrustProtocol.SyncMode.DELTA);
+
+		this.baseDir = Files.createTempDirectory("protocol-test").toFile();
+		this.owner = createDevice("owner");
+		this.subject = createDevice("subject");
+		this.peer = createDevice("peer").getFingerprint();
+
+		String path = new File(this.baseDir, "owner-trust").getPath();
+		TrustFileManager.getInstance(path).savePublicKey(this.owner.getPublicKey(), this.owner.getSignature());
+
+		TestUtils utils = new TestUtils(new ArrayList<ConnectionListener>(), new ArrayList<MessageListener>(),
+				new TestSettings());
+		MessageAuthentication.initialization(utils.createHost(), "auth", 0);
+		this.protocol = new TestProtocol(this.owner, path);
+	}
+
+	protected void tearDown() throws Exception {
+		AuthenticationApplication.KEY_PARAMETER = this.oldKeyParameter;
+		AuthenticationApplication.TRUST_DEGREE = this.oldTrustDegree;
+		TrustProtocol.setSyncMode(this.oldSyncMode);
+		FileUtils.deleteDirectory(this.baseDir);
+		Log.setEnabled(true);
+		super.tearDown();
+	}
+
+	public void testSignatureBeforeSubject() throws Exception {
+		TrustManager tm = this.protocol.getTrustManager();
+		Signature signature = this.owner.createSignature(this.subject.getPublicKey(), null);
+
+		// the signature arrives without its subject, it cannot be applied
+		SyncRequestMessage request = this.protocol.requestSync(this.peer);
+		this.protocol.receive(this.peer, new SyncMessage(data(signature), 10, request.getNonce(), null));
+		assertNull(tm.getSyncWatermark(this.peer));
+		assertNull(tm.getPublicKey(this.subject.getFingerprint()));
+
+		// the next request starts from the old watermark
+		request = this.protocol.requestSync(this.peer);
+		assertEquals(0, request.getWatermark());
+
+		this.protocol.receive(this.peer, new SyncMessage(
+				data(this.subject.getPublicKey(), this.subject.getSignature(), signature), 12, request.getNonce(),
+				null));
+		assertNotNull(tm.getPublicKey(this.subject.getFingerprint()));
+		assertEquals(12, tm.getSyncWatermark(this.peer).sequence);
+		assertEquals(12, this.protocol.requestSync(this.peer).getWatermark());
+	}
+
+	public void testDeltaConvergesWithFull() throws Exception {
+		KeyManager trusted = createDevice("trusted");
+		KeyManager issuer = createDevice("issuer");
+		KeyManager responderDevice = createDevice("responder");
+		Fingerprint ownerPrint = this.owner.getFingerprint();
+		Fingerprint responderPrint = responderDevice.getFingerprint();
+
+		// the responder knows that the issuer signed the subject
+		TestProtocol responder = createProtocol(responderDevice, "responder-trust");
+		TrustManager rtm = responder.getTrustManager();
+		rtm.addSubject(issuer.getPublicKey(), issuer.getSignature());
+		rtm.addSubject(this.subject.getPublicKey(), this.subject.getSignature());
+		rtm.addSignature(issuer.createSignature(this.subject.getPublicKey(), null));
+
+		// the issuer is only known (owner -> trusted -> issuer), the subject is
+		// too far away and is deleted after being received
+		TestProtocol delta = createProtocol(this.owner, "delta-trust");
+		TestProtocol full = createProtocol(this.owner, "full-trust");
+		for (TestProtocol requester : Arrays.asList(delta, full)) {
+			TrustManager tm = requester.getTrustManager();
+			tm.addSubject(trusted.getPublicKey(), trusted.getSignature());
+			tm.addSubject(issuer.getPublicKey(), issuer.getSignature());
+			tm.addSignature(this.owner.createSignature(trusted.getPublicKey(), null));
+			tm.addSignature(trusted.createSignature(issuer.getPublicKey(), null));
+			tm.refreshValidity();
+		}
+
+		synchronize(delta, responder, ownerPrint, responderPrint, TrustProtocol.SyncMode.DELTA);
+		synchronize(full, responder, ownerPrint, responderPrint, TrustProtocol.SyncMode.FULL);
+		assertNull(delta.getTrustManager().getPublicKey(this.subject.getFingerprint()));
+
+		// the issuer becomes trusted, the subject is now close enough
+		for (TestProtocol requester : Arrays.asList(delta, full)) {
+			TrustManager tm = requester.getTrustManager();
+			tm.addSignature(this.owner.createSignature(issuer.getPublicKey(), null));
+			tm.refreshValidity();
+		}
+
+		synchronize(delta, responder, ownerPrint, responderPrint, TrustProtocol.SyncMode.DELTA);
+		synchronize(full, responder, ownerPrint, responderPrint, TrustProtocol.SyncMode.FULL);
+
+		Set<Fingerprint> expected = full.getTrustManager().getSubjectsWithTrustLevel(TrustLevel.KNOWN);
+		assertTrue(expected.contains(this.subject.getFingerprint()));
+		assertEquals(expected, delta.getTrustManager().getSubjectsWithTrustLevel(TrustLevel.KNOWN));
+	}
+
+	private TestProtocol createProtocol(KeyManager device, String name) throws Exception {
+		String path = new File(this.baseDir, name).getPath();
+		TrustFileManager.getInstance(path).savePublicKey(device.getPublicKey(), device.getSignature());
+		return new TestProtocol(device, path);
+	}
+
+	private static void synchronize(TestProtocol requester, TestProtocol responder, Fingerprint requesterPrint,
+			Fingerprint responderPrint, TrustProtocol.SyncMode mode) {
+		TrustProtocol.setSyncMode(mode);
+		responder.receive(requesterPrint, requester.requestSync(responderPrint));
+		requester.receive(responderPrint, responder.lastSent());
+	}
+
+	private KeyManager createDevice(String name) throws Exception {
+		return new SimulationKeyManager(new File(this.baseDir, name).getPath(), null);
+	}
+
+	private static Set<Serializable> data(Serializable... objects) {
+		return new HashSet<Serializable>(Arrays.asList(objects));
+	}
+
+	/**
+	 * Protocol that records the sent messages instead of sending them.
+	 */
+	private static class TestProtocol extends TrustProtocol {
+		private List<MessageAuthentication> sent = new ArrayList<MessageAuthentication>();
+
+		public TestProtocol(KeyManager keyManager, String basePath) throws Exception {
+			super(keyManager, basePath);
+		}
+
+		public TrustManager getTrustManager() {
+			return this.trustManager;
+		}
+
+		public SyncRequestMessage requestSync(Fingerprint fingerprint) {
+			this.onPeerListChanged(Arrays.asList(fingerprint));
+			return (SyncRequestMessage) this.lastSent();
+		}
+
+		public MessageAuthentication lastSent() {
+			return this.sent.get(this.sent.size() - 1);
+		}
+
+		public void receive(Fingerprint fingerprint, MessageAuthentication message) {
+			this.onMessageReceived(fingerprint, message);
+		}
+
+		@Override
+		protected void send(Fingerprint fingerprint, MessageAuthentication message) {
+			this.sent.add(message);
+		}
+
+		@Override
+		public DTNHost getHostByFingerprint(Fingerprint fingerprint) {
+			return null;
+		}
+	}
+}
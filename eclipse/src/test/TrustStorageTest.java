@@ -0,0 +1,153 @@
+package test;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+import auth_encryption.core.FileTrustStorage;
+import auth_encryption.core.MappedLogTrustStorage;
+import auth_encryption.core.MemoryTrustStorage;
+import auth_encryption.core.TrustStorage;
+
+/**
+ * Tests the common semantics of all TrustStorage backends.
+ */
+public class TrustStorageTest extends TestCase {
+	private File baseDir;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		this.baseDir = Files.createTempDirectory("storage-test").toFile();
+	}
+
+	protected void tearDown() throws Exception {
+		FileUtils.deleteDirectory(this.baseDir);
+		super.tearDown();
+	}
+
+	public void testFileStorage() throws Exception {
+		checkStorage(new FileTrustStorage(new File(this.baseDir, "trust")));
+	}
+
+	public void testMemoryStorage() throws Exception {
+		checkStorage(new MemoryTrustStorage());
+	}
+
+	public void testMappedLogStorage() throws Exception {
+		MappedLogTrustStorage storage = new MappedLogTrustStorage(new File(this.baseDir, "trust.log"));
+		checkStorage(storage);
+		storage.close();
+	}
+
+	public void testMappedLogReplay() throws Exception {
+		File log = new File(this.baseDir, "trust.log");
+		byte[] large = new byte[3 << 20];
+		large[large.length - 1] = 42;
+
+		MappedLogTrustStorage storage = new MappedLogTrustStorage(log);
+		storage.write("a/b.sig", new byte[] { 1, 2, 3 });
+		storage.write("a/keys/public.key", large);
+		storage.write("c/d.sig", new byte[] { 4 });
+		storage.delete("c");
+		storage.close();
+
+		storage = new MappedLogTrustStorage(log);
+		assertTrue(Arrays.equals(new byte[] { 1, 2, 3 }, storage.read("a/b.sig")));
+		assertEquals(large.length, storage.length("a/keys/public.key"));
+		assertEquals(42, storage.read("a/keys/public.key")[large.length - 1]);
+		assertFalse(storage.exists("c/d.sig"));
+		assertEquals(Collections.singletonList("a"), storage.list(""));
+		storage.close();
+	}
+
+	public void testMappedLogTornRecord() throws Exception {
+		// torn within the data of a record that exceeds the mapped log
+		checkTornRecord(new byte[3 << 20], 1000);
+		// torn within the path, the rest of the log is padded with zeros
+		checkTornRecord(new byte[] { 4 }, -6);
+	}
+
+	// cuts the log within the second record (relative to its data)
+	private void checkTornRecord(byte[] data, int cut) throws Exception {
+		File log = new File(this.baseDir, "torn.log");
+		MappedLogTrustStorage storage = new MappedLogTrustStorage(log);
+		storage.write("a/b.sig", new byte[] { 1, 2, 3 });
+		storage.write("c/d.sig", data);
+		storage.close();
+
+		// record: op, path length, path, data length, data
+		int dataOffset = (1 + 4 + 7 + 4 + 3) + (1 + 4 + 7 + 4);
+		RandomAccessFile file = new RandomAccessFile(log, "rw");
+		file.setLength(dataOffset + cut);
+		file.close();
+
+		storage = new MappedLogTrustStorage(log);
+		assertTrue(Arrays.equals(new byte[] { 1, 2, 3 }, storage.read("a/b.sig")));
+		assertFalse(storage.exists("c/d.sig"));
+
+		// the torn record is overwritten
+		assertTrue(storage.write("e/f.sig", new byte[] { 5 }));
+		storage.close();
+
+		storage = new MappedLogTrustStorage(log);
+		assertEquals(Arrays.asList("a", "e"), sorted(storage.list("")));
+		assertTrue(Arrays.equals(new byte[] { 5 }, storage.read("e/f.sig")));
+		storage.close();
+		assertTrue(log.delete());
+	}
+
+	private static List<String> sorted(List<String> list) {
+		Collections.sort(list);
+		return list;
+	}
+
+	private void checkStorage(TrustStorage storage) throws Exception {
+		assertTrue(storage.list("").isEmpty());
+		assertEquals(-1, storage.length("a/b.sig"));
+
+		assertTrue(storage.write("a/b.sig", new byte[] { 1, 2, 3 }));
+		assertFalse(storage.write("a/b.sig", new byte[] { 4 }));
+		assertTrue(storage.write("a/keys/public.key", new byte[] { 5, 6 }));
+		assertTrue(storage.write("ab/c.sig", new byte[] { 7 }));
+
+		assertTrue(storage.exists("a/b.sig"));
+		assertFalse(storage.exists("a"));
+		assertTrue(storage.isDirectory("a"));
+		assertTrue(storage.isDirectory("a/keys"));
+		assertFalse(storage.isDirectory("a/b.sig"));
+		assertEquals(3, storage.length("a/b.sig"));
+		assertTrue(Arrays.equals(new byte[] { 1, 2, 3 }, storage.read("a/b.sig")));
+
+		List<String> root = storage.list("");
+		Collections.sort(root);
+		assertEquals(Arrays.asList("a", "ab"), root);
+
+		List<String> children = storage.list("a");
+		Collections.sort(children);
+		assertEquals(Arrays.asList("b.sig", "keys"), children);
+
+		try {
+			storage.read("a/missing.sig");
+			fail();
+		} catch (FileNotFoundException e) {
+			// expected
+		}
+
+		// directories are deleted recursively, siblings with a common prefix stay
+		assertTrue(storage.delete("a"));
+		assertFalse(storage.exists("a/keys/public.key"));
+		assertTrue(storage.exists("ab/c.sig"));
+		assertFalse(storage.delete("a"));
+
+		assertTrue(storage.delete("ab/c.sig"));
+		assertFalse(storage.exists("ab/c.sig"));
+	}
+}
@@ -0,0 +1,90 @@
+package test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+import applications.AuthenticationApplication;
+import auth_encryption.core.KeyManager;
+import auth_encryption.log.Log;
+import auth_encryption.primitives.Signature;
+import auth_encryption.primitives.SignatureParameter;
+import auth_encryption.primitives.VerificationCache;
+import auth_encryption.simulator.SimulationKeyManager;
+
+/**
+ * Tests for the VerificationCache class.
+ */
+public class VerificationCacheTest extends TestCase {
+	private File baseDir;
+	private SignatureParameter oldKeyParameter;
+	private KeyManager issuer;
+	private KeyManager subject;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		Log.setEnabled(false);
+
+		this.oldKeyParameter = AuthenticationApplication.KEY_PARAMETER;
+		AuthenticationApplication.KEY_PARAMETER = SignatureParameter.ECDSA;
+
+		this.baseDir = Files.createTempDirectory("cache-test").toFile();
+		this.issuer = new SimulationKeyManager(new File(this.baseDir, "issuer").getPath(), null);
+		this.subject = new SimulationKeyManager(new File(this.baseDir, "subject").getPath(), null);
+		VerificationCache.reset();
+	}
+
+	protected void tearDown() throws Exception {
+		VerificationCache.reset();
+		AuthenticationApplication.KEY_PARAMETER = this.oldKeyParameter;
+		FileUtils.deleteDirectory(this.baseDir);
+		Log.setEnabled(true);
+		super.tearDown();
+	}
+
+	public void testRepeatedVerification() throws Exception {
+		Signature signature = this.issuer.createSignature(this.subject.getPublicKey(), null);
+		int count = Signature.COUNT.get();
+
+		assertTrue(signature.verify(this.issuer.getPublicKey(), this.subject.getPublicKey()));
+		assertTrue(signature.verify(this.issuer.getPublicKey(), this.subject.getPublicKey()));
+
+		// only the first one is actually verified
+		assertEquals(count + 1, Signature.COUNT.get());
+		assertEquals(1, VerificationCache.HITS.get());
+		assertEquals(1, VerificationCache.MISSES.get());
+	}
+
+	public void testInvalidSignature() throws Exception {
+		Signature signature = this.issuer.createSignature(this.subject.getPublicKey(), "alias");
+		Signature other = this.issuer.createSignature(this.subject.getPublicKey(), "other");
+		assertTrue(signature.verify(this.issuer.getPublicKey(), this.subject.getPublicKey()));
+
+		// same fingerprints, but a signature over different data
+		signature.setData(other.getData());
+		assertFalse(signature.verify(this.issuer.getPublicKey(), this.subject.getPublicKey()));
+		assertFalse(signature.verify(this.issuer.getPublicKey(), this.subject.getPublicKey()));
+		assertEquals(2, VerificationCache.size());
+	}
+
+	public void testBypassed() throws Exception {
+		Signature signature = this.issuer.createSignature(this.subject.getPublicKey(), null);
+		assertTrue(signature.verify(this.issuer.getPublicKey(), this.subject.getPublicKey()));
+		int count = Signature.COUNT.get();
+
+		VerificationCache.setBypassed(true);
+		try {
+			assertTrue(signature.verify(this.issuer.getPublicKey(), this.subject.getPublicKey()));
+		} finally {
+			VerificationCache.setBypassed(false);
+		}
+
+		// verified again, without touching the cache
+		assertEquals(count + 1, Signature.COUNT.get());
+		assertEquals(0, VerificationCache.HITS.get());
+		assertEquals(1, VerificationCache.MISSES.get());
+	}
+}
@@ -5,15 +5,26 @@
 package test;
 
 import input.EventQueue;
+import input.ExternalEvent;
+import interfaces.ConnectivityGrid;
+import interfaces.SimpleBroadcastInterface;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.Path;
+import routing.PassiveRouter;
+import core.ConnectionListener;
+import core.Coord;
 import core.DTNHost;
 import core.ModuleCommunicationBus;
 import core.NetworkInterface;
 import core.SimClock;
+import core.SimScenario;
 import core.UpdateListener;
 import core.World;
 
@@ -32,11 +43,14 @@ public class WorldTest extends TestCase {
 	private double upInterval = 0.1;
 	private List<TestDTNHost> testHosts;
 	private List<EventQueue> eQueues;
+	private TestSettings testSettings;
 
 	protected void setUp() throws Exception {
 		super.setUp();
 		SimClock.reset();
+		DTNHost.reset();
 		TestSettings testSettings = new TestSettings();
+		this.testSettings = testSettings;
 		testSettings.setNameSpace(TestUtils.IFACE_NS);
 		testSettings.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "1.0");
 		testSettings.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
@@ -52,8 +66,12 @@ public class WorldTest extends TestCase {
 			this.testHosts.add(new TestDTNHost(li, comBus, testSettings));
 		}
 
+		this.world = createWorld();
+	}
+
+	private World createWorld() {
 		TestScenario ts = new TestScenario();
-		this.world = new World(ts.getHosts(),ts.getWorldSizeX(),
+		return new World(ts.getHosts(),ts.getWorldSizeX(),
 				ts.getWorldSizeY(),ts.getUpdateInterval(),
 				ts.getUpdateListeners(), ts.simulateConnections(),
 				ts.getExternalEvents() );
@@ -74,12 +92,183 @@ public class WorldTest extends TestCase {
 		assertNrofUpdates(nrofRounds);
 	}
 
+	public void testParallelUpdate() {
+		List<String> sequential = runRandomMovement(false);
+		assertEquals(0, MovingHost.nrofParallelMoves.get());
+		List<String> parallel = runRandomMovement(true);
+		assertTrue(MovingHost.nrofParallelMoves.get() > 0);
+
+		/* the parallel updates produce exactly the same connections */
+		assertTrue(sequential.size() > 10);
+		assertEquals(sequential, parallel);
+	}
+
+	/**
+	 * Runs randomly moving hosts and records the connection events.
+	 * @param parallel Should the hosts be updated in parallel
+	 * @return The connection events (time, up/down, and hosts)
+	 */
+	private List<String> runRandomMovement(boolean parallel) {
+		SimClock.reset();
+		DTNHost.reset();
+		ConnectivityGrid.reset();
+		MovingHost.nrofParallelMoves.set(0);
+
+		TestSettings os = new TestSettings(World.OPTIMIZATION_SETTINGS_NS);
+		os.putSetting(World.PARALLEL_UPDATES_S, String.valueOf(parallel));
+		os.putSetting(World.NROF_THREADS_S, "3");
+		testSettings.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "5");
+
+		final List<String> events = new ArrayList<String>();
+		List<ConnectionListener> cl = new ArrayList<ConnectionListener>();
+		cl.add(new ConnectionListener() {
+			public void hostsConnected(DTNHost host1, DTNHost host2) {
+				events.add(SimClock.getTime() + " up " + host1 + " " + host2);
+			}
+			public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+				events.add(SimClock.getTime() + " down " + host1 + " " +
+						host2);
+			}
+		});
+
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		for (int i=0; i<20; i++) {
+			NetworkInterface ni = new SimpleBroadcastInterface(
+					new TestSettings(TestUtils.IFACE_NS));
+			ni.setClisteners(cl);
+			List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+			li.add(ni);
+			hosts.add(new MovingHost(li, new RandomMovement(i), testSettings));
+		}
+
+		try {
+			world = new World(hosts, 50, 50, 0.5,
+					new ArrayList<UpdateListener>(), true,
+					new ArrayList<EventQueue>());
+			while (SimClock.getTime() < 200) {
+				world.update();
+			}
+		} finally {
+			os.putSetting(World.PARALLEL_UPDATES_S, "false");
+		}
+		return events;
+	}
+
+	public void testBatchedEvents() {
+		TestSettings os = new TestSettings(World.OPTIMIZATION_SETTINGS_NS);
+		os.putSetting(World.BATCH_EVENTS_S, "true");
+		try {
+			eQueues.add(new TestEventQueue(0.05, 0.05, 0.05));
+			eQueues.add(new TestEventQueue(0.15, 0.15));
+			world = createWorld();
+		} finally {
+			os.putSetting(World.BATCH_EVENTS_S, "false");
+		}
+
+		/* the events at 0.05 only concern the first host */
+		world.update();
+		assertEquals(2, testHosts.get(0).nrofUpdate);
+		for (TestDTNHost h : testHosts.subList(1, testHosts.size())) {
+			assertEquals(1, h.nrofUpdate);
+		}
+		assertEquals(3, world.getNrofProcessedEvents());
+
+		/* the events at 0.15 concern all hosts */
+		assertEquals(1, world.getEventQueueDepth());
+		world.update();
+		assertEquals(4, testHosts.get(0).nrofUpdate);
+		assertEquals(3, testHosts.get(1).nrofUpdate);
+		assertEquals(5, world.getNrofProcessedEvents());
+		assertEquals(0, world.getEventQueueDepth());
+	}
+
+	public void testUnbatchedEvents() {
+		eQueues.add(new TestEventQueue(0.05, 0.05, 0.05));
+		world = createWorld();
+
+		world.update();
+		assertNrofUpdates(4);
+		assertEquals(3, world.getNrofProcessedEvents());
+	}
+
+	public void testEventsAddedLater() {
+		TestEventQueue queue = new TestEventQueue();
+		eQueues.add(queue);
+		world = createWorld();
+
+		world.update();
+		assertEquals(0, world.getNrofProcessedEvents());
+		assertEquals(0, world.getEventQueueDepth());
+
+		/* e.g., events received from outside the simulator */
+		queue.addEvent(0.15);
+		assertEquals(1, world.getEventQueueDepth());
+		world.update();
+		assertEquals(1, world.getNrofProcessedEvents());
+		assertEquals(0.2, SimClock.getTime(), TIME_DELTA);
+		assertNrofUpdates(3);
+	}
+
 	private void assertNrofUpdates(int nrof) {
 		for (TestDTNHost h : testHosts) {
 			assertEquals(nrof, h.nrofUpdate);
 		}
 	}
 
+	public void testAdaptiveSteps() {
+		TestSettings os = new TestSettings(World.OPTIMIZATION_SETTINGS_NS);
+		os.putSetting(World.ADAPTIVE_STEPS_S, "true");
+		os.putSetting(World.MAX_STEP_SIZE_S, "5");
+		TestSettings ss = new TestSettings(SimScenario.SCENARIO_NS);
+		ss.putSetting(SimScenario.END_TIME_S, "13");
+		List<Double> adaptiveTimes;
+		try {
+			eQueues.add(new TestEventQueue(12.05));
+			adaptiveTimes = runWithListener(13);
+		} finally {
+			os.putSetting(World.ADAPTIVE_STEPS_S, "false");
+			ss.putSetting(SimScenario.END_TIME_S, "100");
+		}
+		int adaptiveUpdates = testHosts.get(0).nrofUpdate;
+
+		/* nothing changes between the first update and the event */
+		assertTrue(world.getNrofSkippedSteps() > 0);
+		assertTrue(adaptiveUpdates < adaptiveTimes.size());
+
+		SimClock.reset();
+		testHosts.get(0).nrofUpdate = 0;
+		eQueues.clear();
+		eQueues.add(new TestEventQueue(12.05));
+		List<Double> fixedTimes = runWithListener(13);
+
+		/* listeners see exactly the same steps */
+		assertEquals(fixedTimes, adaptiveTimes);
+		assertEquals(0, world.getNrofSkippedSteps());
+		assertEquals(fixedTimes.size() + 1, testHosts.get(0).nrofUpdate);
+	}
+
+	/**
+	 * Runs a new world until the given time.
+	 * @return The times when the update listener was informed
+	 */
+	private List<Double> runWithListener(double endTime) {
+		final List<Double> times = new ArrayList<Double>();
+		List<UpdateListener> listeners = new ArrayList<UpdateListener>();
+		listeners.add(new UpdateListener() {
+			public void updated(List<DTNHost> hosts) {
+				times.add(SimClock.getTime());
+			}
+		});
+		world = new World(new ArrayList<DTNHost>(testHosts), worldSizeX,
+				worldSizeY, upInterval, listeners, simulateConnections,
+				eQueues);
+
+		while (SimClock.getTime() < endTime) {
+			world.update();
+		}
+		return times;
+	}
+
 	public void testUpdateScheduling() {
 		world.scheduleUpdate(0.25);
 
@@ -102,6 +291,111 @@ public class WorldTest extends TestCase {
 	}
 
 
+	/**
+	 * Event queue with events at the given times. The events of the first
+	 * queue concern the first host only, the others all hosts.
+	 */
+	private class TestEventQueue implements EventQueue {
+		private List<ExternalEvent> events = new ArrayList<ExternalEvent>();
+
+		private final boolean firstHost;
+
+		public TestEventQueue(double... times) {
+			this.firstHost = eQueues.isEmpty();
+			for (double time : times) {
+				addEvent(time);
+			}
+		}
+
+		public void addEvent(double time) {
+			events.add(new ExternalEvent(time) {
+				public int[] getHostAddresses() {
+					return firstHost ? new int[] {0} : null;
+				}
+			});
+		}
+
+		public ExternalEvent nextEvent() {
+			return events.isEmpty() ? new ExternalEvent(Double.MAX_VALUE) :
+				events.remove(0);
+		}
+
+		public double nextEventsTime() {
+			return events.isEmpty() ? Double.MAX_VALUE :
+				events.get(0).getTime();
+		}
+	}
+
+	/**
+	 * Host that counts how many times it is moved by the update threads
+	 */
+	private static class MovingHost extends DTNHost {
+		private static AtomicInteger nrofParallelMoves = new AtomicInteger();
+
+		public MovingHost(List<NetworkInterface> li, MovementModel mm,
+				TestSettings settings) {
+			super(null, null, "m", li, new ModuleCommunicationBus(), mm,
+					new PassiveRouter(settings), "m");
+		}
+
+		@Override
+		public boolean moveWithinPath(double timeIncrement) {
+			if (Thread.currentThread().getName().equals("World-update")) {
+				nrofParallelMoves.incrementAndGet();
+			}
+			return super.moveWithinPath(timeIncrement);
+		}
+	}
+
+	/**
+	 * Moves between random points of a 50x50 area with its own random
+	 * number generator, so runs with the same seed move the same way.
+	 */
+	private static class RandomMovement extends MovementModel {
+		private long seed;
+		private Random rng;
+		private Coord location;
+
+		public RandomMovement(long seed) {
+			this.seed = seed;
+			this.rng = new Random(seed);
+			this.location = randomCoord();
+		}
+
+		private Coord randomCoord() {
+			return new Coord(rng.nextDouble() * 50, rng.nextDouble() * 50);
+		}
+
+		@Override
+		public Coord getInitialLocation() {
+			return location.clone();
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public Path getPath() {
+			Path p = new Path(0.5 + rng.nextDouble());
+			p.addWaypoint(location.clone());
+			location = randomCoord();
+			p.addWaypoint(location.clone());
+			return p;
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			return SimClock.getTime() + rng.nextDouble() * 5;
+		}
+
+		@Override
+		public RandomMovement replicate() {
+			return new RandomMovement(seed);
+		}
+	}
+
 	/** Dummy scenario for providing test values for the World */
 	@SuppressWarnings("serial")
 	private class TestScenario extends core.SimScenario {
@@ -4,6 +4,8 @@
  */
 package ui;
 
+import input.EventQueue;
+import input.ExternalEventsQueue;
 import core.SimClock;
 
 /**
@@ -12,6 +14,7 @@ import core.SimClock;
 public class DTNSimTextUI extends DTNSimUI {
 	private long lastUpdateRt;	// real time of last ui update
 	private long startTime; // simulation start time
+	private long lastNrofEvents; // processed events at last ui update
 	/** How often the UI view is updated (milliseconds) */
 	public static final long UI_UP_INTERVAL = 60000;
 
@@ -43,6 +46,13 @@ public class DTNSimTextUI extends DTNSimUI {
 		this.update(true); // force final UI update
 
 		print("Simulation done in " + String.format("%.2f", duration) + "s");
+		for (EventQueue eq : scen.getExternalEvents()) {
+			if (eq instanceof ExternalEventsQueue) {
+				ExternalEventsQueue eeq = (ExternalEventsQueue)eq;
+				print(String.format("Waited %.2fs for events from %s",
+						eeq.getStallTime(), eeq.getFileName()));
+			}
+		}
 
 	}
 
@@ -59,11 +69,16 @@ public class DTNSimTextUI extends DTNSimUI {
 		if (forced || (diff > UI_UP_INTERVAL)) {
 			// simulated seconds/second calc
 			double ssps = ((SimClock.getTime() - lastUpdate)*1000) / diff;
-			print(String.format("%.1f %d: %.2f 1/s", dur,
-					SimClock.getIntTime(),ssps));
+			// external events/second calc
+			long nrofEvents = world.getNrofProcessedEvents();
+			double eps = ((nrofEvents - lastNrofEvents)*1000.0) / diff;
+			print(String.format("%.1f %d: %.2f 1/s, %.0f events/s, %d queued",
+					dur, SimClock.getIntTime(), ssps, eps,
+					world.getEventQueueDepth()));
 
 			this.lastUpdateRt = System.currentTimeMillis();
 			this.lastUpdate = SimClock.getTime();
+			this.lastNrofEvents = nrofEvents;
 		}
 	}
 
@@ -4,6 +4,9 @@
  */
 package ui;
 
+import input.EventQueue;
+import input.ExternalEventsQueue;
+
 import java.util.Vector;
 
 import report.Report;
@@ -132,6 +135,11 @@ public abstract class DTNSimUI {
 		for (Report r : this.reports) {
 			r.done();
 		}
+		for (EventQueue eq : this.scen.getExternalEvents()) {
+			if (eq instanceof ExternalEventsQueue) {
+				((ExternalEventsQueue)eq).close();
+			}
+		}
 	}
 
 	/**
@@ -148,6 +148,45 @@ public class ActivenessHandler {
 		return curRange.isInRange(time);
 	}
 
+	/**
+	 * Returns the earliest sim time when the value of
+	 * {@link #isActive(int)} can change, i.e., the value stays the same
+	 * for all times before the returned time.
+	 * @param offset The offset
+	 * @return The time of the next change, the current time if it can not be
+	 * told, or Double.MAX_VALUE if the value never changes
+	 */
+	public double getNextChangeTime(int offset) {
+		if (this.activeTimes == null) {
+			if (this.activePeriods == null) {
+				return Double.MAX_VALUE;
+			}
+			/* the value only changes at full seconds (see isActive) */
+			int period = this.activePeriods[0] + this.activePeriods[1];
+			int timeIndex = (SimClock.getIntTime() + this.activePeriodsOffset +
+					offset) % period;
+			if (timeIndex <= this.activePeriods[0]) {
+				return SimClock.getIntTime() +
+					(this.activePeriods[0] + 1 - timeIndex);
+			} else {
+				return SimClock.getIntTime() + (period - timeIndex);
+			}
+		}
+
+		if (curRange == null) {
+			return Double.MAX_VALUE; // out of active times
+		}
+
+		double time = SimClock.getTime() + offset;
+		if (this.curRange.isOut(time)) {
+			return SimClock.getTime(); // range is advanced by isActive only
+		}
+		if (time < this.curRange.start) {
+			return this.curRange.start - offset;
+		}
+		return this.curRange.end - offset;
+	}
+
 	/**
 	 * Class for handling time ranges
 	 */
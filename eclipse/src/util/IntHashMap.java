@@ -0,0 +1,260 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Hash map with primitive int keys. Uses open addressing with linear
+ * probing, so no objects are created for the keys or the entries.
+ * Null values are not allowed.
+ */
+public class IntHashMap<V> {
+	/** initial capacity of the tables (must be a power of two) */
+	private static final int INITIAL_CAPACITY = 8;
+
+	private int[] keys;
+	private Object[] values;
+	private int size;
+	/** capacity - 1 */
+	private int mask;
+	/** number of structural modifications (for fail-fast iteration) */
+	private int modCount;
+
+	/**
+	 * Creates an empty map.
+	 */
+	public IntHashMap() {
+		allocate(INITIAL_CAPACITY);
+	}
+
+	private void allocate(int capacity) {
+		this.keys = new int[capacity];
+		this.values = new Object[capacity];
+		this.mask = capacity - 1;
+		this.size = 0;
+	}
+
+	/**
+	 * Returns the slot where the search for a key starts
+	 * @param key The key
+	 * @return The slot index
+	 */
+	private int slot(int key) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	/**
+	 * Returns the slot of a key
+	 * @param key The key
+	 * @return The slot index or -1 if the key is not in the map
+	 */
+	private int find(int key) {
+		for (int i = slot(key); values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the value of a key
+	 * @param key The key
+	 * @return The value or null if the key is not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+		int i = find(key);
+		return i < 0 ? null : (V)values[i];
+	}
+
+	/**
+	 * Returns true if the map has a value for the key
+	 * @param key The key
+	 * @return true if the map has a value for the key
+	 */
+	public boolean containsKey(int key) {
+		return find(key) >= 0;
+	}
+
+	/**
+	 * Sets the value of a key
+	 * @param key The key
+	 * @param value The value (not null)
+	 * @return The old value of the key or null if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(int key, V value) {
+		if (value == null) {
+			throw new NullPointerException("Null values are not allowed");
+		}
+
+		int i = slot(key);
+		for (; values[i] != null; i = (i + 1) & mask) {
+			if (keys[i] == key) {
+				V old = (V)values[i];
+				values[i] = value;
+				return old;
+			}
+		}
+
+		keys[i] = key;
+		values[i] = value;
+		modCount++;
+		if (++size * 2 > values.length) {
+			rehash(values.length * 2);
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the value of a key
+	 * @param key The key
+	 * @return The removed value or null if the key was not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(int key) {
+		int i = find(key);
+		if (i < 0) {
+			return null;
+		}
+		V old = (V)values[i];
+		size--;
+		modCount++;
+
+		/* shift the following entries of the probe sequence backwards */
+		for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+			int home = slot(keys[j]);
+			/* can the entry at j be moved to the hole at i? */
+			if (((j - home) & mask) >= ((j - i) & mask)) {
+				keys[i] = keys[j];
+				values[i] = values[j];
+				i = j;
+			}
+		}
+		values[i] = null;
+		return old;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = this.keys;
+		Object[] oldValues = this.values;
+		allocate(capacity);
+		for (int i=0; i<oldValues.length; i++) {
+			if (oldValues[i] != null) {
+				int j = slot(oldKeys[i]);
+				while (values[j] != null) {
+					j = (j + 1) & mask;
+				}
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+				size++;
+			}
+		}
+	}
+
+	/**
+	 * Returns the keys of the map (in the iteration order of
+	 * {@link #values()})
+	 * @return The keys in a new array
+	 */
+	public int[] keys() {
+		int[] result = new int[size];
+		int n = 0;
+		for (int i=0; i<values.length; i++) {
+			if (values[i] != null) {
+				result[n++] = keys[i];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of keys in the map
+	 * @return the number of keys in the map
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns true if the map is empty
+	 * @return true if the map is empty
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Removes all keys from the map
+	 */
+	public void clear() {
+		allocate(INITIAL_CAPACITY);
+		modCount++;
+	}
+
+	/**
+	 * Returns a read-only view of the values of the map. If keys are added
+	 * to or removed from the map while the view is iterated, the iterator
+	 * throws a {@link ConcurrentModificationException}.
+	 * @return The values
+	 */
+	public Collection<V> values() {
+		return new AbstractCollection<V>() {
+			@Override
+			public Iterator<V> iterator() {
+				return new ValueIterator();
+			}
+
+			@Override
+			public int size() {
+				return IntHashMap.this.size;
+			}
+		};
+	}
+
+	/**
+	 * Iterator over the values in slot order
+	 */
+	private class ValueIterator implements Iterator<V> {
+		private Object[] table = values;
+		private int expectedModCount = modCount;
+		private int next = advance(0);
+
+		private int advance(int i) {
+			while (i < table.length && table[i] == null) {
+				i++;
+			}
+			return i;
+		}
+
+		public boolean hasNext() {
+			return next < table.length;
+		}
+
+		@SuppressWarnings("unchecked")
+		public V next() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			V v = (V)table[next];
+			next = advance(next + 1);
+			return v;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
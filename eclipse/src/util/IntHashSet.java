@@ -0,0 +1,78 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+/**
+ * Set of primitive int values. Unlike a bit set, the memory used by the set
+ * depends only on the number of values in it and not on their magnitude.
+ */
+public class IntHashSet {
+	private IntHashMap<Boolean> map;
+
+	/**
+	 * Creates an empty set.
+	 */
+	public IntHashSet() {
+		this.map = new IntHashMap<Boolean>();
+	}
+
+	/**
+	 * Adds a value to the set
+	 * @param value The value
+	 * @return true if the value was not in the set already
+	 */
+	public boolean add(int value) {
+		return map.put(value, Boolean.TRUE) == null;
+	}
+
+	/**
+	 * Returns true if the value is in the set
+	 * @param value The value
+	 * @return true if the value is in the set
+	 */
+	public boolean contains(int value) {
+		return map.containsKey(value);
+	}
+
+	/**
+	 * Removes a value from the set
+	 * @param value The value
+	 * @return true if the value was in the set
+	 */
+	public boolean remove(int value) {
+		return map.remove(value) != null;
+	}
+
+	/**
+	 * Returns the number of values in the set
+	 * @return the number of values in the set
+	 */
+	public int size() {
+		return map.size();
+	}
+
+	/**
+	 * Returns true if the set is empty
+	 * @return true if the set is empty
+	 */
+	public boolean isEmpty() {
+		return map.isEmpty();
+	}
+
+	/**
+	 * Removes all values from the set
+	 */
+	public void clear() {
+		map.clear();
+	}
+
+	/**
+	 * Returns the values of the set
+	 * @return The values in a new array
+	 */
+	public int[] toArray() {
+		return map.keys();
+	}
+}